@@ -1,22 +1,20 @@
 package com.moderation;
 
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.result.DeleteResult;
-import com.quotes.QuoteObject;
-import com.quotes.UserClient;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
-import jakarta.ws.rs.client.*;
-import jakarta.ws.rs.core.HttpHeaders;
-import jakarta.ws.rs.core.Response;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
+import java.util.function.Predicate;
+
 import static com.mongodb.client.model.Filters.eq;
 
 @RequestScoped
@@ -25,6 +23,9 @@ public class DeleteService {
     @Inject
     private MongoClient client;
 
+    @Inject
+    private NotificationOutbox notificationOutbox;
+
     private MongoDatabase moderationDB;
     private MongoCollection<Document> deletedCollection;
     private MongoCollection<Document> reportsCollection;
@@ -51,28 +52,43 @@ public class DeleteService {
     }
 
     public void deleteReports(ObjectId quoteId) {
-        Bson query = eq("quote_id", quoteId);
+        // reports keep the quote id as a string
+        Bson query = eq("quote_id", quoteId.toString());
         reportsCollection.deleteMany(query);
     }
 
-    public Response sendOwnerNotification(Document deleteDoc, ObjectId quoteId, String authHeader) {
+    // thrown inside the transaction to roll it back when the quote is already gone
+    private static final class QuoteGone extends RuntimeException {
+        QuoteGone() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Deletes the quote with deleteQuote, saves the deleted quote, removes its reports and queues a notification for
+     * the owner, all in one transaction. Nothing is written if deleteQuote finds no quote, false is returned then.
+     * The notification is sent in the background, see NotificationOutbox.
+     */
+    public boolean archiveQuote(Document deleteDoc, ObjectId quoteId, Predicate<ClientSession> deleteQuote) {
         ObjectId to = deleteDoc.getObjectId("creator");
         ObjectId from = new ObjectId(deleteDoc.getString("adminID"));
-        String type = "Delete";
-
-        Document notificationDoc = new Document()
-                .append("from", from.toString())
-                .append("to", to.toString())
-                .append("type", type)
-                .append("quote_id", quoteId.toString());
-
-        Client notifClient = ClientBuilder.newClient();
-        WebTarget target = notifClient.target("http://user-service:9081/users/notifications/create");
-        Invocation.Builder notifReq = target.request().header(HttpHeaders.AUTHORIZATION, authHeader);
-        Response notifRes = notifReq.post(Entity.json(notificationDoc.toJson()));
-        notifClient.close();
+        if (deleteDoc.getObjectId("_id") == null) {
+            deleteDoc.put("_id", new ObjectId());
+        }
+        ObjectId deletedId = deleteDoc.getObjectId("_id");
 
-        return notifRes;
+        try {
+            notificationOutbox.writeWith(session -> {
+                if (!deleteQuote.test(session)) {
+                    throw new QuoteGone();
+                }
+                deletedCollection.insertOne(session, deleteDoc);
+                reportsCollection.deleteMany(session, eq("quote_id", quoteId.toString()));
+            }, NotificationOutbox.notification(from, to, "Delete", deletedId));
+        } catch (QuoteGone e) {
+            return false;
+        }
+        return true;
     }
 
 }
@@ -0,0 +1,107 @@
+package com.moderation;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.quotes.Outbox;
+import com.quotes.ServiceToken;
+import com.quotes.UserClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.Response;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Notifications for user-service, sent in the background instead of during the request.
+ *
+ * A notification is saved to the outbox in the same transaction as the write that caused it and sent in batches to
+ * the bulk create endpoint, see Outbox. Notifications keep their id through retries, so a batch that is delivered
+ * twice only creates them once.
+ */
+@ApplicationScoped
+public class NotificationOutbox {
+
+    @Inject
+    private MongoClient client;
+
+    @Inject
+    @RestClient
+    private UserClient userClient;
+
+    private Outbox outbox;
+
+    public NotificationOutbox() {}
+
+    @PostConstruct
+    public void init() {
+        outbox = new Outbox(client.getDatabase("Moderation").getCollection("NotificationOutbox"), "notification-outbox",
+                notifications -> sendToUserService(notifications) ? notifications : List.of());
+    }
+
+    NotificationOutbox(MongoClient mongoClient, String databaseName, Outbox.Sender sender, long dispatchIntervalMs) {
+        client = mongoClient;
+        outbox = new Outbox(client.getDatabase(databaseName).getCollection("NotificationOutbox"), "notification-outbox",
+                sender, dispatchIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outbox.shutdown();
+    }
+
+    public static Document notification(ObjectId from, ObjectId to, String type, ObjectId quoteId) {
+        return new Document("_id", new ObjectId().toString())
+                .append("from", from.toString())
+                .append("to", to.toString())
+                .append("type", type)
+                .append("quote_id", quoteId.toString())
+                .append("created_at", System.currentTimeMillis());
+    }
+
+    /**
+     * Runs the write and saves the notifications in one transaction, then wakes the dispatcher.
+     */
+    public void writeWith(Consumer<ClientSession> write, Document... notifications) {
+        try (ClientSession session = client.startSession()) {
+            session.withTransaction(() -> {
+                write.accept(session);
+                for (Document notification : notifications) {
+                    outbox.save(session, notification.getString("_id"), notification);
+                }
+                return null;
+            });
+        }
+        outbox.wake();
+    }
+
+    public int dispatch() {
+        return outbox.dispatch();
+    }
+
+    public long pending() {
+        return outbox.pending();
+    }
+
+    private boolean sendToUserService(List<Document> notifications) throws Exception {
+        try (Response response = userClient.createNotifications(ServiceToken.bearer(),
+                new Document("notifications", notifications).toJson())) {
+            if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+                System.out.println("Bulk notification create returned " + response.getStatus());
+                return false;
+            }
+            Document result = Document.parse(response.readEntity(String.class));
+            List<?> rejected = result.getList("rejected", Object.class);
+            if (rejected != null && !rejected.isEmpty()) {
+                // bad data won't get better with a retry
+                System.out.println("user-service rejected notifications " + rejected);
+            }
+            return true;
+        }
+    }
+}
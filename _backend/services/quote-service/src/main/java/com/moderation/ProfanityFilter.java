@@ -0,0 +1,248 @@
+package com.moderation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Aho-Corasick matcher over a profanity word list, so a message is checked in one pass no matter how many words are listed.
+ *
+ * Word list format is one entry per line, lines starting with # are comments.
+ *   word     matches the word on its own
+ *   word*    also matches words starting with it (fucking, bitches)
+ *   *word    also matches words ending with it (bullshit)
+ *   *word*   matches anywhere inside a word
+ *   !words   never a match, for clean words and phrases that contain a listed one (scunthorpe, summa cum laude)
+ *
+ * Messages are lowercased, common leetspeak is mapped back to letters (sh1t, @ss) and runs of three or more of
+ * the same letter are shortened (daaaamn), anything else that isn't a-z splits words. A double letter is left
+ * alone, so shiitake isn't read as shitake.
+ */
+public final class ProfanityFilter {
+
+    private static final char BOUNDARY = ' ';
+
+    private static final int WHOLE = 0;
+    private static final int PREFIX = 1;
+    private static final int SUFFIX = 2;
+    private static final int ANYWHERE = 3;
+
+    private final int[][] transitions; // full automaton, transitions[state][letter]
+    private final int[][] outputs; // entries ending at each state, fail links already merged in
+    private final int[] lengths;
+    private final int[] modes;
+    private final boolean[] hasDoubleLetter;
+    private final int size;
+    private final List<char[]> exceptions;
+
+    private ProfanityFilter(List<String> words, List<Integer> entryModes, List<char[]> exceptions) {
+        size = words.size();
+        this.exceptions = exceptions;
+        lengths = new int[size];
+        modes = new int[size];
+        hasDoubleLetter = new boolean[size];
+
+        //build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> found = new ArrayList<>();
+        trie.add(newNode());
+        found.add(new ArrayList<>());
+        for(int i = 0; i < size; i++) {
+            String word = words.get(i);
+            lengths[i] = word.length();
+            modes[i] = entryModes.get(i);
+            int state = 0;
+            for(int j = 0; j < word.length(); j++) {
+                int letter = word.charAt(j) - 'a';
+                if(j > 0 && word.charAt(j) == word.charAt(j - 1)) {
+                    hasDoubleLetter[i] = true;
+                }
+                if(trie.get(state)[letter] == -1) {
+                    trie.get(state)[letter] = trie.size();
+                    trie.add(newNode());
+                    found.add(new ArrayList<>());
+                }
+                state = trie.get(state)[letter];
+            }
+            found.get(state).add(i);
+        }
+
+        //breadth first pass to add fail links, turning the trie into a full automaton
+        int[] fail = new int[trie.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        int[] root = trie.get(0);
+        for(int letter = 0; letter < 26; letter++) {
+            if(root[letter] == -1) {
+                root[letter] = 0;
+            } else {
+                fail[root[letter]] = 0;
+                queue.add(root[letter]);
+            }
+        }
+        while(!queue.isEmpty()) {
+            int state = queue.poll();
+            found.get(state).addAll(found.get(fail[state]));
+            int[] node = trie.get(state);
+            for(int letter = 0; letter < 26; letter++) {
+                int child = node[letter];
+                if(child == -1) {
+                    node[letter] = trie.get(fail[state])[letter];
+                } else {
+                    fail[child] = trie.get(fail[state])[letter];
+                    queue.add(child);
+                }
+            }
+        }
+
+        transitions = trie.toArray(new int[0][]);
+        outputs = new int[found.size()][];
+        for(int state = 0; state < found.size(); state++) {
+            outputs[state] = found.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[26];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    public static ProfanityFilter of(Collection<String> entries) {
+        List<String> words = new ArrayList<>();
+        List<Integer> entryModes = new ArrayList<>();
+        List<char[]> exceptions = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for(String entry : entries) {
+            if(entry == null) {
+                continue;
+            }
+            String line = entry.trim().toLowerCase();
+            if(line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if(line.startsWith("!")) {
+                char[] exception = normalize(line.substring(1).trim(), false);
+                if(exception.length > 0 && seen.add(line)) {
+                    exceptions.add(exception);
+                }
+                continue;
+            }
+            boolean leading = line.startsWith("*");
+            boolean trailing = line.endsWith("*");
+            String word = line.replace("*", "");
+            if(word.isEmpty() || !word.chars().allMatch(c -> c >= 'a' && c <= 'z') || !seen.add(line)) {
+                System.out.println("Skipping profanity list entry: " + entry);
+                continue;
+            }
+            words.add(word);
+            entryModes.add(leading && trailing ? ANYWHERE : leading ? SUFFIX : trailing ? PREFIX : WHOLE);
+        }
+        return new ProfanityFilter(words, entryModes, exceptions);
+    }
+
+    public static ProfanityFilter load(Reader reader) throws IOException {
+        try(BufferedReader lines = new BufferedReader(reader)) {
+            return of(lines.lines().toList());
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean matches(String message) {
+        if(message == null || message.isEmpty() || size == 0) {
+            return false;
+        }
+        //runs of 3 or more letters are cut to 2 so words like "ass" still match "asssss"
+        if(scan(withoutExceptions(normalize(message, false)), false)) {
+            return true;
+        }
+        //runs of 3 or more cut to 1 catches "daaamn", but only against entries without a double letter so "as" isn't read as "ass"
+        return scan(withoutExceptions(normalize(message, true)), true);
+    }
+
+    //blanks out every whole word occurrence of an exception, so nothing inside it can match
+    private char[] withoutExceptions(char[] text) {
+        for(char[] exception : exceptions) {
+            for(int start = 0; start + exception.length <= text.length; start++) {
+                if((start == 0 || text[start - 1] == BOUNDARY)
+                        && (start + exception.length == text.length || text[start + exception.length] == BOUNDARY)
+                        && Arrays.equals(text, start, start + exception.length, exception, 0, exception.length)) {
+                    Arrays.fill(text, start, start + exception.length, BOUNDARY);
+                }
+            }
+        }
+        return text;
+    }
+
+    private boolean scan(char[] text, boolean skipDoubleLetters) {
+        int state = 0;
+        int wordStart = 0;
+        for(int i = 0; i < text.length; i++) {
+            char c = text[i];
+            if(c == BOUNDARY) {
+                state = 0;
+                wordStart = i + 1;
+                continue;
+            }
+            state = transitions[state][c - 'a'];
+            for(int entry : outputs[state]) {
+                if(skipDoubleLetters && hasDoubleLetter[entry]) {
+                    continue;
+                }
+                boolean atStart = i - lengths[entry] + 1 == wordStart;
+                boolean atEnd = i + 1 == text.length || text[i + 1] == BOUNDARY;
+                if(switch(modes[entry]) {
+                    case WHOLE -> atStart && atEnd;
+                    case PREFIX -> atStart;
+                    case SUFFIX -> atEnd;
+                    default -> true;
+                }) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //a run of 3 or more of the same letter becomes 2, or 1 with collapseRuns, shorter runs are kept as they are
+    static char[] normalize(String message, boolean collapseRuns) {
+        char[] text = new char[message.length()];
+        int length = 0;
+        int i = 0;
+        while(i < message.length()) {
+            char c = letterFor(message.charAt(i));
+            int run = 1;
+            while(i + run < message.length() && letterFor(message.charAt(i + run)) == c) {
+                run++;
+            }
+            i += run;
+            if(length > 0 && c == BOUNDARY && text[length - 1] == BOUNDARY) {
+                continue;
+            }
+            int kept = c == BOUNDARY ? 1 : run < 3 ? run : collapseRuns ? 1 : 2;
+            for(int k = 0; k < kept; k++) {
+                text[length++] = c;
+            }
+        }
+        return Arrays.copyOf(text, length);
+    }
+
+    private static char letterFor(char c) {
+        c = Character.toLowerCase(c);
+        if(c >= 'a' && c <= 'z') {
+            return c;
+        }
+        return switch(c) {
+            case '0' -> 'o';
+            case '1' -> 'i';
+            case '3' -> 'e';
+            case '4', '@' -> 'a';
+            case '5', '$' -> 's';
+            case '7' -> 't';
+            default -> BOUNDARY;
+        };
+    }
+}
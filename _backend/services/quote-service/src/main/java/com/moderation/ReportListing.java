@@ -0,0 +1,224 @@
+package com.moderation;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.quotes.QuoteResultWriter;
+import com.quotes.SanitizerClass;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Pages of reports for the admin panel, each with its quote attached.
+ *
+ * Reports live in Moderation and quotes in Data, and $lookup can't join across databases, so a page costs a fixed
+ * number of queries instead of one per report: the side being sorted on is walked along an index from where the
+ * previous page stopped, and the other side is fetched for the whole page with one $in. A page never skips over
+ * the pages before it, so the hundredth page costs the same as the first.
+ * Each quote has at most one report, so paging quotes by flags pages their reports too.
+ */
+class ReportListing {
+
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+    //flagged quotes looked at per page before a short page is returned, in case few of them match the filter
+    static final int MAX_FETCH_ROUNDS = 10;
+    static final int MAX_FETCH_BATCH = 1000;
+
+    static final char BY_DATE = 'd';
+    static final char BY_FLAGS = 'f';
+
+    /**
+     * Where a page stopped, the sort value and _id of its last entry. Reports by date use the report's _id, reports by
+     * flags the quote's.
+     */
+    record Position(char sort, long value, ObjectId id) {}
+
+    private final MongoCollection<Document> reportsCollection;
+    private final MongoCollection<Document> quotesCollection;
+
+    ReportListing(MongoCollection<Document> reportsCollection, MongoCollection<Document> quotesCollection) {
+        this.reportsCollection = reportsCollection;
+        this.quotesCollection = quotesCollection;
+        try {
+            reportsCollection.createIndex(Indexes.ascending("report_date", "_id"));
+            //only flagged quotes are ever listed, so the index leaves the rest out
+            quotesCollection.createIndex(Indexes.ascending("flags", "_id"),
+                    new IndexOptions().partialFilterExpression(Filters.gt("flags", 0)));
+        } catch (Exception e) {
+            System.out.println("Could not create report listing indexes: " + e);
+        }
+    }
+
+    // same matching as before, a report matches if any of its context types contains one of the given types
+    static Document typeFilter(List<String> types) {
+        if(types == null || types.isEmpty()) {
+            return new Document();
+        }
+        List<Document> regexPatterns = new ArrayList<>();
+        for(String type : types) {
+            regexPatterns.add(new Document("context_types", new Document("$regex", type).append("$options", "i")));
+        }
+        return new Document("$or", regexPatterns);
+    }
+
+    // everything after the position in the given direction, by field then _id
+    static Document after(String field, Position position, boolean ascending) {
+        if(position == null) {
+            return new Document();
+        }
+        String operator = ascending ? "$gt" : "$lt";
+        return new Document("$or", List.of(
+                new Document(field, new Document(operator, position.value())),
+                new Document(field, position.value()).append("_id", new Document(operator, position.id()))));
+    }
+
+    /**
+     * Reports sorted by report date. Reports whose quote is gone are still listed, without a quote.
+     */
+    StreamingOutput byDate(Document filter, boolean ascending, Position after, int pageSize) {
+        int direction = ascending ? 1 : -1;
+        List<Document> reports = reportsCollection.find(new Document("$and", List.of(filter, after("report_date", after, ascending))))
+                .sort(new Document("report_date", direction).append("_id", direction))
+                .limit(pageSize + 1)
+                .into(new ArrayList<>());
+
+        boolean more = reports.size() > pageSize;
+        List<Document> page = more ? reports.subList(0, pageSize) : reports;
+        Position next = null;
+        if(more) {
+            Document last = page.get(page.size() - 1);
+            next = new Position(BY_DATE, ((Number) last.get("report_date")).longValue(), last.getObjectId("_id"));
+        }
+
+        List<ObjectId> quoteIds = new ArrayList<>();
+        for(Document report : page) {
+            String quoteId = report.getString("quote_id");
+            if(quoteId != null && SanitizerClass.validObjectId(quoteId)) {
+                quoteIds.add(new ObjectId(quoteId));
+            }
+        }
+        Map<String, Document> quotes = quotesById(quoteIds);
+        for(Document report : page) {
+            Document quote = quotes.get(report.getString("quote_id"));
+            if(quote != null) {
+                report.put("quote", quote);
+            }
+        }
+        return writer(page, next);
+    }
+
+    /**
+     * Reports sorted by the flags of their quote. Only reports whose quote exists and has been flagged are listed.
+     *
+     * Flagged quotes are walked in flag order and kept if they have a report matching the filter. When few of them
+     * do, the page can come back short after MAX_FETCH_ROUNDS batches, next still continues from the last quote
+     * looked at.
+     */
+    StreamingOutput byFlags(Document filter, boolean ascending, Position after, int pageSize) {
+        int direction = ascending ? 1 : -1;
+        List<Document> page = new ArrayList<>();
+        Position position = after;
+        boolean more = true;
+        int batch = Math.min(pageSize * 2, MAX_FETCH_BATCH);
+        for(int round = 0; round < MAX_FETCH_ROUNDS && more && page.size() < pageSize; round++) {
+            List<Document> quotes = quotesCollection.find(new Document("$and", List.of(
+                            new Document("flags", new Document("$gt", 0)), after("flags", position, ascending))))
+                    .sort(new Document("flags", direction).append("_id", direction))
+                    .limit(batch)
+                    .into(new ArrayList<>());
+            more = quotes.size() == batch;
+
+            List<String> batchIds = new ArrayList<>();
+            for(Document quote : quotes) {
+                batchIds.add(quote.getObjectId("_id").toString());
+            }
+            Map<String, Document> reports = new HashMap<>();
+            if(!batchIds.isEmpty()) {
+                Document batchFilter = new Document("$and", List.of(filter, new Document("quote_id", new Document("$in", batchIds))));
+                for(Document report : reportsCollection.find(batchFilter)) {
+                    reports.putIfAbsent(report.getString("quote_id"), report);
+                }
+            }
+
+            //keep the order of the quotes
+            for(int i = 0; i < quotes.size(); i++) {
+                Document quote = quotes.get(i);
+                position = new Position(BY_FLAGS, ((Number) quote.get("flags")).longValue(), quote.getObjectId("_id"));
+                Document report = reports.get(position.id().toString());
+                if(report != null) {
+                    quote.put("_id", position.id().toString());
+                    report.put("quote", quote);
+                    page.add(report);
+                }
+                if(page.size() == pageSize) {
+                    more = more || i < quotes.size() - 1;
+                    break;
+                }
+            }
+            batch = Math.min(batch * 2, MAX_FETCH_BATCH);
+        }
+        return writer(page, more ? position : null);
+    }
+
+    private Map<String, Document> quotesById(List<ObjectId> quoteIds) {
+        Map<String, Document> quotes = new HashMap<>();
+        if(quoteIds.isEmpty()) {
+            return quotes;
+        }
+        for(Document quote : quotesCollection.find(new Document("_id", new Document("$in", quoteIds)))) {
+            String quoteId = quote.getObjectId("_id").toString();
+            quote.put("_id", quoteId);
+            quotes.put(quoteId, quote);
+        }
+        return quotes;
+    }
+
+    //{"reports": [...], "next": token or null}
+    private static StreamingOutput writer(List<Document> page, Position next) {
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write("{\"reports\": ");
+            QuoteResultWriter.writeArray(page.iterator(), writer, "_id");
+            writer.write(", \"next\": ");
+            writer.write(next == null ? "null" : "\"" + token(next) + "\"");
+            writer.write('}');
+            writer.flush();
+        };
+    }
+
+    // continuation tokens are opaque to clients, they only carry the position the next page starts after
+    static String token(Position position) {
+        String raw = position.sort() + Long.toString(position.value()) + ":" + position.id().toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The position in a token for the given sort, null for the first page.
+     *
+     * @throws IllegalArgumentException if the token is not one we handed out for that sort
+     */
+    static Position position(String token, char sort) {
+        if(token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if(decoded.isEmpty() || decoded.charAt(0) != sort || separator < 0) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            return new Position(sort, Long.parseLong(decoded.substring(1, separator)), new ObjectId(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+}
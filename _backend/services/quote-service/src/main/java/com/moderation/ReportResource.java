@@ -18,6 +18,7 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import org.bson.Document;
 import org.bson.types.ObjectId;
@@ -53,6 +54,9 @@ public class ReportResource {
     private MongoDatabase dataDB;
     private MongoCollection<Document> quotesCollection;
 
+    private ReportListing reportListing;
+    private ReportService reportService;
+
     @PostConstruct
     public void init() {
         moderationDB = client.getDatabase("Moderation");
@@ -60,6 +64,9 @@ public class ReportResource {
 
         dataDB = client.getDatabase("Data");
         quotesCollection = dataDB.getCollection("Quotes");
+
+        reportListing = new ReportListing(reportsCollection, quotesCollection);
+        reportService = new ReportService(reportsCollection, quotesCollection);
     }
 
     @POST
@@ -70,7 +77,8 @@ public class ReportResource {
             @APIResponse(responseCode = "201", description = "Report successfully created or updated"),
             @APIResponse(responseCode = "400", description = "Invalid request data"),
             @APIResponse(responseCode = "401", description = "Unauthorized - invalid or missing JWT"),
-            @APIResponse(responseCode = "409", description = "User has already reported this quote")
+            @APIResponse(responseCode = "409", description = "User has already reported this quote"),
+            @APIResponse(responseCode = "503", description = "Reports can't be taken until the reports index exists")
     })
     @Operation(summary = "Create or update a report for a quote", 
                description = "Creates a new report for a quote or updates an existing report if one already exists")
@@ -125,106 +133,34 @@ public class ReportResource {
             }
             
             String message = reportDoc.getString("message");
-            boolean isNewReporter = false;
 
-            // check if a report for this quote already exists
-            Document existingReport = reportsCollection.find(eq("quote_id", quoteId)).first();
-            
-            if (existingReport != null) {
-                // report exists, check if this user already reported it
-                @SuppressWarnings("unchecked")
-                List<String> reporterIds = (List<String>) existingReport.get("reporter_ids");
-                
-                if (reporterIds.contains(accountID)) {
-                    return Response.status(Response.Status.CONFLICT)
-                            .entity(new Document("error", "User has already reported this quote").toJson())
-                            .build();
-                }
-                
-                // update existing report - This is a new reporter
-                isNewReporter = true;
-                reporterIds.add(accountID);
-                existingReport.put("reporter_ids", reporterIds);
-                
-                // add new context_type if its not the same as an existing one
-                @SuppressWarnings("unchecked")
-                List<String> contextTypes = (List<String>) existingReport.get("context_types");
-                
-                // support for single user, multiple resons
-                String[] splitTypes = contextType.split(",");
-                for (String type : splitTypes) {
-                    String trimmed = type.trim();
-                    if (!trimmed.isEmpty() && !contextTypes.contains(trimmed)) {
-                        contextTypes.add(trimmed);
-                    }
-                }
-                existingReport.put("context_types", contextTypes);
-                
-                // add custom_message (ignores if empty)
-                if (message != null && !message.trim().isEmpty()) {
-                    @SuppressWarnings("unchecked")
-                    List<String> customMessages = existingReport.get("message", List.class);
-                    if (customMessages == null) {
-                        customMessages = new ArrayList<>();
-                        existingReport.put("message", customMessages);
-                    }
-                    customMessages.add(message.trim());
+            // support for single user, multiple resons
+            List<String> contextTypes = new ArrayList<>();
+            for (String type : contextType.split(",")) {
+                String trimmed = type.trim();
+                if (!trimmed.isEmpty() && !contextTypes.contains(trimmed)) {
+                    contextTypes.add(trimmed);
                 }
-                
-                reportsCollection.replaceOne(eq("_id", existingReport.getObjectId("_id")), existingReport);
-                
-            } else {
-                // create new report - This is a new reporter
-                isNewReporter = true;
-                Document newReport = new Document()
-                        .append("_id", new ObjectId())
-                        .append("quote_id", quoteId)
-                        .append("reporter_ids", new ArrayList<String>(List.of(accountID)));
-                
-                // support for single user, multiple resons
-                List<String> contextTypesList = new ArrayList<>();
-                String[] splitTypes = contextType.split(",");
-                for (String type : splitTypes) {
-                    String trimmed = type.trim();
-                    if (!trimmed.isEmpty()) {
-                        contextTypesList.add(trimmed);
-                    }
-                }
-                newReport.append("context_types", contextTypesList);
-                
-                
-                newReport.append("report_date", (int)(System.currentTimeMillis() / 1000))
-                        .append("status", ReportObject.STATUS_OPEN);
-                
-                // add custom_message (ignores if empty)
-                if (message != null && !message.trim().isEmpty()) {
-                    newReport.append("message", new ArrayList<String>(List.of(message.trim())));
-                }
-                
-                reportsCollection.insertOne(newReport);
             }
-            
-            // if this is a new reporter, increment the flags counter of the quote
-            if (isNewReporter) {
-                ObjectId quoteObjectId = new ObjectId(quoteId);
-                
-                Document quote = quotesCollection.find(eq("_id", quoteObjectId)).first();
-                if (quote != null) {
-                    int currentFlags = quote.getInteger("flags", 0);
-
-                    quotesCollection.updateOne(
-                        eq("_id", quoteObjectId),
-                        new Document("$set", new Document("flags", currentFlags + 1))
-                    );
-                }
+
+            ReportService.Outcome outcome = reportService.report(quoteId, accountID, contextTypes, message);
+
+            if (outcome == ReportService.Outcome.ALREADY_REPORTED) {
+                return Response.status(Response.Status.CONFLICT)
+                        .entity(new Document("error", "User has already reported this quote").toJson())
+                        .build();
             }
             
             return Response.status(Response.Status.CREATED)
                     .entity(new Document("message", "Report " + 
-                           (existingReport != null ? "updated" : "created") + " successfully")
+                           (outcome == ReportService.Outcome.UPDATED ? "updated" : "created") + " successfully")
                            .toJson())
                     .build();
                     
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(new Document("error", e.getMessage()).toJson())
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new Document("error", "Error processing request: " + e.getMessage()).toJson())
@@ -236,13 +172,29 @@ public class ReportResource {
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
     @APIResponses(value = {
-            @APIResponse(responseCode = "200", description = "Successfully retrieved all reports"),
+            @APIResponse(responseCode = "200", description = "Successfully retrieved a page of reports"),
+            @APIResponse(responseCode = "400", description = "Invalid page size or continuation token"),
             @APIResponse(responseCode = "401", description = "Unauthorized - invalid or missing JWT"),
             @APIResponse(responseCode = "409", description = "Exception occurred during operation")
     })
     @Operation(summary = "Get all reports", 
-              description = "Returns JSON array of all reports in the system. Only accessible by moderators and administrators.")
-    public Response getAllReports(@Context HttpHeaders headers) {
+              description = "Returns a page of reports in the system, newest first, as {\"reports\": [...], \"next\": token}." +
+                      " Pass next to get the following page, it is null on the last page. Only accessible by moderators and administrators.")
+    public Response getAllReports(
+            @Parameter(
+                description = "Number of reports per page, at most " + ReportListing.MAX_PAGE_SIZE,
+                required = false,
+                schema = @Schema(defaultValue = "" + ReportListing.DEFAULT_PAGE_SIZE)
+            )
+            @QueryParam("pageSize") @DefaultValue("" + ReportListing.DEFAULT_PAGE_SIZE) int pageSize,
+
+            @Parameter(
+                description = "Continuation token, the \"next\" value of the previous page. Leave out for the first page",
+                required = false
+            )
+            @QueryParam("next") String next,
+
+            @Context HttpHeaders headers) {
         // auth
         String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
 
@@ -269,27 +221,18 @@ public class ReportResource {
         }
 
         try {
-            List<Document> reports = reportsCollection.find().into(new ArrayList<>());
-            
-            for (Document report : reports) {
-                if (report.containsKey("_id")) {
-                    report.put("_id", report.getObjectId("_id").toString());
-                }
-
-                //full quote information from id, add to report
-                String quoteId = report.getString("quote_id");
-                if (quoteId != null && SanitizerClass.validObjectId(quoteId)) {
-                    ObjectId quoteObjectId = new ObjectId(quoteId);
-                    Document quote = quotesCollection.find(eq("_id", quoteObjectId)).first();
-                    if (quote != null) {
-                        quote.put("_id", quote.getObjectId("_id").toString());
-                        report.put("quote", quote); 
-                    }
-                }
+            ReportListing.Position after;
+            try {
+                after = ReportListing.position(next, ReportListing.BY_DATE);
+            } catch (IllegalArgumentException e) {
+                return invalidPage();
             }
-            
-            Document result = new Document("reports", reports);
-            return Response.ok(result.toJson()).build();
+            if (pageSize < 1 || pageSize > ReportListing.MAX_PAGE_SIZE) {
+                return invalidPage();
+            }
+
+            StreamingOutput result = reportListing.byDate(new Document(), false, after, pageSize);
+            return Response.ok(result).build();
             
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT)
@@ -307,7 +250,8 @@ public class ReportResource {
             @APIResponse(responseCode = "409", description = "Exception occurred during operation")
     })
     @Operation(summary = "Get filtered and sorted reports", 
-              description = "Returns JSON array of reports filtered by type and/or sorted by specified criteria")
+              description = "Returns a page of reports filtered by type and/or sorted by specified criteria, as {\"reports\": [...], \"next\": token}." +
+                      " Pass next to get the following page, it is null on the last page.")
     public Response getFilteredReports(
             @Parameter(
                 description = "Filter by report context_type -- for multiple filters, use comma-separated values (ex: 'offensive,spam,hateful')",
@@ -328,6 +272,19 @@ public class ReportResource {
                 schema = @Schema(defaultValue = "desc", enumeration = {"asc", "desc"})
             )
             @QueryParam("sortOrder") @DefaultValue("desc") String sortOrder,
+
+            @Parameter(
+                description = "Number of reports per page, at most " + ReportListing.MAX_PAGE_SIZE,
+                required = false,
+                schema = @Schema(defaultValue = "" + ReportListing.DEFAULT_PAGE_SIZE)
+            )
+            @QueryParam("pageSize") @DefaultValue("" + ReportListing.DEFAULT_PAGE_SIZE) int pageSize,
+
+            @Parameter(
+                description = "Continuation token, the \"next\" value of the previous page. Leave out for the first page",
+                required = false
+            )
+            @QueryParam("next") String next,
             
             @Context HttpHeaders headers) {
 
@@ -358,32 +315,14 @@ public class ReportResource {
         
         
         try {
-            List<Document> filteredReports = new ArrayList<>();
-            
+            List<String> typesList = new ArrayList<>();
             if (filterType != null && !filterType.isEmpty()) {
-                String[] types = filterType.split(",");
-                List<String> typesList = new ArrayList<>();
-                for (String type : types) {
+                for (String type : filterType.split(",")) {
                     String trimmed = type.trim();
                     if (!trimmed.isEmpty()) {
                         typesList.add(trimmed);
                     }
                 }
-                
-                List<Document> regexPatterns = new ArrayList<>();
-                for (String type : typesList) {
-                    regexPatterns.add(new Document("context_types", 
-                        new Document("$regex", type).append("$options", "i")));
-                }
-                
-                if (!regexPatterns.isEmpty()) {
-                    filteredReports = reportsCollection.find(new Document("$or", regexPatterns))
-                        .into(new ArrayList<>());
-                } else {
-                    filteredReports = reportsCollection.find().into(new ArrayList<>());
-                }
-            } else {
-                filteredReports = reportsCollection.find().into(new ArrayList<>());
             }
             
             if (!sortBy.equalsIgnoreCase("flags") && !sortBy.equalsIgnoreCase("date")) {
@@ -397,61 +336,26 @@ public class ReportResource {
                         .entity(new Document("error", "Invalid sortOrder parameter. Use 'asc' or 'desc'").toJson())
                         .build();
             }
-            
 
-            for (Document report : filteredReports) {
-                if (report.containsKey("_id")) {
-                    report.put("_id", report.getObjectId("_id").toString());
-                }
-                
-                //full quote information from id, add to report
-                String quoteId = report.getString("quote_id");
-                if (quoteId != null && SanitizerClass.validObjectId(quoteId)) {
-                    ObjectId quoteObjectId = new ObjectId(quoteId);
-                    Document quote = quotesCollection.find(eq("_id", quoteObjectId)).first();
-                    if (quote != null) {
-                        quote.put("_id", quote.getObjectId("_id").toString());
-                        report.put("quote", quote);
-                    }
-                }
+            boolean byFlags = sortBy.equalsIgnoreCase("flags");
+            ReportListing.Position after;
+            try {
+                after = ReportListing.position(next, byFlags ? ReportListing.BY_FLAGS : ReportListing.BY_DATE);
+            } catch (IllegalArgumentException e) {
+                return invalidPage();
             }
-            
-            final boolean ascending = sortOrder.equalsIgnoreCase("asc");
-            
-            if (sortBy.equalsIgnoreCase("flags")) {
-                List<Document> validReports = new ArrayList<>();
-                
-                for (Document report : filteredReports) {
-                    Document quote = (Document) report.get("quote");
-                    
-                    // only includes reports where -- quote exists, flags field exists, flags value is greater than 0
-                    if (quote != null && quote.containsKey("flags") && quote.getInteger("flags") > 0) {
-                        validReports.add(report);
-                    }
-                }
-                
-                filteredReports = validReports;
-                
-                filteredReports.sort((a, b) -> {
-                    Document quoteA = (Document) a.get("quote");
-                    Document quoteB = (Document) b.get("quote");
-                    
-                    int flagsA = quoteA.getInteger("flags");
-                    int flagsB = quoteB.getInteger("flags");
-                    
-                    return ascending ? Integer.compare(flagsA, flagsB) : Integer.compare(flagsB, flagsA);
-                });
-            } else {
-                filteredReports.sort((a, b) -> {
-                    int dateA = a.getInteger("report_date", 0);
-                    int dateB = b.getInteger("report_date", 0);
-                    
-                    return ascending ? Integer.compare(dateA, dateB) : Integer.compare(dateB, dateA);
-                });
+            if (pageSize < 1 || pageSize > ReportListing.MAX_PAGE_SIZE) {
+                return invalidPage();
             }
             
-            Document result = new Document("reports", filteredReports);
-            return Response.ok(result.toJson()).build();
+            Document filter = ReportListing.typeFilter(typesList);
+            boolean ascending = sortOrder.equalsIgnoreCase("asc");
+
+            // sorting by flags only includes reports where the quote exists and has been flagged
+            StreamingOutput result = byFlags
+                    ? reportListing.byFlags(filter, ascending, after, pageSize)
+                    : reportListing.byDate(filter, ascending, after, pageSize);
+            return Response.ok(result).build();
             
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT)
@@ -460,6 +364,13 @@ public class ReportResource {
         }
     }
 
+    private Response invalidPage() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new Document("error", "Invalid page. pageSize must be between 1 and " + ReportListing.MAX_PAGE_SIZE +
+                        " and next must come from a previous page").toJson())
+                .build();
+    }
+
     @DELETE
     @Path("/delete/{reportId}")
     @Produces(MediaType.APPLICATION_JSON)
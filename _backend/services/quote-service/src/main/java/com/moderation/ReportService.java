@@ -0,0 +1,92 @@
+package com.moderation;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Adds reports without reading them first.
+ *
+ * There is one report per quote. A report is one conditional upsert that only matches if the user hasn't reported the
+ * quote yet, and the quote's flags go up by one only when that upsert added the user, so concurrent reports can't lose
+ * each other or count the same user twice.
+ *
+ * That only holds with the unique index on quote_id. If it can't be created, for example because older data already
+ * has two reports for one quote, reports are refused until it can, instead of being added without the guarantee.
+ */
+class ReportService {
+
+    enum Outcome { CREATED, UPDATED, ALREADY_REPORTED }
+
+    private final MongoCollection<Document> reportsCollection;
+    private final MongoCollection<Document> quotesCollection;
+    private volatile boolean indexed;
+
+    ReportService(MongoCollection<Document> reportsCollection, MongoCollection<Document> quotesCollection) {
+        this.reportsCollection = reportsCollection;
+        this.quotesCollection = quotesCollection;
+        ensureIndex();
+    }
+
+    //the upsert relies on this, without it a repeat report would insert a second report for the quote
+    private boolean ensureIndex() {
+        if (indexed) {
+            return true;
+        }
+        try {
+            reportsCollection.createIndex(Indexes.ascending("quote_id"), new IndexOptions().unique(true));
+            indexed = true;
+        } catch (Exception e) {
+            System.out.println("Could not create unique quote_id index on reports, reports are refused until it exists: " + e);
+        }
+        return indexed;
+    }
+
+    /**
+     * @throws IllegalStateException if the unique quote_id index still can't be created
+     */
+    Outcome report(String quoteId, String accountId, List<String> contextTypes, String message) {
+        if (!ensureIndex()) {
+            throw new IllegalStateException("Reports are unavailable, the unique quote_id index is missing");
+        }
+        Document filter = new Document("quote_id", quoteId)
+                .append("reporter_ids", new Document("$ne", accountId));
+
+        Document update = new Document("$addToSet", new Document("reporter_ids", accountId)
+                        .append("context_types", new Document("$each", contextTypes)))
+                .append("$setOnInsert", new Document("report_date", (int)(System.currentTimeMillis() / 1000))
+                        .append("status", ReportObject.STATUS_OPEN));
+        if (message != null && !message.trim().isEmpty()) {
+            update.append("$push", new Document("message", message.trim()));
+        }
+
+        Outcome outcome;
+        try {
+            UpdateResult result = reportsCollection.updateOne(filter, update, new UpdateOptions().upsert(true));
+            outcome = result.getUpsertedId() != null ? Outcome.CREATED : Outcome.UPDATED;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            //the report exists and already lists this user, or another request created it first
+            UpdateResult result = reportsCollection.updateOne(filter, update);
+            if (result.getMatchedCount() == 0) {
+                return Outcome.ALREADY_REPORTED;
+            }
+            outcome = Outcome.UPDATED;
+        }
+
+        quotesCollection.updateOne(eq("_id", new ObjectId(quoteId)), new Document("$inc", new Document("flags", 1)));
+        return outcome;
+    }
+}
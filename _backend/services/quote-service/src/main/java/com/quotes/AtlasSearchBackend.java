@@ -0,0 +1,171 @@
+package com.quotes;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Quote search with the Atlas $search stage on the QuotesAtlasSearch index.
+ *
+ * Private quotes and the quotes the user asked to leave out are excluded by the compound query itself, so every
+ * quote it returns is one that can go on the page. A user with more than MAX_PUSHED_EXCLUSIONS of them gets the
+ * search without the ids and they are filtered out here instead, fetching further batches until the page is
+ * full. After MAX_FETCH_ROUNDS batches the page is returned short.
+ */
+class AtlasSearchBackend implements SearchBackend {
+
+    //more excluded ids than this are filtered out after the search instead of being sent with it
+    static final int MAX_PUSHED_EXCLUSIONS = 1000;
+    static final int MAX_FETCH_ROUNDS = 10;
+    static final int MAX_FETCH_BATCH = 1000;
+
+    private final MongoCollection<Document> collection;
+
+    AtlasSearchBackend(MongoCollection<Document> collection) {
+        this.collection = collection;
+    }
+
+    @Override
+    public List<Document> search(Request request) {
+        Document CompoundDoc = compound(request);
+        Set<ObjectId> excludedIds = request.excludedIds();
+        if(excludedIds.size() <= MAX_PUSHED_EXCLUSIONS) {
+            return page(CompoundDoc, request.after(), request.before(), request.limit());
+        }
+
+        //too many ids to send with every search, fetch more than a page and leave them out here until the page is full
+        List<Document> results = new ArrayList<>(request.limit());
+        String after = request.after();
+        String before = request.before();
+        int batch = request.limit() * 2;
+        for(int round = 0; round < MAX_FETCH_ROUNDS && results.size() < request.limit(); round++) {
+            List<Document> fetched = fetch(CompoundDoc, after, before, batch);
+            for(Document quote : fetched) {
+                if(results.size() < request.limit() && !excludedIds.contains(quote.getObjectId("_id"))) {
+                    results.add(quote);
+                }
+            }
+            if(fetched.size() < batch) {
+                break; //nothing left to search
+            }
+            //continue from the last quote looked at, each quote keeps its own token so the client's next page still lines up
+            String token = fetched.get(fetched.size() - 1).getString("paginationToken");
+            if(before != null) {
+                before = token;
+            } else {
+                after = token;
+            }
+            batch = Math.min(batch * 2, MAX_FETCH_BATCH);
+        }
+        if(before != null) {
+            Collections.reverse(results); //searchBefore returns the page closest to the token first
+        }
+        return results;
+    }
+
+    //the query, include and exclude terms, visibility, and the excluded ids unless there are too many of them
+    Document compound(Request request) {
+        String searchQuery = request.query();
+        List<Document> MustClause = new ArrayList<>();
+        if(!request.include().isEmpty()) {
+            //create clause specifying quote must should include specified terms
+            MustClause.add(new Document("text", new Document("query", request.include()).append("path", "quote")));
+        }
+
+        List<Document> MustNotClause = new ArrayList<>();
+        if(!request.exclude().isEmpty()) {
+            //create clause specifying quote must not include specified terms
+            MustNotClause.add(new Document("text", new Document("query", request.exclude()).append("path", "quote")));
+        }
+
+        //Base clause
+        List<Document> ShouldClause = List.of( //search that "must" occur
+                new Document("text", new Document("query", searchQuery) //set query string to user query
+                        .append("path", Arrays.asList("quote", "author", "tags"))// field to search and compare to
+                        .append("fuzzy", new Document("maxEdits", 2))
+                ),
+                new Document("text", new Document("query", searchQuery) //set query string to user query
+                        .append("path", "author")// field to search and compare to
+                        .append("score", new Document("boost", new Document("value", 1.5)))
+                        .append("fuzzy", new Document("maxEdits", 2))
+                ),
+                new Document("text", new Document("query", searchQuery) //set query string to user query
+                        .append("path", "tags")// field to search and compare to
+                        .append("score", new Document("boost", new Document("value", 1.5)))
+                        .append("fuzzy", new Document("maxEdits", 2))
+                )
+        );
+
+        //build search query document
+        //The should/mustNot can cause search issues if lists are empty, so they must be dynamically appended to query document
+        //minimumShouldMatch keeps the should clauses required once there is a must or filter clause
+        Document CompoundDoc = new Document("should", ShouldClause) //default searching
+                .append("minimumShouldMatch", 1);
+        //append include/exclude clauses if specified
+        if(!MustClause.isEmpty()) {
+            CompoundDoc.append("must", MustClause);
+        }
+
+        //visibility and excluded quotes are part of the search, so they aren't scored only to be thrown away after it
+        Document isPrivate = new Document("equals", new Document("path", "private").append("value", true));
+        if(request.viewer() == null) { //guest
+            MustNotClause.add(isPrivate); //Exclude private quotes
+        } else {
+            CompoundDoc.append("filter", List.of(new Document("compound", new Document("should", List.of(
+                    //a compound with only mustNot matches nothing, so it needs a clause every quote matches
+                    new Document("compound", new Document("must", List.of(new Document("exists", new Document("path", "_id"))))
+                            .append("mustNot", List.of(isPrivate))), //exclude private quotes
+                    new Document("equals", new Document("path", "creator").append("value", request.viewer())) //unless is creator
+            )).append("minimumShouldMatch", 1))));
+        }
+        if(request.excludedIds().size() <= MAX_PUSHED_EXCLUSIONS && !request.excludedIds().isEmpty()) {
+            MustNotClause.add(new Document("in", new Document("path", "_id").append("value", new ArrayList<>(request.excludedIds())))); //Ignore specified quotes
+        }
+        if(!MustNotClause.isEmpty()) {
+            CompoundDoc.append("mustNot", MustNotClause);
+        }
+        return CompoundDoc;
+    }
+
+    private List<Document> page(Document compound, String after, String before, int limit) {
+        List<Document> results = fetch(compound, after, before, limit);
+        if(before != null) {
+            Collections.reverse(results); //searchBefore returns the page closest to the token first
+        }
+        return results;
+    }
+
+    //one run of $search in the order it returns quotes, nearest to the token first
+    List<Document> fetch(Document compound, String after, String before, int limit) {
+        Document search = new Document("index", "QuotesAtlasSearch") //set to search atlas index
+                .append("compound", compound);
+        //pages continue from a token instead of skipping, so a deep page costs the same as the first
+        if(after != null) {
+            search.append("searchAfter", after);
+        } else if(before != null) {
+            search.append("searchBefore", before);
+        }
+
+        try {
+            return collection.aggregate(Arrays.asList(
+                    new Document("$search", search),
+                    //$search already returns the most relevant first
+                    new Document("$addFields", new Document("score", new Document("$meta", "searchScore"))
+                            .append("paginationToken", new Document("$meta", "searchSequenceToken"))),
+                    new Document("$limit", limit)
+            )).into(new ArrayList<>());
+        } catch(MongoCommandException e) {
+            if(after == null && before == null) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Invalid pagination token", e); //mongot rejects tokens it didn't issue
+        }
+    }
+}
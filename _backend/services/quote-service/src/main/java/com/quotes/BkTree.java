@@ -0,0 +1,120 @@
+package com.quotes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree over the search vocabulary, finds every term within a given Levenshtein distance of a
+ * query term without comparing it to the whole vocabulary.
+ *
+ * Each child hangs off its parent under its distance to the parent, so by the triangle inequality a search only
+ * has to go down the children whose distance is within maxDistance of the query's distance to the parent.
+ * Plain Levenshtein is used because it is a metric, a swap of two letters counts as two edits.
+ * Not thread safe, LocalSearchIndex guards it with its lock.
+ */
+final class BkTree {
+
+    record Match(String term, int distance) {}
+
+    private static final class Node {
+        final String term;
+        Node[] children; // indexed by distance to this node, null until the first child
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    /**
+     * Adds the term, returns false if it was already there.
+     */
+    boolean add(String term) {
+        if (root == null) {
+            root = new Node(term);
+            size++;
+            return true;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(node.term, term);
+            if (distance == 0) {
+                return false;
+            }
+            if (node.children == null) {
+                node.children = new Node[distance + 1];
+            } else if (node.children.length <= distance) {
+                node.children = Arrays.copyOf(node.children, distance + 1);
+            }
+            Node child = node.children[distance];
+            if (child == null) {
+                node.children[distance] = new Node(term);
+                size++;
+                return true;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Every term at most maxDistance edits from the given one, in no particular order.
+     */
+    List<Match> search(String term, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int distance = distance(node.term, term);
+            if (distance <= maxDistance) {
+                matches.add(new Match(node.term, distance));
+            }
+            if (node.children == null) {
+                continue;
+            }
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance + maxDistance);
+            for (int d = from; d <= to; d++) {
+                if (node.children[d] != null) {
+                    stack.push(node.children[d]);
+                }
+            }
+        }
+        return matches;
+    }
+
+    int size() {
+        return size;
+    }
+
+    static int distance(String a, String b) {
+        if (a.equals(b)) {
+            return 0;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,230 @@
+package com.quotes;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+
+/**
+ * One page of a user's collection, filtered and sorted by the database in a single aggregation.
+ * With an order, the database only returns the matching ids, those are put in order here and just the page is read.
+ *
+ * The caller (user-service) knows which quotes are in the collection and which were shared with the user, the
+ * quotes themselves are here, so the caller sends the ids and the criteria and gets back only the page it asked for.
+ * A collection with more than ID_BATCH ids is matched a batch at a time and the batches are merged here.
+ *
+ * Body:
+ * {
+ *   "ids": [quote ids in the collection],
+ *   "visibility": ["public", "private"],     which of the two to include, both if left out
+ *   "viewer": user id,                       if given, private quotes are only included when the viewer created them
+ *   "shared": [{"quoteId": id, "from": id}]  or a share of them from their creator is in shared
+ *   "tags": [tags],                          quote needs at least one of them
+ *   "sort": "NONE" | "CREATED_NEWEST" | "CREATED_OLDEST",
+ *   "order": [ids],                          these come first, in this order, the rest after them
+ *   "offset": 0, "pageSize": 100
+ * }
+ */
+class CollectionQuery {
+
+    //ids sent to the database in one $in
+    static final int ID_BATCH = 10_000;
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+
+    final List<ObjectId> ids;
+    final Boolean isPrivate; // null for both
+    final boolean none;
+    final ObjectId viewer;
+    final List<Share> shared;
+    final List<String> tags;
+    final int dateDirection; // 0 for no date sort
+    final List<ObjectId> order;
+    final int offset;
+    final int pageSize;
+
+    record Share(ObjectId quoteId, ObjectId from) {}
+
+    private CollectionQuery(Document body) {
+        ids = objectIds(body.get("ids"));
+
+        List<String> visibility = strings(body.get("visibility"));
+        if(visibility == null) {
+            isPrivate = null;
+            none = false;
+        } else {
+            boolean showPublic = visibility.contains("public");
+            boolean showPrivate = visibility.contains("private");
+            isPrivate = showPublic == showPrivate ? null : showPrivate;
+            none = !showPublic && !showPrivate;
+        }
+
+        String viewerId = body.getString("viewer");
+        viewer = viewerId != null && SanitizerClass.validObjectId(viewerId) ? new ObjectId(viewerId) : null;
+        shared = shares(body.get("shared"));
+
+        List<String> tagList = strings(body.get("tags"));
+        tags = tagList == null ? List.of() : tagList;
+
+        String sort = body.getString("sort");
+        if("CREATED_NEWEST".equalsIgnoreCase(sort)) {
+            dateDirection = -1;
+        } else if("CREATED_OLDEST".equalsIgnoreCase(sort)) {
+            dateDirection = 1;
+        } else {
+            dateDirection = 0;
+        }
+
+        List<ObjectId> orderIds = objectIds(body.get("order"));
+        order = orderIds == null ? List.of() : orderIds;
+
+        offset = body.get("offset") instanceof Number number ? number.intValue() : 0;
+        pageSize = body.get("pageSize") instanceof Number number ? number.intValue() : DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Null if the body isn't a valid query.
+     */
+    static CollectionQuery parse(String json) {
+        Document body;
+        try {
+            body = Document.parse(json);
+        } catch (Exception e) {
+            return null;
+        }
+        CollectionQuery query = new CollectionQuery(body);
+        if(query.ids == null || query.offset < 0 || query.pageSize < 1 || query.pageSize > MAX_PAGE_SIZE) {
+            return null;
+        }
+        return query;
+    }
+
+    // ids that aren't valid are skipped, null if the value isn't a list
+    private static List<ObjectId> objectIds(Object value) {
+        if(!(value instanceof List<?> list)) {
+            return null;
+        }
+        Set<ObjectId> ids = new LinkedHashSet<>();
+        for(Object id : list) {
+            if(id instanceof String string && SanitizerClass.validObjectId(string)) {
+                ids.add(new ObjectId(string));
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // shares missing either id are skipped
+    private static List<Share> shares(Object value) {
+        if(!(value instanceof List<?> list)) {
+            return List.of();
+        }
+        List<Share> shares = new ArrayList<>();
+        for(Object item : list) {
+            if(item instanceof Document share
+                    && share.get("quoteId") instanceof String quoteId && SanitizerClass.validObjectId(quoteId)
+                    && share.get("from") instanceof String from && SanitizerClass.validObjectId(from)) {
+                shares.add(new Share(new ObjectId(quoteId), new ObjectId(from)));
+            }
+        }
+        return shares;
+    }
+
+    private static List<String> strings(Object value) {
+        if(!(value instanceof List<?> list)) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>();
+        for(Object item : list) {
+            if(item instanceof String string && !string.isEmpty()) {
+                strings.add(string);
+            }
+        }
+        return strings;
+    }
+
+    List<List<ObjectId>> batches() {
+        List<List<ObjectId>> batches = new ArrayList<>();
+        for(int from = 0; from < ids.size(); from += ID_BATCH) {
+            batches.add(ids.subList(from, Math.min(from + ID_BATCH, ids.size())));
+        }
+        return batches;
+    }
+
+    Document match() {
+        return match(ids);
+    }
+
+    /**
+     * The criteria for the quotes out of batch.
+     */
+    Document match(List<ObjectId> batch) {
+        Document match = new Document("_id", new Document("$in", batch))
+                .append("creator", new Document("$ne", null)); // same rule as the id searches
+        if(isPrivate != null) {
+            match.append("private", isPrivate ? true : new Document("$ne", true));
+        }
+        if(!tags.isEmpty()) {
+            match.append("tags", new Document("$in", tags));
+        }
+        if(viewer != null) {
+            List<Document> visible = new ArrayList<>();
+            visible.add(new Document("private", new Document("$ne", true)));
+            visible.add(new Document("creator", viewer));
+            //a share only counts if it came from the quote's creator, same as QuoteAccess in user-service
+            Set<ObjectId> inBatch = new HashSet<>(batch);
+            for(Share share : shared) {
+                if(inBatch.contains(share.quoteId())) {
+                    visible.add(new Document("_id", share.quoteId()).append("creator", share.from()));
+                }
+            }
+            match.append("$or", visible);
+        }
+        return match;
+    }
+
+    Document sort() {
+        Document sort = new Document();
+        if(dateDirection != 0) {
+            sort.append("date", dateDirection);
+        }
+        return sort.append("_id", 1); // stable pages
+    }
+
+    /**
+     * Same order as sort(), for merging batches that were each sorted by the database.
+     */
+    Comparator<Document> comparator() {
+        Comparator<Document> byId = Comparator.comparing(quote -> quote.getObjectId("_id"));
+        if(dateDirection == 0) {
+            return byId;
+        }
+        Comparator<Document> byDate = Comparator.comparingLong(quote -> quote.get("date") instanceof Number date ? date.longValue() : Long.MIN_VALUE);
+        return (dateDirection < 0 ? byDate.reversed() : byDate).thenComparing(byId);
+    }
+
+    /**
+     * The whole query as one aggregation, for queries without an order that fit in one batch.
+     */
+    List<Document> pipeline() {
+        return List.of(
+                new Document("$match", match()),
+                new Document("$sort", sort()),
+                new Document("$skip", offset),
+                new Document("$limit", pageSize));
+    }
+
+    /**
+     * The page out of every matching id, already sorted by sort(). Ids in order come first in that order, the rest
+     * keep their place after them.
+     */
+    List<ObjectId> page(List<ObjectId> matching) {
+        Map<ObjectId, Integer> rank = new HashMap<>(order.size() * 2);
+        for(int i = 0; i < order.size(); i++) {
+            rank.put(order.get(i), i);
+        }
+        List<ObjectId> sorted = new ArrayList<>(matching);
+        sorted.sort(Comparator.comparingInt(id -> rank.getOrDefault(id, order.size()))); // stable
+        int from = Math.min(offset, sorted.size());
+        return sorted.subList(from, Math.min(from + pageSize, sorted.size()));
+    }
+}
@@ -0,0 +1,70 @@
+package com.quotes;
+
+/**
+ * Count-min sketch of how often each key was seen lately, the frequency part of SearchCache's W-TinyLFU policy.
+ *
+ * Four rows of 4-bit counters, sixteen to a long, so it takes about 4 bytes per cached entry whatever the keys are.
+ * A key's estimate is the smallest of its four counters, which can only be too high, never too low. Once it has
+ * counted ten times as many accesses as it has counters per row every counter is halved, so keys that used to be
+ * popular fade out. Not thread safe, SearchCache guards it with its lock.
+ */
+final class FrequencySketch {
+
+    static final int MAX_COUNT = 15;
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {0x97cb3127L, 0xc2b2ae3d27d4eb4fL, 0x9e3779b97f4a7c15L, 0x165667b19e3779f9L};
+
+    private final long[][] rows = new long[SEEDS.length][];
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = new long[width / 16];
+        }
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < rows.length; row++) {
+            int index = index(hash, row);
+            int shift = (index & 15) << 2;
+            long[] counters = rows[row];
+            if (((counters[index >>> 4] >>> shift) & 0xf) < MAX_COUNT) {
+                counters[index >>> 4] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < rows.length; row++) {
+            int index = index(hash, row);
+            frequency = Math.min(frequency, (int) ((rows[row][index >>> 4] >>> ((index & 15) << 2)) & 0xf));
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (long[] counters : rows) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = (counters[i] >>> 1) & RESET_MASK;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        long spread = (hash + SEEDS[row]) * SEEDS[row];
+        spread += spread >>> 32;
+        return (int) spread & mask;
+    }
+}
@@ -0,0 +1,23 @@
+package com.quotes;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Publishes the JwtCache hit/miss counters on /metrics.
+ */
+@ApplicationScoped
+public class JwtCacheMetrics {
+
+    @Inject
+    MetricRegistry registry;
+
+    void register(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        registry.gauge("jwtCache.hits", JwtCache::hitCount);
+        registry.gauge("jwtCache.misses", JwtCache::missCount);
+        registry.gauge("jwtCache.size", JwtCache::size);
+    }
+}
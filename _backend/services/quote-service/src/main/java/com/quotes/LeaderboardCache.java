@@ -0,0 +1,192 @@
+package com.quotes;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Keeps the top bookmarked, top shared and most recent quote lists in memory so the landing page
+ * doesn't run three aggregations on every load.
+ *
+ * QuoteService reports every quote it writes through quoteChanged(). Those ids are applied to the lists
+ * on the next read once MAX_STALENESS_MS has passed, so a list is never more than that far behind a write.
+ * If a quote that was in a full list drops in rank or disappears we can't know what replaces it, so that
+ * triggers a full rebuild, and the lists are rebuilt from the database every REBUILD_INTERVAL_MS anyway.
+ * Each list is kept as already encoded json bytes.
+ */
+@ApplicationScoped
+public class LeaderboardCache {
+
+    static final int SIZE = 100;
+    static final long MAX_STALENESS_MS = 2_000;
+    static final long REBUILD_INTERVAL_MS = 5 * 60 * 1000;
+
+    public enum Board {
+        TOP_BOOKMARKED("bookmarks"),
+        TOP_SHARED("shares"),
+        MOST_RECENT("date");
+
+        private final String field;
+
+        Board(String field) {
+            this.field = field;
+        }
+
+        long score(Document quote) {
+            Object value = quote.get(field);
+            return value instanceof Number number ? number.longValue() : 0;
+        }
+    }
+
+    @Inject
+    private MongoClient client;
+
+    private MongoCollection<Document> collection;
+
+    private final Set<ObjectId> pending = ConcurrentHashMap.newKeySet();
+    private final Map<Board, List<Document>> lists = new EnumMap<>(Board.class);
+    private final Map<Board, byte[]> encoded = new ConcurrentHashMap<>();
+    private long maxStalenessMs = MAX_STALENESS_MS;
+    private volatile long lastRebuild;
+    private volatile long lastApplied;
+
+    public LeaderboardCache() {}
+
+    @PostConstruct
+    public void init() {
+        collection = client.getDatabase("Data").getCollection("Quotes");
+    }
+
+    public LeaderboardCache(MongoClient mongoClient, String databaseName, long maxStalenessMs) {
+        client = mongoClient;
+        collection = client.getDatabase(databaseName).getCollection("Quotes");
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    public void quoteChanged(ObjectId quoteId) {
+        if(quoteId != null) {
+            pending.add(quoteId);
+        }
+    }
+
+    public byte[] get(Board board) {
+        long now = System.currentTimeMillis();
+        if(needsRebuild(now) || needsApply(now)) {
+            refresh(now);
+        }
+        return encoded.get(board);
+    }
+
+    private boolean needsRebuild(long now) {
+        return now - lastRebuild >= REBUILD_INTERVAL_MS;
+    }
+
+    private boolean needsApply(long now) {
+        return !pending.isEmpty() && now - lastApplied >= maxStalenessMs;
+    }
+
+    private synchronized void refresh(long now) {
+        //another request may have refreshed while we waited for the lock
+        if(needsRebuild(now)) {
+            rebuild(now);
+        } else if(needsApply(now)) {
+            applyPending(now);
+        }
+    }
+
+    private void rebuild(long now) {
+        List<ObjectId> applied = new ArrayList<>(pending);
+        for(Board board : Board.values()) {
+            List<Document> quotes = new ArrayList<>(SIZE);
+            collection.aggregate(Arrays.asList(
+                    new Document("$match", new Document("private", new Document("$ne", true))), // exclude private quotes
+                    new Document("$sort", new Document(board.field, -1)), // sort by board field in descending order
+                    new Document("$limit", SIZE))).forEach(doc -> quotes.add(withStringId(doc)));
+            publish(board, quotes);
+        }
+        applied.forEach(pending::remove);
+        lastRebuild = now;
+        lastApplied = now;
+    }
+
+    private void applyPending(long now) {
+        List<ObjectId> ids = new ArrayList<>(pending);
+        Set<String> changedIds = new HashSet<>();
+        ids.forEach(id -> changedIds.add(id.toHexString()));
+
+        //current state of every changed quote, deleted quotes are simply missing
+        Map<String, Document> changed = new HashMap<>();
+        for(Document doc : collection.find(in("_id", ids))) {
+            Document quote = withStringId(doc);
+            changed.put(quote.getString("_id"), quote);
+        }
+
+        Map<Board, List<Document>> updated = new EnumMap<>(Board.class);
+        for(Board board : Board.values()) {
+            List<Document> current = lists.get(board);
+            boolean full = current.size() >= SIZE;
+            List<Document> next = new ArrayList<>(current.size() + changed.size());
+
+            for(Document quote : current) {
+                String id = quote.getString("_id");
+                if(!changedIds.contains(id)) {
+                    next.add(quote);
+                    continue;
+                }
+                Document latest = changed.get(id);
+                if(full && (latest == null || isPrivate(latest) || board.score(latest) < board.score(quote))) {
+                    //something outside the list might now belong in it
+                    rebuild(now);
+                    return;
+                }
+            }
+            for(Document quote : changed.values()) {
+                if(!isPrivate(quote)) {
+                    next.add(quote);
+                }
+            }
+
+            next.sort(Comparator.comparingLong(board::score).reversed());
+            updated.put(board, next.size() > SIZE ? new ArrayList<>(next.subList(0, SIZE)) : next);
+        }
+
+        updated.forEach(this::publish);
+        ids.forEach(pending::remove);
+        lastApplied = now;
+    }
+
+    private void publish(Board board, List<Document> quotes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(quotes.size() * 256 + 2);
+        try(Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+            QuoteResultWriter.writeArray(quotes.iterator(), writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lists.put(board, quotes);
+        encoded.put(board, output.toByteArray());
+    }
+
+    private static Document withStringId(Document doc) {
+        doc.put("_id", doc.getObjectId("_id").toHexString()); // gets rid of "$oid" subfield
+        return doc;
+    }
+
+    private static boolean isPrivate(Document quote) {
+        return Boolean.TRUE.equals(quote.get("private"));
+    }
+}
@@ -0,0 +1,164 @@
+package com.quotes;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Quote search with a LocalSearchIndex, for when there is no Atlas Search.
+ *
+ * The index is built from the Quotes collection at startup and kept up to date on a single indexer thread.
+ * QuoteService reports every quote it writes and the indexer reads that quote back and indexes it again, or drops
+ * it if it is gone. Only the indexer reads and indexes, in the order the writes were reported, so an older read of
+ * a quote can't replace a newer one. A load that fails is thrown away and tried again after LOAD_RETRY_MS, searches
+ * fail until one succeeds instead of serving part of the quotes. Writes reported while loading are applied once it
+ * is done. A search waits up to CATCH_UP_MS for the writes reported before it, so a quote can be found right after
+ * it is created. Writes made by another instance are not seen, so this is meant for a single quote-service.
+ */
+class LocalSearchBackend implements SearchBackend {
+
+    static final Document INDEXED_FIELDS = new Document("quote", 1).append("author", 1).append("tags", 1)
+            .append("private", 1).append("creator", 1);
+    static final long LOAD_RETRY_MS = 30_000;
+    static final long LOAD_WAIT_MS = 60_000;
+    static final long CATCH_UP_MS = 2000;
+
+    private final MongoCollection<Document> collection;
+    private final Set<ObjectId> pending = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService indexer;
+    // counts reported writes, applied is the last count the indexer has caught up to
+    private final AtomicLong reported = new AtomicLong();
+    private long applied;
+    // null until a load succeeded
+    private LocalSearchIndex index;
+
+    LocalSearchBackend(MongoCollection<Document> collection) {
+        this.collection = collection;
+        indexer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quote-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        indexer.execute(this::load);
+    }
+
+    // runs on the indexer
+    private void load() {
+        long start = System.currentTimeMillis();
+        long caughtUp = reported.get();
+        LocalSearchIndex loading = new LocalSearchIndex();
+        try {
+            for (Document quote : collection.find().projection(INDEXED_FIELDS).batchSize(1000)) {
+                loading.add(quote);
+            }
+        } catch (Exception e) {
+            System.out.println("Exception building the quote search index, trying again in " + LOAD_RETRY_MS + "ms: " + e);
+            indexer.schedule(this::load, LOAD_RETRY_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        System.out.println("Indexed " + loading.size() + " quotes for search in " + (System.currentTimeMillis() - start) + "ms");
+        synchronized (this) {
+            index = loading;
+            notifyAll();
+        }
+        applyPending(caughtUp);
+    }
+
+    @Override
+    public void quoteChanged(ObjectId quoteId) {
+        pending.add(quoteId);
+        long change = reported.incrementAndGet();
+        indexer.execute(() -> applyPending(change));
+    }
+
+    // runs on the indexer, everything reported up to change is in pending or already applied
+    private void applyPending(long change) {
+        LocalSearchIndex index = current();
+        if (index == null) {
+            return; // the next successful load applies it
+        }
+        for (ObjectId quoteId : pending) {
+            pending.remove(quoteId); // reported again while reading it puts it back for another read
+            try {
+                Document quote = collection.find(eq("_id", quoteId)).projection(INDEXED_FIELDS).first();
+                if (quote == null) {
+                    index.remove(quoteId);
+                } else {
+                    index.add(quote);
+                }
+            } catch (Exception e) {
+                System.out.println("Exception indexing quote " + quoteId + ": " + e);
+            }
+        }
+        synchronized (this) {
+            applied = Math.max(applied, change);
+            notifyAll();
+        }
+    }
+
+    private synchronized LocalSearchIndex current() {
+        return index;
+    }
+
+    // the loaded index once the writes reported so far are in it, or after CATCH_UP_MS without them
+    private synchronized LocalSearchIndex awaitIndex() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long loadDeadline = now + LOAD_WAIT_MS;
+        while (index == null && now < loadDeadline) {
+            wait(loadDeadline - now);
+            now = System.currentTimeMillis();
+        }
+        if (index == null) {
+            throw new IllegalStateException("The search index isn't loaded yet");
+        }
+        long change = reported.get();
+        long catchUpDeadline = now + CATCH_UP_MS;
+        while (applied < change && now < catchUpDeadline) {
+            wait(catchUpDeadline - now);
+            now = System.currentTimeMillis();
+        }
+        return index;
+    }
+
+    @Override
+    public List<Document> search(Request request) {
+        LocalSearchIndex index;
+        try {
+            index = awaitIndex();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+        List<LocalSearchIndex.Hit> hits = index.search(request);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        List<ObjectId> ids = hits.stream().map(LocalSearchIndex.Hit::id).toList();
+        Map<ObjectId, Document> quotes = new HashMap<>();
+        for (Document quote : collection.find(in("_id", ids))) {
+            quotes.put(quote.getObjectId("_id"), quote);
+        }
+        List<Document> ordered = new ArrayList<>(ids.size());
+        for (LocalSearchIndex.Hit hit : hits) {
+            Document quote = quotes.get(hit.id());
+            if (quote != null) {
+                ordered.add(quote.append("score", hit.score()).append("paginationToken", hit.token()));
+            }
+        }
+        return ordered;
+    }
+}
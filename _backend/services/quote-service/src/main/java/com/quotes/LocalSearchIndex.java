@@ -0,0 +1,488 @@
+package com.quotes;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the quote, author and tags of every quote, scored like the Atlas search it
+ * stands in for.
+ *
+ * Text is lowercased and split on anything that isn't a letter or digit, close to lucene.standard. Each field has
+ * its own postings and is scored with BM25 using Lucene's defaults. A query is scored like the three should clauses
+ * of the Atlas query, all fields plus author and tags again at 1.5x, so a match in the author or the tags counts
+ * 2.5 times a match in the quote. Every query term also matches the terms up to MAX_EDITS edits away, found with a
+ * BK-tree and weighted down by how far they are, like Lucene's fuzzy query does. At least one include term has to
+ * be in the quote text and no exclude term may be.
+ *
+ * A quote whose text changes is indexed again under a new document number and the old one is only marked dead.
+ * Once more than half of the documents are dead the postings are rewritten without them. Reads share a lock,
+ * writes take it exclusively.
+ */
+final class LocalSearchIndex {
+
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    static final double FIELD_BOOST = 1.5;
+    static final int MAX_EDITS = 2;
+    static final int MAX_EXPANSIONS = 50;
+    static final int COMPACT_MIN_DEAD = 1024;
+
+    private static final int QUOTE = 0, AUTHOR = 1, TAGS = 2, FIELDS = 3;
+    // what a match in each field counts for over the three should clauses
+    private static final double[] FIELD_WEIGHT = {1, 1 + FIELD_BOOST, 1 + FIELD_BOOST};
+
+    /**
+     * A result and where it ranks, higher score first and the lower id first on equal scores.
+     */
+    record Hit(ObjectId id, double score) {
+
+        // opaque to the client, the exact score and id so the next page starts right after this hit
+        String token() {
+            String raw = Long.toHexString(Double.doubleToLongBits(score)) + "-" + id.toHexString();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Hit fromToken(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("-");
+                if (parts.length == 2 && ObjectId.isValid(parts[1])) {
+                    return new Hit(new ObjectId(parts[1]), Double.longBitsToDouble(Long.parseUnsignedLong(parts[0], 16)));
+                }
+            } catch (IllegalArgumentException ignored) {
+                // not base64 or not a number, same as any other bad token
+            }
+            throw new IllegalArgumentException("Invalid pagination token");
+        }
+
+        // negative if a result with this score and id ranks ahead of the hit
+        int compare(double otherScore, ObjectId otherId) {
+            int byScore = Double.compare(score, otherScore);
+            return byScore != 0 ? byScore : otherId.compareTo(id);
+        }
+    }
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+        int live; // postings whose document isn't dead, the document frequency
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            live++;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private final List<Postings[]> postings = new ArrayList<>(); // by term id, one per field, null if the field has none
+    private BkTree vocabulary = new BkTree();
+
+    private final Map<ObjectId, Integer> docNumbers = new HashMap<>();
+    private ObjectId[] ids = new ObjectId[1024];
+    private ObjectId[] creators = new ObjectId[1024];
+    private int[][] lengths = new int[FIELDS][1024];
+    // per document the number of distinct terms in each field, then a term id and frequency pair for each
+    private int[][] docTerms = new int[1024][];
+    private BitSet privateDocs = new BitSet();
+    private BitSet dead = new BitSet();
+    private int docCount;
+    private int liveDocs;
+    private int deadDocs;
+    private final long[] totalLength = new long[FIELDS];
+
+    /**
+     * Indexes a quote document from the Quotes collection, replacing what was indexed for it before.
+     */
+    void add(Document quote) {
+        List<String> tags = new ArrayList<>();
+        if (quote.get("tags") instanceof List<?> list) {
+            for (Object tag : list) {
+                if (tag != null) {
+                    tags.add(tag.toString());
+                }
+            }
+        }
+        add(quote.getObjectId("_id"), quote.getString("quote"), quote.getString("author"), tags,
+                Boolean.TRUE.equals(quote.get("private")), quote.get("creator") instanceof ObjectId creator ? creator : null);
+    }
+
+    void add(ObjectId id, String quote, String author, List<String> tags, boolean isPrivate, ObjectId creator) {
+        List<List<String>> fields = List.of(analyze(quote), analyze(author), analyze(tags));
+        lock.writeLock().lock();
+        try {
+            int[] entry = count(fields);
+            Integer existing = docNumbers.get(id);
+            if (existing != null && Arrays.equals(docTerms[existing], entry)) {
+                // same text, counters or visibility changed
+                privateDocs.set(existing, isPrivate);
+                creators[existing] = creator;
+                return;
+            }
+            if (existing != null) {
+                removeDoc(existing);
+            }
+
+            int doc = docCount++;
+            ensureCapacity(doc);
+            ids[doc] = id;
+            creators[doc] = creator;
+            privateDocs.set(doc, isPrivate);
+            docTerms[doc] = entry;
+            int pos = FIELDS;
+            for (int field = 0; field < FIELDS; field++) {
+                for (int i = 0; i < entry[field]; i++, pos += 2) {
+                    postingsFor(entry[pos], field).add(doc, entry[pos + 1]);
+                }
+                lengths[field][doc] = fields.get(field).size();
+                totalLength[field] += lengths[field][doc];
+            }
+            docNumbers.put(id, doc);
+            liveDocs++;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ObjectId id) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docNumbers.get(id);
+            if (doc != null) {
+                removeDoc(doc);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int vocabularySize() {
+        lock.readLock().lock();
+        try {
+            return vocabulary.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of the best matching quotes the viewer may see, best first. A page after or before a token is
+     * found by scoring every match like the first page and keeping only those ranked past the token, so it costs
+     * the same however deep it is.
+     */
+    List<Hit> search(SearchBackend.Request request) {
+        Hit after = request.after() == null ? null : Hit.fromToken(request.after());
+        Hit before = request.before() == null ? null : Hit.fromToken(request.before());
+        List<String> queryTerms = distinct(analyze(request.query()));
+        if (queryTerms.isEmpty() || request.limit() <= 0) {
+            return List.of();
+        }
+        List<String> include = distinct(analyze(request.include()));
+        List<String> exclude = distinct(analyze(request.exclude()));
+
+        lock.readLock().lock();
+        try {
+            double[] scores = new double[docCount];
+            BitSet matched = new BitSet(docCount);
+            for (String term : queryTerms) {
+                for (BkTree.Match match : expand(term)) {
+                    Postings[] byField = postings.get(termIds.get(match.term()));
+                    double weight = 1 - (double) match.distance() / Math.min(term.length(), match.term().length());
+                    for (int field = 0; field < FIELDS; field++) {
+                        score(byField[field], field, FIELD_WEIGHT[field] * weight, scores, matched);
+                    }
+                }
+            }
+            if (!include.isEmpty()) {
+                BitSet included = new BitSet(docCount);
+                for (String term : include) {
+                    Integer termId = termIds.get(term);
+                    if (termId != null) {
+                        score(postings.get(termId)[QUOTE], QUOTE, 1, scores, included);
+                    }
+                }
+                matched.and(included);
+            }
+            for (String term : exclude) {
+                Integer termId = termIds.get(term);
+                Postings excluded = termId == null ? null : postings.get(termId)[QUOTE];
+                for (int i = 0; excluded != null && i < excluded.size; i++) {
+                    matched.clear(excluded.docs[i]);
+                }
+            }
+
+            // negative when a ranks ahead of b
+            Comparator<Integer> ranking = (a, b) -> {
+                int byScore = Double.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : ids[a].compareTo(ids[b]);
+            };
+            // keeps the best of the page, or the ones closest to the token when going backwards, at the head to be replaced
+            Comparator<Integer> keep = before == null ? ranking.reversed() : ranking;
+            PriorityQueue<Integer> page = new PriorityQueue<>(Math.min(request.limit(), 1024), keep);
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                if (privateDocs.get(doc) && (request.viewer() == null || !request.viewer().equals(creators[doc]))) {
+                    continue;
+                }
+                if (request.excludedIds().contains(ids[doc])) {
+                    continue;
+                }
+                if ((after != null && after.compare(scores[doc], ids[doc]) <= 0)
+                        || (before != null && before.compare(scores[doc], ids[doc]) >= 0)) {
+                    continue;
+                }
+                if (page.size() < request.limit()) {
+                    page.add(doc);
+                } else if (keep.compare(doc, page.peek()) > 0) {
+                    page.poll();
+                    page.add(doc);
+                }
+            }
+
+            List<Integer> docs = new ArrayList<>(page);
+            docs.sort(ranking);
+            List<Hit> hits = new ArrayList<>(docs.size());
+            for (int doc : docs) {
+                hits.add(new Hit(ids[doc], scores[doc]));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // vocabulary terms close enough to the query term that are still in some quote, closest first
+    private List<BkTree.Match> expand(String term) {
+        List<BkTree.Match> matches = new ArrayList<>();
+        for (BkTree.Match match : vocabulary.search(term, MAX_EDITS)) {
+            if (match.distance() < Math.min(term.length(), match.term().length()) && live(termIds.get(match.term()))) {
+                matches.add(match);
+            }
+        }
+        matches.sort(Comparator.comparingInt(BkTree.Match::distance).thenComparing(BkTree.Match::term));
+        return matches.size() > MAX_EXPANSIONS ? matches.subList(0, MAX_EXPANSIONS) : matches;
+    }
+
+    private boolean live(int termId) {
+        for (Postings fieldPostings : postings.get(termId)) {
+            if (fieldPostings != null && fieldPostings.live > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void score(Postings fieldPostings, int field, double weight, double[] scores, BitSet matched) {
+        if (fieldPostings == null || fieldPostings.live == 0) {
+            return;
+        }
+        double idf = Math.log(1 + (liveDocs - fieldPostings.live + 0.5) / (fieldPostings.live + 0.5));
+        double averageLength = Math.max(1, (double) totalLength[field] / liveDocs);
+        int[] fieldLengths = lengths[field];
+        for (int i = 0; i < fieldPostings.size; i++) {
+            int doc = fieldPostings.docs[i];
+            if (dead.get(doc)) {
+                continue;
+            }
+            int freq = fieldPostings.freqs[i];
+            double norm = K1 * (1 - B + B * fieldLengths[doc] / averageLength);
+            scores[doc] += weight * idf * freq / (freq + norm);
+            matched.set(doc);
+        }
+    }
+
+    // distinct terms of each field with their frequency, in the layout of docTerms
+    private int[] count(List<List<String>> fields) {
+        List<Map<String, Integer>> counts = new ArrayList<>(FIELDS);
+        int size = FIELDS;
+        for (List<String> tokens : fields) {
+            Map<String, Integer> freqs = new LinkedHashMap<>();
+            for (String token : tokens) {
+                freqs.merge(token, 1, Integer::sum);
+            }
+            counts.add(freqs);
+            size += freqs.size() * 2;
+        }
+        int[] entry = new int[size];
+        int pos = FIELDS;
+        for (int field = 0; field < FIELDS; field++) {
+            entry[field] = counts.get(field).size();
+            for (Map.Entry<String, Integer> freq : counts.get(field).entrySet()) {
+                entry[pos++] = termId(freq.getKey());
+                entry[pos++] = freq.getValue();
+            }
+        }
+        return entry;
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = terms.size();
+            terms.add(term);
+            termIds.put(term, id);
+            postings.add(new Postings[FIELDS]);
+        }
+        return id;
+    }
+
+    private Postings postingsFor(int termId, int field) {
+        Postings[] byField = postings.get(termId);
+        if (byField[field] == null) {
+            // the term is back in the vocabulary if compaction had dropped it
+            vocabulary.add(terms.get(termId));
+            byField[field] = new Postings();
+        }
+        return byField[field];
+    }
+
+    private void removeDoc(int doc) {
+        int[] entry = docTerms[doc];
+        int pos = FIELDS;
+        for (int field = 0; field < FIELDS; field++) {
+            for (int i = 0; i < entry[field]; i++, pos += 2) {
+                postings.get(entry[pos])[field].live--;
+            }
+            totalLength[field] -= lengths[field][doc];
+        }
+        docNumbers.remove(ids[doc]);
+        dead.set(doc);
+        privateDocs.clear(doc);
+        ids[doc] = null;
+        creators[doc] = null;
+        docTerms[doc] = null;
+        liveDocs--;
+        deadDocs++;
+    }
+
+    private void ensureCapacity(int doc) {
+        if (doc < ids.length) {
+            return;
+        }
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        creators = Arrays.copyOf(creators, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+        for (int field = 0; field < FIELDS; field++) {
+            lengths[field] = Arrays.copyOf(lengths[field], capacity);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deadDocs >= COMPACT_MIN_DEAD && deadDocs > liveDocs) {
+            compact();
+        }
+    }
+
+    // numbers the live documents from 0 again and drops the dead ones from every postings list
+    private void compact() {
+        int[] renumbered = new int[docCount];
+        BitSet compactedPrivate = new BitSet(liveDocs);
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (dead.get(doc)) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = next;
+            ids[next] = ids[doc];
+            creators[next] = creators[doc];
+            docTerms[next] = docTerms[doc];
+            for (int field = 0; field < FIELDS; field++) {
+                lengths[field][next] = lengths[field][doc];
+            }
+            compactedPrivate.set(next, privateDocs.get(doc));
+            docNumbers.put(ids[next], next);
+            next++;
+        }
+        Arrays.fill(ids, next, docCount, null);
+        Arrays.fill(creators, next, docCount, null);
+        Arrays.fill(docTerms, next, docCount, null);
+
+        vocabulary = new BkTree();
+        for (int termId = 0; termId < postings.size(); termId++) {
+            Postings[] byField = postings.get(termId);
+            boolean kept = false;
+            for (int field = 0; field < FIELDS; field++) {
+                Postings fieldPostings = byField[field];
+                if (fieldPostings == null) {
+                    continue;
+                }
+                int size = 0;
+                for (int i = 0; i < fieldPostings.size; i++) {
+                    int doc = renumbered[fieldPostings.docs[i]];
+                    if (doc >= 0) {
+                        fieldPostings.docs[size] = doc;
+                        fieldPostings.freqs[size] = fieldPostings.freqs[i];
+                        size++;
+                    }
+                }
+                fieldPostings.size = size;
+                byField[field] = size == 0 ? null : fieldPostings;
+                kept |= size > 0;
+            }
+            if (kept) {
+                vocabulary.add(terms.get(termId));
+            }
+        }
+
+        privateDocs = compactedPrivate;
+        dead = new BitSet();
+        docCount = next;
+        deadDocs = 0;
+    }
+
+    static List<String> analyze(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    static List<String> analyze(List<String> texts) {
+        List<String> tokens = new ArrayList<>();
+        for (String text : texts) {
+            tokens.addAll(analyze(text));
+        }
+        return tokens;
+    }
+
+    private static List<String> distinct(List<String> tokens) {
+        return new ArrayList<>(new LinkedHashSet<>(tokens));
+    }
+}
@@ -0,0 +1,108 @@
+package com.quotes;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps each account's MyQuotes in step with the quotes it created, in the background instead of during the request.
+ *
+ * Creating or deleting a quote saves what has to change to the outbox in the same transaction, see Outbox. Each change
+ * is sent to user-service, which applies it with a single $addToSet or $pull. There is one entry per account and
+ * quote holding the latest change, so a quote deleted before its add went out ends up removed, not added.
+ */
+@ApplicationScoped
+public class MyQuotesOutbox {
+
+    enum Change { ADD, REMOVE }
+
+    @Inject
+    private MongoClient client;
+
+    @Inject
+    @RestClient
+    private UserClient userClient;
+
+    private Outbox outbox;
+
+    public MyQuotesOutbox() {}
+
+    @PostConstruct
+    public void init() {
+        outbox = new Outbox(client.getDatabase("Data").getCollection("MyQuotesOutbox"), "myquotes-outbox", this::sendEach);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outbox.shutdown();
+    }
+
+    /**
+     * Saves the change as part of the session's transaction, call wake() once it committed.
+     */
+    public void add(ClientSession session, ObjectId accountId, ObjectId quoteId) {
+        save(session, accountId, quoteId, Change.ADD);
+    }
+
+    public void remove(ClientSession session, ObjectId accountId, ObjectId quoteId) {
+        save(session, accountId, quoteId, Change.REMOVE);
+    }
+
+    private void save(ClientSession session, ObjectId accountId, ObjectId quoteId, Change change) {
+        outbox.save(session, accountId.toHexString() + ":" + quoteId.toHexString(),
+                new Document("account", accountId.toHexString())
+                        .append("quote", quoteId.toHexString())
+                        .append("change", change.name()));
+    }
+
+    public void wake() {
+        outbox.wake();
+    }
+
+    // each change is its own call, the ones that failed are tried again
+    private List<Document> sendEach(List<Document> changes) {
+        List<Document> sent = new ArrayList<>();
+        for (Document change : changes) {
+            try {
+                if (sendToUserService(change.getString("account"), change.getString("quote"), Change.valueOf(change.getString("change")))) {
+                    sent.add(change);
+                }
+            } catch (Exception e) {
+                System.out.println("Exception sending MyQuotes change " + change.getString("account") + ":" + change.getString("quote") + ": " + e);
+            }
+        }
+        return sent;
+    }
+
+    private boolean sendToUserService(String accountId, String quoteId, Change change) throws Exception {
+        int status;
+        try (Response response = change == Change.ADD
+                ? userClient.addMyQuote(ServiceToken.bearer(), accountId, quoteId)
+                : userClient.removeMyQuote(ServiceToken.bearer(), accountId, quoteId)) {
+            status = response.getStatus();
+        } catch (WebApplicationException e) {
+            status = e.getResponse().getStatus();
+        }
+        if (status == Response.Status.NOT_FOUND.getStatusCode()) {
+            // the account is gone, nothing left to keep in step
+            System.out.println("No account " + accountId + " for MyQuotes change, dropping it");
+            return true;
+        }
+        if (status != Response.Status.OK.getStatusCode()) {
+            System.out.println("MyQuotes " + change + " returned " + status);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+package com.quotes;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages for another service, sent in the background instead of during the request.
+ *
+ * A message is saved under a key, in the same transaction as the write that caused it, so it is sent if and only if
+ * that write happened. Saving under a key that is still waiting replaces its message. A background thread hands what
+ * is due to the sender in batches and deletes what it delivered. The rest is tried again later, waiting twice as long
+ * after every failure, until MAX_ATTEMPTS. Every save gets a new version and a message is only deleted or put back if
+ * its version is the one that was sent, so a save made while the message was being sent isn't lost.
+ */
+public class Outbox {
+
+    static final int BATCH_SIZE = 100;
+    static final long DISPATCH_INTERVAL_MS = 1000;
+    static final long FIRST_RETRY_MS = 1000;
+    static final long MAX_RETRY_MS = 5 * 60 * 1000;
+    static final int MAX_ATTEMPTS = 20;
+
+    // sends a batch and returns the messages that were delivered, throwing delivers none of them
+    public interface Sender {
+        Collection<Document> send(List<Document> messages) throws Exception;
+    }
+
+    private final MongoCollection<Document> outbox;
+    private final Sender sender;
+    private final ScheduledExecutorService dispatcher;
+    private final boolean dispatchOnWake;
+
+    /**
+     * Dispatches every DISPATCH_INTERVAL_MS and whenever wake() is called.
+     */
+    public Outbox(MongoCollection<Document> outbox, String threadName, Sender sender) {
+        this(outbox, threadName, sender, DISPATCH_INTERVAL_MS, true);
+    }
+
+    /**
+     * Dispatches every dispatchIntervalMs, anything sooner is up to the caller.
+     */
+    public Outbox(MongoCollection<Document> outbox, String threadName, Sender sender, long dispatchIntervalMs) {
+        this(outbox, threadName, sender, dispatchIntervalMs, false);
+    }
+
+    private Outbox(MongoCollection<Document> outbox, String threadName, Sender sender, long dispatchIntervalMs, boolean dispatchOnWake) {
+        this.outbox = outbox;
+        this.sender = sender;
+        this.dispatchOnWake = dispatchOnWake;
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatchQuietly, dispatchIntervalMs, dispatchIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        // anything not sent yet stays in the outbox for the next start
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Saves the message as part of the session's transaction, call wake() once it committed.
+     */
+    public void save(ClientSession session, String key, Document message) {
+        outbox.updateOne(session, new Document("_id", key),
+                new Document("$set", new Document("message", message)
+                        .append("version", new ObjectId())
+                        .append("attempts", 0)
+                        .append("next_attempt", System.currentTimeMillis())),
+                new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * Sends what was just saved without waiting for the next run.
+     */
+    public void wake() {
+        if (dispatchOnWake) {
+            dispatcher.execute(this::dispatchQuietly);
+        }
+    }
+
+    private void dispatchQuietly() {
+        try {
+            // keep going while full batches go out, the rest waits for the next run
+            while (dispatch() == BATCH_SIZE) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Exception dispatching " + outbox.getNamespace().getCollectionName() + ": " + e);
+        }
+    }
+
+    /**
+     * Sends one batch of messages that are due. Returns how many were delivered.
+     */
+    public synchronized int dispatch() {
+        long now = System.currentTimeMillis();
+        List<Document> entries = outbox.find(new Document("next_attempt", new Document("$lte", now))
+                        .append("attempts", new Document("$lt", MAX_ATTEMPTS)))
+                .sort(new Document("next_attempt", 1).append("_id", 1))
+                .limit(BATCH_SIZE)
+                .into(new ArrayList<>());
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<Document> messages = new ArrayList<>(entries.size());
+        for (Document entry : entries) {
+            messages.add(entry.get("message", Document.class));
+        }
+        Set<Document> delivered = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            delivered.addAll(sender.send(messages));
+        } catch (Exception e) {
+            System.out.println("Exception sending " + outbox.getNamespace().getCollectionName() + ": " + e);
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Document entry = entries.get(i);
+            Document sentVersion = new Document("_id", entry.get("_id")).append("version", entry.getObjectId("version"));
+            if (delivered.contains(messages.get(i))) {
+                writes.add(new DeleteOneModel<>(sentVersion));
+                continue;
+            }
+            int attempts = entry.getInteger("attempts", 0) + 1;
+            if (attempts >= MAX_ATTEMPTS) {
+                System.out.println("Giving up on " + entry.get("_id") + " in " + outbox.getNamespace().getCollectionName()
+                        + " after " + attempts + " attempts");
+            }
+            writes.add(new UpdateOneModel<>(sentVersion, new Document("$set", new Document("attempts", attempts)
+                    .append("next_attempt", now + retryDelay(attempts)))));
+        }
+        outbox.bulkWrite(writes);
+        return delivered.size();
+    }
+
+    static long retryDelay(int attempts) {
+        return Math.min(MAX_RETRY_MS, FIRST_RETRY_MS << Math.min(attempts - 1, 20));
+    }
+
+    public long pending() {
+        return outbox.countDocuments(new Document("attempts", new Document("$lt", MAX_ATTEMPTS)));
+    }
+}
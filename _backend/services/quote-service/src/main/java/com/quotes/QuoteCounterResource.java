@@ -0,0 +1,76 @@
+package com.quotes;
+
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+@Path("/update/counter")
+public class QuoteCounterResource {
+
+    @Inject
+    QuoteCounterService counterService;
+
+    @PUT
+    @Path("/{quoteId}/{counter}/increment")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "202", description = "Increment was queued and will be written within the flush interval"),
+            @APIResponse(responseCode = "400", description = "Given ID is not a valid ObjectId or counter is not bookmarks, shares or flags")
+    })
+    @Operation(summary = "Add 1 to a quote counter", description = "Adds 1 to the bookmarks, shares or flags of a quote." +
+            " Changes are batched and written to the database every few hundred milliseconds.")
+    public Response increment(@Parameter(description = "ID of the quote", required = true, example = "67b61f18daa68e25fbd151e9",
+                                      schema = @Schema(type = SchemaType.STRING)) @PathParam("quoteId") String quoteId,
+                              @Parameter(description = "bookmarks, shares or flags", required = true, example = "bookmarks")
+                              @PathParam("counter") String counter) {
+        return queue(quoteId, counter, 1);
+    }
+
+    @PUT
+    @Path("/{quoteId}/{counter}/decrement")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "202", description = "Decrement was queued and will be written within the flush interval"),
+            @APIResponse(responseCode = "400", description = "Given ID is not a valid ObjectId or counter is not bookmarks, shares or flags")
+    })
+    @Operation(summary = "Subtract 1 from a quote counter", description = "Subtracts 1 from the bookmarks, shares or flags of a quote," +
+            " never going below 0. Changes are batched and written to the database every few hundred milliseconds.")
+    public Response decrement(@Parameter(description = "ID of the quote", required = true, example = "67b61f18daa68e25fbd151e9",
+                                      schema = @Schema(type = SchemaType.STRING)) @PathParam("quoteId") String quoteId,
+                              @Parameter(description = "bookmarks, shares or flags", required = true, example = "bookmarks")
+                              @PathParam("counter") String counter) {
+        return queue(quoteId, counter, -1);
+    }
+
+    private Response queue(String quoteId, String counterName, int delta) {
+        if(!SanitizerClass.validObjectId(quoteId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new Document("error", "Given ID is not valid ObjectId").toJson())
+                    .build();
+        }
+        QuoteCounterService.Counter counter = QuoteCounterService.Counter.fromName(counterName);
+        if(counter == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new Document("error", "Counter must be bookmarks, shares or flags").toJson())
+                    .build();
+        }
+
+        counterService.add(new ObjectId(quoteId), counter, delta);
+
+        JsonObject jsonResponse = Json.createObjectBuilder()
+                .add("Response", "202")
+                .build();
+        return Response.accepted(jsonResponse).build();
+    }
+}
@@ -0,0 +1,221 @@
+package com.quotes;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bookmark, share and flag counters.
+ *
+ * Increments and decrements are summed per quote in memory and written out every FLUSH_INTERVAL_MS as one
+ * bulkWrite of $inc updates, so a quote getting clicked a lot costs one write per interval instead of one per click.
+ * Counters never go below 0.
+ *
+ * If the bulkWrite fails part way, what comes after the failed write is kept for the next flush, along with any
+ * clamps to 0 that didn't run. A write that fails in a way that won't change by trying again, like $inc on a field
+ * that isn't a number, is dropped instead of being retried forever.
+ */
+@ApplicationScoped
+public class QuoteCounterService {
+
+    static final long FLUSH_INTERVAL_MS = 500;
+    //write errors that can go away by themselves, anything else fails the same way every time
+    static final Set<Integer> RETRYABLE_WRITE_ERRORS = Set.of(6, 7, 50, 89, 91, 112, 189, 262, 9001, 10107, 11600, 11602, 13435, 13436);
+
+    public enum Counter {
+        BOOKMARKS("bookmarks"),
+        SHARES("shares"),
+        FLAGS("flags");
+
+        private final String field;
+
+        Counter(String field) {
+            this.field = field;
+        }
+
+        public static Counter fromName(String name) {
+            for(Counter counter : values()) {
+                if(counter.field.equalsIgnoreCase(name)) {
+                    return counter;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Inject
+    private MongoClient client;
+
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
+    private MongoCollection<Document> collection;
+    private ScheduledExecutorService flusher;
+    private long flushIntervalMs = FLUSH_INTERVAL_MS;
+
+    //quote id -> pending delta per counter
+    //only touched through compute/remove so a delta can't land in a map that is already being flushed
+    private final Map<ObjectId, Map<Counter, Integer>> pending = new ConcurrentHashMap<>();
+    //quotes whose counter may be below 0 because a failed flush skipped the clamp, only touched inside flush
+    private final Map<Counter, Set<ObjectId>> unclamped = new EnumMap<>(Counter.class);
+
+    public QuoteCounterService() {}
+
+    @PostConstruct
+    public void init() {
+        collection = client.getDatabase("Data").getCollection("Quotes");
+        startFlusher();
+    }
+
+    public QuoteCounterService(MongoClient mongoClient, String databaseName, long flushIntervalMs) {
+        client = mongoClient;
+        collection = client.getDatabase(databaseName).getCollection("Quotes");
+        this.flushIntervalMs = flushIntervalMs;
+        startFlusher();
+    }
+
+    private void startFlusher() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quote-counter-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly(); // don't lose clicks still in memory
+    }
+
+    public void add(ObjectId quoteId, Counter counter, int delta) {
+        if(quoteId == null || counter == null || delta == 0) {
+            return;
+        }
+        pending.compute(quoteId, (id, deltas) -> {
+            if(deltas == null) {
+                deltas = new EnumMap<>(Counter.class);
+            }
+            deltas.merge(counter, delta, Integer::sum);
+            return deltas;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.out.println("Exception flushing quote counters: " + e);
+        }
+    }
+
+    public synchronized int flush() {
+        if(pending.isEmpty() && unclamped.isEmpty()) {
+            return 0;
+        }
+
+        Map<ObjectId, Map<Counter, Integer>> batch = new HashMap<>();
+        for(ObjectId quoteId : new ArrayList<>(pending.keySet())) {
+            //anything added after the remove goes to a fresh entry and waits for the next flush
+            Map<Counter, Integer> deltas = pending.remove(quoteId);
+            if(deltas != null) {
+                deltas.values().removeIf(delta -> delta == 0);
+                if(!deltas.isEmpty()) {
+                    batch.put(quoteId, deltas);
+                }
+            }
+        }
+        if(batch.isEmpty() && unclamped.isEmpty()) {
+            return 0;
+        }
+
+        //counters stay int32, other code reads them with getInteger
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        List<ObjectId> writeOrder = new ArrayList<>();
+        Map<Counter, Set<ObjectId>> decremented = new EnumMap<>(Counter.class);
+        unclamped.forEach((counter, ids) -> decremented.put(counter, new HashSet<>(ids)));
+        unclamped.clear();
+        batch.forEach((quoteId, deltas) -> {
+            Document inc = new Document();
+            deltas.forEach((counter, delta) -> {
+                inc.append(counter.field, delta);
+                if(delta < 0) {
+                    decremented.computeIfAbsent(counter, c -> new HashSet<>()).add(quoteId);
+                }
+            });
+            writes.add(new UpdateOneModel<>(new Document("_id", quoteId), new Document("$inc", inc)));
+            writeOrder.add(quoteId);
+        });
+        //writes are ordered, so this runs after the $inc above and puts anything that went negative back to 0
+        List<Counter> clampOrder = new ArrayList<>(decremented.keySet());
+        clampOrder.forEach(counter -> writes.add(new UpdateManyModel<>(
+                new Document("_id", new Document("$in", new ArrayList<>(decremented.get(counter))))
+                        .append(counter.field, new Document("$lt", 0)),
+                new Document("$set", new Document(counter.field, 0)))));
+
+        try {
+            collection.bulkWrite(writes, new BulkWriteOptions().ordered(true));
+        } catch (MongoBulkWriteException e) {
+            if(e.getWriteErrors().isEmpty()) {
+                //only the write concern wasn't met, every write was applied and sending them again would count twice
+                System.out.println("Quote counters written without the write concern: " + e.getWriteConcernError());
+            } else {
+                requeueAfter(e.getWriteErrors().get(0), batch, writeOrder, clampOrder, decremented);
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            //put the deltas and clamps back so they go out with the next flush
+            batch.forEach((quoteId, deltas) -> deltas.forEach((counter, delta) -> add(quoteId, counter, delta)));
+            decremented.forEach((counter, ids) -> unclamped.computeIfAbsent(counter, c -> new HashSet<>()).addAll(ids));
+            throw e;
+        }
+
+        if(leaderboardCache != null) {
+            batch.keySet().forEach(leaderboardCache::quoteChanged);
+        }
+        return batch.size();
+    }
+
+    //ordered writes stop at the first error, everything before it is already applied
+    private void requeueAfter(BulkWriteError error, Map<ObjectId, Map<Counter, Integer>> batch, List<ObjectId> writeOrder,
+                              List<Counter> clampOrder, Map<Counter, Set<ObjectId>> decremented) {
+        int failedAt = error.getIndex();
+        boolean retryable = RETRYABLE_WRITE_ERRORS.contains(error.getCode());
+        for(int i = failedAt; i < writeOrder.size(); i++) {
+            ObjectId quoteId = writeOrder.get(i);
+            if(i == failedAt && !retryable) {
+                System.out.println("Dropping quote counter changes " + batch.get(quoteId) + " for " + quoteId + ": " + error.getMessage());
+                continue;
+            }
+            batch.get(quoteId).forEach((counter, delta) -> add(quoteId, counter, delta));
+        }
+        for(int i = 0; i < clampOrder.size(); i++) {
+            int index = writeOrder.size() + i;
+            if(index > failedAt || (index == failedAt && retryable)) {
+                Counter counter = clampOrder.get(i);
+                unclamped.computeIfAbsent(counter, c -> new HashSet<>()).addAll(decremented.get(counter));
+            }
+        }
+        if(leaderboardCache != null) {
+            writeOrder.subList(0, Math.min(failedAt, writeOrder.size())).forEach(leaderboardCache::quoteChanged);
+        }
+    }
+}
@@ -24,7 +24,6 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
 import java.io.IOException;
 import java.util.Map;
-import java.util.List;
 
 import com.moderation.ProfanityClass;
 
@@ -34,8 +33,8 @@ public class QuoteCreateResource {
     @Inject
     QuoteService quoteService;
 
-    @Inject 
-    private UserClient userClient;
+    @Inject
+    MyQuotesOutbox myQuotesOutbox;
 
     private ProfanityClass profanityFilter = new ProfanityClass();
 
@@ -106,19 +105,10 @@ public class QuoteCreateResource {
             }
             
 
-            ObjectId newQuoteId = quoteService.createQuote(quote); //add to mongo database
-            Response findAccount = userClient.search(accountID);
-            if (findAccount.getStatus() == Response.Status.OK.getStatusCode()) {
-                String accSearchString = findAccount.readEntity(String.class);
-                Document accDoc = Document.parse(accSearchString);
-                List<String> MyQuotes = accDoc.getList("MyQuotes", String.class);
-                MyQuotes.add(newQuoteId.toString());
-                accDoc.put("MyQuotes",MyQuotes);
-                Response updateUser = userClient.updateMyQuotes(accountID,accDoc.toJson());
-                
-            }
-            
+            //quote and MyQuotes change are saved together, MyQuotes is updated in the background
+            ObjectId newQuoteId = quoteService.createQuote(quote, (session, quoteId) -> myQuotesOutbox.add(session, accountObjectId, quoteId));
             if(newQuoteId != null) {
+                myQuotesOutbox.wake();
                 JsonObject jsonResponse = Json.createObjectBuilder()
                         .add("_id", newQuoteId.toHexString())
                         .build();
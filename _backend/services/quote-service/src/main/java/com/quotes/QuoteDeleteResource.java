@@ -25,7 +25,6 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 
 
@@ -35,8 +34,8 @@ public class QuoteDeleteResource {
     @Inject
     QuoteService quoteService;
 
-    @Inject 
-    private UserClient userClient;
+    @Inject
+    MyQuotesOutbox myQuotesOutbox;
 
     @Inject
     private DeleteService deleteService;
@@ -108,6 +107,12 @@ public class QuoteDeleteResource {
                         .entity(new Document("error", "Admins are not authorized to delete quotes that have not been flagged").toJson()).build();
             }
 
+            //check id is in valid form
+            if(!SanitizerClass.validObjectId(quoteID)) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Given ID is not valid ObjectId").build();
+            }
+
+            boolean result;
             if (group.equals("admin")) {
                 Document deleteQuoteDoc = new Document("author", quote.getAuthor())
                         .append("quote", quote.getText())
@@ -115,28 +120,23 @@ public class QuoteDeleteResource {
                         .append("reason", reasonForDelete)
                         .append("adminID", accountID)
                         .append("deletedDate", System.currentTimeMillis()/ 1000L);
-                ObjectId deleteQuoteId = deleteService.createDeletedQuote(deleteQuoteDoc);
-                deleteService.deleteReports(quote.getId());
-                Response response = deleteService.sendOwnerNotification(deleteQuoteDoc, deleteQuoteId, authHeader);
-                System.out.println(response.getStatus());
-                accountID = quote.getCreator().toString();
-            }
-
-            //check id is in valid form
-            if(!SanitizerClass.validObjectId(quoteID)) {
-                return Response.status(Response.Status.BAD_REQUEST).entity("Given ID is not valid ObjectId").build();
+                // deleted, archived and taken out of the owner's MyQuotes together, the owner is notified in the background
+                ObjectId creator = quote.getCreator();
+                result = deleteService.archiveQuote(deleteQuoteDoc, quote.getId(), session -> {
+                    if (!quoteService.deleteQuote(session, objectId)) {
+                        return false;
+                    }
+                    myQuotesOutbox.remove(session, creator, objectId);
+                    return true;
+                });
+                if (result) {
+                    quoteService.quoteChanged(objectId);
+                }
+            } else {
+                result = quoteService.deleteQuote(objectId, session -> myQuotesOutbox.remove(session, accountObjectID, objectId));
             }
-            boolean result = quoteService.deleteQuote(objectId);
             if(result) {
-                Response findAccount = userClient.search(accountID);
-            if (findAccount.getStatus() == Response.Status.OK.getStatusCode()) {
-                String accSearchString = findAccount.readEntity(String.class);
-                Document accDoc = Document.parse(accSearchString);
-                List<String> MyQuotes = accDoc.getList("MyQuotes", String.class);
-                MyQuotes.remove(quoteID);
-                accDoc.put("MyQuotes",MyQuotes);
-                Response updateUser = userClient.updateMyQuotes(accountID,accDoc.toJson());   
-            }
+                myQuotesOutbox.wake(); //MyQuotes is updated in the background
                 JsonObject jsonResponse = Json.createObjectBuilder()
                         .add("Response", "200")
                         .build();
@@ -0,0 +1,72 @@
+package com.quotes;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Writes the documents of a Mongo query straight to the response body as a json array.
+ * Each document is encoded once by the BSON JsonWriter, there is no toJson() string or re-parse in between.
+ * The cursor is only opened when the response is written and closed once the array is, so a response that is never
+ * written doesn't leave one open on the server.
+ */
+public class QuoteResultWriter implements StreamingOutput {
+
+    private static final JsonWriterSettings SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+    private static final Codec<Document> CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+    private static final EncoderContext CONTEXT = EncoderContext.builder().build();
+
+    private final MongoIterable<Document> results;
+    private final String[] hexFields;
+
+    // hexFields are ObjectId fields written as a plain hex string instead of {"$oid": ...}
+    public QuoteResultWriter(MongoIterable<Document> results, String... hexFields) {
+        this.results = results;
+        this.hexFields = hexFields;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        try (MongoCursor<Document> cursor = results.cursor()) {
+            writeArray(cursor, writer, hexFields);
+        }
+        writer.flush();
+    }
+
+    public static void writeArray(Iterator<Document> docs, Writer writer, String... hexFields) throws IOException {
+        writer.write('[');
+        boolean first = true;
+        while (docs.hasNext()) {
+            Document doc = docs.next();
+            for (String field : hexFields) {
+                if (doc.get(field) instanceof ObjectId id) {
+                    doc.put(field, id.toHexString()); // gets rid of "$oid" subfield
+                }
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            CODEC.encode(new JsonWriter(writer, SETTINGS), doc, CONTEXT);
+        }
+        writer.write(']');
+    }
+}
@@ -7,21 +7,32 @@ import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.ExampleObject;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.util.List;
 
 @Path("/search")
 public class QuoteSearchResource {
 
+    static final int MAX_BATCH_IDS = 1000;
+
     @Inject
     QuoteService quoteService;
 
+    @Inject
+    LeaderboardCache leaderboardCache;
+
     @GET
     @Path("/id/{quoteID}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -57,17 +68,82 @@ public class QuoteSearchResource {
         }
     }
 
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Json array of every quote that was found"),
+            @APIResponse(responseCode = "400", description = "Body is not a json array of ids, or has more than " + MAX_BATCH_IDS + " ids"),
+            @APIResponse(responseCode = "409", description = "Exception occurred during operation")
+    })
+    @Operation(summary = "Retrieves many quotes from the database at once", description = "Takes a json array of quote ids and returns" +
+            " a json array of the quotes in the same format as /search/id. Ids that are invalid or not found are left out and" +
+            " the order of the results is not guaranteed.")
+    @RequestBody(description = "Json array of quote ids", required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON,
+            examples = @ExampleObject(name = "Example: two quotes", value = "[\"67b61f18daa68e25fbd151e9\", \"67abf3b6b0d20a5237456441\"]")))
+    public Response idsSearch(List<String> quoteIDs) {
+        if(quoteIDs == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Body must be a json array of ids").build();
+        }
+        if(quoteIDs.size() > MAX_BATCH_IDS) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Too many ids, limit is " + MAX_BATCH_IDS).build();
+        }
+        try {
+            List<ObjectId> objectIds = quoteIDs.stream()
+                    .filter(id -> id != null && SanitizerClass.validObjectId(id))
+                    .distinct()
+                    .map(ObjectId::new)
+                    .toList();
+
+            return Response.ok(quoteService.getQuotes(objectIds)).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.CONFLICT).entity("Exception Occurred: "+e).build();
+        }
+    }
+
+    @POST
+    @Path("/collection")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Json array with one page of the collection"),
+            @APIResponse(responseCode = "400", description = "Body is not a valid collection query"),
+            @APIResponse(responseCode = "409", description = "Exception occurred during operation")
+    })
+    @Operation(summary = "Filters, sorts and pages a set of quotes", description = "Takes the ids of a user's collection with" +
+            " visibility, tag and sort criteria and returns one page of the matching quotes, in the same format as /search/id." +
+            " Up to " + CollectionQuery.MAX_PAGE_SIZE + " quotes per page.")
+    @RequestBody(description = "Collection query", required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON,
+            examples = @ExampleObject(name = "Example: newest public quotes tagged Life", value = "{\"ids\": [\"67b61f18daa68e25fbd151e9\"," +
+                    " \"67abf3b6b0d20a5237456441\"], \"visibility\": [\"public\"], \"tags\": [\"Life\"], \"sort\": \"CREATED_NEWEST\"," +
+                    " \"offset\": 0, \"pageSize\": 20}")))
+    public Response collectionSearch(String body) {
+        CollectionQuery query = CollectionQuery.parse(body);
+        if(query == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Body is not a valid collection query").build();
+        }
+        try {
+            return Response.ok(quoteService.getCollection(query)).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.CONFLICT).entity("Exception Occurred: "+e).build();
+        }
+    }
+
     @GET
     @Path("/query")
     @Produces(MediaType.APPLICATION_JSON)
     @APIResponses(value = {
             @APIResponse(responseCode = "200", description = "Successfully found quotes relevant to query"),
-            @APIResponse(responseCode = "400", description = "Error occurred when cleaning query string"),
+            @APIResponse(responseCode = "400", description = "Error occurred when cleaning query string, or the page size or" +
+                    " pagination token is invalid"),
             @APIResponse(responseCode = "409", description = "Exception occurred during operation")
     })
     @Operation(summary = "Fuzzy search for quotes relevant to supplied query",
     description = "Searches for quotes similar to the users input and returns json of quotes determined to be most similar." +
-            " They are sorted in descending order so the first json object is the closest to users input.")
+            " They are sorted in descending order so the first json object is the closest to users input. Returns one page" +
+            " of up to pageSize quotes, each with its relevance as \"score\" and a \"paginationToken\". Pass the token of the" +
+            " last quote as after for the next page, or the token of the first quote as before for the previous one.")
     public Response advancedSearch(@QueryParam("filterUsed") @Parameter(description = "Should filter out Used Quotes. Defaults to false if left blank", required = false)
                                        boolean filterUsed,
                                    @QueryParam("filterBookmarked") @Parameter(description = "Should filter out Bookmarked Quotes. Defaults to false if left blank", required = false)
@@ -82,6 +158,13 @@ public class QuoteSearchResource {
                                        String Excluded,
                                    @QueryParam("query") @Parameter(description = "Query string user entered", required = true)
                                        String query,
+                                   @QueryParam("pageSize") @Parameter(description = "Quotes per page, up to " + QuoteService.MAX_SEARCH_PAGE_SIZE +
+                                           ". Defaults to " + QuoteService.DEFAULT_SEARCH_PAGE_SIZE, required = false)
+                                       Integer pageSize,
+                                   @QueryParam("after") @Parameter(description = "paginationToken of the last quote of the previous page", required = false)
+                                       String after,
+                                   @QueryParam("before") @Parameter(description = "paginationToken of the first quote of the next page, to go back", required = false)
+                                       String before,
                                    @Context HttpHeaders header)
     {
         try{
@@ -108,12 +191,26 @@ public class QuoteSearchResource {
                 return Response.status(Response.Status.BAD_REQUEST).entity("Query string is null").build();
             }
             query = SanitizerClass.sanitize(query); //removes special characters
+            int size = pageSize == null ? QuoteService.DEFAULT_SEARCH_PAGE_SIZE : pageSize;
+            if(size < 1 || size > QuoteService.MAX_SEARCH_PAGE_SIZE) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("pageSize must be between 1 and " + QuoteService.MAX_SEARCH_PAGE_SIZE).build();
+            }
+            if(after != null && before != null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Only one of after and before can be given").build();
+            }
             //search database using Atlas Search
-            String result = quoteService.searchQuote(query, filterUsed, filterBookmarked, filterUploaded, Included, Excluded, jwtString, isGuest);
+            StreamingOutput result = quoteService.searchQuote(query, filterUsed, filterBookmarked, filterUploaded, Included, Excluded, jwtString, isGuest,
+                    size, after, before);
             if(result == null) {
                 return Response.status(Response.Status.NOT_FOUND).entity("No quotes matched the search criteria").build();
             }
             return Response.ok(result).build();
+        } catch (IllegalArgumentException e) {
+            if(after == null && before == null) {
+                return Response.status(Response.Status.CONFLICT).entity("Exception Occured: "+e).build();
+            }
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid pagination token").build();
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT).entity("Exception Occured: "+e).build();
         }
@@ -131,7 +228,7 @@ public class QuoteSearchResource {
             " is limited to 100 results")
     public Response getTopBookmarks() {
         try{
-            String result = quoteService.getTopBookmarked();
+            byte[] result = leaderboardCache.get(LeaderboardCache.Board.TOP_BOOKMARKED);
             return Response.ok(result).build();
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT).entity("Exception Occurred: "+e).build();
@@ -150,7 +247,7 @@ public class QuoteSearchResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response getSharedBookmarked() {
         try{
-            String result = quoteService.getTopShared();
+            byte[] result = leaderboardCache.get(LeaderboardCache.Board.TOP_SHARED);
             return Response.ok(result).build();
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT).entity("Exception Occurred: "+e).build();
@@ -176,7 +273,7 @@ public class QuoteSearchResource {
         }
 
         try {
-            String result = quoteService.getTopFlagged();
+            StreamingOutput result = quoteService.getTopFlagged();
             return Response.ok(result).build();
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT).entity("Exception Occurred: "+e).build();
@@ -194,7 +291,7 @@ public class QuoteSearchResource {
             ". It is sorted in descending order. Currently it is limited to 100 results")
     public Response getMostRecent() {
         try{
-            String result = quoteService.getMostRecent();
+            byte[] result = leaderboardCache.get(LeaderboardCache.Board.MOST_RECENT);
             return Response.ok(result).build();
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT).entity("Exception Occurred: "+e).build();
@@ -231,7 +328,7 @@ public class QuoteSearchResource {
             }
 
             ObjectId objectId = new ObjectId(userId);
-            String jsonQuotes = quoteService.getQuotesByUser(objectId);
+            StreamingOutput jsonQuotes = quoteService.getQuotesByUser(objectId);
 
             return Response.ok(jsonQuotes).build();
         } catch (Exception e) {
@@ -1,27 +1,32 @@
 package com.quotes;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ibm.websphere.security.jwt.InvalidConsumerException;
 import com.ibm.websphere.security.jwt.InvalidTokenException;
-import com.ibm.websphere.security.jwt.JwtConsumer;
-import com.ibm.websphere.security.jwt.JwtToken;
 import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.json.Json;
-import jakarta.json.JsonArrayBuilder;
-import jakarta.json.JsonObject;
-import jakarta.json.JsonWriter;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 
-import java.io.StringWriter;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static com.mongodb.client.model.Filters.eq;
 
@@ -31,28 +36,57 @@ public class QuoteService {
     @Inject
     private MongoClient client;
 
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
+    @Inject
+    private SearchCache searchCache;
+
+    static final int DEFAULT_SEARCH_PAGE_SIZE = 50;
+    static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     private MongoDatabase database;
+    private SearchBackend searchBackend;
 
     public QuoteService() {}
 
     @PostConstruct
     public void init() {
         database = client.getDatabase("Data");
+        searchBackend = SearchBackend.create(System.getenv("SEARCH_BACKEND"), database.getCollection("Quotes"));
     }
 
     public QuoteService(MongoClient mongoClient, String databaseName) {
+        this(mongoClient, databaseName, System.getenv("SEARCH_BACKEND"));
+    }
+
+    // searchBackend is "atlas" or "local", see SearchBackend
+    public QuoteService(MongoClient mongoClient, String databaseName, String searchBackend) {
         client = mongoClient;
         database = client.getDatabase(databaseName);
+        this.searchBackend = SearchBackend.create(searchBackend, database.getCollection("Quotes"));
+    }
+
+    /**
+     * Tells the caches and the search index a quote was created, changed or deleted. Writes made here call it
+     * themselves, writes made in a caller's transaction call it once that committed.
+     */
+    public void quoteChanged(ObjectId quoteId) {
+        //leaderboards are not injected when the service is built directly
+        if(leaderboardCache != null) {
+            leaderboardCache.quoteChanged(quoteId);
+        }
+        searchBackend.quoteChanged(quoteId);
+        if(searchCache != null) {
+            searchCache.quoteChanged();
+        }
     }
 
     private Document retrieveUserFromJWT(String jwtString) {
         try {
             MongoDatabase UserDatabase = client.getDatabase("Accounts");
             MongoCollection<Document> userCollection = UserDatabase.getCollection("Users");
-            JwtConsumer consumer = JwtConsumer.create("defaultJwtConsumer");
-            JwtToken jwt = consumer.createJwt(jwtString);
-
-            String id = jwt.getClaims().getSubject();
+            String id = JwtCache.verify(jwtString).subject();
 
             ObjectId objectId;
             try {
@@ -86,6 +120,60 @@ public class QuoteService {
         return null;
     }
 
+    public StreamingOutput getQuotes(List<ObjectId> quoteIDs) {
+        MongoCollection<Document> collection = database.getCollection("Quotes");
+
+        //same rules as getQuote, quotes without a creator are left out
+        FindIterable<Document> results = collection.find(new Document("_id", new Document("$in", quoteIDs))
+                .append("creator", new Document("$ne", null)));
+
+        return new QuoteResultWriter(results, "_id", "creator");
+    }
+
+    StreamingOutput getCollection(CollectionQuery query) {
+        if(query.none || query.ids.isEmpty()) {
+            return output -> output.write("[]".getBytes(StandardCharsets.UTF_8));
+        }
+        MongoCollection<Document> collection = database.getCollection("Quotes");
+        List<List<ObjectId>> batches = query.batches();
+        if(query.order.isEmpty() && batches.size() == 1) {
+            return new QuoteResultWriter(collection.aggregate(query.pipeline()), "_id", "creator");
+        }
+
+        //without an order no batch can put more than offset + pageSize quotes ahead of the page
+        int perBatch = query.order.isEmpty() ? (int) Math.min((long) query.offset + query.pageSize, Integer.MAX_VALUE) : 0;
+        List<Document> sortKeys = new ArrayList<>();
+        for(List<ObjectId> batch : batches) {
+            collection.find(query.match(batch)).sort(query.sort()).limit(perBatch)
+                    .projection(new Document("_id", 1).append("date", 1))
+                    .into(sortKeys);
+        }
+        if(batches.size() > 1) {
+            sortKeys.sort(query.comparator());
+        }
+        List<ObjectId> matching = new ArrayList<>(sortKeys.size());
+        for(Document key : sortKeys) {
+            matching.add(key.getObjectId("_id"));
+        }
+        List<ObjectId> page = query.page(matching);
+        Map<ObjectId, Document> quotes = new HashMap<>();
+        for(Document quote : collection.find(new Document("_id", new Document("$in", page)))) {
+            quotes.put(quote.getObjectId("_id"), quote);
+        }
+        List<Document> ordered = new ArrayList<>();
+        for(ObjectId id : page) {
+            Document quote = quotes.get(id);
+            if(quote != null) {
+                ordered.add(quote);
+            }
+        }
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            QuoteResultWriter.writeArray(ordered.iterator(), writer, "_id", "creator");
+            writer.flush();
+        };
+    }
+
     private List<String> fetchUserUsedQuoteIds(Document account) {
         try{
             //extract list from account
@@ -128,21 +216,22 @@ public class QuoteService {
         }
     }
 
-    public String searchQuote(String searchQuery, boolean filterUsed, boolean filterBookmarked, boolean filterUploaded,
-                              String IncludeTerms, String ExcludeTerms, String jwtString, boolean isGuest) { // fuzzy search for quote
-
-        MongoCollection<Document> collection = database.getCollection("Quotes");
+    /**
+     * One page of the quotes most relevant to the query, best first. The next page is the one after the
+     * paginationToken of this page's last quote, the previous one the one before its first quote's token.
+     */
+    public StreamingOutput searchQuote(String searchQuery, boolean filterUsed, boolean filterBookmarked, boolean filterUploaded,
+                              String IncludeTerms, String ExcludeTerms, String jwtString, boolean isGuest,
+                              int pageSize, String after, String before) { // fuzzy search for quote
 
         //certain filter fields only available to user
         List<ObjectId> filterQuoteIds = new ArrayList<>(); //instantiate list of quote id's to compare to
         Document userDoc = new Document();
-        String userId = null;
         if(!isGuest) {
             userDoc = retrieveUserFromJWT(jwtString); //Get User Document if not guest
             if(userDoc == null) {
                 return null;
             }
-            userId = userDoc.getObjectId("_id").toHexString();
         }
 
         if(filterUsed && !isGuest) { //if filter true, add quote ids to filter list
@@ -159,188 +248,154 @@ public class QuoteService {
         //System.out.println(filterQuoteIds);
 
         //following fields will still work for guest
-        List<String> TermsToInclude = new ArrayList<>();
-        List<Document> MustClause = new ArrayList<>();
-        if(IncludeTerms != null) {
-            TermsToInclude = Arrays.stream(IncludeTerms.split(",")).toList(); //split terms into list
-            //create clause specifying quote must should include specified terms
-            MustClause.add(new Document("text", new Document("query", TermsToInclude).append("path", "quote")));
-        }
-
-        List<String> TermsToExclude = new ArrayList<>();
-        List<Document> MustNotClause = new ArrayList<>();
-        if(ExcludeTerms != null) {
-            TermsToExclude = Arrays.stream(ExcludeTerms.split(",")).toList(); //split terms into list
-            //create clause specifying quote must not include specified terms
-            MustNotClause.add(new Document("text", new Document("query", TermsToExclude).append("path", "quote")));
-        }
-
-        //Base clause
-        List<Document> ShouldClause = List.of( //search that "must" occur
-                new Document("text", new Document("query", searchQuery) //set query string to user query
-                        .append("path", Arrays.asList("quote", "author", "tags"))// field to search and compare to
-                        .append("fuzzy", new Document("maxEdits", 2))
-                ),
-                new Document("text", new Document("query", searchQuery) //set query string to user query
-                        .append("path", "author")// field to search and compare to
-                        .append("score", new Document("boost", new Document("value", 1.5)))
-                        .append("fuzzy", new Document("maxEdits", 2))
-                ),
-                new Document("text", new Document("query", searchQuery) //set query string to user query
-                        .append("path", "tags")// field to search and compare to
-                        .append("score", new Document("boost", new Document("value", 1.5)))
-                        .append("fuzzy", new Document("maxEdits", 2))
-                )
-        );
-
-        //build search query document
-        //The should/mustNot can cause search issues if lists are empty, so they must be dynamically appended to query document
-        Document CompoundDoc = new Document("should", ShouldClause); //default searching
-        //append include/exclude clauses if specified
-        if(!TermsToInclude.isEmpty()) {
-            CompoundDoc.append("must", MustClause).append("minimumShouldMatch", 1); //Min num of elements the quote text must include
-        }
-        if(!TermsToExclude.isEmpty()) {
-            CompoundDoc.append("mustNot", MustNotClause);
-        }
-
-        // create query document
-        AggregateIterable<Document> results;
-        if(isGuest) { //query if is guest
-            results = collection.aggregate(Arrays.asList(
-                    new Document("$search", new Document("index", "QuotesAtlasSearch") //set to search atlas index
-                            .append("compound", CompoundDoc)),
-                    //post search section
-                    new Document("$match", new Document("private", new Document("$ne", true))), //Exclude private quotes
-                    new Document("$match", new Document("_id", new Document("$nin", filterQuoteIds))), //Ignore specified quotes
-                    new Document("$sort", new Document("score", -1)), //sort by relevance
-                    new Document("$limit", 50) //limit to 50 results
-            ));
-        } else { //query if is user
-            results = collection.aggregate(Arrays.asList(
-                    new Document("$search", new Document("index", "QuotesAtlasSearch") //set to search atlas index
-                            .append("compound", CompoundDoc)),
-                    //post search section
-                    new Document("$match", new Document("$or", List.of(
-                            new Document("private", new Document("$ne", true)), //exclude private quotes
-                            new Document("$expr", new Document("$eq", List.of("$creator", userId))) //unless is creator
-                    ))),
-                    new Document("$match", new Document("_id", new Document("$nin", filterQuoteIds))), //Ignore specified quotes
-                    new Document("$sort", new Document("score", -1)), //sort by relevance
-                    new Document("$limit", 50) //limit to 50 results
-            ));
-        }
-
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
-
-        for(Document doc : results) {
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
-        }
-
-        StringWriter stringWriter = new StringWriter();
-        try(JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
-        }
-        return stringWriter.toString();
+        //terms are normalized like the guest cache key so a cached result is exactly what the search returns
+        SearchCache.Key key = SearchCache.Key.of(searchQuery, IncludeTerms, ExcludeTerms, pageSize, after, before);
+        SearchBackend.Request request = new SearchBackend.Request(key.query(), key.include(), key.exclude(),
+                isGuest ? null : userDoc.getObjectId("_id"), new HashSet<>(filterQuoteIds), pageSize, after, before);
+
+        if(!isGuest || searchCache == null) {
+            List<Document> results = searchBackend.search(request);
+            return output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                QuoteResultWriter.writeArray(results.iterator(), writer);
+                writer.flush();
+            };
+        }
+
+        //guests have no per user filters, so the same search always gives the same quotes until one is written
+        byte[] cached = searchCache.get(key);
+        if(cached == null) {
+            long generation = searchCache.generation();
+            List<Document> results = searchBackend.search(request);
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(results.size() * 256 + 2);
+            try(Writer writer = new OutputStreamWriter(encoded, StandardCharsets.UTF_8)) {
+                QuoteResultWriter.writeArray(results.iterator(), writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cached = encoded.toByteArray();
+            searchCache.put(key, generation, cached);
+        }
+        byte[] result = cached;
+        return output -> output.write(result);
     }
 
 
-    private QuoteObject parseQuote(String jsonQuote) {
-        //parses json from string form to Java Object
-        System.out.println(jsonQuote);
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Applies the given fields to a quote with a single findOneAndUpdate and returns the quote as it is after the
+     * update, or null if nothing matched. Who may edit and the +-1 rule for counters are part of the filter, so
+     * there is no read beforehand. A quote that exists but wasn't updated failed one of those checks.
+     *
+     * @param editor account making the change, null skips the ownership check
+     * @param isAdmin admins may also edit quotes that have been flagged
+     */
+    public Document patchQuote(QuoteObject quote, ObjectId editor, boolean isAdmin) {
+        MongoCollection<Document> collection = database.getCollection("Quotes");
 
-            return objectMapper.readValue(jsonQuote, QuoteObject.class);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+        if(quote == null || quote.getId() == null) {
+            System.out.println("Quote object or id is null");
             return null;
         }
-    }
 
-    public boolean updateQuote(QuoteObject quote) {
-        MongoCollection<Document> collection = database.getCollection("Quotes");
-
-        if(quote == null) {
-            System.out.println("Quote object is null");
-            return false;
+        Document filter = new Document("_id", quote.getId());
+        if(editor != null) {
+            if(isAdmin) {
+                filter.append("$or", List.of(new Document("creator", editor),
+                        new Document("flags", new Document("$gt", 0))));
+            } else {
+                filter.append("creator", editor);
+            }
         }
 
-        //get current quote for reference
-        String originalQuote = getQuote(quote.getId());
-        if(originalQuote == null) {
-            System.out.println("Quote id is null or invalid");
-            return false;
+        //document containing data to update
+        Document newData = new Document();
+        if(quote.getAuthor() != null && !quote.getAuthor().isEmpty()) {
+            newData.append("author", quote.getAuthor());
         }
-        QuoteObject ogQuote = parseQuote(originalQuote);
-
-        if(ogQuote == null) {
-            System.out.println("Og Quote null for some reason");
-            return false;
+        if(quote.getText() != null && !quote.getText().isEmpty()) {
+            newData.append("quote", quote.getText());
         }
-
-        //quote.PrintQuote();
-        if(quote.getId() == null) {
-            System.out.print("Missing ID");
-            return false;
+        //counters = -1 means the field wasn't sent. Otherwise they can only move by 1 from what is stored,
+        //changing by more than that doesn't make sense so the update doesn't match
+        appendCounter(filter, newData, "bookmarks", quote.getBookmarks());
+        appendCounter(filter, newData, "shares", quote.getShares());
+        appendCounter(filter, newData, "flags", quote.getFlags());
+        if(quote.getDate() >= 0) {
+            newData.append("date", quote.getDate());
         }
-        System.out.print("Has ID");
+        if(quote.getTags() != null) {
+            newData.append("tags", quote.getTags());
+        }
+        // can't tell if "private" was sent, same as before it always takes the given value
+        newData.append("private", quote.getisPrivate());
 
         try {
-            Document IdQuery = new Document();
-            IdQuery.append("_id", quote.getId());
-
-            //document containing data to update
-            Document newData = new Document();
-
-            //checking and appending data
-            //look into automatic ways but this works well
-            if(quote.getAuthor() != null && !quote.getAuthor().isEmpty()) {
-                //if field is not null, or is not empty, append to document to be updated
-                newData.append("author", quote.getAuthor());
-            }
-            if(quote.getText() != null && !quote.getText().isEmpty()) {
-                //if field is not null, or is not empty, append to document to be updated
-                newData.append("quote", quote.getText());
-            }
-            if(quote.getBookmarks() >= 0 && Math.abs(ogQuote.getBookmarks() - quote.getBookmarks()) <= 1) {
-                //if bookmarks = -1, then field is null. Also check if updated value is within 1 integer delta
-                //Reasoning is that the value changing by more than 1 doesn't make sense so that operation shouldn't be allowed
-                newData.append("bookmarks", quote.getBookmarks());
-            }
-            if(quote.getShares() >= 0 && Math.abs(ogQuote.getShares() - quote.getShares()) <= 1) {
-                //if bookmarks = -1, then field is null. Also check if updated value is within 1 integer delta
-                //Reasoning is that the value changing by more than 1 doesn't make sense so that operation shouldn't be allowed
-                newData.append("shares", quote.getShares());
-            }
-            if(quote.getDate() >= 0) {
-                //Do we even need a way to update the date?
-                newData.append("date", quote.getDate());
-            }
-            if(quote.getTags() != null) {
-                //Don't think any other checks for tags are needed
-                newData.append("tags", quote.getTags());
-            }
-            if(quote.getFlags() >=0 && Math.abs(ogQuote.getFlags() - quote.getFlags()) <= 1) {
-                //same as above, shouldn't change more than 1 per update.
-                newData.append("flags", quote.getFlags());
-            }
-            if(quote.getisPrivate() != ogQuote.getisPrivate()) {
-                // can't check for "private" field being null. So only update if value is different
-                newData.append("private", quote.getisPrivate());
-            }
-
+            Document updated = collection.findOneAndUpdate(filter, new Document("$set", newData),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+            return changed(updated);
+        } catch(Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-            //create update operation
-            Document updateOperation = new Document("$set", newData);
+    private void appendCounter(Document filter, Document newData, String field, int value) {
+        if(value >= 0) {
+            filter.append(field, new Document("$gte", value - 1).append("$lte", value + 1));
+            newData.append(field, value);
+        }
+    }
 
-            long modifiedCount = collection.updateOne(IdQuery, updateOperation).getModifiedCount();
-            return modifiedCount > 0;
+    /**
+     * Flips the private flag of a quote owned by the editor in one update and returns the quote after the change,
+     * or null if the quote doesn't exist or belongs to someone else.
+     */
+    public Document toggleVisibility(ObjectId quoteId, ObjectId editor) {
+        MongoCollection<Document> collection = database.getCollection("Quotes");
+        if(quoteId == null || editor == null) {
+            return null;
+        }
+        try {
+            //pipeline update so the new value is worked out from the stored one, a missing field counts as public
+            List<Document> toggle = List.of(new Document("$set",
+                    new Document("private", new Document("$ne", List.of("$private", true)))));
+            Document updated = collection.findOneAndUpdate(new Document("_id", quoteId).append("creator", editor), toggle,
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+            return changed(updated);
         } catch(Exception e) {
             e.printStackTrace();
-            return false;
+            return null;
+        }
+    }
+
+    //post-image from an update, ids as plain strings like getQuote
+    private Document changed(Document updated) {
+        if(updated == null) {
+            return null;
         }
+        ObjectId quoteId = updated.getObjectId("_id");
+        quoteChanged(quoteId);
+        updated.put("_id", quoteId.toString());
+        ObjectId creator = updated.getObjectId("creator");
+        if(creator != null) {
+            updated.put("creator", creator.toString());
+        }
+        return updated;
+    }
+
+    /**
+     * Only the fields needed to explain why a patch didn't match, so a failed update costs one small read
+     * instead of every update reading the whole quote first.
+     */
+    public Document getQuoteAccess(ObjectId quoteId) {
+        MongoCollection<Document> collection = database.getCollection("Quotes");
+        return collection.find(new Document("_id", quoteId))
+                .projection(new Document("creator", 1).append("flags", 1))
+                .first();
+    }
+
+    public boolean updateQuote(QuoteObject quote) {
+        return patchQuote(quote, null, false) != null;
     }
 
     public boolean deleteQuote(ObjectId quoteId) {
@@ -352,6 +407,9 @@ public class QuoteService {
 
             //delete quote, returns greater than 0 if successful
             long deletedCount = collection.deleteOne(idQuery).getDeletedCount();
+            if(deletedCount > 0) {
+                quoteChanged(quoteId);
+            }
             return deletedCount > 0;
         } catch(Exception e) {
             e.printStackTrace();
@@ -359,31 +417,42 @@ public class QuoteService {
         }
     }
 
+    /**
+     * Deletes the quote as part of the session's transaction, call quoteChanged once it committed.
+     */
+    public boolean deleteQuote(ClientSession session, ObjectId quoteId) {
+        return database.getCollection("Quotes").deleteOne(session, eq("_id", quoteId)).getDeletedCount() > 0;
+    }
+
+    /**
+     * Deletes the quote and runs alsoWrite in one transaction, alsoWrite only runs if there was a quote to delete.
+     */
+    public boolean deleteQuote(ObjectId quoteId, Consumer<ClientSession> alsoWrite) {
+        boolean deleted;
+        try (ClientSession session = client.startSession()) {
+            deleted = session.withTransaction(() -> {
+                if(!deleteQuote(session, quoteId)) {
+                    return false;
+                }
+                alsoWrite.accept(session);
+                return true;
+            });
+        }
+        if(deleted) {
+            quoteChanged(quoteId);
+        }
+        return deleted;
+    }
+
     public ObjectId createQuote(QuoteObject quoteData) {
         try{
             MongoCollection<Document> collection = database.getCollection("Quotes");
-            //give quote a new id
-            quoteData.setId(new ObjectId());
-
-            if(quoteData.getText().isEmpty()) { //make sure quote has text
+            Document quoteDoc = newQuoteDocument(quoteData);
+            if(quoteDoc == null) {
                 return null;
             }
-            //calculate unix time code
-            long unixTime = System.currentTimeMillis() / 1000L;
-            //create document to insert
-            Document quoteDoc = new Document()
-                    .append("_id", quoteData.getId())
-                    .append("author", quoteData.getAuthor())
-                    .append("quote", quoteData.getText())
-                    .append("bookmarks", 0) // default to 0
-                    .append("shares", 0) // default to 0
-                    .append("date", unixTime)
-                    .append("tags", quoteData.getTags())
-                    .append("flags", 0) // default to 0
-                    .append("private", quoteData.getisPrivate())
-                    .append("creator", quoteData.getCreator());
-
             collection.insertOne(quoteDoc); //insert into database
+            quoteChanged(quoteData.getId());
             return quoteData.getId(); //return new quote id
         } catch (Exception e) {
             System.out.println("Exception in MongoUtil/createQuote: "+e);
@@ -391,79 +460,56 @@ public class QuoteService {
         }
     }
 
-    public String getTopBookmarked(){ // get top 100 quotes with the most bookmarks
-        MongoCollection<Document> collection = database.getCollection("Quotes");
-
-        AggregateIterable<Document> results = collection.aggregate(Arrays.asList(
-                new Document("$match", new Document("private", new Document("$ne", true))), // exclude private quotes
-                new Document("$sort", new Document("bookmarks", -1)), // sort by bookmark field
-                new Document("$limit", 100))); // limit to 100 results
-
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
-
-        for(Document doc : results) {
-            doc.put("_id", doc.getObjectId("_id").toString()); // gets rid of "$oid" subfield
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
-        }
-
-        //put json array back into string form
-        StringWriter stringWriter = new StringWriter();
-        try(JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
-        }
-        return stringWriter.toString();
-    }
-
-    public String getTopShared() { // get top 100 most shared quotes
-        MongoCollection<Document> collection = database.getCollection("Quotes");
-
-        AggregateIterable<Document> results = collection.aggregate(Arrays.asList(
-                new Document("$match", new Document("private", new Document("$ne", true))), // exclude private quotes
-                new Document("$sort", new Document("shares", -1)), // sort by shares in descending order
-                new Document("$limit", 100))); //limit to 100 results
-
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
-
-        for(Document doc : results) {
-            doc.put("_id", doc.getObjectId("_id").toString()); // gets rid of "$oid" subfield
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
-        }
-
-        //put json array back into string form
-        StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
+    /**
+     * Inserts the quote and runs alsoWrite with its new id in one transaction.
+     */
+    public ObjectId createQuote(QuoteObject quoteData, BiConsumer<ClientSession, ObjectId> alsoWrite) {
+        try{
+            MongoCollection<Document> collection = database.getCollection("Quotes");
+            Document quoteDoc = newQuoteDocument(quoteData);
+            if(quoteDoc == null) {
+                return null;
+            }
+            try (ClientSession session = client.startSession()) {
+                session.withTransaction(() -> {
+                    collection.insertOne(session, quoteDoc);
+                    alsoWrite.accept(session, quoteData.getId());
+                    return null;
+                });
+            }
+            quoteChanged(quoteData.getId());
+            return quoteData.getId();
+        } catch (Exception e) {
+            System.out.println("Exception in MongoUtil/createQuote: "+e);
+            return null;
         }
-        return stringWriter.toString();
     }
 
-    public String getMostRecent() { //gets the 100 most recently posted quotes
-        MongoCollection<Document> collection = database.getCollection("Quotes");
-
-        AggregateIterable<Document> results = collection.aggregate(Arrays.asList(
-                new Document("$match", new Document("private", new Document("$ne", true))), // exclude private quotes
-                new Document("$sort", new Document("date", -1)), // sort by date field in descending order
-                new Document("$limit", 100))); // limit to 100
-
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
+    // gives the quote a new id, null if it has no text
+    private Document newQuoteDocument(QuoteObject quoteData) {
+        //give quote a new id
+        quoteData.setId(new ObjectId());
 
-        for(Document doc : results) {
-            doc.put("_id", doc.getObjectId("_id").toString());// gets rid of "$oid" subfield
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
-        }
-
-        //put json array back into string form
-        StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
+        if(quoteData.getText().isEmpty()) { //make sure quote has text
+            return null;
         }
-        return stringWriter.toString();
+        //calculate unix time code
+        long unixTime = System.currentTimeMillis() / 1000L;
+        //create document to insert
+        return new Document()
+                .append("_id", quoteData.getId())
+                .append("author", quoteData.getAuthor())
+                .append("quote", quoteData.getText())
+                .append("bookmarks", 0) // default to 0
+                .append("shares", 0) // default to 0
+                .append("date", unixTime)
+                .append("tags", quoteData.getTags())
+                .append("flags", 0) // default to 0
+                .append("private", quoteData.getisPrivate())
+                .append("creator", quoteData.getCreator());
     }
 
-    public String getTopFlagged() { // gets all quotes that meet a flag threshold
+    public StreamingOutput getTopFlagged() { // gets all quotes that meet a flag threshold
         MongoCollection<Document> collection = database.getCollection("Quotes");
 
         AggregateIterable<Document> results = collection.aggregate(Arrays.asList(
@@ -472,41 +518,15 @@ public class QuoteService {
                 new Document("$sort", new Document("flags", -1)) //sort in decending order
         ));
 
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
-
-        for(Document doc : results) {
-            doc.put("_id", doc.getObjectId("_id").toString());// gets rid of "$oid" subfield
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
-        }
-
-        //put json array back into string form
-        StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
-        }
-        return stringWriter.toString();
+        return new QuoteResultWriter(results, "_id");
     }
 
-    public String getQuotesByUser(ObjectId userId) {
+    public StreamingOutput getQuotesByUser(ObjectId userId) {
         MongoCollection<Document> collection = database.getCollection("Quotes");
 
-        List<Document> quotes = collection.find(new Document("creator", userId)).into(new ArrayList<>());
-
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
+        FindIterable<Document> quotes = collection.find(new Document("creator", userId));
 
-        for (Document doc : quotes) {
-            doc.put("_id", doc.getObjectId("_id").toString()); // gets rid of "$oid" subfield
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
-        }
-
-        //put json array back into string form
-        StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
-        }
-        return stringWriter.toString();
+        return new QuoteResultWriter(quotes, "_id");
     }
 
 
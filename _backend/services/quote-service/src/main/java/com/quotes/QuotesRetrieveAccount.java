@@ -2,8 +2,6 @@ package com.quotes;
 
 import com.ibm.websphere.security.jwt.InvalidConsumerException;
 import com.ibm.websphere.security.jwt.InvalidTokenException;
-import com.ibm.websphere.security.jwt.JwtConsumer;
-import com.ibm.websphere.security.jwt.JwtToken;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.model.Projections;
 import jakarta.servlet.http.Cookie;
@@ -26,15 +24,18 @@ public class QuotesRetrieveAccount {
 
     public static Map<String, String> retrieveJWTData(String jwtString) {
         try {
-            JwtConsumer consumer = JwtConsumer.create("defaultJwtConsumer");
-            JwtToken jwt = consumer.createJwt(jwtString);
-
-            ArrayList<String> groups = (ArrayList<String>) jwt.getClaims().get("groups");
-
-            return Map.of("subject", jwt.getClaims().getSubject(),"group", groups.get(0));
+            return jwtData(JwtCache.verify(jwtString));
         } catch (InvalidConsumerException | InvalidTokenException e) {
             System.out.println(e);
             return null;
         }
     }
+
+    static Map<String, String> jwtData(JwtCache.Claims claims) {
+        //a token without a group can't be authorized for anything
+        if (claims.subject() == null || claims.groups().isEmpty() || claims.groups().get(0) == null) {
+            return null;
+        }
+        return Map.of("subject", claims.subject(),"group", claims.groups().get(0));
+    }
 }
\ No newline at end of file
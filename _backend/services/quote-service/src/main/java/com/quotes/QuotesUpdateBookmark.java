@@ -55,22 +55,15 @@ public class QuotesUpdateBookmark {
             ObjectMapper objectMapper = new ObjectMapper();
             QuoteObject quote = objectMapper.readValue(rawJson, QuoteObject.class);
 
-            ObjectId objectId = new ObjectId(quote.getId().toString());
-            String jsonQuote = quoteService.getQuote(objectId);
-            QuoteObject oldQuote = objectMapper.readValue(jsonQuote, QuoteObject.class);
-
             quote = SanitizerClass.sanitizeQuote(quote);
             if(quote == null) {
                 return Response.status(Response.Status.CONFLICT).entity("Error when sanitizing quote, returned null").build();
             }
 
-            boolean updated = quoteService.updateQuote(quote);
+            Document updated = quoteService.patchQuote(quote, null, false);
 
-            if(updated) {
-                JsonObject jsonResponse = Json.createObjectBuilder()
-                        .add("Response", "200")
-                        .build();
-                return Response.ok(jsonResponse).build();
+            if(updated != null) {
+                return Response.ok(new Document("Response", "200").append("quote", updated).toJson()).build();
             } else {
                 return Response.status(Response.Status.CONFLICT).entity("Error updating quote, Json could be wrong or is missing quote ID").build();
             }
@@ -40,6 +40,8 @@ public class QuotesUpdateResource {
             @APIResponse(responseCode = "200", description = "The quote was successfully updated. Returns json {\"success\": \"true\""),
             @APIResponse(responseCode = "409", description = "Error when sanitizing quote texts, or updating into the database"),
             @APIResponse(responseCode = "400", description = "IOException Occurred"),
+            @APIResponse(responseCode = "401", description = "User is not the owner, or is an admin and the quote has not been flagged"),
+            @APIResponse(responseCode = "404", description = "Quote not found"),
     })
     @Operation(summary = "Update fields of a quote in the database", description = "Update quote within database. \"_id\" field IS REQUIRED." +
             " All other fields are optional. Currently the integer fields \"bookmarks\", \"shares\", and \"flags\" can only change by 1 at a time, " +
@@ -59,9 +61,9 @@ public class QuotesUpdateResource {
             ObjectMapper objectMapper = new ObjectMapper();
             QuoteObject quote = objectMapper.readValue(rawJson, QuoteObject.class);
 
-            ObjectId objectId = new ObjectId(quote.getId().toString());
-            String jsonQuote = quoteService.getQuote(objectId);
-            QuoteObject oldQuote = objectMapper.readValue(jsonQuote, QuoteObject.class);
+            if(quote.getId() == null) {
+                return Response.status(Response.Status.CONFLICT).entity("Error updating quote, Json could be wrong or is missing quote ID").build();
+            }
 
             String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
 
@@ -94,16 +96,6 @@ public class QuotesUpdateResource {
             // string to ObjectId
             ObjectId accountObjectID = new ObjectId(accountID);
 
-            // user is not owner of quote
-            if (!accountObjectID.equals(oldQuote.getCreator()) && !group.equals("admin")) {
-                return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to update quotes").toJson()).build();
-            }
-
-            if (!accountObjectID.equals(oldQuote.getCreator()) && group.equals("admin") && oldQuote.getFlags() == 0) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(new Document("error", "Admins are not authorized to update quotes that have not been flagged").toJson()).build();
-            }
-
             quote = SanitizerClass.sanitizeQuote(quote);
             if(quote == null) {
                 return Response.status(Response.Status.CONFLICT).entity("Error when sanitizing quote, returned null").build();
@@ -116,16 +108,14 @@ public class QuotesUpdateResource {
                 return Response.status(Response.Status.BAD_REQUEST).entity("Author content is inappropiate").build();
             }
 
-            boolean updated = quoteService.updateQuote(quote);
+            //ownership and the counter rules are checked by the update itself
+            boolean isAdmin = group.equals("admin");
+            Document updated = quoteService.patchQuote(quote, accountObjectID, isAdmin);
 
-            if(updated) {
-                JsonObject jsonResponse = Json.createObjectBuilder()
-                        .add("Response", "200")
-                        .build();
-                return Response.ok(jsonResponse).build();
-            } else {
-                return Response.status(Response.Status.CONFLICT).entity("Error updating quote, Json could be wrong or is missing quote ID").build();
+            if(updated != null) {
+                return Response.ok(new Document("Response", "200").append("quote", updated).toJson()).build();
             }
+            return patchRejected(quote.getId(), accountObjectID, isAdmin, "User not authorized to update quotes");
         } catch (IOException e) {
             return Response.status(Response.Status.BAD_REQUEST).entity("IOException: "+e).build();
         }
@@ -134,61 +124,70 @@ public class QuotesUpdateResource {
     @PUT
     @Path("/visibility/{quoteId}")
     public Response updateVisibility(@PathParam("quoteId") String quoteId, @Context HttpHeaders headers) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            ObjectId objectId = new ObjectId(quoteId);
-            String jsonQuote = quoteService.getQuote(objectId);
-            QuoteObject quote = objectMapper.readValue(jsonQuote, QuoteObject.class);
-
-            String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if(!SanitizerClass.validObjectId(quoteId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new Document("error", "Given ID is not valid ObjectId").toJson())
+                    .build();
+        }
+        ObjectId objectId = new ObjectId(quoteId);
 
-            if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
-                return Response.status(Response.Status.UNAUTHORIZED)
-                        .entity(new Document("error", "Missing or invalid Authorization header").toJson())
-                        .build();
-            }
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
 
-            String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
+        if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Missing or invalid Authorization header").toJson())
+                    .build();
+        }
 
-            Map<String, String> jwtMap= QuotesRetrieveAccount.retrieveJWTData(jwtString);
+        String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
 
+        Map<String, String> jwtMap= QuotesRetrieveAccount.retrieveJWTData(jwtString);
 
-            if (jwtMap == null) {
-                return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to update this quote").toJson()).build();
-            }
 
-            // get account ID from JWT
-            String accountID = jwtMap.get("subject");
+        if (jwtMap == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to update this quote").toJson()).build();
+        }
 
-            // get group from JWT
-            String group = jwtMap.get("group");
+        // get account ID from JWT
+        String accountID = jwtMap.get("subject");
 
-            // check if account has not been logged in
-            if (accountID == null || group == null) {
-                return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to update this quote").toJson()).build();
-            }
+        // get group from JWT
+        String group = jwtMap.get("group");
 
-            // string to ObjectId
-            ObjectId accountObjectID = new ObjectId(accountID);
+        // check if account has not been logged in
+        if (accountID == null || group == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to update this quote").toJson()).build();
+        }
 
-            // user is not owner of quote
-            if (!accountObjectID.equals(quote.getCreator())) {
-                return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to update this quote").toJson()).build();
-            }
+        // string to ObjectId
+        ObjectId accountObjectID = new ObjectId(accountID);
 
-            quote.setPrivate(!quote.getisPrivate());
+        //only the owner can change visibility, checked by the update itself
+        Document updated = quoteService.toggleVisibility(objectId, accountObjectID);
 
-            boolean updated = quoteService.updateQuote(quote);
+        if(updated != null) {
+            return Response.ok(updated.getBoolean("private")).build();
+        }
+        return patchRejected(objectId, accountObjectID, false, "User not authorized to update this quote");
+    }
 
-            if(updated) {
-                return Response.ok(quote.getisPrivate()).build();
-            } else {
-                return Response.status(Response.Status.CONFLICT).entity("Error updating quote, Json could be wrong or is missing quote ID").build();
+    //the update matched nothing, one small read to tell the caller why
+    private Response patchRejected(ObjectId quoteId, ObjectId accountId, boolean isAdmin, String notAuthorized) {
+        Document access = quoteService.getQuoteAccess(quoteId);
+        if(access == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity(new Document("error", "Quote not found").toJson()).build();
+        }
+        if(!accountId.equals(access.getObjectId("creator"))) {
+            if(!isAdmin) {
+                return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", notAuthorized).toJson()).build();
+            }
+            Integer flags = access.getInteger("flags");
+            if(flags == null || flags <= 0) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(new Document("error", "Admins are not authorized to update quotes that have not been flagged").toJson()).build();
             }
-
-        } catch (IOException e) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("IOException: "+e).build();
         }
-
+        return Response.status(Response.Status.CONFLICT)
+                .entity("Error updating quote, bookmarks, shares and flags can only change by 1 at a time").build();
     }
 }
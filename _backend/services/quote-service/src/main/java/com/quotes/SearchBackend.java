@@ -0,0 +1,57 @@
+package com.quotes;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the fuzzy quote search behind /search/query.
+ *
+ * "atlas" is the $search stage on the QuotesAtlasSearch index and the default. "local" is an index kept in
+ * memory by this service, for environments without Atlas Search such as the integration tests. Which one is used
+ * comes from the SEARCH_BACKEND environment variable.
+ */
+public interface SearchBackend {
+
+    /**
+     * @param query text the user searched for, already sanitized
+     * @param include terms of which the quote text must contain at least one, empty for no restriction
+     * @param exclude terms the quote text must not contain
+     * @param viewer account searching, null for a guest. Private quotes are only found by their creator
+     * @param excludedIds quotes to leave out of the results
+     * @param limit most results to return, the page size
+     * @param after paginationToken of the last quote of the previous page, null for the first page
+     * @param before paginationToken of the first quote of the next page, to page backwards
+     */
+    record Request(String query, List<String> include, List<String> exclude, ObjectId viewer,
+                   Set<ObjectId> excludedIds, int limit, String after, String before) {
+
+        Request(String query, List<String> include, List<String> exclude, ObjectId viewer, Set<ObjectId> excludedIds, int limit) {
+            this(query, include, exclude, viewer, excludedIds, limit, null, null);
+        }
+    }
+
+    /**
+     * One page of the best matching quotes, best first. Each quote has its relevance as "score" and a
+     * "paginationToken" to pass as after or before for the page following or preceding it. A token that
+     * isn't one of this backend's throws IllegalArgumentException.
+     */
+    List<Document> search(Request request);
+
+    /**
+     * Called after a quote was created, changed or deleted.
+     */
+    default void quoteChanged(ObjectId quoteId) {}
+
+    static SearchBackend create(String name, MongoCollection<Document> quotes) {
+        if ("local".equalsIgnoreCase(name)) {
+            LocalSearchBackend local = new LocalSearchBackend(quotes);
+            local.start();
+            return local;
+        }
+        return new AtlasSearchBackend(quotes);
+    }
+}
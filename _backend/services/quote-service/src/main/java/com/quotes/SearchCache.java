@@ -0,0 +1,298 @@
+package com.quotes;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Guest search results, already encoded as json, so a popular query doesn't run the fuzzy $search every time.
+ *
+ * Guests have no per-user filters, so a result only depends on the query and the include and exclude terms. Keys
+ * are normalized so the same search written differently shares an entry. The cache is bounded by both the number
+ * of entries and their total size in bytes, and decides what to keep with W-TinyLFU: new entries go into a small
+ * LRU window, and an entry leaving the window only gets into the main space if a FrequencySketch says it is asked
+ * for more often than the entry it would push out. The main space is a segmented LRU, entries hit a second time
+ * are protected from eviction ahead of those seen once.
+ *
+ * Every quote write bumps the generation. An entry stores the generation from before its search ran and is treated
+ * as missing once the generation moved on, so a write never has to flush the cache. Bookmark and share counts in
+ * a result can still lag by up to MAX_AGE_MS, counters don't bump the generation.
+ */
+@ApplicationScoped
+public class SearchCache {
+
+    static final long MAX_WEIGHT = 32 * 1024 * 1024;
+    static final int MAX_ENTRIES = 10_000;
+    static final long MAX_AGE_MS = 60_000;
+    static final int WINDOW_PERCENT = 1;
+    static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * A guest search with the query lowercased and its whitespace collapsed, and include and exclude terms
+     * normalized the same way, without blanks and duplicates, sorted. Their order never mattered to the search.
+     * Every page of a search is its own entry.
+     */
+    public record Key(String query, List<String> include, List<String> exclude, int pageSize, String after, String before) {
+
+        // first page of the default size
+        public static Key of(String query, String include, String exclude) {
+            return of(query, include, exclude, QuoteService.DEFAULT_SEARCH_PAGE_SIZE, null, null);
+        }
+
+        public static Key of(String query, String include, String exclude, int pageSize, String after, String before) {
+            return new Key(normalize(query), terms(include), terms(exclude), pageSize, after, before);
+        }
+
+        static String normalize(String text) {
+            return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        }
+
+        // comma separated terms as given to /search/query
+        static List<String> terms(String csv) {
+            if (csv == null) {
+                return List.of();
+            }
+            TreeSet<String> terms = new TreeSet<>();
+            for (String term : csv.split(",")) {
+                String normalized = normalize(term);
+                if (!normalized.isEmpty()) {
+                    terms.add(normalized);
+                }
+            }
+            return List.copyOf(terms);
+        }
+    }
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node {
+        final Key key;
+        final int hash;
+        byte[] value;
+        long generation;
+        long created;
+        Region region;
+        Node prev;
+        Node next;
+
+        Node(Key key, int hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    // doubly linked LRU list, head is the least recently used
+    private static final class Queue {
+        Node head;
+        Node tail;
+        long weight;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.value.length;
+        }
+
+        void unlink(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.value.length;
+        }
+    }
+
+    private final long maxWeight;
+    private final int maxEntries;
+    private final long maxAgeMs;
+    private final long windowMax;
+    private final long protectedMax;
+
+    private final Map<Key, Node> entries = new HashMap<>();
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protectedQueue = new Queue();
+    private final FrequencySketch sketch;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SearchCache() {
+        this(MAX_WEIGHT, MAX_ENTRIES, MAX_AGE_MS);
+    }
+
+    SearchCache(long maxWeight, int maxEntries, long maxAgeMs) {
+        this.maxWeight = maxWeight;
+        this.maxEntries = maxEntries;
+        this.maxAgeMs = maxAgeMs;
+        windowMax = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+        protectedMax = (maxWeight - windowMax) * PROTECTED_PERCENT / 100;
+        sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Read before running a search and pass it to put(), so a write made while the search ran isn't missed.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Called after a quote was created, changed or deleted, everything cached so far is out of date.
+     */
+    public void quoteChanged() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * The cached result, or null if there is none or it is out of date.
+     */
+    public synchronized byte[] get(Key key) {
+        int hash = key.hashCode();
+        sketch.increment(hash);
+        Node node = entries.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.generation != generation.get() || System.currentTimeMillis() - node.created > maxAgeMs) {
+            remove(node);
+            stale.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        touch(node);
+        return node.value;
+    }
+
+    public synchronized void put(Key key, long searchGeneration, byte[] value) {
+        if (searchGeneration != generation.get() || value.length > windowMax) {
+            return; // already out of date, or too big to be worth pushing everything else out
+        }
+        Node node = entries.get(key);
+        if (node != null) {
+            remove(node);
+        }
+        node = new Node(key, key.hashCode());
+        node.value = value;
+        node.generation = searchGeneration;
+        node.created = System.currentTimeMillis();
+        node.region = Region.WINDOW;
+        entries.put(key, node);
+        window.addLast(node);
+        evict();
+    }
+
+    // a hit moves the entry to the back of its queue, a second hit in probation protects it
+    private void touch(Node node) {
+        switch (node.region) {
+            case WINDOW -> {
+                window.unlink(node);
+                window.addLast(node);
+            }
+            case PROBATION -> {
+                probation.unlink(node);
+                node.region = Region.PROTECTED;
+                protectedQueue.addLast(node);
+                while (protectedQueue.weight > protectedMax && protectedQueue.head != node) {
+                    Node demoted = protectedQueue.head;
+                    protectedQueue.unlink(demoted);
+                    demoted.region = Region.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> {
+                protectedQueue.unlink(node);
+                protectedQueue.addLast(node);
+            }
+        }
+    }
+
+    private void evict() {
+        while (window.head != null && (window.weight > windowMax || entries.size() > maxEntries)) {
+            Node candidate = window.head;
+            window.unlink(candidate);
+            admit(candidate);
+        }
+    }
+
+    // the candidate leaving the window only gets in if it is used more often than each entry it pushes out
+    private void admit(Node candidate) {
+        long mainMax = maxWeight - windowMax;
+        while (probation.weight + protectedQueue.weight + candidate.value.length > mainMax || entries.size() > maxEntries) {
+            Node victim = probation.head != null ? probation.head : protectedQueue.head;
+            if (victim == null) {
+                break;
+            }
+            if (sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                entries.remove(candidate.key);
+                evictions.increment();
+                return;
+            }
+            remove(victim);
+            evictions.increment();
+        }
+        candidate.region = Region.PROBATION;
+        probation.addLast(candidate);
+    }
+
+    private void remove(Node node) {
+        switch (node.region) {
+            case WINDOW -> window.unlink(node);
+            case PROBATION -> probation.unlink(node);
+            case PROTECTED -> protectedQueue.unlink(node);
+        }
+        entries.remove(node.key);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long staleCount() {
+        return stale.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // bytes of encoded results held
+    public synchronized long weight() {
+        return window.weight + probation.weight + protectedQueue.weight;
+    }
+}
@@ -0,0 +1,30 @@
+package com.quotes;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Publishes the SearchCache counters on /metrics.
+ */
+@ApplicationScoped
+public class SearchCacheMetrics {
+
+    @Inject
+    MetricRegistry registry;
+
+    @Inject
+    SearchCache searchCache;
+
+    void register(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        registry.gauge("searchCache.hits", searchCache::hitCount);
+        registry.gauge("searchCache.misses", searchCache::missCount);
+        registry.gauge("searchCache.hitRatio", searchCache::hitRatio);
+        registry.gauge("searchCache.stale", searchCache::staleCount);
+        registry.gauge("searchCache.evictions", searchCache::evictionCount);
+        registry.gauge("searchCache.size", searchCache::size);
+        registry.gauge("searchCache.weightBytes", searchCache::weight);
+    }
+}
@@ -0,0 +1,24 @@
+package com.quotes;
+
+import com.ibm.websphere.security.jwt.Claims;
+import com.ibm.websphere.security.jwt.InvalidBuilderException;
+import com.ibm.websphere.security.jwt.InvalidClaimException;
+import com.ibm.websphere.security.jwt.JwtBuilder;
+import com.ibm.websphere.security.jwt.JwtException;
+
+/**
+ * Authorization header for the user-service endpoints that only accept the service group.
+ * quote-service signs its own short lived token for each call.
+ */
+public final class ServiceToken {
+
+    private ServiceToken() {}
+
+    public static String bearer() throws JwtException, InvalidBuilderException, InvalidClaimException {
+        return "Bearer " + JwtBuilder.create("defaultJwtBuilder")
+                .claim(Claims.SUBJECT, "quote-service")
+                .claim("groups", new String[] { "service" })
+                .buildJwt()
+                .compact();
+    }
+}
@@ -12,18 +12,19 @@ import jakarta.ws.rs.core.Response;
 public interface UserClient{
    
     @PUT
-    @Path("/users/accounts/update/MyQuotes/{id}")
-    @Consumes(MediaType.APPLICATION_JSON)
-    Response updateMyQuotes(@PathParam("id") String id, String accountJson);
+    @Path("/users/accounts/MyQuotes/{id}/{quoteId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response addMyQuote(@HeaderParam("Authorization") String authHeader, @PathParam("id") String id, @PathParam("quoteId") String quoteId);
 
-    @GET
-    @Path("/users/accounts/search/{id}")
+    @DELETE
+    @Path("/users/accounts/MyQuotes/{id}/{quoteId}")
     @Produces(MediaType.APPLICATION_JSON)
-    Response search(@PathParam("id") String id);
+    Response removeMyQuote(@HeaderParam("Authorization") String authHeader, @PathParam("id") String id, @PathParam("quoteId") String quoteId);
 
-    @GET
-    @Path("/bookmarks/UsedQuotesIds")
+    @POST
+    @Path("/users/notifications/bulk")
+    @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    Response getUsedQuotes();
+    Response createNotifications(@HeaderParam("Authorization") String authHeader, String notificationsJson);
     
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.moderation;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class NotificationOutboxTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoCollection<Document> deleted;
+    private static MongoCollection<Document> outboxCollection;
+    private static NotificationOutbox outbox;
+
+    private static final List<Document> delivered = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        deleted = client.getDatabase("outbox").getCollection("Deleted");
+        outboxCollection = client.getDatabase("outbox").getCollection("NotificationOutbox");
+        outbox = new NotificationOutbox(client, "outbox", notifications -> {
+            delivered.addAll(notifications);
+            return notifications;
+        }, 60_000);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        outbox.shutdown();
+    }
+
+    @BeforeEach
+    void reset() {
+        outboxCollection.deleteMany(new Document());
+        delivered.clear();
+    }
+
+    private Document notification() {
+        return NotificationOutbox.notification(new ObjectId(), new ObjectId(), "Delete", new ObjectId());
+    }
+
+    // notification is saved with the write and sent later
+    @Test
+    void testSavedWithWriteThenSent() {
+        ObjectId deletedId = new ObjectId();
+        Document notification = notification();
+        outbox.writeWith(session -> deleted.insertOne(session, new Document("_id", deletedId)), notification);
+
+        assertNotNull(deleted.find(new Document("_id", deletedId)).first());
+        assertEquals(1, outbox.pending());
+
+        assertEquals(1, outbox.dispatch());
+        assertEquals(0, outbox.pending());
+        assertTrue(delivered.stream().anyMatch(sent -> sent.getString("_id").equals(notification.getString("_id"))));
+    }
+
+    // failed write leaves no notification behind
+    @Test
+    void testRolledBackWithWrite() {
+        ObjectId deletedId = new ObjectId();
+        assertThrows(IllegalStateException.class, () -> outbox.writeWith(session -> {
+            deleted.insertOne(session, new Document("_id", deletedId));
+            throw new IllegalStateException("write failed");
+        }, notification()));
+
+        assertNull(deleted.find(new Document("_id", deletedId)).first());
+        assertEquals(0, outbox.pending());
+    }
+}
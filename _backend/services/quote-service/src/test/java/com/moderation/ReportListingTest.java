@@ -0,0 +1,136 @@
+package com.moderation;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class ReportListingTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoCollection<Document> reports;
+    private static MongoCollection<Document> quotes;
+    private static ReportListing listing;
+
+    @BeforeAll
+    static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        reports = client.getDatabase("Moderation").getCollection("Reports");
+        quotes = client.getDatabase("Data").getCollection("Quotes");
+        listing = new ReportListing(reports, quotes);
+    }
+
+    @BeforeEach
+    void clear() {
+        reports.deleteMany(new Document());
+        quotes.deleteMany(new Document());
+    }
+
+    private ObjectId report(int date, int flags, String type) {
+        ObjectId quoteId = new ObjectId();
+        quotes.insertOne(new Document("_id", quoteId).append("quote", "text").append("flags", flags));
+        reports.insertOne(new Document("quote_id", quoteId.toHexString())
+                .append("reporter_ids", List.of("someone"))
+                .append("context_types", List.of(type))
+                .append("report_date", date));
+        return quoteId;
+    }
+
+    private static Document page(StreamingOutput output) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.write(bytes);
+        return Document.parse(bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> quoteIds(Document page) {
+        List<String> ids = new ArrayList<>();
+        for (Document report : page.getList("reports", Document.class)) {
+            ids.add(report.getString("quote_id"));
+        }
+        return ids;
+    }
+
+    // pages follow each other through the next token and every report has its quote
+    @Test
+    void testByDatePages() throws Exception {
+        ObjectId oldest = report(100, 1, "spam");
+        ObjectId middle = report(200, 0, "spam");
+        ObjectId newest = report(300, 2, "offensive");
+
+        Document first = page(listing.byDate(new Document(), false, null, 2));
+        assertEquals(List.of(newest.toHexString(), middle.toHexString()), quoteIds(first));
+        assertEquals("text", first.getList("reports", Document.class).get(0).get("quote", Document.class).getString("quote"));
+        assertEquals(newest.toHexString(), first.getList("reports", Document.class).get(0).get("quote", Document.class).getString("_id"));
+
+        ReportListing.Position after = ReportListing.position(first.getString("next"), ReportListing.BY_DATE);
+        Document second = page(listing.byDate(new Document(), false, after, 2));
+        assertEquals(List.of(oldest.toHexString()), quoteIds(second));
+        assertNull(second.get("next"));
+    }
+
+    // only flagged quotes, in flag order, filtered by type
+    @Test
+    void testByFlags() throws Exception {
+        ObjectId one = report(100, 1, "spam");
+        report(200, 0, "spam");
+        ObjectId three = report(300, 3, "spam");
+        report(400, 5, "offensive");
+
+        Document page = page(listing.byFlags(ReportListing.typeFilter(List.of("SPAM")), false, null, 10));
+        assertEquals(List.of(three.toHexString(), one.toHexString()), quoteIds(page));
+        assertNull(page.get("next"));
+    }
+
+    // equal flags are ordered by _id and walking the pages gives every flagged report once
+    @Test
+    void testByFlagsPages() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add(report(i, 1 + i % 3, i % 2 == 0 ? "spam" : "offensive").toHexString());
+        }
+        report(100, 0, "spam");
+
+        List<String> seen = new ArrayList<>();
+        ReportListing.Position after = null;
+        do {
+            Document page = page(listing.byFlags(new Document(), true, after, 2));
+            seen.addAll(quoteIds(page));
+            after = ReportListing.position(page.getString("next"), ReportListing.BY_FLAGS);
+        } while (after != null);
+        assertEquals(7, seen.size());
+        assertTrue(seen.containsAll(expected));
+
+        // quotes whose report doesn't match the filter are skipped without leaving the page short
+        Document spam = page(listing.byFlags(ReportListing.typeFilter(List.of("spam")), false, null, 4));
+        assertEquals(4, quoteIds(spam).size());
+    }
+
+    @Test
+    void testTokens() {
+        ObjectId id = new ObjectId();
+        assertNull(ReportListing.position(null, ReportListing.BY_DATE));
+        ReportListing.Position position = new ReportListing.Position(ReportListing.BY_FLAGS, 12, id);
+        assertEquals(position, ReportListing.position(ReportListing.token(position), ReportListing.BY_FLAGS));
+        // a token only works with the sort it came from
+        assertThrows(IllegalArgumentException.class, () -> ReportListing.position(ReportListing.token(position), ReportListing.BY_DATE));
+        assertThrows(IllegalArgumentException.class, () -> ReportListing.position("not a token!", ReportListing.BY_DATE));
+        assertThrows(IllegalArgumentException.class, () -> ReportListing.position("bm9wZQ", ReportListing.BY_DATE));
+    }
+}
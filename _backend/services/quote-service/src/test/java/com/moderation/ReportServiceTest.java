@@ -0,0 +1,141 @@
+package com.moderation;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class ReportServiceTest {
+
+    private static final int PARALLEL_REPORTS = 1000;
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoClient mongoClient;
+    private static MongoCollection<Document> reports;
+    private static MongoCollection<Document> quotes;
+    private static ReportService reportService;
+
+    @BeforeAll
+    static void setUp() {
+        mongoClient = MongoClients.create(mongoDBContainer.getConnectionString());
+        reports = mongoClient.getDatabase("Moderation").getCollection("Reports");
+        quotes = mongoClient.getDatabase("Data").getCollection("Quotes");
+        reportService = new ReportService(reports, quotes);
+    }
+
+    private String insertQuote() {
+        ObjectId quoteId = new ObjectId();
+        quotes.insertOne(new Document("_id", quoteId).append("quote", "text").append("flags", 0));
+        return quoteId.toHexString();
+    }
+
+    private int flags(String quoteId) {
+        return quotes.find(new Document("_id", new ObjectId(quoteId))).first().getInteger("flags");
+    }
+
+    // fires every call at once and returns the outcomes
+    private List<ReportService.Outcome> inParallel(List<Callable<ReportService.Outcome>> calls) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ReportService.Outcome>> futures = new ArrayList<>();
+        for (Callable<ReportService.Outcome> call : calls) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+        List<ReportService.Outcome> outcomes = new ArrayList<>();
+        for (Future<ReportService.Outcome> future : futures) {
+            outcomes.add(future.get(60, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        return outcomes;
+    }
+
+    @Test
+    void testCreateThenUpdate() {
+        String quoteId = insertQuote();
+
+        assertEquals(ReportService.Outcome.CREATED, reportService.report(quoteId, "a", List.of("spam"), "first"));
+        assertEquals(ReportService.Outcome.UPDATED, reportService.report(quoteId, "b", List.of("spam", "offensive"), ""));
+        assertEquals(ReportService.Outcome.ALREADY_REPORTED, reportService.report(quoteId, "a", List.of("hateful"), "again"));
+
+        Document report = reports.find(new Document("quote_id", quoteId)).first();
+        assertEquals(List.of("a", "b"), report.getList("reporter_ids", String.class));
+        assertEquals(List.of("spam", "offensive"), report.getList("context_types", String.class));
+        assertEquals(List.of("first"), report.getList("message", String.class));
+        assertEquals(ReportObject.STATUS_OPEN, report.getString("status"));
+        assertEquals(2, flags(quoteId));
+    }
+
+    // 1000 different users at once: one report, every reporter and flag counted
+    @Test
+    void testParallelReportsFromDifferentUsers() throws Exception {
+        String quoteId = insertQuote();
+        List<Callable<ReportService.Outcome>> calls = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_REPORTS; i++) {
+            String user = "user" + i;
+            calls.add(() -> reportService.report(quoteId, user, List.of("spam"), "message from " + user));
+        }
+
+        List<ReportService.Outcome> outcomes = inParallel(calls);
+
+        assertFalse(outcomes.contains(ReportService.Outcome.ALREADY_REPORTED));
+        assertEquals(1, outcomes.stream().filter(outcome -> outcome == ReportService.Outcome.CREATED).count());
+        assertEquals(1, reports.countDocuments(new Document("quote_id", quoteId)));
+        Document report = reports.find(new Document("quote_id", quoteId)).first();
+        assertEquals(PARALLEL_REPORTS, report.getList("reporter_ids", String.class).size());
+        assertEquals(PARALLEL_REPORTS, report.getList("message", String.class).size());
+        assertEquals(PARALLEL_REPORTS, flags(quoteId));
+    }
+
+    // the same user 1000 times at once only counts once
+    @Test
+    void testParallelReportsFromSameUser() throws Exception {
+        String quoteId = insertQuote();
+        List<Callable<ReportService.Outcome>> calls = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_REPORTS; i++) {
+            calls.add(() -> reportService.report(quoteId, "same", List.of("spam"), "hi"));
+        }
+
+        List<ReportService.Outcome> outcomes = inParallel(calls);
+
+        assertEquals(PARALLEL_REPORTS - 1, outcomes.stream().filter(outcome -> outcome == ReportService.Outcome.ALREADY_REPORTED).count());
+        assertEquals(1, reports.countDocuments(new Document("quote_id", quoteId)));
+        assertEquals(List.of("same"), reports.find(new Document("quote_id", quoteId)).first().getList("reporter_ids", String.class));
+        assertEquals(1, flags(quoteId));
+    }
+
+    // without the unique index reports are refused, once it can be created they are taken again
+    @Test
+    void testRefusedWithoutUniqueIndex() {
+        MongoCollection<Document> legacy = mongoClient.getDatabase("Moderation").getCollection("LegacyReports");
+        String quoteId = insertQuote();
+        legacy.insertOne(new Document("quote_id", quoteId).append("reporter_ids", List.of("a")));
+        legacy.insertOne(new Document("quote_id", quoteId).append("reporter_ids", List.of("b")));
+
+        ReportService legacyService = new ReportService(legacy, quotes);
+        assertThrows(IllegalStateException.class, () -> legacyService.report(quoteId, "c", List.of("spam"), ""));
+        assertEquals(0, flags(quoteId));
+
+        legacy.deleteOne(new Document("reporter_ids", "b"));
+        assertEquals(ReportService.Outcome.UPDATED, legacyService.report(quoteId, "c", List.of("spam"), ""));
+        assertEquals(1, flags(quoteId));
+    }
+}
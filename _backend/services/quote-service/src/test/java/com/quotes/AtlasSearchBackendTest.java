@@ -0,0 +1,140 @@
+package com.quotes;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the compound query and the paging around fetch, running the search itself needs Atlas Search
+class AtlasSearchBackendTest {
+
+    private final AtlasSearchBackend backend = new AtlasSearchBackend(null);
+
+    private static Document clause(List<Document> clauses, String operator) {
+        return clauses.stream().filter(clause -> clause.containsKey(operator)).findFirst().orElse(null);
+    }
+
+    @Test
+    void testGuestExcludesPrivate() {
+        Document compound = backend.compound(new SearchBackend.Request("hope", List.of(), List.of(), null, Set.of(), 50));
+
+        Document equals = clause(compound.getList("mustNot", Document.class), "equals");
+        assertEquals("private", equals.get("equals", Document.class).getString("path"));
+        assertFalse(compound.containsKey("filter"));
+        assertEquals(1, compound.getInteger("minimumShouldMatch"));
+    }
+
+    // a user sees public quotes and their own private ones, the excluded ids are left out by the search
+    @Test
+    void testUserFilterAndExclusions() {
+        ObjectId viewer = new ObjectId();
+        ObjectId used = new ObjectId();
+        Document compound = backend.compound(new SearchBackend.Request("hope", List.of(), List.of(), viewer, Set.of(used), 50));
+
+        Document visibility = compound.getList("filter", Document.class).get(0).get("compound", Document.class);
+        Document creator = clause(visibility.getList("should", Document.class), "equals").get("equals", Document.class);
+        assertEquals(viewer, creator.get("value"));
+        Document notPrivate = clause(visibility.getList("should", Document.class), "compound").get("compound", Document.class);
+        assertEquals("_id", notPrivate.getList("must", Document.class).get(0).get("exists", Document.class).getString("path"));
+        assertEquals("private", notPrivate.getList("mustNot", Document.class).get(0).get("equals", Document.class).getString("path"));
+
+        Document in = clause(compound.getList("mustNot", Document.class), "in").get("in", Document.class);
+        assertEquals(List.of(used), in.getList("value", ObjectId.class));
+    }
+
+    // too many ids aren't sent with the search, they are filtered out after it
+    @Test
+    void testLargeExclusionsNotPushed() {
+        Set<ObjectId> excluded = new HashSet<>();
+        for (int i = 0; i <= AtlasSearchBackend.MAX_PUSHED_EXCLUSIONS; i++) {
+            excluded.add(new ObjectId());
+        }
+        Document compound = backend.compound(new SearchBackend.Request("hope", List.of(), List.of(), new ObjectId(), excluded, 50));
+
+        assertFalse(compound.containsKey("mustNot"));
+    }
+
+    // quotes q0..q<count-1> in the order $search ranks them, each quote's token is t<its number>
+    private static class StubbedSearch extends AtlasSearchBackend {
+        final List<Document> quotes = new ArrayList<>();
+        final List<String> calls = new ArrayList<>();
+
+        StubbedSearch(int count) {
+            super(null);
+            for (int i = 0; i < count; i++) {
+                quotes.add(new Document("_id", new ObjectId()).append("paginationToken", "t" + i));
+            }
+        }
+
+        @Override
+        List<Document> fetch(Document compound, String after, String before, int limit) {
+            calls.add((after != null ? "after " + after : before != null ? "before " + before : "first") + " " + limit);
+            List<Document> results = new ArrayList<>();
+            if (before != null) {
+                for (int i = Integer.parseInt(before.substring(1)) - 1; i >= 0 && results.size() < limit; i--) {
+                    results.add(quotes.get(i));
+                }
+                return results;
+            }
+            for (int i = after == null ? 0 : Integer.parseInt(after.substring(1)) + 1; i < quotes.size() && results.size() < limit; i++) {
+                results.add(quotes.get(i));
+            }
+            return results;
+        }
+
+        // the given quotes plus enough other ids that they aren't pushed into the search
+        Set<ObjectId> excluding(int from, int to) {
+            Set<ObjectId> excluded = new HashSet<>();
+            for (int i = from; i < to; i++) {
+                excluded.add(quotes.get(i).getObjectId("_id"));
+            }
+            while (excluded.size() <= MAX_PUSHED_EXCLUSIONS) {
+                excluded.add(new ObjectId());
+            }
+            return excluded;
+        }
+
+        List<String> tokens(List<Document> page) {
+            return page.stream().map(quote -> quote.getString("paginationToken")).toList();
+        }
+    }
+
+    // the first batch is all excluded, the next one continues after it and fills the page
+    @Test
+    void testOverFetchFillsPage() {
+        StubbedSearch search = new StubbedSearch(40);
+        List<Document> page = search.search(new SearchBackend.Request("hope", List.of(), List.of(), new ObjectId(),
+                search.excluding(0, 12), 5, "t1", null));
+
+        assertEquals(List.of("t12", "t13", "t14", "t15", "t16"), search.tokens(page));
+        assertEquals(List.of("after t1 10", "after t11 20"), search.calls);
+    }
+
+    // searching before a token goes backwards from it, stops when the search runs out and is returned in order
+    @Test
+    void testOverFetchBefore() {
+        StubbedSearch search = new StubbedSearch(40);
+        List<Document> page = search.search(new SearchBackend.Request("hope", List.of(), List.of(), new ObjectId(),
+                search.excluding(10, 20), 5, null, "t20"));
+
+        assertEquals(List.of("t5", "t6", "t7", "t8", "t9"), search.tokens(page));
+        assertEquals(List.of("before t20 10", "before t10 20"), search.calls);
+    }
+
+    // the page is returned short when everything left is excluded
+    @Test
+    void testOverFetchRunsOut() {
+        StubbedSearch search = new StubbedSearch(25);
+        List<Document> page = search.search(new SearchBackend.Request("hope", List.of(), List.of(), new ObjectId(),
+                search.excluding(3, 25), 5, null, null));
+
+        assertEquals(List.of("t0", "t1", "t2"), search.tokens(page));
+        assertEquals(List.of("first 10", "after t9 20"), search.calls);
+    }
+}
@@ -0,0 +1,158 @@
+package com.quotes;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class CollectionQueryTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoCollection<Document> quotes;
+    private static QuoteService quoteService;
+
+    private static final ObjectId viewer = new ObjectId();
+    private static final ObjectId other = new ObjectId();
+
+    @BeforeAll
+    static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        quotes = client.getDatabase("Test").getCollection("Quotes");
+        quoteService = new QuoteService(client, "Test");
+    }
+
+    @BeforeEach
+    void clear() {
+        quotes.deleteMany(new Document());
+    }
+
+    private String quote(ObjectId creator, boolean isPrivate, int date, String... tags) {
+        ObjectId id = new ObjectId();
+        quotes.insertOne(new Document("_id", id)
+                .append("quote", "text")
+                .append("creator", creator)
+                .append("private", isPrivate)
+                .append("date", date)
+                .append("tags", List.of(tags)));
+        return id.toHexString();
+    }
+
+    private static List<String> ids(Document body) throws Exception {
+        CollectionQuery query = CollectionQuery.parse(body.toJson());
+        assertNotNull(query);
+        StreamingOutput output = quoteService.getCollection(query);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.write(bytes);
+        List<String> ids = new ArrayList<>();
+        for (Document quote : Document.parse("{\"q\":" + bytes.toString(StandardCharsets.UTF_8) + "}").getList("q", Document.class)) {
+            ids.add(quote.getString("_id"));
+        }
+        return ids;
+    }
+
+    @Test
+    void testVisibilityAndTags() throws Exception {
+        String publicLife = quote(other, false, 1, "Life");
+        String publicFunny = quote(other, false, 2, "Funny");
+        String ownPrivate = quote(viewer, true, 3, "Life");
+        List<String> all = List.of(publicLife, publicFunny, ownPrivate);
+
+        assertEquals(List.of(publicLife, publicFunny), ids(new Document("ids", all).append("visibility", List.of("public"))
+                .append("sort", "CREATED_OLDEST")));
+        assertEquals(List.of(ownPrivate), ids(new Document("ids", all).append("visibility", List.of("private"))));
+        assertEquals(List.of(ownPrivate, publicLife), ids(new Document("ids", all).append("tags", List.of("Life", "Wisdom"))
+                .append("sort", "CREATED_NEWEST")));
+        assertTrue(ids(new Document("ids", all).append("visibility", List.of("shared"))).isEmpty());
+    }
+
+    private static Document share(String quoteId, ObjectId from) {
+        return new Document("quoteId", quoteId).append("from", from.toHexString());
+    }
+
+    // someone else's private quote needs to be shared with the viewer by its creator
+    @Test
+    void testPrivateNeedsShare() throws Exception {
+        String shared = quote(other, true, 1);
+        String notShared = quote(other, true, 2);
+        String sharedByOther = quote(other, true, 3);
+
+        assertEquals(List.of(shared), ids(new Document("ids", List.of(shared, notShared, sharedByOther))
+                .append("viewer", viewer.toHexString())
+                .append("shared", List.of(share(shared, other), share(sharedByOther, new ObjectId())))));
+    }
+
+    // a collection bigger than one batch is matched a batch at a time and still pages in one order
+    @Test
+    void testManyIds() throws Exception {
+        List<String> all = new ArrayList<>();
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < CollectionQuery.ID_BATCH * 2; i++) {
+            if (i % 1000 == 0) {
+                String id = quote(other, false, i);
+                all.add(id);
+                found.add(id);
+            } else {
+                all.add(new ObjectId().toHexString()); // no longer exists
+            }
+        }
+        List<String> newest = new ArrayList<>(found);
+        Collections.reverse(newest);
+
+        List<String> seen = new ArrayList<>();
+        for (int offset = 0; offset < found.size(); offset += 7) {
+            seen.addAll(ids(new Document("ids", all).append("sort", "CREATED_NEWEST")
+                    .append("offset", offset).append("pageSize", 7)));
+        }
+        assertEquals(newest, seen);
+        assertEquals(List.of(found.get(15), newest.get(0)), ids(new Document("ids", all)
+                .append("order", List.of(found.get(15))).append("sort", "CREATED_NEWEST").append("pageSize", 2)));
+    }
+
+    @Test
+    void testPagesAndOrder() throws Exception {
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            all.add(quote(other, false, i));
+        }
+
+        List<String> seen = new ArrayList<>();
+        for (int offset = 0; offset < 30; offset += 10) {
+            seen.addAll(ids(new Document("ids", all).append("sort", "CREATED_OLDEST")
+                    .append("offset", offset).append("pageSize", 10)));
+        }
+        assertEquals(all, seen);
+
+        // explicit order first, everything else after it by date
+        List<String> ordered = ids(new Document("ids", all)
+                .append("order", List.of(all.get(7), all.get(3)))
+                .append("sort", "CREATED_NEWEST")
+                .append("pageSize", 3));
+        assertEquals(List.of(all.get(7), all.get(3), all.get(24)), ordered);
+    }
+
+    @Test
+    void testRejectsBadQueries() {
+        assertNull(CollectionQuery.parse("not json"));
+        assertNull(CollectionQuery.parse("{}"));
+        assertNull(CollectionQuery.parse(new Document("ids", List.of()).append("pageSize", CollectionQuery.MAX_PAGE_SIZE + 1).toJson()));
+        assertNull(CollectionQuery.parse(new Document("ids", List.of()).append("offset", -1).toJson()));
+    }
+}
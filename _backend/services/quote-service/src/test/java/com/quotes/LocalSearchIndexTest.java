@@ -0,0 +1,151 @@
+package com.quotes;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSearchIndexTest {
+
+    private LocalSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LocalSearchIndex();
+    }
+
+    private ObjectId add(String quote, String author, List<String> tags) {
+        ObjectId id = new ObjectId();
+        index.add(id, quote, author, tags, false, null);
+        return id;
+    }
+
+    private List<ObjectId> search(String query) {
+        return search(query, List.of(), List.of(), null, Set.of());
+    }
+
+    private List<ObjectId> search(String query, List<String> include, List<String> exclude, ObjectId viewer, Set<ObjectId> excluded) {
+        return index.search(new SearchBackend.Request(query, include, exclude, viewer, excluded, 50)).stream()
+                .map(LocalSearchIndex.Hit::id)
+                .toList();
+    }
+
+    // a match in the author or tags counts for more than one in the quote
+    @Test
+    void testFieldBoosts() {
+        ObjectId inQuote = add("The river keeps on flowing", "Someone", List.of("Nature"));
+        ObjectId inAuthor = add("Keep on flowing", "Anna River", List.of("Nature"));
+        ObjectId inTags = add("Keep on flowing", "Someone Else", List.of("River"));
+
+        List<ObjectId> results = search("river");
+        assertEquals(3, results.size());
+        assertEquals(inQuote, results.get(2));
+        assertTrue(results.containsAll(List.of(inAuthor, inTags)));
+    }
+
+    // more occurrences in a shorter quote score higher
+    @Test
+    void testBm25Ordering() {
+        ObjectId once = add("Hope is a good thing and maybe the best of things", "A", List.of());
+        ObjectId twice = add("Hope, only hope", "B", List.of());
+        add("Nothing to see here", "C", List.of());
+
+        assertEquals(List.of(twice, once), search("hope"));
+    }
+
+    // up to two edits still match, closer terms score higher
+    @Test
+    void testFuzzy() {
+        ObjectId exact = add("Courage is grace under pressure", "Ernest Hemingway", List.of("Courage"));
+        ObjectId close = add("Courags misspelled", "Nobody", List.of());
+
+        assertEquals(List.of(exact, close), search("courage"));
+        assertEquals(List.of(exact, close), search("curage"));
+        assertTrue(search("cxxxge").isEmpty());
+        assertEquals(2, BkTree.distance("courage", "curag"));
+    }
+
+    @Test
+    void testIncludeExclude() {
+        ObjectId dream = add("Dream big and work hard", "A", List.of());
+        ObjectId sleep = add("Dream while you sleep", "B", List.of());
+        add("Work hard in silence", "C", List.of());
+
+        assertEquals(List.of(dream), search("dream", List.of("work"), List.of(), null, Set.of()));
+        assertEquals(List.of(dream), search("dream", List.of(), List.of("sleep"), null, Set.of()));
+        assertEquals(List.of(sleep), search("dream", List.of(), List.of(), null, Set.of(dream)));
+    }
+
+    // private quotes are only found by their creator
+    @Test
+    void testPrivate() {
+        ObjectId creator = new ObjectId();
+        ObjectId quote = new ObjectId();
+        index.add(quote, "Secret garden", "A", List.of(), true, creator);
+
+        assertTrue(search("garden").isEmpty());
+        assertTrue(search("garden", List.of(), List.of(), new ObjectId(), Set.of()).isEmpty());
+        assertEquals(List.of(quote), search("garden", List.of(), List.of(), creator, Set.of()));
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        ObjectId id = add("Old words", "A", List.of());
+        index.add(id, "New words", "A", List.of(), false, null);
+
+        assertTrue(search("old").isEmpty());
+        assertEquals(List.of(id), search("new"));
+        assertEquals(1, index.size());
+
+        index.remove(id);
+        assertTrue(search("words").isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    // walking the pages forward and back gives every result once, in the same order as one big page
+    @Test
+    void testPaging() {
+        for (int i = 0; i < 120; i++) {
+            add("Light " + "and light ".repeat(i % 7) + "number " + i, "A", List.of());
+        }
+        List<LocalSearchIndex.Hit> all = index.search(new SearchBackend.Request("light", List.of(), List.of(), null, Set.of(), 200));
+        assertEquals(120, all.size());
+
+        List<List<LocalSearchIndex.Hit>> pages = new ArrayList<>();
+        String after = null;
+        do {
+            pages.add(index.search(new SearchBackend.Request("light", List.of(), List.of(), null, Set.of(), 25, after, null)));
+            List<LocalSearchIndex.Hit> page = pages.get(pages.size() - 1);
+            after = page.size() == 25 ? page.get(24).token() : null;
+        } while (after != null);
+        assertEquals(all, pages.stream().flatMap(List::stream).toList());
+        assertEquals(5, pages.size());
+
+        String before = pages.get(2).get(0).token();
+        assertEquals(pages.get(1), index.search(new SearchBackend.Request("light", List.of(), List.of(), null, Set.of(), 25, null, before)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> index.search(new SearchBackend.Request("light", List.of(), List.of(), null, Set.of(), 25, "not a token", null)));
+    }
+
+    // dropping the dead documents keeps every live one findable
+    @Test
+    void testCompaction() {
+        ObjectId kept = add("Steady quote", "A", List.of());
+        for (int i = 0; i < LocalSearchIndex.COMPACT_MIN_DEAD * 2; i++) {
+            index.remove(add("Passing quote " + i, "B", List.of()));
+        }
+        ObjectId updated = add("Changing quote", "C", List.of());
+        index.add(updated, "Changed quote", "C", List.of(), false, null);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(kept), search("steady"));
+        assertEquals(List.of(updated), search("changed"));
+        assertTrue(search("passing").isEmpty());
+    }
+}
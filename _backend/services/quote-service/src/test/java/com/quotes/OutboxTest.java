@@ -0,0 +1,165 @@
+package com.quotes;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class OutboxTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoClient client;
+    private static MongoCollection<Document> outboxCollection;
+    private Outbox outbox;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(mongoDBContainer.getConnectionString());
+        outboxCollection = client.getDatabase("outbox").getCollection("Outbox");
+    }
+
+    @BeforeEach
+    void clear() {
+        outboxCollection.deleteMany(new Document());
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbox.shutdown();
+    }
+
+    // only dispatched by the test, the interval never comes round
+    private Outbox outbox(Outbox.Sender sender) {
+        outbox = new Outbox(outboxCollection, "test-outbox", sender, 60_000);
+        return outbox;
+    }
+
+    private void inTransaction(Consumer<ClientSession> write) {
+        try (ClientSession session = client.startSession()) {
+            session.withTransaction(() -> {
+                write.accept(session);
+                return null;
+            });
+        }
+    }
+
+    private static Document message(String text) {
+        return new Document("text", text);
+    }
+
+    @Test
+    void testSavedThenSent() {
+        List<Document> sent = new ArrayList<>();
+        Outbox outbox = outbox(messages -> {
+            sent.addAll(messages);
+            return messages;
+        });
+        inTransaction(session -> outbox.save(session, "a", message("hello")));
+        assertEquals(1, outbox.pending());
+
+        assertEquals(1, outbox.dispatch());
+        assertEquals(List.of(message("hello")), sent);
+        assertEquals(0, outbox.pending());
+    }
+
+    // a write that fails takes its message with it
+    @Test
+    void testRolledBackWithWrite() {
+        Outbox outbox = outbox(messages -> messages);
+        assertThrows(IllegalStateException.class, () -> inTransaction(session -> {
+            outbox.save(session, "a", message("hello"));
+            throw new IllegalStateException("write failed");
+        }));
+        assertEquals(0, outbox.pending());
+    }
+
+    // a failed send is kept and waits twice as long after every failure
+    @Test
+    void testRetriedWithBackoff() {
+        boolean[] up = { false };
+        Outbox outbox = outbox(messages -> {
+            if (!up[0]) {
+                throw new IllegalStateException("service is down");
+            }
+            return messages;
+        });
+        inTransaction(session -> outbox.save(session, "a", message("hello")));
+
+        assertEquals(0, outbox.dispatch());
+        Document entry = outboxCollection.find().first();
+        assertEquals(1, entry.getInteger("attempts"));
+        assertTrue(entry.getLong("next_attempt") > System.currentTimeMillis());
+
+        // not due yet
+        up[0] = true;
+        assertEquals(0, outbox.dispatch());
+        assertEquals(1, outbox.pending());
+
+        outboxCollection.updateMany(new Document(), new Document("$set", new Document("next_attempt", 0L)));
+        assertEquals(1, outbox.dispatch());
+        assertEquals(0, outbox.pending());
+    }
+
+    // what the sender reports as delivered is removed, the rest of the batch is tried again
+    @Test
+    void testPartlyDelivered() {
+        Outbox outbox = outbox(messages -> messages.stream().filter(message -> message.getString("text").equals("ok")).toList());
+        inTransaction(session -> {
+            outbox.save(session, "a", message("ok"));
+            outbox.save(session, "b", message("fails"));
+        });
+
+        assertEquals(1, outbox.dispatch());
+        Document left = outboxCollection.find().first();
+        assertEquals("b", left.getString("_id"));
+        assertEquals(1, left.getInteger("attempts"));
+    }
+
+    // saving again under a key replaces the message, including while the old one is being sent
+    @Test
+    void testLatestSaveWins() {
+        List<Document> sent = new ArrayList<>();
+        Outbox[] self = new Outbox[1];
+        self[0] = outbox(messages -> {
+            sent.addAll(messages);
+            if (messages.get(0).getString("text").equals("second")) {
+                inTransaction(session -> self[0].save(session, "a", message("third")));
+            }
+            return messages;
+        });
+        inTransaction(session -> self[0].save(session, "a", message("first")));
+        inTransaction(session -> self[0].save(session, "a", message("second")));
+        assertEquals(1, self[0].pending());
+
+        self[0].dispatch();
+        assertEquals(List.of(message("second")), sent);
+        assertEquals(message("third"), outboxCollection.find().first().get("message", Document.class));
+
+        self[0].dispatch();
+        assertEquals(List.of(message("second"), message("third")), sent);
+        assertEquals(0, self[0].pending());
+    }
+
+    @Test
+    void testRetryDelayDoubles() {
+        assertEquals(1000, Outbox.retryDelay(1));
+        assertEquals(2000, Outbox.retryDelay(2));
+        assertEquals(8000, Outbox.retryDelay(4));
+        assertEquals(Outbox.MAX_RETRY_MS, Outbox.retryDelay(50));
+    }
+}
@@ -0,0 +1,216 @@
+package com.quotes;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Rough timing of the local search index against Atlas Search on a generated corpus, 1M quotes by default.
+ * Not a test, run it by hand from the IDE or with
+ *   MAVEN_OPTS=-Xmx2g mvn test-compile exec:java -Dexec.mainClass=com.quotes.SearchBenchmark -Dexec.classpathScope=test -Dexec.args="1000000 mongodb+srv://..."
+ *
+ * Without a connection string only the local index is timed. With one, the corpus is written to
+ * SearchBenchmark.Quotes on that cluster, which needs Atlas Search, a QuotesAtlasSearch index is created on it and
+ * the same queries go through both backends. "overlap" is how many of Atlas's top 10 the local index also has in
+ * its top 10. Quote text is words drawn from a made up vocabulary with a zipf distribution, so common words are
+ * very common like in real text, and a third of the query words have a typo.
+ */
+public class SearchBenchmark {
+
+    private static final int VOCABULARY = 40_000;
+    private static final int AUTHORS = 20_000;
+    private static final int TAGS = 300;
+    private static final int QUERIES = 500;
+    private static final int WARMUP = 200;
+    private static final int ID_TIMESTAMP = 1_700_000_000;
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ren", "tas", "vo", "qui", "bel", "dor", "fen",
+            "gra", "hu", "jin", "ple", "sor", "tri", "um", "wex", "yal", "zo"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Corpus corpus = new Corpus(42);
+        List<SearchBackend.Request> queries = corpus.queries(7);
+
+        LocalSearchIndex index = new LocalSearchIndex();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        corpus.generate(count, index::add);
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("local: indexed %d quotes, %d terms in %dms, ~%dMB heap%n",
+                index.size(), index.vocabularySize(), buildMillis, (usedHeap() - heapBefore) / 1024 / 1024);
+
+        List<List<ObjectId>> localTop = time("local", queries,
+                query -> index.search(query).stream().map(LocalSearchIndex.Hit::id).toList());
+
+        if (args.length < 2) {
+            return;
+        }
+        try (MongoClient client = MongoClients.create(args[1])) {
+            MongoCollection<Document> collection = client.getDatabase("SearchBenchmark").getCollection("Quotes");
+            load(collection, corpus, count);
+            AtlasSearchBackend atlas = new AtlasSearchBackend(collection);
+            List<List<ObjectId>> atlasTop = time("atlas", queries,
+                    query -> atlas.search(query).stream().map(quote -> quote.getObjectId("_id")).toList());
+
+            double overlap = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                Set<ObjectId> atlasTen = new HashSet<>(atlasTop.get(i).subList(0, Math.min(10, atlasTop.get(i).size())));
+                if (atlasTen.isEmpty()) {
+                    overlap += 1;
+                    continue;
+                }
+                long same = localTop.get(i).stream().limit(10).filter(atlasTen::contains).count();
+                overlap += (double) same / atlasTen.size();
+            }
+            System.out.printf("overlap of the top 10: %.1f%%%n", overlap * 100 / queries.size());
+        }
+    }
+
+    // runs every query once after a warm up and returns the ids each one found
+    private static List<List<ObjectId>> time(String name, List<SearchBackend.Request> queries,
+                                             Function<SearchBackend.Request, List<ObjectId>> search) {
+        for (int i = 0; i < WARMUP; i++) {
+            search.apply(queries.get(i % queries.size()));
+        }
+        List<List<ObjectId>> results = new ArrayList<>();
+        long[] nanos = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            results.add(search.apply(queries.get(i)));
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%s: %d queries, mean %.2fms, p50 %.2fms, p95 %.2fms, p99 %.2fms%n", name, nanos.length,
+                Arrays.stream(nanos).average().orElse(0) / 1e6, nanos[nanos.length / 2] / 1e6,
+                nanos[nanos.length * 95 / 100] / 1e6, nanos[nanos.length * 99 / 100] / 1e6);
+        return results;
+    }
+
+    // writes the corpus unless the collection already has it, then waits for the search index
+    private static void load(MongoCollection<Document> collection, Corpus corpus, int count) throws InterruptedException {
+        if (collection.countDocuments() != count) {
+            collection.drop();
+            List<Document> batch = new ArrayList<>(10_000);
+            corpus.generate(count, quote -> {
+                batch.add(quote);
+                if (batch.size() == 10_000) {
+                    collection.insertMany(batch);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                collection.insertMany(batch);
+            }
+            collection.createSearchIndex("QuotesAtlasSearch", new Document("mappings", new Document("dynamic", true)));
+        }
+        System.out.println("atlas: waiting for QuotesAtlasSearch to be queryable");
+        while (true) {
+            Document searchIndex = collection.listSearchIndexes().name("QuotesAtlasSearch").first();
+            if (searchIndex != null && searchIndex.getBoolean("queryable", false)) {
+                return;
+            }
+            Thread.sleep(5_000);
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class Corpus {
+
+        final String[] words = new String[VOCABULARY];
+        final double[] cumulative = new double[VOCABULARY];
+        final String[] authors = new String[AUTHORS];
+        final long seed;
+
+        Corpus(long seed) {
+            this.seed = seed;
+            Random random = new Random(seed);
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < VOCABULARY; i++) {
+                String word;
+                do {
+                    StringBuilder builder = new StringBuilder();
+                    int syllables = 1 + random.nextInt(4);
+                    for (int s = 0; s < syllables; s++) {
+                        builder.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                    }
+                    word = builder.toString();
+                } while (!seen.add(word));
+                words[i] = word;
+                cumulative[i] = (i == 0 ? 0 : cumulative[i - 1]) + 1.0 / (i + 1);
+            }
+            for (int i = 0; i < AUTHORS; i++) {
+                authors[i] = capitalize(words[100 + random.nextInt(5_000)]) + " " + capitalize(words[100 + random.nextInt(20_000)]);
+            }
+        }
+
+        String word(Random random) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[VOCABULARY - 1]);
+            return words[rank >= 0 ? rank : Math.min(-rank - 1, VOCABULARY - 1)];
+        }
+
+        void generate(int count, Consumer<Document> consumer) {
+            Random random = new Random(seed + 1);
+            for (int i = 0; i < count; i++) {
+                StringJoiner quote = new StringJoiner(" ");
+                int length = 6 + random.nextInt(20);
+                for (int w = 0; w < length; w++) {
+                    quote.add(word(random));
+                }
+                List<String> tags = new ArrayList<>();
+                for (int t = random.nextInt(4); t > 0; t--) {
+                    tags.add(capitalize(words[20 + random.nextInt(TAGS)]));
+                }
+                consumer.accept(new Document("_id", new ObjectId(ID_TIMESTAMP, i))
+                        .append("quote", capitalize(quote.toString()) + ".")
+                        .append("author", authors[random.nextInt(AUTHORS)])
+                        .append("tags", tags)
+                        .append("private", random.nextInt(20) == 0)
+                        .append("creator", new ObjectId(ID_TIMESTAMP, random.nextInt(50_000)))
+                        .append("bookmarks", 0)
+                        .append("shares", 0)
+                        .append("flags", 0));
+            }
+        }
+
+        List<SearchBackend.Request> queries(long querySeed) {
+            Random random = new Random(querySeed);
+            List<SearchBackend.Request> queries = new ArrayList<>();
+            for (int i = 0; i < QUERIES; i++) {
+                StringJoiner query = new StringJoiner(" ");
+                if (random.nextInt(10) == 0) {
+                    query.add(authors[random.nextInt(AUTHORS)]);
+                } else {
+                    for (int w = 1 + random.nextInt(3); w > 0; w--) {
+                        String word = words[50 + random.nextInt(5_000)];
+                        query.add(random.nextInt(3) == 0 ? typo(word, random) : word);
+                    }
+                }
+                List<String> include = random.nextInt(10) == 0 ? List.of(words[random.nextInt(200)]) : List.of();
+                List<String> exclude = random.nextInt(10) == 0 ? List.of(words[random.nextInt(200)]) : List.of();
+                queries.add(new SearchBackend.Request(query.toString(), include, exclude, null, Set.of(), QuoteService.DEFAULT_SEARCH_PAGE_SIZE));
+            }
+            return queries;
+        }
+
+        static String typo(String word, Random random) {
+            char[] chars = word.toCharArray();
+            chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+            return new String(chars);
+        }
+
+        static String capitalize(String word) {
+            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        }
+    }
+}
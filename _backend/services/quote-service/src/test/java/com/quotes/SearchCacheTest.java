@@ -0,0 +1,92 @@
+package com.quotes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+
+    private static byte[] result(int size) {
+        return new byte[size];
+    }
+
+    // the same search written differently is one entry
+    @Test
+    void testKeyNormalized() {
+        SearchCache.Key key = SearchCache.Key.of("  Hello   World ", "Love, life,,LIFE", null);
+        assertEquals(SearchCache.Key.of("hello world", "life,love", ""), key);
+        assertEquals(List.of("life", "love"), key.include());
+        assertEquals(List.of(), key.exclude());
+        assertNotEquals(SearchCache.Key.of("hello world", null, "life,love"), key);
+    }
+
+    @Test
+    void testHitAndMiss() {
+        SearchCache cache = new SearchCache(100_000, 100, 60_000);
+        SearchCache.Key key = SearchCache.Key.of("hope", null, null);
+
+        assertNull(cache.get(key));
+        cache.put(key, cache.generation(), result(10));
+        assertNotNull(cache.get(key));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    // a quote write makes every entry out of date, including a search that was running during the write
+    @Test
+    void testGeneration() {
+        SearchCache cache = new SearchCache(100_000, 100, 60_000);
+        SearchCache.Key before = SearchCache.Key.of("before", null, null);
+        cache.put(before, cache.generation(), result(10));
+
+        long generation = cache.generation();
+        cache.quoteChanged();
+        SearchCache.Key during = SearchCache.Key.of("during", null, null);
+        cache.put(during, generation, result(10));
+
+        assertNull(cache.get(before));
+        assertNull(cache.get(during));
+        assertEquals(1, cache.staleCount());
+        assertEquals(0, cache.size());
+    }
+
+    // one-off searches don't push out a popular one
+    @Test
+    void testFrequentKept() {
+        SearchCache cache = new SearchCache(10_000, 1_000, 60_000);
+        SearchCache.Key popular = SearchCache.Key.of("popular", null, null);
+        for (int i = 0; i < 5; i++) {
+            cache.get(popular);
+        }
+        cache.put(popular, cache.generation(), result(100));
+
+        for (int i = 0; i < 1_000; i++) {
+            SearchCache.Key once = SearchCache.Key.of("once " + i, null, null);
+            cache.get(once);
+            cache.put(once, cache.generation(), result(100));
+            assertTrue(cache.weight() <= 10_000);
+        }
+
+        assertNotNull(cache.get(popular));
+        assertTrue(cache.evictionCount() > 0);
+    }
+
+    @Test
+    void testBounds() {
+        SearchCache cache = new SearchCache(1_000_000, 50, 60_000);
+        for (int i = 0; i < 500; i++) {
+            cache.put(SearchCache.Key.of("query " + i, null, null), cache.generation(), result(100));
+        }
+        assertTrue(cache.size() <= 50);
+        assertTrue(cache.weight() <= 1_000_000);
+
+        // too big to cache at all
+        SearchCache.Key big = SearchCache.Key.of("big", null, null);
+        cache.put(big, cache.generation(), result(100_000));
+        assertNull(cache.get(big));
+    }
+}
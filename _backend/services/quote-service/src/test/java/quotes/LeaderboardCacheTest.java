@@ -0,0 +1,100 @@
+package quotes;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.quotes.LeaderboardCache;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class LeaderboardCacheTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoCollection<Document> quotes;
+    private LeaderboardCache leaderboardCache;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        quotes = client.getDatabase("leaderboard").getCollection("Quotes");
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        quotes.deleteMany(new Document());
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        leaderboardCache = new LeaderboardCache(client, "leaderboard", 0);
+    }
+
+    private ObjectId insertQuote(int bookmarks, boolean isPrivate) {
+        ObjectId id = new ObjectId();
+        quotes.insertOne(new Document("_id", id)
+                .append("quote", "text")
+                .append("bookmarks", bookmarks)
+                .append("shares", 0)
+                .append("date", System.currentTimeMillis() / 1000L)
+                .append("private", isPrivate));
+        return id;
+    }
+
+    private String topBookmarked() {
+        return new String(leaderboardCache.get(LeaderboardCache.Board.TOP_BOOKMARKED), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testBuildsSortedPublicList() {
+        ObjectId low = insertQuote(1, false);
+        ObjectId high = insertQuote(5, false);
+        ObjectId hidden = insertQuote(10, true);
+
+        String json = topBookmarked();
+
+        assertTrue(json.indexOf(high.toHexString()) < json.indexOf(low.toHexString()));
+        assertTrue(json.contains("\"_id\": \"" + high.toHexString() + "\""));
+        assertFalse(json.contains(hidden.toHexString()));
+    }
+
+    @Test
+    public void testAppliesChangedQuotes() {
+        ObjectId first = insertQuote(3, false);
+        topBookmarked();
+
+        ObjectId second = insertQuote(7, false);
+        leaderboardCache.quoteChanged(second);
+        String json = topBookmarked();
+        assertTrue(json.indexOf(second.toHexString()) < json.indexOf(first.toHexString()));
+
+        quotes.deleteOne(new Document("_id", second));
+        leaderboardCache.quoteChanged(second);
+        json = topBookmarked();
+        assertFalse(json.contains(second.toHexString()));
+        assertTrue(json.contains(first.toHexString()));
+    }
+
+    @Test
+    public void testQuoteMadePrivateIsRemoved() {
+        ObjectId id = insertQuote(2, false);
+        assertTrue(topBookmarked().contains(id.toHexString()));
+
+        quotes.updateOne(new Document("_id", id), new Document("$set", new Document("private", true)));
+        leaderboardCache.quoteChanged(id);
+        assertFalse(topBookmarked().contains(id.toHexString()));
+    }
+
+    @Test
+    public void testEmptyCollection() {
+        assertEquals("[]", topBookmarked());
+    }
+}
@@ -201,18 +201,20 @@ public class QuoteApiIT {
     // Test case for /GET /search/query
     @Test
     public void testFuzzySearch_Success() {
-        createTestQuote(); // "Test quote text"
+        String quoteId1 = createTestQuote(); // "Test quote text"
         String quoteId2 = createTestQuote(); // Another with same text
 
         given()
-            .pathParam("query", "test quote")
+            .queryParam("query", "test quote")
             .when()
-            .get("/search/query/{query}")
+            .get("/search/query")
             .then()
-            .statusCode(200);
-            // .body("size()", greaterThan(0))
-            // .body("[0].quote", containsString("test quote"));
+            .statusCode(200)
+            .body("size()", greaterThan(0))
+            .body("[0].quote", containsString("Test quote"))
+            .body("author", hasItem("Test Author"));
 
+        deleteTestQuote(quoteId1);
         deleteTestQuote(quoteId2);
     }
 
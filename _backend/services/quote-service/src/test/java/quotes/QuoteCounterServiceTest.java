@@ -0,0 +1,137 @@
+package quotes;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.quotes.QuoteCounterService;
+import com.quotes.QuoteCounterService.Counter;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class QuoteCounterServiceTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoCollection<Document> quotes;
+    private static QuoteCounterService counterService;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        quotes = client.getDatabase("counters").getCollection("Quotes");
+        // the timer never fires during a test, each one calls flush() itself
+        counterService = new QuoteCounterService(client, "counters", 60_000);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        counterService.shutdown();
+    }
+
+    private ObjectId insertQuote(int bookmarks) {
+        ObjectId id = new ObjectId();
+        quotes.insertOne(new Document("_id", id)
+                .append("quote", "text")
+                .append("bookmarks", bookmarks)
+                .append("shares", 0)
+                .append("flags", 0));
+        return id;
+    }
+
+    private Document quote(ObjectId id) {
+        return quotes.find(new Document("_id", id)).first();
+    }
+
+    @Test
+    public void testIncrementsAreCoalesced() {
+        ObjectId id = insertQuote(0);
+        for (int i = 0; i < 25; i++) {
+            counterService.add(id, Counter.BOOKMARKS, 1);
+        }
+        counterService.add(id, Counter.SHARES, 1);
+
+        assertEquals(0, quote(id).getInteger("bookmarks"));
+        assertEquals(1, counterService.flush());
+        assertEquals(25, quote(id).getInteger("bookmarks"));
+        assertEquals(1, quote(id).getInteger("shares"));
+        assertEquals(0, counterService.flush());
+    }
+
+    @Test
+    public void testDecrementNeverBelowZero() {
+        ObjectId id = insertQuote(1);
+        counterService.add(id, Counter.BOOKMARKS, -1);
+        counterService.add(id, Counter.BOOKMARKS, -1);
+        counterService.flush();
+        assertEquals(0, quote(id).getInteger("bookmarks"));
+    }
+
+    @Test
+    public void testIncrementThenDecrementCancelsOut() {
+        ObjectId id = insertQuote(3);
+        counterService.add(id, Counter.FLAGS, 1);
+        counterService.add(id, Counter.FLAGS, -1);
+        assertEquals(0, counterService.flush());
+        assertEquals(0, quote(id).getInteger("flags"));
+    }
+
+    @Test
+    public void testConcurrentIncrementsAreNotLost() throws InterruptedException {
+        ObjectId id = insertQuote(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    counterService.add(id, Counter.BOOKMARKS, 1);
+                    if (i % 100 == 0) {
+                        counterService.flush();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        counterService.flush();
+        assertEquals(4000, quote(id).getInteger("bookmarks"));
+    }
+
+    // a write that can never succeed is dropped, the rest of the batch still goes out
+    @Test
+    public void testFailingWriteIsDropped() {
+        ObjectId broken = insertQuote(0);
+        quotes.updateOne(new Document("_id", broken), new Document("$set", new Document("bookmarks", "many")));
+        ObjectId ok = insertQuote(0);
+        counterService.add(broken, Counter.BOOKMARKS, 1);
+        counterService.add(ok, Counter.BOOKMARKS, 1);
+
+        assertThrows(MongoBulkWriteException.class, counterService::flush);
+        counterService.flush();
+
+        assertEquals("many", quote(broken).getString("bookmarks"));
+        assertEquals(1, quote(ok).getInteger("bookmarks"));
+        assertEquals(0, counterService.flush());
+    }
+
+    @Test
+    public void testCounterNames() {
+        assertEquals(Counter.BOOKMARKS, Counter.fromName("bookmarks"));
+        assertEquals(Counter.SHARES, Counter.fromName("Shares"));
+        assertNull(Counter.fromName("date"));
+    }
+}
@@ -5,14 +5,18 @@ import com.mongodb.client.MongoClients;
 import com.quotes.MongoUtil;
 import com.quotes.QuoteObject;
 import com.quotes.QuoteService;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.*;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -182,4 +186,137 @@ public class QuoteServiceTesting {
         quoteObject.setId(null);
         assertFalse(quoteService.updateQuote(quoteObject));
     }
+
+    //list results are streamed straight from the cursor
+    @Test
+    @Order(13)
+    public void testGetQuotesByUserStreamsJsonArray() throws Exception {
+        ObjectId creatorId = new ObjectId();
+        quoteObject.setCreator(creatorId);
+        ObjectId first = quoteService.createQuote(quoteObject);
+        ObjectId second = quoteService.createQuote(quoteObject);
+        ids.add(first);
+        ids.add(second);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        quoteService.getQuotesByUser(creatorId).write(output);
+        String json = output.toString(StandardCharsets.UTF_8);
+
+        assertTrue(json.startsWith("["));
+        assertTrue(json.endsWith("]"));
+        assertTrue(json.contains("\"_id\": \"" + first.toHexString() + "\""));
+        assertTrue(json.contains("\"_id\": \"" + second.toHexString() + "\""));
+    }
+
+    @Test
+    @Order(14)
+    public void testGetQuotesByUserWithNoQuotes() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        quoteService.getQuotesByUser(new ObjectId()).write(output);
+        assertEquals("[]", output.toString(StandardCharsets.UTF_8));
+    }
+
+    //batch lookup returns every quote found, with ids as plain strings like getQuote
+    @Test
+    @Order(15)
+    public void testGetQuotesBatch() throws Exception {
+        ObjectId creatorId = new ObjectId();
+        quoteObject.setCreator(creatorId);
+        ObjectId first = quoteService.createQuote(quoteObject);
+        ObjectId second = quoteService.createQuote(quoteObject);
+        ids.add(first);
+        ids.add(second);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        quoteService.getQuotes(List.of(first, second, new ObjectId())).write(output);
+        String json = output.toString(StandardCharsets.UTF_8);
+
+        assertTrue(json.contains("\"_id\": \"" + first.toHexString() + "\""));
+        assertTrue(json.contains("\"_id\": \"" + second.toHexString() + "\""));
+        assertTrue(json.contains("\"creator\": \"" + creatorId.toHexString() + "\""));
+        assertEquals(2, json.split("\"_id\"").length - 1);
+    }
+
+    @Test
+    @Order(16)
+    public void testGetQuotesBatchEmpty() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        quoteService.getQuotes(List.of()).write(output);
+        assertEquals("[]", output.toString(StandardCharsets.UTF_8));
+    }
+
+    //patch returns the updated quote, counters only move by 1
+    @Test
+    @Order(17)
+    public void testPatchQuoteReturnsUpdatedQuote() {
+        QuoteObject patch = new QuoteObject();
+        patch.setId(id);
+        patch.setText("patched");
+        patch.setBookmarks(1);
+        Document updated = quoteService.patchQuote(patch, quoteObject.getCreator(), false);
+
+        assertNotNull(updated);
+        assertEquals("patched", updated.getString("quote"));
+        assertEquals(1, updated.getInteger("bookmarks"));
+        assertEquals(id.toHexString(), updated.getString("_id"));
+
+        patch.setBookmarks(5);
+        assertNull(quoteService.patchQuote(patch, quoteObject.getCreator(), false));
+    }
+
+    //only the owner, or an admin when the quote is flagged
+    @Test
+    @Order(18)
+    public void testPatchQuoteChecksOwner() {
+        QuoteObject patch = new QuoteObject();
+        patch.setId(id);
+        patch.setText("not yours");
+        ObjectId someoneElse = new ObjectId();
+
+        assertNull(quoteService.patchQuote(patch, someoneElse, false));
+        assertNull(quoteService.patchQuote(patch, someoneElse, true));
+
+        patch.setFlags(1);
+        assertNull(quoteService.patchQuote(patch, someoneElse, true));
+        assertNotNull(quoteService.patchQuote(patch, quoteObject.getCreator(), false));
+
+        QuoteObject adminPatch = new QuoteObject();
+        adminPatch.setId(id);
+        adminPatch.setText("cleaned up");
+        Document updated = quoteService.patchQuote(adminPatch, someoneElse, true);
+        assertNotNull(updated);
+        assertEquals("cleaned up", updated.getString("quote"));
+    }
+
+    @Test
+    @Order(19)
+    public void testToggleVisibility() {
+        assertNull(quoteService.toggleVisibility(id, new ObjectId()));
+        assertTrue(quoteService.toggleVisibility(id, quoteObject.getCreator()).getBoolean("private"));
+        assertFalse(quoteService.toggleVisibility(id, quoteObject.getCreator()).getBoolean("private"));
+    }
+
+    //the other write is part of the same transaction, if it fails the quote isn't created or deleted either
+    @Test
+    @Order(20)
+    public void testWritesWithQuote() {
+        assertNull(quoteService.createQuote(quoteObject, (session, quoteId) -> {
+            throw new IllegalStateException("outbox write failed");
+        }));
+        assertNull(quoteService.getQuote(quoteObject.getId()));
+
+        List<ObjectId> written = new ArrayList<>();
+        ObjectId created = quoteService.createQuote(quoteObject, (session, quoteId) -> written.add(quoteId));
+        ids.add(created);
+        assertEquals(List.of(created), written);
+        assertNotNull(quoteService.getQuote(created));
+
+        assertThrows(IllegalStateException.class, () -> quoteService.deleteQuote(created, session -> {
+            throw new IllegalStateException("outbox write failed");
+        }));
+        assertNotNull(quoteService.getQuote(created));
+        assertTrue(quoteService.deleteQuote(created, session -> written.add(created)));
+        assertNull(quoteService.getQuote(created));
+        assertFalse(quoteService.deleteQuote(created, session -> fail("nothing was deleted")));
+    }
 }
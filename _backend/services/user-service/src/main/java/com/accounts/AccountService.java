@@ -1,16 +1,17 @@
 package com.accounts;
 
 import com.auth.AuthResource;
+import com.auth.JwtCache;
 import com.auth.JwtService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ibm.websphere.security.jwt.InvalidConsumerException;
 import com.ibm.websphere.security.jwt.InvalidTokenException;
-import com.ibm.websphere.security.jwt.JwtConsumer;
-import com.ibm.websphere.security.jwt.JwtToken;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.*;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.sharedQuotes.SharedQuote;
@@ -122,6 +123,7 @@ public class AccountService {
         Document oldAccountDocument = accountCollection.find(eq("Email", accountDocument.getString("Email"))).first();
 
         String id;
+        boolean admin;
 
         if (oldAccountDocument != null) {
             Document updateFields = new Document();
@@ -131,13 +133,15 @@ public class AccountService {
             updateFields.append("token_type", account.token_type);
 
             id = oldAccountDocument.getObjectId("_id").toString();
+            admin = oldAccountDocument.getInteger("admin", 0) == 1;
             accountCollection.updateOne(oldAccountDocument,
                     new Document("$set", updateFields));
         } else {
             id = accountCollection.insertOne(accountDocument).getInsertedId().asObjectId().getValue().toString();
+            admin = account.admin == 1;
         }
 
-        String jwt = JwtService.buildJwt(id).toString();
+        String jwt = JwtService.buildJwt(id, admin);
         String userServiceUrl = System.getenv("USER_SERVICE_URL");
 
         return Response
@@ -299,10 +303,7 @@ public class AccountService {
 
     public Document retrieveUserFromJWT(String jwtString) {
         try {
-            JwtConsumer consumer = JwtConsumer.create("defaultJwtConsumer");
-            JwtToken jwt = consumer.createJwt(jwtString);
-
-            String id = jwt.getClaims().getSubject();
+            String id = JwtCache.verify(jwtString).subject();
 
             ObjectId objectId;
             try {
@@ -318,6 +319,19 @@ public class AccountService {
         }
     }
 
+    /**
+     * The user id in the token's subject, without reading the account. Null if the token or the id isn't valid.
+     */
+    public ObjectId userIdFromJWT(String jwtString) {
+        try {
+            String id = JwtCache.verify(jwtString).subject();
+            return id != null && ObjectId.isValid(id) ? new ObjectId(id) : null;
+        } catch (InvalidConsumerException | InvalidTokenException e) {
+            System.out.println(e);
+            return null;
+        }
+    }
+
     public Response deleteUser(String accountID) {
         ObjectId objectId;
 
@@ -475,6 +489,105 @@ public class AccountService {
         return document;
     }
 
+    private static final Bson ACCOUNT_PROJECTION = Projections.include("Email", "Username", "admin", "Notifications",
+            "MyQuotes", "BookmarkedQuotes", "SharedQuotes", "MyTags", "Profession", "PersonalQuote", "UsedQuotes");
+
+    /**
+     * Adds the quote to the user's bookmarks in one update. A private quote of someone else is only added if it was
+     * shared with the user by its creator, pass its creator as sharedBy, otherwise null.
+     * Returns the account after the update, or null if nothing changed (already bookmarked, not shared, no account).
+     */
+    public Document addBookmark(ObjectId userId, String quoteId, String sharedBy) {
+        Document filter = new Document("_id", userId)
+                .append("BookmarkedQuotes", new Document("$ne", quoteId));
+        if (sharedBy != null) {
+            filter.append("SharedQuotes", new Document("$elemMatch", new Document("to", userId.toHexString())
+                    .append("from", sharedBy)
+                    .append("quoteId", quoteId)));
+        }
+        return accountCollection.findOneAndUpdate(filter,
+                new Document("$addToSet", new Document("BookmarkedQuotes", quoteId)),
+                new FindOneAndUpdateOptions().projection(ACCOUNT_PROJECTION).returnDocument(ReturnDocument.AFTER));
+    }
+
+    /**
+     * Removes the quote from the user's bookmarks in one update.
+     * Returns the account after the update, or null if it wasn't bookmarked.
+     */
+    public Document removeBookmark(ObjectId userId, String quoteId) {
+        return accountCollection.findOneAndUpdate(
+                new Document("_id", userId).append("BookmarkedQuotes", quoteId),
+                new Document("$pull", new Document("BookmarkedQuotes", quoteId)),
+                new FindOneAndUpdateOptions().projection(ACCOUNT_PROJECTION).returnDocument(ReturnDocument.AFTER));
+    }
+
+    /**
+     * Drops the quotes from the user's bookmarks with one $pull, bookmarks added since the account was read are kept.
+     */
+    public void forgetBookmarks(ObjectId userId, Collection<String> quoteIds) {
+        if (quoteIds.isEmpty()) {
+            return;
+        }
+        accountCollection.updateOne(new Document("_id", userId),
+                new Document("$pull", new Document("BookmarkedQuotes", new Document("$in", new ArrayList<>(quoteIds)))));
+    }
+
+    public boolean hasBookmark(ObjectId userId, String quoteId) {
+        return accountCollection.countDocuments(new Document("_id", userId).append("BookmarkedQuotes", quoteId)) > 0;
+    }
+
+    /**
+     * Records a use of the quote with one update on the account: the count in UsedQuoteStats goes up by one and the
+     * last used date only ever moves forward. A first use also lists the quote in UsedQuotes.
+     * Returns the last used date after the update, null if there's no such account.
+     */
+    public Date recordQuoteUse(ObjectId userId, String quoteId, Date now, boolean firstUse) {
+        String stats = "UsedQuoteStats." + quoteId;
+        Document update = new Document("$inc", new Document(stats + ".count", 1))
+                .append("$max", new Document(stats + ".used", now));
+        if (firstUse) {
+            update.append("$set", new Document("UsedQuotes." + quoteId, quoteId));
+        }
+        Document updated = accountCollection.findOneAndUpdate(new Document("_id", userId), update,
+                new FindOneAndUpdateOptions().projection(Projections.include(stats)).returnDocument(ReturnDocument.AFTER));
+        if (updated == null) {
+            return null;
+        }
+        return updated.get("UsedQuoteStats", Document.class).get(quoteId, Document.class).getDate("used");
+    }
+
+    /**
+     * Adds the quote to the user's MyQuotes with one $addToSet, adding it twice changes nothing.
+     * Returns false if there's no such account.
+     */
+    public boolean addMyQuote(ObjectId userId, String quoteId) {
+        return accountCollection.updateOne(new Document("_id", userId),
+                new Document("$addToSet", new Document("MyQuotes", quoteId))).getMatchedCount() == 1;
+    }
+
+    public boolean removeMyQuote(ObjectId userId, String quoteId) {
+        return accountCollection.updateOne(new Document("_id", userId),
+                new Document("$pull", new Document("MyQuotes", quoteId))).getMatchedCount() == 1;
+    }
+
+    public void forgetUsedQuote(ObjectId userId, String quoteId) {
+        forgetUsedQuotes(userId, List.of(quoteId));
+    }
+
+    /**
+     * Drops the quotes from UsedQuotes and their UsedQuoteStats with one $unset, other entries are left as they are.
+     */
+    public void forgetUsedQuotes(ObjectId userId, Collection<String> quoteIds) {
+        if (quoteIds.isEmpty()) {
+            return;
+        }
+        Document unset = new Document();
+        for (String quoteId : quoteIds) {
+            unset.append("UsedQuotes." + quoteId, "").append("UsedQuoteStats." + quoteId, "");
+        }
+        accountCollection.updateOne(new Document("_id", userId), new Document("$unset", unset));
+    }
+
     public String getAccountIdByEmail(String email) {
         Document doc = accountCollection.find(eq("Email", email))
                 .projection(Projections.include("_id"))
@@ -1,5 +1,6 @@
 package com.accounts;
 
+import com.auth.JwtCache;
 import com.auth.Session;
 import com.auth.SessionService;
 import com.mongodb.client.model.Updates;
@@ -197,28 +198,71 @@ public class AccountsResource {
     }
 
     @PUT
-    @Path("/update/MyQuotes/{id}")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Path("/MyQuotes/{id}/{quoteId}")
     @Produces(MediaType.APPLICATION_JSON)
     @APIResponses(value = {
-            @APIResponse(responseCode = "200", description = "User Successfully updated in the database. Will return updated account document.", content = @Content(mediaType = "application/json")),
-            @APIResponse(responseCode = "400", description = "Invalid JSON format."),
-            @APIResponse(responseCode = "404", description = "Account was not found or the ID was invalid."),
+            @APIResponse(responseCode = "200", description = "Quote is in the user's MyQuotes."),
+            @APIResponse(responseCode = "400", description = "An id is invalid."),
+            @APIResponse(responseCode = "401", description = "Only services can change MyQuotes."),
+            @APIResponse(responseCode = "404", description = "Account was not found."),
     })
-    @Operation(summary = "Updates a user account. Ensure the request header is `application/json` and provide a JSON body in the specified format.")
-    @RequestBody(description = "Example request body endpoint is expecting.", required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON, examples = @ExampleObject(name = "Example", value = "{ " + "\"SharedQuotes\": [\"Success is a journey\"]" + " }")))
-    public Response updateMyQuotes(@PathParam("id") String id, String accountJson, @Context HttpServletRequest request) {
+    @Operation(summary = "Adds a quote to a user's MyQuotes. Used by quote-service when a quote is created, sending it again is harmless.")
+    public Response addMyQuote(@PathParam("id") String id, @PathParam("quoteId") String quoteId, @Context HttpHeaders headers) {
+        Response denied = checkMyQuotesRequest(id, quoteId, headers);
+        if (denied != null) {
+            return denied;
+        }
+        if (!accountService.addMyQuote(new ObjectId(id), quoteId)) {
+            return Response.status(Status.NOT_FOUND).entity(new Document("error", "Account not found!").toJson()).build();
+        }
+        return Response.ok(new Document("success", true).toJson()).build();
+    }
 
-        ObjectId objectId;
+    @DELETE
+    @Path("/MyQuotes/{id}/{quoteId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Quote is not in the user's MyQuotes."),
+            @APIResponse(responseCode = "400", description = "An id is invalid."),
+            @APIResponse(responseCode = "401", description = "Only services can change MyQuotes."),
+            @APIResponse(responseCode = "404", description = "Account was not found."),
+    })
+    @Operation(summary = "Removes a quote from a user's MyQuotes. Used by quote-service when a quote is deleted, sending it again is harmless.")
+    public Response removeMyQuote(@PathParam("id") String id, @PathParam("quoteId") String quoteId, @Context HttpHeaders headers) {
+        Response denied = checkMyQuotesRequest(id, quoteId, headers);
+        if (denied != null) {
+            return denied;
+        }
+        if (!accountService.removeMyQuote(new ObjectId(id), quoteId)) {
+            return Response.status(Status.NOT_FOUND).entity(new Document("error", "Account not found!").toJson()).build();
+        }
+        return Response.ok(new Document("success", true).toJson()).build();
+    }
+
+    // null if the ids are valid and the token is in the service group, otherwise the response to send
+    private Response checkMyQuotesRequest(String id, String quoteId, HttpHeaders headers) {
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
+            return Response.status(Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Missing or invalid Authorization header").toJson())
+                    .build();
+        }
         try {
-            objectId = new ObjectId(id);
-        } catch (Exception e) {
-            return Response
-                    .status(Response.Status.NOT_FOUND)
-                    .entity(new Document("error", "Invalid object id!").toJson())
+            JwtCache.Claims claims = JwtCache.verify(authHeader.replaceFirst("(?i)^Bearer\\s+", ""));
+            if (claims.groups() == null || !claims.groups().contains("service")) {
+                return Response.status(Status.UNAUTHORIZED)
+                        .entity(new Document("error", "Only services can change MyQuotes").toJson())
+                        .build();
+            }
+        } catch (InvalidConsumerException | InvalidTokenException e) {
+            return Response.status(Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Only services can change MyQuotes").toJson())
                     .build();
         }
-        return accountService.updateUser(accountJson, id);
+        if (!ObjectId.isValid(id) || !ObjectId.isValid(quoteId)) {
+            return Response.status(Status.BAD_REQUEST).entity(new Document("error", "Invalid object id!").toJson()).build();
+        }
+        return null;
     }
 
     @GET
@@ -6,6 +6,7 @@ import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
@@ -15,7 +16,6 @@ import com.usedQuotes.UsedQuoteService;
 
 import jakarta.json.JsonObject;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import com.sharedQuotes.*;
@@ -48,7 +48,6 @@ public class BookmarkResource {
     @PathParam("quoteId") String quoteId,
     @Context HttpHeaders headers) {
 
-        String json = null;
         String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
 
         if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
@@ -59,62 +58,68 @@ public class BookmarkResource {
 
         String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
 
-        Document doc = accountService.retrieveUserFromJWT(jwtString);
-            doc.remove("expires_at");
-            Account acc = accountService.document_to_account(doc);
-            if(acc.BookmarkedQuotes.contains(quoteId)){
-                return Response
-            .status(Response.Status.BAD_REQUEST)
-            .entity(new Document("error","You already bookmarked that"))
-            .build();
-            }
-            String userId = accountService.getAccountIdByEmail(acc.Email);
-            acc.BookmarkedQuotes.add(quoteId);
-            json = acc.toJson();
-            Response quoteSearchRes;
-            try{
-                quoteSearchRes = quoteClient.idSearch(quoteId);
+        ObjectId userId = accountService.userIdFromJWT(jwtString);
+        if(userId == null){
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Invalid JWT").toJson())
+                    .build();
+        }
+
+        Response quoteSearchRes;
+        try{
+            quoteSearchRes = quoteClient.idSearch(quoteId);
+        }
+        catch(WebApplicationException e){
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(new Document("error", "That quote doesn't exist").toJson())
+                    .build();
+        }
+        if(quoteSearchRes.getStatus()!=Response.Status.OK.getStatusCode()){
+            return quoteSearchRes;
+        }
+        Document quoteSearchDoc = Document.parse(quoteSearchRes.readEntity(String.class));
+        String creator = quoteSearchDoc.get("creator").toString();
+        //someone else's private quote can only be bookmarked if they shared it with you
+        String sharedBy = quoteSearchDoc.getBoolean("private", false) && !creator.equals(userId.toHexString()) ? creator : null;
+
+        Document updated = accountService.addBookmark(userId, quoteId, sharedBy);
+        if(updated == null){
+            if(accountService.hasBookmark(userId, quoteId)){
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new Document("error","You already bookmarked that").toJson())
+                        .build();
             }
-            catch(WebApplicationException e){
-                 quoteSearchRes = e.getResponse();
-                 return Response.status(Response.Status.NOT_FOUND)
-                 .entity(new Document("error", "That quote doesn't exist").toJson())
-                 .build();
+            if(sharedBy != null){
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(new Document("error", "You can't bookmark this it's private").toJson())
+                        .build();
             }
-            if(quoteSearchRes.getStatus()==Response.Status.OK.getStatusCode()){
-            String quoteSearchString = quoteSearchRes.readEntity(String.class);
-            Document quoteSearchDoc = Document.parse(quoteSearchString);
-            
-            if(quoteSearchDoc.getBoolean("private")
-            &&!quoteSearchDoc.get("creator").toString().equals(userId)){
-                Boolean sharedWithYou = false;
-                for (SharedQuote shared : acc.SharedQuotes) {
-                    if(shared.getTo().equals(userId)
-                    && shared.getQuoteId().equals(quoteId)&&shared.getFrom().equals(quoteSearchDoc.get("creator").toString())
-                    &&shared.getFrom().equals(quoteSearchDoc.get("creator").toString())){
-                        sharedWithYou = true;
-                    }
-                }
-                if(!sharedWithYou){
-                    return Response.status(Response.Status.UNAUTHORIZED)
-                    .entity(new Document("error", "You can't bookmark this it's private").toJson())
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new Document("error", "Failed to retrieve account").toJson())
                     .build();
-                }
-             
-            }
-           
-            int currentBookmarks = quoteSearchDoc.getInteger("bookmarks", 0);
-            quoteSearchDoc.put("bookmarks", currentBookmarks + 1);
-            quoteSearchDoc.remove("creator");
-            Response quoteUpdateRes = quoteClient.updateQuote(quoteSearchDoc.toJson());
-            if(quoteUpdateRes.getStatus()!=Response.Status.OK.getStatusCode()){
-            return quoteUpdateRes;
-         }
         }
-        else{
-                return quoteSearchRes;
+
+        //only reached when the bookmark was actually added, so the counter moves once per user
+        if(!updateCounter(quoteId, true)){
+            accountService.removeBookmark(userId, quoteId);
+            return Response.status(Response.Status.BAD_GATEWAY)
+                    .entity(new Document("error", "Failed to bookmark quote").toJson())
+                    .build();
+        }
+        return Response.ok(updated.toJson()).build();
+    }
+
+    private boolean updateCounter(String quoteId, boolean increment) {
+        try{
+            Response quoteUpdateRes = increment
+                    ? quoteClient.incrementCounter(quoteId, "bookmarks")
+                    : quoteClient.decrementCounter(quoteId, "bookmarks");
+            return quoteUpdateRes.getStatus()==Response.Status.ACCEPTED.getStatusCode();
+        }
+        catch(WebApplicationException | ProcessingException e){
+            System.out.println("Failed to update bookmark counter: " + e);
+            return false;
         }
-         return accountService.updateUser(json, userId);
     }
 
     @GET
@@ -142,43 +147,29 @@ public class BookmarkResource {
         if(doc != null){
             doc.remove("expires_at");
             Account acc = accountService.document_to_account(doc);
+            QuoteAccess access = new QuoteAccess(doc.getObjectId("_id").toHexString(), acc.SharedQuotes);
             List<JsonObject> jsonList = new ArrayList<>();
-            List<String> updatedBookmarks = new ArrayList<>(acc.BookmarkedQuotes);
+            List<String> dropped = new ArrayList<>();
+            Map<String, JsonObject> quotes;
+            try{
+                quotes = quoteClient.findQuotes(acc.BookmarkedQuotes); //get all quotes in one call
+            }
+            catch(WebApplicationException | ProcessingException e){
+                return quoteServiceUnavailable();
+            }
             for(String objectId: acc.BookmarkedQuotes){ //for all bookmarked quotes
                 if(!acc.UsedQuotes.containsKey(objectId)){ //if quote id is not in used quotes map
-                    Response quoteSearchRes;
-                    try{
-                        quoteSearchRes = quoteClient.idSearch(objectId);
-                    } //get quote
-                    catch(WebApplicationException e){
-                        quoteSearchRes = e.getResponse();
-                        updatedBookmarks.remove(objectId);
+                    JsonObject quoteSearchJson = quotes.get(objectId);
+                    if(quoteSearchJson == null || !access.canView(quoteSearchJson)){
+                        dropped.add(objectId);
                     }
-                    if(quoteSearchRes.getStatus()==Response.Status.OK.getStatusCode()){
-
-                        JsonObject quoteSearchJson = quoteSearchRes.readEntity(JsonObject.class);
-                        if(quoteSearchJson.getBoolean("private")
-                        &&!quoteSearchJson.getString("creator").equals(accountService.getAccountIdByEmail(acc.Email))){
-                            Boolean sharedWithYou = false;
-                            for (SharedQuote shared : acc.SharedQuotes) {
-                                if(shared.getTo().equals(accountService.getAccountIdByEmail(acc.Email))
-                                && shared.getQuoteId().equals(objectId)
-                                &&shared.getFrom().equals(quoteSearchJson.getString("creator"))){
-                                    sharedWithYou = true;
-                                }
-                            }
-                            if(!sharedWithYou){
-                                updatedBookmarks.remove(objectId);
-                                continue;
-                            }
-                        }
+                    else{
                         jsonList.add(quoteSearchJson);
                     }
                 }
                 
             }
-            acc.BookmarkedQuotes = updatedBookmarks;
-            accountService.updateUser(acc.toJson(), accountService.getAccountIdByEmail(acc.Email));
+            accountService.forgetBookmarks(doc.getObjectId("_id"), dropped); //only what's gone, so concurrent bookmarks are kept
             return Response
             .ok(jsonList).build();
         }
@@ -211,43 +202,26 @@ public class BookmarkResource {
             if(doc != null){
             doc.remove("expires_at");
             Account acc = accountService.document_to_account(doc);
+            QuoteAccess access = new QuoteAccess(doc.getObjectId("_id").toHexString(), acc.SharedQuotes);
             List<JsonObject> jsonList = new ArrayList<>();
-            List<String> updatedBookmarks = new ArrayList<>(acc.BookmarkedQuotes);
-            for(String objectId: acc.BookmarkedQuotes){
-            Response quoteSearchRes;
+            List<String> dropped = new ArrayList<>();
+            Map<String, JsonObject> quotes;
             try{
-             quoteSearchRes = quoteClient.idSearch(objectId);
+             quotes = quoteClient.findQuotes(acc.BookmarkedQuotes);
             }
-            catch(WebApplicationException e){
-            quoteSearchRes = e.getResponse();
-            }
-            if(quoteSearchRes.getStatus()==Response.Status.OK.getStatusCode()){
-            JsonObject quoteSearchJson = quoteSearchRes.readEntity(JsonObject.class);
-            if(quoteSearchJson.getBoolean("private")
-            &&!quoteSearchJson.getString("creator").equals(accountService.getAccountIdByEmail(acc.Email))){
-                Boolean sharedWithYou = false;
-                for (SharedQuote shared : acc.SharedQuotes) {
-                    if(shared.getTo().equals(accountService.getAccountIdByEmail(acc.Email))
-                    && shared.getQuoteId().equals(objectId) 
-                    &&shared.getFrom().equals(quoteSearchJson.getString("creator"))){
-                        sharedWithYou = true;
-                    }
-                
-                            }
-                            if(!sharedWithYou){
-                                updatedBookmarks.remove(objectId);
-                                continue;
-                            }
-                
+            catch(WebApplicationException | ProcessingException e){
+             return quoteServiceUnavailable();
             }
+            for(String objectId: acc.BookmarkedQuotes){
+            JsonObject quoteSearchJson = quotes.get(objectId);
+            if(quoteSearchJson != null && access.canView(quoteSearchJson)){
             jsonList.add(quoteSearchJson);
             }
-            else if(quoteSearchRes.getStatus()==Response.Status.NOT_FOUND.getStatusCode()){
-             updatedBookmarks.remove(objectId);
+            else{
+             dropped.add(objectId);
             }
             }
-            acc.BookmarkedQuotes = updatedBookmarks;
-            accountService.updateUser(acc.toJson(), accountService.getAccountIdByEmail(acc.Email));
+            accountService.forgetBookmarks(doc.getObjectId("_id"), dropped); //only what's gone, so concurrent bookmarks are kept
             return Response
             .ok(jsonList).build();
         }
@@ -275,46 +249,32 @@ public class BookmarkResource {
         if(doc != null) {
             doc.remove("expires_at");
             Account account = accountService.document_to_account(doc);
-            Map<String,String> updatedUsedQuotes = new HashMap<>(account.UsedQuotes);
+            QuoteAccess access = new QuoteAccess(doc.getObjectId("_id").toHexString(), account.SharedQuotes);
+            List<String> gone = new ArrayList<>();
             List<JsonObject> jsonList = new ArrayList<>();
+            Map<String, JsonObject> quotes;
+            try{
+             quotes = quoteClient.findQuotes(account.UsedQuotes.keySet());
+            }
+            catch(WebApplicationException | ProcessingException e){
+             return quoteServiceUnavailable();
+            }
             for(String oid: account.UsedQuotes.keySet()) {
-                Response getQuote;
-                try{
-                 getQuote = quoteClient.idSearch(oid);
-                }
-                catch(WebApplicationException e){
-                getQuote = e.getResponse();
-                }
-                if(getQuote.getStatus() == Response.Status.OK.getStatusCode()) {
-                    JsonObject quoteObject = getQuote.readEntity(JsonObject.class);
-                    if(quoteObject.getBoolean("private")
-                    &&!quoteObject.get("creator").toString().equals(accountService.getAccountIdByEmail(account.Email))){
-                        Boolean sharedWithYou = false;
-                        for (SharedQuote shared : account.SharedQuotes) {
-                            if(shared.getTo().equals(accountService.getAccountIdByEmail(account.Email))
-                            && shared.getQuoteId().equals(oid) &&shared.getFrom().equals(quoteObject.get("creator").toString())
-                            &&shared.getFrom().equals(quoteObject.get("creator").toString())){
-                                sharedWithYou = true;
-                            }
-                        }
-                        if(!sharedWithYou){
-                            usedQuoteService.deleteUsedQuote(account.UsedQuotes.get(oid));
-                            updatedUsedQuotes.remove(oid);
-                            continue;
-                        }
-                        
-                       
-                    }
+                JsonObject quoteObject = quotes.get(oid);
+                if(quoteObject != null && access.canView(quoteObject)) {
                     jsonList.add(quoteObject);
                 }
-                else if(getQuote.getStatus() == Response.Status.NOT_FOUND.getStatusCode()){
-                usedQuoteService.deleteUsedQuote(account.UsedQuotes.get(oid));
-                 updatedUsedQuotes.remove(oid);
-                
+                else{
+                 gone.add(oid);
+                 //entries that weren't migrated yet still point at a UsedQuote
+                 String usedQuoteId = account.UsedQuotes.get(oid);
+                 if(!oid.equals(usedQuoteId)){
+                  usedQuoteService.deleteUsedQuote(usedQuoteId);
+                 }
                 }
             }
-            account.UsedQuotes = updatedUsedQuotes;
-            accountService.updateUser(account.toJson(), accountService.getAccountIdByEmail(account.Email));
+            //only the quotes that are gone are dropped, uses recorded meanwhile are kept
+            accountService.forgetUsedQuotes(doc.getObjectId("_id"), gone);
             return Response.ok(jsonList).build();
         }
         return Response.status(Response.Status.BAD_REQUEST).entity("Failed to retrieve account").build();
@@ -358,9 +318,6 @@ public class BookmarkResource {
     @PathParam("quoteId") String quoteId,
     @Context HttpHeaders headers) {
 
-        String json = null;
-
-
         String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
 
         if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
@@ -371,44 +328,35 @@ public class BookmarkResource {
 
         String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
 
-        Document doc = accountService.retrieveUserFromJWT(jwtString);
-            if(doc==null){
-                return Response
+        ObjectId userId = accountService.userIdFromJWT(jwtString);
+        if(userId == null){
+            return Response
                 .status(Response.Status.BAD_REQUEST)
                 .entity("Failed to retrieve account")
                 .build();
-                }
-            doc.remove("expires_at");
-            Account acc = accountService.document_to_account(doc);
-            String userId = accountService.getAccountIdByEmail(acc.Email);        
-            if(!acc.BookmarkedQuotes.contains(quoteId)){
-                return Response
+        }
+
+        Document updated = accountService.removeBookmark(userId, quoteId);
+        if(updated == null){
+            return Response
                 .status(Response.Status.BAD_REQUEST)
                 .entity("You don't have this bookmarked")
                 .build();
-            }
-            acc.BookmarkedQuotes.remove(quoteId);
-            json = acc.toJson();
-            Response quoteSearchRes = quoteClient.idSearch(quoteId);
-            if(quoteSearchRes.getStatus()!=Response.Status.OK.getStatusCode()){
-                return quoteSearchRes;
-                }
-            String quoteSearchString = quoteSearchRes.readEntity(String.class);
-            Document quoteSearchDoc = Document.parse(quoteSearchString);
-            quoteSearchDoc.remove("creator");
-            int currentBookmarks = quoteSearchDoc.getInteger("bookmarks", 0);
-            quoteSearchDoc.put("bookmarks", currentBookmarks - 1);
-            Response quoteUpdateRes = quoteClient.updateQuote(quoteSearchDoc.toJson());
-            if(quoteUpdateRes.getStatus()!=Response.Status.OK.getStatusCode()){
-            return Response
-            .status(Response.Status.BAD_GATEWAY)
-            .entity("Failed to delete bookmark")
-            .build();
-            }
-           
+        }
 
-         
-         return accountService.updateUser(json, userId);
+        if(!updateCounter(quoteId, false)){
+            accountService.addBookmark(userId, quoteId, null);
+            return Response
+                .status(Response.Status.BAD_GATEWAY)
+                .entity("Failed to delete bookmark")
+                .build();
+        }
+        return Response.ok(updated.toJson()).build();
     }
 
+    private Response quoteServiceUnavailable() {
+        return Response.status(Response.Status.BAD_GATEWAY)
+                .entity(new Document("error", "Failed to retrieve quotes").toJson())
+                .build();
+    }
 }
@@ -2,16 +2,21 @@ package com.accounts;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sharedQuotes.QuoteAccess;
 import com.sharedQuotes.SharedQuote;
 import com.usedQuotes.UsedQuote;
 import com.usedQuotes.UsedQuoteService;
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
@@ -21,6 +26,7 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
+import java.io.InputStream;
 import java.util.*;
 
 
@@ -37,7 +43,16 @@ public class MyCollectionResource {
     @Inject
     UsedQuoteService usedQuoteService;
 
-    public MyCollectionService myCollectionService = new MyCollectionService(usedQuoteService);
+    public MyCollectionService myCollectionService;
+
+    @PostConstruct
+    public void init() {
+        //built here, usedQuoteService is still null when field initializers run
+        myCollectionService = new MyCollectionService(usedQuoteService);
+    }
+
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500; // same limits as quote-service
 
     public enum SortOptions {
         NONE, USED_NEWEST, USED_OLDEST, CREATED_NEWEST, CREATED_OLDEST;
@@ -75,8 +90,17 @@ public class MyCollectionResource {
                                          @QueryParam("tags") @Parameter(description = "List of tags the quote MUST include, used for filtering by tags. Enter tags as comma separated string", required = false)
                                              String tagsString, // tags quote must have
                                          @QueryParam("sort") @Parameter(description = "How the quotes should be sorted. Defaults to NONE if left blank. Values can be: \"NONE\", \"USED_NEWEST\", \"USED_OLDEST\", \"CREATED_NEWEST\", \"CREATED_OLDEST\" (case insensitive)", required = false)
-                                             String sortParam) // how to order results
+                                             String sortParam, // how to order results
+                                         @QueryParam("offset") @DefaultValue("0") @Parameter(description = "How many matching quotes to skip", required = false)
+                                             int offset,
+                                         @QueryParam("pageSize") @DefaultValue("" + DEFAULT_PAGE_SIZE) @Parameter(description = "How many quotes to return, up to " + MAX_PAGE_SIZE, required = false)
+                                             int pageSize)
     {
+        if(offset < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new Document("error", "Invalid offset or pageSize").toJson())
+                    .build();
+        }
         SortOptions sort = SortOptions.fromString(sortParam);
         UsedOptions used = UsedOptions.fromString(usageString);
         List<String> visibility;
@@ -109,112 +133,55 @@ public class MyCollectionResource {
         if(doc != null) {
             doc.remove("expires_at");
             Account acc = accountService.document_to_account(doc);
+            QuoteAccess access = new QuoteAccess(doc.getObjectId("_id").toHexString(), acc.SharedQuotes);
 
-            //get all bookmarked quotes
-            List<JsonObject> bookmarkedQuotes = new ArrayList<>();
-            for(String oid : acc.BookmarkedQuotes) {
-                Response quoteSearchResponse = quoteClient.idSearch(oid);
-                if(quoteSearchResponse.getStatus() == Response.Status.OK.getStatusCode()) {
-                    JsonObject quoteJson = quoteSearchResponse.readEntity(JsonObject.class);
-                    bookmarkedQuotes.add(quoteJson);
-                }
-            }
-            //get all shared quotes : if "shared"
+            //ids of all bookmarked quotes, and all shared quotes : if "shared"
+            List<String> quoteIds = new ArrayList<>(acc.BookmarkedQuotes);
             if(visibility.contains("shared")) {
                 for(SharedQuote sharedQuote : acc.SharedQuotes) {
-                    Response quoteSearchResponse = quoteClient.idSearch(sharedQuote.getQuoteId());
-                    if(quoteSearchResponse.getStatus() == Response.Status.OK.getStatusCode()) {
-                        JsonObject quoteJson = quoteSearchResponse.readEntity(JsonObject.class);
-                        bookmarkedQuotes.add(quoteJson);
-                    }
+                    quoteIds.add(sharedQuote.getQuoteId());
                 }
             }
 
-            //filter privacy visibility, removes quotes if "private" value is not in visibility list
-            bookmarkedQuotes.removeIf(quote -> (quote.getBoolean("private") && !visibility.contains("private")) ||
-                    (!quote.getBoolean("private") && !visibility.contains("public")));
-
-            //filter usage
+            //filter usage, the used quotes are listed on the account so this only narrows the ids
             switch(used) {
                 case ALL -> {break;}
-                case USED -> {
-                    //remove all unused quotes, to show only used quotes
-                    bookmarkedQuotes.removeIf(quote -> !acc.UsedQuotes.containsKey(quote.getString("_id")));
-                }
-                case UNUSED -> {
-                    //remove all used quotes to show only unused quotes
-                    bookmarkedQuotes.removeIf(quote -> acc.UsedQuotes.containsKey(quote.getString("_id")));
-                }
+                case USED -> quoteIds.removeIf(id -> !acc.UsedQuotes.containsKey(id));
+                case UNUSED -> quoteIds.removeIf(id -> acc.UsedQuotes.containsKey(id));
             }
-
-            //filter tags
-            System.out.println("Tags List empty: "+tags.isEmpty());
-            if(!tags.isEmpty()){ //if there are specified tags
-                bookmarkedQuotes.removeIf(quote -> {
-                    JsonArray tagsArray = quote.getJsonArray("tags");
-                    if(tagsArray == null || tagsArray.isEmpty()) {
-                        return true; //remove quote if no tags
+            quoteIds = new ArrayList<>(new LinkedHashSet<>(quoteIds));
+
+            //visibility, access, tags, date sort and paging are done by quote-service in one query
+            Document query = new Document("ids", quoteIds)
+                    .append("visibility", visibility)
+                    .append("viewer", access.userId())
+                    .append("shared", access.shares())
+                    .append("tags", tags);
+
+            if(sort == SortOptions.USED_NEWEST || sort == SortOptions.USED_OLDEST) {
+                //used quotes first, ordered by their used date, the rest after them
+                Map<String, String> usedInCollection = new HashMap<>();
+                for(String id : quoteIds) {
+                    String usedQuoteId = acc.UsedQuotes.get(id);
+                    if(usedQuoteId != null) {
+                        usedInCollection.put(id, usedQuoteId);
                     }
-                    //convert json array to list
-                    List<String> tagsList = new ArrayList<>();
-                    for(int i = 0; i < tagsArray.size(); i++) {
-                        tagsList.add(tagsArray.getString(i));
-                    }
-
-                    //remove if no intersection/no matching tags
-                    return myCollectionService.intersection(tags, tagsList).isEmpty();
-                });
-            }
-
-            //reorder
-            switch(sort) {
-                case NONE -> {break;}
-                case USED_NEWEST -> {
-                    //separate used quotes into new list
-                    List<JsonObject> usedQuotes = new ArrayList<>();
-                    for(JsonObject quote : bookmarkedQuotes) {
-                        if(acc.UsedQuotes.containsKey(quote.getString("_id"))) {
-                            usedQuotes.add(quote);
-                            bookmarkedQuotes.remove(quote);
-                        }
-                    }
-                    //sort by used date
-                    MyCollectionService.sort_Used_Oldest(usedQuotes, acc, 0, usedQuotes.size()-1);
-                    Collections.reverse(usedQuotes);
-                    //add used quotes back to front of list
-                    bookmarkedQuotes.addAll(0, usedQuotes);
-                }
-                case USED_OLDEST -> {
-                    //separate used quotes into new list
-                    List<JsonObject> usedQuotes = new ArrayList<>();
-                    for(JsonObject quote : bookmarkedQuotes) {
-                        if(acc.UsedQuotes.containsKey(quote.getString("_id"))) {
-                            usedQuotes.add(quote);
-                            bookmarkedQuotes.remove(quote);
-                        }
-                    }
-                    //sort by used date
-                    MyCollectionService.sort_Used_Oldest(usedQuotes, acc, 0, usedQuotes.size()-1);
-                    //add used quotes back to front of list
-                    bookmarkedQuotes.addAll(0, usedQuotes);
-                }
-                case CREATED_NEWEST -> {
-                    bookmarkedQuotes.sort((a, b) -> {
-                        int dateA = a.getInt("date");
-                        int dateB = b.getInt("date");
-                        return Integer.compare(dateB, dateA);
-                    });
-                }
-                case CREATED_OLDEST -> {
-                    bookmarkedQuotes.sort((a, b) -> {
-                        int dateA = a.getInt("date");
-                        int dateB = b.getInt("date");
-                        return Integer.compare(dateA, dateB);
-                    });
                 }
+                query.append("order", myCollectionService.sortByUsed(usedInCollection, doc.get("UsedQuoteStats", Document.class),
+                        sort == SortOptions.USED_NEWEST));
+            } else {
+                query.append("sort", sort.name());
             }
+            query.append("offset", offset).append("pageSize", pageSize);
 
-            return Response.ok().entity(bookmarkedQuotes).build();
+            try {
+                Response page = quoteClient.collectionSearch(query.toJson());
+                return Response.ok(page.readEntity(InputStream.class), MediaType.APPLICATION_JSON).build();
+            } catch (WebApplicationException | ProcessingException e) {
+                return Response.status(Response.Status.BAD_GATEWAY)
+                        .entity(new Document("error", "Failed to retrieve quotes").toJson())
+                        .build();
+            }
         }
         return Response.status(Response.Status.NOT_FOUND).entity("Error finding user document").build();
     }
@@ -1,59 +1,71 @@
 package com.accounts;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.usedQuotes.UsedQuote;
 import com.usedQuotes.UsedQuoteService;
-import jakarta.json.JsonObject;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 public class MyCollectionService {
 
-    static UsedQuoteService usedQuoteService;
+    private final UsedQuoteService usedQuoteService;
 
     public MyCollectionService(UsedQuoteService usedService) {
         usedQuoteService = usedService;
     }
 
-    static void sort_Used_Oldest(List<JsonObject> usedQuotes, Account acc, int lower, int upper) {
-        if(upper <= lower) return;
-
-        int pivot = partition(usedQuotes, acc, lower, upper);
-        sort_Used_Oldest(usedQuotes, acc, lower, pivot - 1);
-        sort_Used_Oldest(usedQuotes, acc, pivot + 1, upper);
+    /**
+     * Ids of the used quotes ordered by when they were last used. usedQuotes maps quote id to UsedQuote id, like
+     * Account.UsedQuotes. All used dates are read in one query and the ids sorted once, quotes whose UsedQuote is
+     * missing count as used the longest time ago.
+     */
+    List<String> sortByUsed(Map<String, String> usedQuotes, boolean newestFirst) {
+        return sortByUsed(usedQuotes, (Document) null, newestFirst);
     }
 
-    static int partition(List<JsonObject> usedQuotes, Account acc, int lower, int upper) {
-        try {
-            JsonObject pivotObject = usedQuotes.get(upper);
-            long pivotTime = pivotObject.getInt("date");
+    /**
+     * Same, with the account's UsedQuoteStats. Quotes that have their used date there don't need the UsedQuotes
+     * collection, only the ones that haven't been migrated yet are read, still in one query.
+     */
+    List<String> sortByUsed(Map<String, String> usedQuotes, Document usedStats, boolean newestFirst) {
+        Map<String, Long> keys = new HashMap<>(usedQuotes.size() * 2);
+        Map<String, String> legacy = new HashMap<>();
+        for (Map.Entry<String, String> used : usedQuotes.entrySet()) {
+            Document stats = usedStats == null ? null : usedStats.get(used.getKey(), Document.class);
+            Date usedDate = stats == null ? null : stats.getDate("used");
+            if (usedDate != null) {
+                keys.put(used.getKey(), usedDate.getTime());
+            } else {
+                legacy.put(used.getKey(), used.getValue());
+            }
+        }
+        if (!legacy.isEmpty()) {
+            Map<ObjectId, Long> usedTimes = usedQuoteService.usedTimes(legacy.values());
+            keys.putAll(usedTimeKeys(legacy, usedTimes));
+        }
+        return sortByTime(keys, newestFirst);
+    }
 
-            int i = lower - 1;
-            ObjectMapper mapper = new ObjectMapper();
+    static List<String> sortByUsed(Map<String, String> usedQuotes, Map<ObjectId, Long> usedTimes, boolean newestFirst) {
+        return sortByTime(usedTimeKeys(usedQuotes, usedTimes), newestFirst);
+    }
 
-            for(int j = lower; j <= upper - 1; j++) {
-                //get used quote object
-                Document usedQuoteDoc = usedQuoteService.retrieveUsedQuote(acc.UsedQuotes.get(usedQuotes.get(j).getString("_id")));
-                UsedQuote usedQuoteObject = mapper.readValue(usedQuoteDoc.toJson(), UsedQuote.class);
-                if(usedQuoteObject.getUsed().getTime() < pivotTime) {
-                    i++;
-                    JsonObject temp = usedQuotes.get(i);
-                    usedQuotes.set(i, usedQuotes.get(j));
-                    usedQuotes.set(j, temp);
-                }
-            }
-            i++;
-            JsonObject temp = usedQuotes.get(i + 1);
-            usedQuotes.set(i + 1, usedQuotes.get(upper));
-            usedQuotes.set(upper, temp);
-            return i + 1;
-        } catch (JsonProcessingException e) {
-            System.out.print("Error in partition step: "+e);
-            return -1;
+    //look every key up once, the comparator then only compares longs
+    private static Map<String, Long> usedTimeKeys(Map<String, String> usedQuotes, Map<ObjectId, Long> usedTimes) {
+        Map<String, Long> keys = new HashMap<>(usedQuotes.size() * 2);
+        for (Map.Entry<String, String> used : usedQuotes.entrySet()) {
+            String usedQuoteId = used.getValue();
+            Long time = usedQuoteId != null && ObjectId.isValid(usedQuoteId) ? usedTimes.get(new ObjectId(usedQuoteId)) : null;
+            keys.put(used.getKey(), time == null ? 0L : time);
         }
+        return keys;
+    }
+
+    private static List<String> sortByTime(Map<String, Long> keys, boolean newestFirst) {
+        List<String> ids = new ArrayList<>(keys.keySet());
+        Comparator<String> byTime = Comparator.comparingLong(keys::get);
+        ids.sort(newestFirst ? byTime.reversed() : byTime);
+        return ids;
     }
 
     List<String> intersection(List<String> list1, List<String> list2) {
@@ -1,10 +1,14 @@
 package com.accounts;
 
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+import java.util.*;
+
 @RegisterRestClient(baseUri = "http://quotes-service:9082")
 public interface QuoteClient{
    
@@ -17,5 +21,40 @@ public interface QuoteClient{
     @Path("/quotes/search/id/{quoteID}")
     @Produces(MediaType.APPLICATION_JSON)
     Response idSearch(@PathParam("quoteID") String quoteID);
+
+    @POST
+    @Path("/quotes/search/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    Response idsSearch(List<String> quoteIDs);
+
+    @POST
+    @Path("/quotes/search/collection")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    Response collectionSearch(String query);
+
+    // quote id -> quote for every id that was found, throws if the quote service can't be reached
+    default Map<String, JsonObject> findQuotes(Collection<String> quoteIDs) {
+        Map<String, JsonObject> quotes = new HashMap<>();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(quoteIDs));
+        for (int start = 0; start < ids.size(); start += 500) { // quote service takes up to 1000 per call
+            Response response = idsSearch(ids.subList(start, Math.min(start + 500, ids.size())));
+            for (JsonObject quote : response.readEntity(JsonArray.class).getValuesAs(JsonObject.class)) {
+                quotes.put(quote.getString("_id"), quote);
+            }
+        }
+        return quotes;
+    }
+
+    @PUT
+    @Path("/quotes/update/counter/{quoteId}/{counter}/increment")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response incrementCounter(@PathParam("quoteId") String quoteId, @PathParam("counter") String counter);
+
+    @PUT
+    @Path("/quotes/update/counter/{quoteId}/{counter}/decrement")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response decrementCounter(@PathParam("quoteId") String quoteId, @PathParam("counter") String counter);
     
 }
\ No newline at end of file
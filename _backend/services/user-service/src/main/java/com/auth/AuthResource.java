@@ -9,9 +9,10 @@ import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.ibm.websphere.security.jwt.InvalidConsumerException;
 import com.ibm.websphere.security.jwt.InvalidTokenException;
 import com.ibm.websphere.security.jwt.JwtConsumer;
@@ -19,7 +20,6 @@ import com.ibm.websphere.security.jwt.JwtToken;
 import jakarta.inject.Inject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.client.*;
 import jakarta.ws.rs.core.*;
 import jakarta.ws.rs.core.HttpHeaders;
 import org.bson.Document;
@@ -30,6 +30,7 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 
@@ -45,6 +46,12 @@ public class AuthResource {
 
     @Inject
     SessionService sessionService;
+
+    @Inject
+    SessionJwtCache sessionJwtCache;
+
+    @Inject
+    ServiceProxy serviceProxy;
     public static String HOME_URL = System.getenv("HOME_URL");
 
 
@@ -192,7 +199,7 @@ public class AuthResource {
     @Path("/jwt")
     public Response getJWT(@CookieParam("SessionId") String sessionId,
                            @QueryParam("redirectURL") String url,
-                           String jsonBody) {
+                           InputStream jsonBody) {
 
         if (sessionId == null) {
             return Response.status(Response.Status.UNAUTHORIZED)
@@ -212,101 +219,60 @@ public class AuthResource {
         session.LastActivity = new Date(System.currentTimeMillis());
         session.Expires = new Date(session.LastActivity.getTime() + 21 * 24 * 60 * 60 * 1000);
 
-        Boolean success = sessionService.updateSession(sessionId, session);
+        boolean success = sessionService.touchSession(sessionId, session.LastActivity, session.Expires);
 
         if (success) {
-            String jwt = JwtService.buildJwt(session.UserId).toString();
+            String jwt = sessionJwtCache.get(sessionId, session);
 
             System.out.println("jwt "+jwt);
 
-            JsonObject requestJson;
+            //{method, body}, the frontend sends the method first so the body can go to the service as it is read
+            JsonReader reader = new JsonReader(new InputStreamReader(jsonBody, StandardCharsets.UTF_8));
+            String method = null;
+            InputStream body = null;
             try {
-                requestJson = JsonParser.parseString(jsonBody).getAsJsonObject();
-            } catch (Exception e) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("method") && reader.peek() == JsonToken.STRING) {
+                        method = reader.nextString();
+                    } else if (name.equals("body") && reader.peek() != JsonToken.NULL) {
+                        if (method != null) {
+                            body = new JsonBodyStream(reader);
+                            break;
+                        }
+                        //method comes after the body, so the body has to be kept until it is known
+                        body = new ByteArrayInputStream(JsonParser.parseReader(reader).toString().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
                 return Response.status(400).entity("{\"error\":\"Invalid JSON\"}").build();
             }
-
-            String method = requestJson.get("method").getAsString();
-            String body;
-            try {
-                JsonElement bodyElement = requestJson.get("body");
-                if (bodyElement == null || bodyElement.isJsonNull()) {
-                    body = null;
-                } else {
-                    body = bodyElement.toString();
-                }
-            } catch (Exception e) {
-                body = null;
+            if (method == null) {
+                return Response.status(400).entity("{\"error\":\"Invalid JSON\"}").build();
             }
 
             URI redirectUri;
             try {
-                redirectUri = new URI(url);
+                redirectUri = new URI(url == null ? "" : url);
             } catch (URISyntaxException e) {
-                throw new RuntimeException(e);
-            }
-
-            String path = redirectUri.getPath();
-            String targetService;
-
-            if (path.startsWith("/users/")) {
-                targetService = "http://user-service:9081";
-            } else if (path.startsWith("/quotes/")) {
-                targetService = "http://quotes-service:9082";
-            } else {
                 return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("{\"error\": \"Unsupported service path\"}")
+                        .entity("{\"error\": \"Invalid redirectURL\"}")
                         .build();
             }
 
-            String internalUrl = targetService + path;
-            if (redirectUri.getQuery() != null) {
-                internalUrl += "?" + redirectUri.getQuery();
-            }
-
-            System.out.println("Routing to: " + internalUrl);
+            System.out.println("Routing to: " + redirectUri);
             System.out.println("Method: " + method);
-            System.out.println("Body: " + body);
-
-            Client client = ClientBuilder.newClient();
-            WebTarget target = client.target(internalUrl);
-            Invocation.Builder requestBuilder = target.request(MediaType.APPLICATION_JSON)
-                    .header("Authorization", "Bearer " + jwt)
-                    .cookie("SessionId", sessionId);
-
-            Response forwardResponse;
-            try {
-                switch (method) {
-                    case "POST":
-                        if (body != null) {
-                            forwardResponse = requestBuilder.post(Entity.json(body));
-                        } else {
-                            forwardResponse = requestBuilder.post(null);
-                        }
-                        break;
-                    case "PUT":
-                        if (body != null) {
-                            forwardResponse = requestBuilder.put(Entity.json(body));
-                        } else {
-                            forwardResponse = requestBuilder.put(null);
-                        }
-                        break;
-                    case "DELETE":
-                        forwardResponse = requestBuilder.delete();
-                        break;
-                    default:
-                        forwardResponse = requestBuilder.get();
-                        break;
-                }
 
-                return Response.status(forwardResponse.getStatus())
-                        .entity(forwardResponse.readEntity(String.class))
-                        .build();
-            } catch (ProcessingException e) {
-                return Response.status(Response.Status.BAD_GATEWAY)
-                        .entity("{\"error\": \"Failed to connect to backend service\"}")
+            Response forwardResponse = serviceProxy.forward(method, redirectUri, body, jwt, sessionId);
+            if (forwardResponse == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Unsupported service path\"}")
                         .build();
             }
+            return forwardResponse;
         } else {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
@@ -332,6 +298,7 @@ public class AuthResource {
         }
 
         boolean success = sessionService.deleteSession(sessionId);
+        sessionJwtCache.invalidate(sessionId);
 
         if (success) {
             NewCookie cookie = new NewCookie.Builder("SessionId")
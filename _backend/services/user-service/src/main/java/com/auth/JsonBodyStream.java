@@ -0,0 +1,107 @@
+package com.auth;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JSON value a reader is positioned at, read as bytes one token at a time.
+ *
+ * ServiceProxy sends it as the forwarded body, so a large body goes from the incoming request to the service as
+ * the service reads it instead of being parsed into a tree and copied into a String first.
+ */
+class JsonBodyStream extends InputStream {
+
+    private final JsonReader reader;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final JsonWriter writer;
+    private byte[] chunk = new byte[0];
+    private int position;
+    private int depth;
+    private boolean done;
+
+    JsonBodyStream(JsonReader reader) {
+        this.reader = reader;
+        writer = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+        writer.setSerializeNulls(true);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    //copies tokens until there is something to hand out, false once the whole value has been read
+    private boolean fill() throws IOException {
+        while (position == chunk.length) {
+            if (done) {
+                return false;
+            }
+            copyToken();
+            writer.flush();
+            chunk = buffer.toByteArray();
+            buffer.reset();
+            position = 0;
+        }
+        return true;
+    }
+
+    private void copyToken() throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT -> {
+                reader.beginObject();
+                writer.beginObject();
+                depth++;
+            }
+            case END_OBJECT -> {
+                reader.endObject();
+                writer.endObject();
+                depth--;
+            }
+            case BEGIN_ARRAY -> {
+                reader.beginArray();
+                writer.beginArray();
+                depth++;
+            }
+            case END_ARRAY -> {
+                reader.endArray();
+                writer.endArray();
+                depth--;
+            }
+            case NAME -> writer.name(reader.nextName());
+            case STRING -> writer.value(reader.nextString());
+            case NUMBER -> writer.jsonValue(reader.nextString()); //keeps the number as it was written
+            case BOOLEAN -> writer.value(reader.nextBoolean());
+            case NULL -> {
+                reader.nextNull();
+                writer.nullValue();
+            }
+            default -> throw new IOException("Unexpected " + token + " in request body");
+        }
+        done = depth == 0 && token != JsonToken.NAME;
+    }
+}
@@ -0,0 +1,135 @@
+package com.auth;
+
+import com.ibm.websphere.security.jwt.InvalidConsumerException;
+import com.ibm.websphere.security.jwt.InvalidTokenException;
+import com.ibm.websphere.security.jwt.JwtConsumer;
+import com.ibm.websphere.security.jwt.JwtToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the claims of JWTs that already passed verification so the same token isn't re-verified on every request.
+ * Entries are keyed by a SHA-256 of the token. A hit only reads a ConcurrentHashMap, so requests don't wait on each
+ * other. Expired tokens are swept out every SWEEP_EVERY new entries rather than on every request. A cache still full
+ * of live tokens drops arbitrary ones down to TRIM_TO, so the next misses don't have to scan it again.
+ * The quote-service keeps an identical copy of this class.
+ */
+public final class JwtCache {
+
+    public record Claims(String subject, List<String> groups, long expiresAt) {}
+
+    @FunctionalInterface
+    interface Verifier {
+        Claims verify(String jwt) throws InvalidConsumerException, InvalidTokenException;
+    }
+
+    static final int MAX_ENTRIES = 10_000;
+    static final int SWEEP_EVERY = 1000;
+    static final int TRIM_TO = MAX_ENTRIES - MAX_ENTRIES / 10;
+
+    private static final Map<String, Claims> cache = new ConcurrentHashMap<>();
+    private static final AtomicInteger inserts = new AtomicInteger();
+    private static final AtomicBoolean sweeping = new AtomicBoolean();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private JwtCache() {}
+
+    public static Claims verify(String jwt) throws InvalidConsumerException, InvalidTokenException {
+        return verify(jwt, JwtCache::consume);
+    }
+
+    static Claims verify(String jwt, Verifier verifier) throws InvalidConsumerException, InvalidTokenException {
+        if(jwt == null) {
+            return verifier.verify(null); // let the consumer reject it
+        }
+        String key = hash(jwt);
+        long now = System.currentTimeMillis();
+
+        Claims claims = cache.get(key);
+        if(claims != null) {
+            if(now < claims.expiresAt()) {
+                hits.increment();
+                return claims;
+            }
+            cache.remove(key, claims);
+        }
+        misses.increment();
+
+        claims = verifier.verify(jwt); // throws if token is invalid, nothing gets cached
+        if(now < claims.expiresAt()) {
+            if(inserts.incrementAndGet() % SWEEP_EVERY == 0 || cache.size() >= MAX_ENTRIES) {
+                sweep(now);
+            }
+            cache.put(key, claims);
+        }
+        return claims;
+    }
+
+    private static Claims consume(String jwt) throws InvalidConsumerException, InvalidTokenException {
+        JwtConsumer consumer = JwtConsumer.create("defaultJwtConsumer");
+        JwtToken token = consumer.createJwt(jwt);
+
+        Object rawGroups = token.getClaims().get("groups");
+        List<String> groups = new ArrayList<>();
+        if(rawGroups instanceof List<?> list) {
+            list.forEach(group -> groups.add(group == null ? null : group.toString()));
+        }
+        long expiresAt = token.getClaims().getExpiration() * 1000L; // exp is in seconds
+        return new Claims(token.getClaims().getSubject(), Collections.unmodifiableList(groups), expiresAt);
+    }
+
+    private static void sweep(long now) {
+        if(!sweeping.compareAndSet(false, true)) {
+            return; // another request is already sweeping
+        }
+        try {
+            cache.values().removeIf(claims -> now >= claims.expiresAt());
+            if(cache.size() >= MAX_ENTRIES) {
+                //still full of live tokens, drop whichever come first, they are only verified again
+                Iterator<String> keys = cache.keySet().iterator();
+                while(cache.size() > TRIM_TO && keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static String hash(String jwt) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(jwt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM ships SHA-256
+        }
+    }
+
+    public static long hitCount() {
+        return hits.sum();
+    }
+
+    public static long missCount() {
+        return misses.sum();
+    }
+
+    public static int size() {
+        return cache.size();
+    }
+
+    static void clear() {
+        cache.clear();
+        inserts.set(0);
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -1,42 +1,21 @@
 package com.auth;
 
-import com.accounts.AccountService;
 import com.ibm.websphere.security.jwt.*;
 import jakarta.enterprise.context.RequestScoped;
-import jakarta.enterprise.inject.spi.CDI;
-import jakarta.ws.rs.core.Response;
-import org.bson.Document;
-import org.bson.types.ObjectId;
-
-import static com.mongodb.client.model.Filters.eq;
 
 @RequestScoped
 public class JwtService {
 
-    public static String buildJwt(String id) {
-        try {
-            AccountService accountService = CDI.current().select(AccountService.class).get();
-
-            ObjectId objectId = new ObjectId();
-
-            try {
-                objectId = new ObjectId(id);
-            } catch (Exception e) {
-                System.out.println(e);
-            }
+    // same as expiresInSeconds on defaultJwtBuilder in server.xml
+    public static final long JWT_LIFETIME_MS = 300_000;
 
-            Document user = accountService.getAccountCollection().find(eq("_id", objectId)).first();
-
-            System.out.println("user from jwt builder" + user);
-
-            String[] groups;
-            if (user == null) {
-                groups = new String[] { "user" };
-            } else if (user.getInteger("admin") == 1) {
-                groups = new String[] { "admin" };
-            } else {
-                groups = new String[] { "user" };
-            }
+    /**
+     * Signs a token for the user. The group comes from the caller (the session, or the account at login),
+     * so no lookup is needed here.
+     */
+    public static String buildJwt(String id, boolean admin) {
+        try {
+            String[] groups = admin ? new String[] { "admin" } : new String[] { "user" };
 
             return JwtBuilder.create("defaultJwtBuilder")
                     .claim(Claims.SUBJECT, id)
@@ -0,0 +1,157 @@
+package com.auth;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Forwards the calls /auth/jwt makes on behalf of the frontend to the backend services.
+ *
+ * One HttpClient is shared by every request, so connections to each service are kept alive and reused instead of
+ * opening a new client per call. The request body is sent as it is read and the upstream body is streamed back as
+ * it arrives, with the upstream status and headers. Each route has its own timeout, a service that doesn't answer
+ * in time gets a 504.
+ *
+ * Calls to user-service itself go to the local listener over loopback instead of back out through the container
+ * network.
+ */
+@ApplicationScoped
+public class ServiceProxy {
+
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+
+    record Route(String prefix, String target, Duration timeout) {}
+
+    static final List<Route> ROUTES = List.of(
+            new Route("/users/", "http://localhost:9081", Duration.ofSeconds(10)),
+            new Route("/quotes/", "http://quotes-service:9082", Duration.ofSeconds(20))
+    );
+
+    // hop-by-hop headers only mean something on the connection they came in on
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "proxy-authenticate",
+            "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", "content-length", ":status");
+
+    private final HttpClient httpClient;
+    private final List<Route> routes;
+
+    public ServiceProxy() {
+        this(ROUTES);
+    }
+
+    ServiceProxy(List<Route> routes) {
+        this.routes = routes;
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Null if no service serves the path. The body is read while the request is sent, null for none.
+     */
+    public Response forward(String method, URI uri, InputStream body, String jwt, String sessionId) {
+        String path = uri.getRawPath();
+        Route route = null;
+        for (Route candidate : routes) {
+            if (path != null && path.startsWith(candidate.prefix())) {
+                route = candidate;
+                break;
+            }
+        }
+        if (route == null) {
+            return null;
+        }
+
+        String internalUrl = route.target() + path;
+        if (uri.getRawQuery() != null) {
+            internalUrl += "?" + uri.getRawQuery();
+        }
+
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofInputStream(() -> body);
+        String verb = switch (method == null ? "GET" : method) {
+            case "POST", "PUT", "DELETE", "PATCH" -> method;
+            default -> "GET";
+        };
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(internalUrl))
+                .timeout(route.timeout())
+                .header("Accept", MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + jwt)
+                .header("Cookie", "SessionId=" + sessionId)
+                .method(verb, verb.equals("GET") ? HttpRequest.BodyPublishers.noBody() : publisher);
+        if (body != null) {
+            request.header("Content-Type", MediaType.APPLICATION_JSON);
+        }
+
+        HttpResponse<InputStream> upstream;
+        try {
+            upstream = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            System.out.println("Timed out forwarding to " + internalUrl);
+            return error(Response.Status.GATEWAY_TIMEOUT, "Backend service timed out");
+        } catch (ConnectException e) {
+            System.out.println("Could not connect to " + internalUrl + ": " + e);
+            return error(Response.Status.BAD_GATEWAY, "Failed to connect to backend service");
+        } catch (IOException e) {
+            System.out.println("Exception forwarding to " + internalUrl + ": " + e);
+            return error(Response.Status.BAD_GATEWAY, "Failed to connect to backend service");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error(Response.Status.SERVICE_UNAVAILABLE, "Request interrupted");
+        }
+
+        Response.ResponseBuilder response = Response.status(upstream.statusCode());
+        for (Map.Entry<String, List<String>> header : upstream.headers().map().entrySet()) {
+            if (HOP_BY_HOP.contains(header.getKey().toLowerCase())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                response.header(header.getKey(), value);
+            }
+        }
+
+        InputStream upstreamBody = upstream.body();
+        if (upstream.statusCode() == 204 || upstream.statusCode() == 304) {
+            closeQuietly(upstreamBody);
+            return response.build();
+        }
+        StreamingOutput stream = output -> {
+            try (InputStream in = upstreamBody) {
+                in.transferTo(output);
+            }
+        };
+        return response.entity(stream).build();
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(new Document("error", message).toJson())
+                .build();
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
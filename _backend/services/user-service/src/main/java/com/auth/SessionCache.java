@@ -0,0 +1,194 @@
+package com.auth;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sessions are read on every proxied call, so they are kept in memory for TTL_MS after being loaded.
+ *
+ * Sliding the expiry doesn't write straight away either. The newest LastActivity/Expires of each session is kept
+ * and written out in one bulkWrite every activity interval, so a busy session costs at most one write per interval.
+ * The interval is read from SESSION_ACTIVITY_WRITE_MS and defaults to a minute.
+ */
+@ApplicationScoped
+public class SessionCache {
+
+    static final long TTL_MS = 30_000;
+    static final long DEFAULT_ACTIVITY_WRITE_MS = 60_000;
+    static final int MAX_ENTRIES = 10_000;
+
+    private record Entry(Session session, long loadedAt) {}
+
+    private record Activity(Date lastActivity, Date expires) {}
+
+    @Inject
+    private MongoClient client;
+
+    private MongoCollection<Document> sessionsCollection;
+    private ScheduledExecutorService writer;
+    private long ttlMs = TTL_MS;
+    private long activityWriteMs = DEFAULT_ACTIVITY_WRITE_MS;
+
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Activity> pendingActivity = new ConcurrentHashMap<>();
+
+    public SessionCache() {}
+
+    @PostConstruct
+    public void init() {
+        sessionsCollection = client.getDatabase("Accounts").getCollection("Sessions");
+        String configured = System.getenv("SESSION_ACTIVITY_WRITE_MS");
+        if (configured != null && !configured.isBlank()) {
+            try {
+                activityWriteMs = Long.parseLong(configured.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid SESSION_ACTIVITY_WRITE_MS: " + configured);
+            }
+        }
+        startWriter();
+    }
+
+    public SessionCache(MongoClient mongoClient, String dbName, String collectionName, long ttlMs, long activityWriteMs) {
+        client = mongoClient;
+        sessionsCollection = client.getDatabase(dbName).getCollection(collectionName);
+        this.ttlMs = ttlMs;
+        this.activityWriteMs = activityWriteMs;
+        startWriter();
+    }
+
+    private void startWriter() {
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-activity-write");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, activityWriteMs, activityWriteMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        flushQuietly(); // don't lose activity still in memory
+    }
+
+    /**
+     * Cached copy of the session, loading it with the loader when missing or older than the TTL.
+     * Null if the loader finds nothing.
+     */
+    public Session get(String sessionId, Function<String, Session> loader) {
+        if (sessionId == null) {
+            return null;
+        }
+        Entry entry = sessions.get(sessionId);
+        long now = System.currentTimeMillis();
+        if (entry == null || now - entry.loadedAt() > ttlMs) {
+            Session loaded = loader.apply(sessionId);
+            if (loaded == null) {
+                sessions.remove(sessionId);
+                return null;
+            }
+            //activity that hasn't been written yet is newer than what was just read
+            Activity activity = pendingActivity.get(sessionId);
+            if (activity != null) {
+                loaded.LastActivity = activity.lastActivity();
+                loaded.Expires = activity.expires();
+            }
+            if (sessions.size() >= MAX_ENTRIES) {
+                evictExpired(now);
+            }
+            entry = new Entry(loaded, now);
+            sessions.put(sessionId, entry);
+        }
+        return copy(entry.session());
+    }
+
+    private void evictExpired(long now) {
+        sessions.values().removeIf(entry -> now - entry.loadedAt() > ttlMs);
+        if (sessions.size() >= MAX_ENTRIES) {
+            sessions.clear();
+        }
+    }
+
+    /**
+     * Records new activity for a session, written to the database with the next flush.
+     */
+    public void touch(String sessionId, Date lastActivity, Date expires) {
+        pendingActivity.put(sessionId, new Activity(lastActivity, expires));
+        sessions.computeIfPresent(sessionId, (id, entry) -> {
+            Session session = copy(entry.session());
+            session.LastActivity = lastActivity;
+            session.Expires = expires;
+            return new Entry(session, entry.loadedAt());
+        });
+    }
+
+    /**
+     * Drops the cached session and any activity not written yet, used when the session is changed or deleted.
+     */
+    public void invalidate(String sessionId) {
+        if (sessionId != null) {
+            sessions.remove(sessionId);
+            pendingActivity.remove(sessionId);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.out.println("Exception writing session activity: " + e);
+        }
+    }
+
+    public synchronized int flush() {
+        if (pendingActivity.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Activity> batch = new HashMap<>();
+        for (String sessionId : new ArrayList<>(pendingActivity.keySet())) {
+            Activity activity = pendingActivity.remove(sessionId);
+            if (activity != null && ObjectId.isValid(sessionId)) {
+                batch.put(sessionId, activity);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        batch.forEach((sessionId, activity) -> writes.add(new UpdateOneModel<>(
+                new Document("_id", new ObjectId(sessionId)),
+                new Document("$set", new Document("LastActivity", activity.lastActivity())
+                        .append("Expires", activity.expires())))));
+
+        try {
+            sessionsCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (RuntimeException e) {
+            //put it back unless something newer came in meanwhile
+            batch.forEach(pendingActivity::putIfAbsent);
+            throw e;
+        }
+        return batch.size();
+    }
+
+    private static Session copy(Session session) {
+        return new Session(session.SessionId, session.UserId, session.admin, session.Expires, session.LastActivity);
+    }
+}
@@ -0,0 +1,61 @@
+package com.auth;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Signed tokens per session. /auth/jwt is called for every proxied request, but a token is good for five minutes,
+ * so the last one is handed out again until it gets within REFRESH_MARGIN_MS of expiring.
+ *
+ * A token is only reused for the same user and group it was signed for, a session whose admin bit changed gets a
+ * new one straight away.
+ */
+@ApplicationScoped
+public class SessionJwtCache {
+
+    static final long REFRESH_MARGIN_MS = 60_000;
+    static final int MAX_ENTRIES = 10_000;
+
+    private record Entry(String userId, int admin, String jwt, long expiresAt) {}
+
+    private final Map<String, Entry> tokens = new ConcurrentHashMap<>();
+    private final Function<Session, String> signer;
+    private final long lifetimeMs;
+
+    public SessionJwtCache() {
+        this(session -> JwtService.buildJwt(session.UserId, session.admin == 1), JwtService.JWT_LIFETIME_MS);
+    }
+
+    SessionJwtCache(Function<Session, String> signer, long lifetimeMs) {
+        this.signer = signer;
+        this.lifetimeMs = lifetimeMs;
+    }
+
+    public String get(String sessionId, Session session) {
+        long now = System.currentTimeMillis();
+        Entry entry = tokens.get(sessionId);
+        if (entry != null && entry.expiresAt() - now > REFRESH_MARGIN_MS
+                && entry.admin() == session.admin && entry.userId().equals(session.UserId)) {
+            return entry.jwt();
+        }
+
+        String jwt = signer.apply(session);
+        if (tokens.size() >= MAX_ENTRIES) {
+            tokens.values().removeIf(old -> old.expiresAt() - now <= REFRESH_MARGIN_MS);
+            if (tokens.size() >= MAX_ENTRIES) {
+                tokens.clear();
+            }
+        }
+        tokens.put(sessionId, new Entry(session.UserId, session.admin, jwt, now + lifetimeMs));
+        return jwt;
+    }
+
+    public void invalidate(String sessionId) {
+        if (sessionId != null) {
+            tokens.remove(sessionId);
+        }
+    }
+}
@@ -25,6 +25,9 @@ public class SessionService {
     @Inject
     private MongoClient client;
 
+    @Inject
+    private SessionCache sessionCache;
+
     private MongoDatabase sessionsDB;
     private MongoCollection<Document> sessionsCollection;
 
@@ -42,6 +45,11 @@ public class SessionService {
         sessionsCollection = sessionsDB.getCollection(collectionName);
     }
 
+    public SessionService(MongoClient mongoClient, String dbName, String collectionName, SessionCache sessionCache) {
+        this(mongoClient, dbName, collectionName);
+        this.sessionCache = sessionCache;
+    }
+
     public String createSession(Session session) {
         Document sessionDoc = new Document()
                 .append("_id", session.SessionId)
@@ -78,11 +86,42 @@ public class SessionService {
                 eq("_id", objectId),
                 new Document("$set", sessionDoc)
         );
+        if (sessionCache != null) {
+            sessionCache.invalidate(sessionId);
+        }
 
         return updateResult.getModifiedCount() == 1;
     }
 
+    /**
+     * Slides the session forward. With the cache the write is deferred and coalesced with other activity on the
+     * same session, so this only fails if the session is gone.
+     */
+    public boolean touchSession(String sessionId, Date lastActivity, Date expires) {
+        if (sessionCache == null) {
+            Session session = getSession(sessionId);
+            if (session == null) {
+                return false;
+            }
+            session.LastActivity = lastActivity;
+            session.Expires = expires;
+            return updateSession(sessionId, session);
+        }
+        if (sessionId == null || !ObjectId.isValid(sessionId)) {
+            return false;
+        }
+        sessionCache.touch(sessionId, lastActivity, expires);
+        return true;
+    }
+
     public Session getSession(String sessionId) {
+        if (sessionCache != null) {
+            return sessionCache.get(sessionId, this::findSession);
+        }
+        return findSession(sessionId);
+    }
+
+    private Session findSession(String sessionId) {
         try {
             ObjectId sessionObjectId = new ObjectId(sessionId);
             Document sessionDoc = sessionsCollection.find(eq("_id", sessionObjectId)).first();
@@ -104,6 +143,9 @@ public class SessionService {
 
             Bson query = eq("_id", objectId);
             long deletedCount = sessionsCollection.deleteOne(query).getDeletedCount();
+            if (sessionCache != null) {
+                sessionCache.invalidate(sessionId);
+            }
             return deletedCount > 0;
         } catch(Exception e) {
             System.out.println(e);
@@ -1,10 +1,17 @@
 package com.moderation;
 
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
@@ -12,10 +19,47 @@ import jakarta.json.JsonReader;
 
 public class ProfanityClass {
 
-    private final HttpClient client = HttpClient.newHttpClient();
+    private static final HttpClient client = HttpClient.newHttpClient();
     private static final URI PROFANITY_API = URI.create("https://vector.profanity.dev");
+    private static final String WORD_LIST = "/moderation/profanity.txt";
+
+    //word list is only read once, every instance shares the same automaton
+    private static final ProfanityFilter localFilter = loadFilter(System.getenv("PROFANITY_WORD_LIST"));
+
+    //remote api is a second opinion for messages the local list passes, off unless PROFANITY_API_ENABLED=true
+    private static final boolean remoteEnabled = Boolean.parseBoolean(System.getenv("PROFANITY_API_ENABLED"));
 
     public boolean checkProfanity(String message) {
+        if(message == null || message.isBlank()) {
+            return false;
+        }
+        if(localFilter.matches(message)) {
+            return true;
+        }
+        return remoteEnabled && checkRemote(message);
+    }
+
+    static ProfanityFilter loadFilter(String wordListPath) {
+        try {
+            if(wordListPath != null && !wordListPath.isBlank()) {
+                try(Reader reader = new FileReader(wordListPath, StandardCharsets.UTF_8)) {
+                    return ProfanityFilter.load(reader);
+                }
+            }
+            try(InputStream stream = ProfanityClass.class.getResourceAsStream(WORD_LIST)) {
+                if(stream == null) {
+                    System.out.println("Profanity word list " + WORD_LIST + " is missing");
+                    return ProfanityFilter.of(List.of());
+                }
+                return ProfanityFilter.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ProfanityFilter.of(List.of());
+        }
+    }
+
+    boolean checkRemote(String message) {
         try {
             // Build the JSON body
             String jsonBody = "{\"message\":\"" + message.replace("\"", "\\\"") + "\"}";
@@ -23,6 +67,7 @@ public class ProfanityClass {
             // Fire the HTTP request
             HttpRequest request = HttpRequest.newBuilder(PROFANITY_API)
                     .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(2))
                     .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                     .build();
 
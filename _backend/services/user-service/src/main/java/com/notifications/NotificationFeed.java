@@ -0,0 +1,169 @@
+package com.notifications;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Reads a user's notifications a page at a time, newest first.
+ *
+ * Pages are keyed on (to, _id desc) and the next page starts after the _id of the last notification of the previous
+ * one, so every page is one index range scan no matter how far back it is. Documents are encoded straight from the
+ * cursor into the response, ids as plain hex strings like before.
+ *
+ * Unread notifications are the ones newer than the last one the user has seen, kept on the account as
+ * NotificationsSeen, so the count is a range count on the same index and never reads a notification.
+ */
+public class NotificationFeed {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+    static final String INDEX_NAME = "to_1__id_-1";
+
+    private static final Bson INDEX = Indexes.compoundIndex(Indexes.ascending("to"), Indexes.descending("_id"));
+    private static final Bson PROJECTION = Projections.include("from", "to", "type", "quote_id", "Created_at");
+    private static final String[] HEX_FIELDS = { "_id", "from", "to", "quote_id" };
+
+    private static final JsonWriterSettings SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+    private static final Codec<Document> CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+    private static final EncoderContext CONTEXT = EncoderContext.builder().build();
+
+    private static volatile boolean indexCreated;
+
+    private final MongoCollection<Document> notificationsCollection;
+    private final MongoCollection<Document> usersCollection;
+
+    public NotificationFeed(MongoCollection<Document> notificationsCollection, MongoCollection<Document> usersCollection) {
+        this.notificationsCollection = notificationsCollection;
+        this.usersCollection = usersCollection;
+        if (!indexCreated) {
+            try {
+                notificationsCollection.createIndex(INDEX, new IndexOptions().name(INDEX_NAME));
+                indexCreated = true;
+            } catch (Exception e) {
+                System.out.println("Could not create to/_id index on notifications: " + e);
+            }
+        }
+    }
+
+    private static Document pageFilter(ObjectId to, ObjectId after) {
+        Document filter = new Document("to", to);
+        if (after != null) {
+            filter.append("_id", new Document("$lt", after));
+        }
+        return filter;
+    }
+
+    /**
+     * Up to limit notifications sent to the user, newest first, older than after if it isn't null.
+     * The cursor is only opened when the response is written.
+     */
+    public StreamingOutput page(ObjectId to, ObjectId after, int limit) {
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            try (MongoCursor<Document> cursor = notificationsCollection.find(pageFilter(to, after))
+                    .projection(PROJECTION)
+                    .sort(new Document("_id", -1))
+                    .limit(limit)
+                    .batchSize(limit)
+                    .iterator()) {
+                writeArray(cursor, writer);
+            }
+            writer.flush();
+        };
+    }
+
+    /**
+     * Every notification sent to the user as one json array, newest first.
+     */
+    public void writeAll(ObjectId to, Writer writer) throws IOException {
+        try (MongoCursor<Document> cursor = notificationsCollection.find(new Document("to", to))
+                .projection(PROJECTION)
+                .sort(new Document("_id", -1))
+                .iterator()) {
+            writeArray(cursor, writer);
+        }
+    }
+
+    static void writeArray(Iterator<Document> notifications, Writer writer) throws IOException {
+        writer.write('[');
+        boolean first = true;
+        while (notifications.hasNext()) {
+            Document notification = notifications.next();
+            for (String field : HEX_FIELDS) {
+                if (notification.get(field) instanceof ObjectId id) {
+                    notification.put(field, id.toHexString());
+                }
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            CODEC.encode(new JsonWriter(writer, SETTINGS), notification, CONTEXT);
+        }
+        writer.write(']');
+    }
+
+    /**
+     * One notification in the same form as in a page.
+     */
+    static String toJson(Document notification) {
+        StringWriter writer = new StringWriter();
+        Document copy = new Document(notification);
+        for (String field : HEX_FIELDS) {
+            if (copy.get(field) instanceof ObjectId id) {
+                copy.put(field, id.toHexString());
+            }
+        }
+        CODEC.encode(new JsonWriter(writer, SETTINGS), copy, CONTEXT);
+        return writer.toString();
+    }
+
+    /**
+     * How many notifications arrived after the last one the user has seen, -1 if there's no such user.
+     */
+    public long unreadCount(ObjectId to) {
+        Document user = usersCollection.find(new Document("_id", to)).projection(Projections.include("NotificationsSeen")).first();
+        if (user == null) {
+            return -1;
+        }
+        Document filter = new Document("to", to);
+        if (user.get("NotificationsSeen") instanceof ObjectId seen) {
+            filter.append("_id", new Document("$gt", seen));
+        }
+        return notificationsCollection.countDocuments(filter);
+    }
+
+    /**
+     * Marks every notification up to and including seen as read. Never moves back, so marking an older one does
+     * nothing. Returns false if there's no such user.
+     */
+    public boolean markSeen(ObjectId to, ObjectId seen) {
+        Document updated = usersCollection.findOneAndUpdate(new Document("_id", to),
+                new Document("$max", new Document("NotificationsSeen", seen)),
+                new FindOneAndUpdateOptions().projection(Projections.include("_id")).returnDocument(ReturnDocument.AFTER));
+        return updated != null;
+    }
+}
@@ -0,0 +1,240 @@
+package com.notifications;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes new notifications to the users that have a stream open, so the frontend doesn't have to poll for them.
+ *
+ * Streams are kept per user in memory. Notifications created by this instance are handed to publish() and sent to
+ * the recipient's streams right away. With NOTIFICATIONS_CHANGE_STREAM=true the hub watches the Notifications
+ * collection instead and sends every insert, whichever instance made it, so it works with more than one
+ * user-service. That needs MongoDB to run as a replica set. A lost change stream is resumed where it stopped, until
+ * then this instance's notifications are sent directly.
+ *
+ * Every stream gets a heartbeat so idle connections aren't dropped by proxies and closed ones are noticed.
+ */
+@ApplicationScoped
+public class NotificationHub {
+
+    static final int MAX_STREAMS_PER_USER = 5;
+    static final long HEARTBEAT_MS = 25_000;
+    static final long WATCH_RETRY_MS = 5_000;
+
+    /**
+     * One open connection to a client.
+     */
+    public interface Stream {
+        // false once the client is gone
+        boolean send(String id, String json);
+        boolean heartbeat();
+        void close();
+    }
+
+    @Inject
+    private MongoClient client;
+
+    private final Map<ObjectId, Deque<Stream>> streams = new ConcurrentHashMap<>();
+    private MongoCollection<Document> notificationsCollection;
+    private ScheduledExecutorService heartbeats;
+    private Thread watcher;
+    private volatile boolean watching;
+    // null while the change stream isn't open, publish() then sends to local streams itself
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+
+    public NotificationHub() {}
+
+    @PostConstruct
+    public void init() {
+        notificationsCollection = client.getDatabase("Accounts").getCollection("Notifications");
+        start("true".equalsIgnoreCase(System.getenv("NOTIFICATIONS_CHANGE_STREAM")), HEARTBEAT_MS);
+    }
+
+    NotificationHub(MongoCollection<Document> notificationsCollection, boolean changeStream, long heartbeatMs) {
+        this.notificationsCollection = notificationsCollection;
+        start(changeStream, heartbeatMs);
+    }
+
+    private void start(boolean changeStream, long heartbeatMs) {
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        if (changeStream) {
+            watching = true;
+            watcher = new Thread(this::watch, "notification-change-stream");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watching = false;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> open = cursor;
+        if (open != null) {
+            try {
+                open.close();
+            } catch (Exception ignored) {
+            }
+        }
+        heartbeats.shutdownNow();
+        for (Deque<Stream> userStreams : streams.values()) {
+            synchronized (userStreams) {
+                userStreams.forEach(Stream::close);
+                userStreams.clear();
+            }
+        }
+        streams.clear();
+    }
+
+    /**
+     * Starts sending the user's new notifications to the stream. A user with too many streams open loses the oldest.
+     */
+    public void subscribe(ObjectId userId, Stream stream) {
+        List<Stream> dropped = new ArrayList<>(1);
+        streams.compute(userId, (id, userStreams) -> {
+            Deque<Stream> updated = userStreams == null ? new ArrayDeque<>() : userStreams;
+            synchronized (updated) {
+                updated.addLast(stream);
+                if (updated.size() > MAX_STREAMS_PER_USER) {
+                    dropped.add(updated.pollFirst());
+                }
+            }
+            return updated;
+        });
+        dropped.forEach(Stream::close);
+    }
+
+    public void unsubscribe(ObjectId userId, Stream stream) {
+        streams.computeIfPresent(userId, (id, userStreams) -> {
+            synchronized (userStreams) {
+                userStreams.remove(stream);
+                return userStreams.isEmpty() ? null : userStreams;
+            }
+        });
+    }
+
+    int streamCount(ObjectId userId) {
+        Deque<Stream> userStreams = streams.get(userId);
+        if (userStreams == null) {
+            return 0;
+        }
+        synchronized (userStreams) {
+            return userStreams.size();
+        }
+    }
+
+    boolean changeStreamOpen() {
+        return cursor != null;
+    }
+
+    /**
+     * Called after notifications were inserted here. While the change stream is open, they arrive through it instead.
+     */
+    public void publish(List<Document> notifications) {
+        if (cursor != null) {
+            return;
+        }
+        for (Document notification : notifications) {
+            deliver(notification);
+        }
+    }
+
+    void deliver(Document notification) {
+        Object to = notification.get("to");
+        ObjectId userId = to instanceof ObjectId id ? id
+                : to instanceof String string && ObjectId.isValid(string) ? new ObjectId(string) : null;
+        if (userId == null || !streams.containsKey(userId)) {
+            return;
+        }
+        String id = String.valueOf(notification.get("_id") instanceof ObjectId objectId ? objectId.toHexString() : notification.get("_id"));
+        String json = NotificationFeed.toJson(notification);
+        for (Stream stream : snapshot(userId)) {
+            if (!stream.send(id, json)) {
+                unsubscribe(userId, stream);
+            }
+        }
+    }
+
+    private List<Stream> snapshot(ObjectId userId) {
+        Deque<Stream> userStreams = streams.get(userId);
+        if (userStreams == null) {
+            return List.of();
+        }
+        synchronized (userStreams) {
+            return new ArrayList<>(userStreams);
+        }
+    }
+
+    private void heartbeat() {
+        for (ObjectId userId : streams.keySet()) {
+            for (Stream stream : snapshot(userId)) {
+                if (!stream.heartbeat()) {
+                    unsubscribe(userId, stream);
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        List<Bson> pipeline = List.of(Aggregates.match(Filters.eq("operationType", "insert")));
+        BsonDocument resumeToken = null;
+        while (watching) {
+            try {
+                ChangeStreamIterable<Document> changes = notificationsCollection.watch(pipeline).maxAwaitTime(1, TimeUnit.SECONDS);
+                if (resumeToken != null) {
+                    changes = changes.resumeAfter(resumeToken);
+                }
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> open = changes.cursor()) {
+                    cursor = open;
+                    while (watching) {
+                        ChangeStreamDocument<Document> change = open.tryNext();
+                        if (open.getResumeToken() != null) {
+                            resumeToken = open.getResumeToken();
+                        }
+                        if (change != null && change.getFullDocument() != null) {
+                            deliver(change.getFullDocument());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                cursor = null;
+                if (!watching) {
+                    return;
+                }
+                System.out.println("Notification change stream failed, retrying: " + e);
+                try {
+                    Thread.sleep(WATCH_RETRY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -2,24 +2,38 @@ package com.notifications;
 
 import com.accounts.Account;
 import com.accounts.AccountService;
+import com.auth.JwtCache;
+import com.auth.Session;
+import com.auth.SessionService;
+import com.ibm.websphere.security.jwt.InvalidConsumerException;
+import com.ibm.websphere.security.jwt.InvalidTokenException;
 import com.mongodb.client.result.InsertOneResult;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.CookieParam;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonWriter;
 import org.bson.Document;
+import org.bson.json.JsonParseException;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
@@ -37,30 +51,43 @@ import com.mongodb.client.FindIterable;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Date;
+import java.util.List;
 
 import static com.mongodb.client.model.Filters.eq;
 
 @Path("/notifications")
 public class NotificationResource {
 
+    static final int MAX_BULK_NOTIFICATIONS = 1000;
+
     @Inject
     NotificationService notificationService;
 
     @Inject
     AccountService accountService;
 
+    @Inject
+    NotificationHub notificationHub;
+
+    @Inject
+    SessionService sessionService;
+
     @GET
     @Path("/user/{userId}")
     @Produces(MediaType.APPLICATION_JSON)
     @APIResponses(value = {
-            @APIResponse(responseCode = "200", description = "Successfully found and returned user's notifications"),
-            @APIResponse(responseCode = "400", description = "Given ID is not a valid ObjectId"),
-            @APIResponse(responseCode = "404", description = "User not found"),
+            @APIResponse(responseCode = "200", description = "Successfully found and returned a page of the user's notifications"),
+            @APIResponse(responseCode = "400", description = "Given ID, after or limit is not valid"),
             @APIResponse(responseCode = "409", description = "Exception occurred during operation")
     })
-    @Operation(summary = "Get all notifications for a specific user",
-            description = "Returns JSON of all notifications where the user is the recipient, enter ID of user recieving notifications")
-    public Response getNotificationsForUser(@PathParam("userId") String userId, @Context HttpHeaders headers) {
+    @Operation(summary = "Get notifications for a specific user, newest first",
+            description = "Returns JSON of up to limit notifications where the user is the recipient, enter ID of user recieving notifications." +
+                    " For the next page pass the _id of the last notification as after.")
+    public Response getNotificationsForUser(@PathParam("userId") String userId,
+                                            @QueryParam("limit") @DefaultValue("" + NotificationFeed.DEFAULT_PAGE_SIZE) int limit,
+                                            @QueryParam("after") String after,
+                                            @Context HttpHeaders headers) {
         String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
 
         if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
@@ -71,30 +98,31 @@ public class NotificationResource {
 
         String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
 
-        Document userDoc = accountService.retrieveUserFromJWT(jwtString);
-
-        if (userDoc == null) {
+        if (accountService.userIdFromJWT(jwtString) == null) {
             return Response.status(Response.Status.UNAUTHORIZED).entity(new Document("error", "User not authorized to have notifications").toJson()).build();
         }
 
-        try {
-            if(!notificationService.isValidObjectId(userId)) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("Given ID is not a valid ObjectId")
-                        .build();
-            }
-
-            // if type is Delete, then look in the moderation delete for quote
-            ObjectId userObjectId = new ObjectId(userId);
-            Document user = notificationService.getUsersCollection().find(new Document("_id", userObjectId)).first();
-            if (user == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity("User not found")
-                        .build();
-            }
+        if(!notificationService.isValidObjectId(userId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Given ID is not a valid ObjectId")
+                    .build();
+        }
+        if(after != null && !notificationService.isValidObjectId(after)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("after is not a valid ObjectId")
+                    .build();
+        }
+        if(limit < 1 || limit > NotificationFeed.MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("limit has to be between 1 and " + NotificationFeed.MAX_PAGE_SIZE)
+                    .build();
+        }
 
-            String jsonNotifications = notificationService.getNotificationsByUser(userObjectId);
-            return Response.ok(jsonNotifications).build();
+        try {
+            // a user that doesn't exist has no notifications, no need to look it up
+            StreamingOutput page = notificationService.feed()
+                    .page(new ObjectId(userId), after == null ? null : new ObjectId(after), limit);
+            return Response.ok(page, MediaType.APPLICATION_JSON).build();
         } catch (Exception e) {
             return Response.status(Response.Status.CONFLICT)
                     .entity("Exception Occurred: " + e)
@@ -102,6 +130,127 @@ public class NotificationResource {
         }
     }
 
+    @GET
+    @Path("/user/{userId}/unread")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Returns {\"unread\": count}"),
+            @APIResponse(responseCode = "400", description = "Given ID is not a valid ObjectId"),
+            @APIResponse(responseCode = "401", description = "Token is not for this user"),
+            @APIResponse(responseCode = "404", description = "User not found")
+    })
+    @Operation(summary = "Count the user's unread notifications",
+            description = "Counts the notifications that arrived after the last one the user marked as seen")
+    public Response getUnreadCount(@PathParam("userId") String userId, @Context HttpHeaders headers) {
+        Response denied = checkOwner(userId, headers);
+        if (denied != null) {
+            return denied;
+        }
+        long unread = notificationService.feed().unreadCount(new ObjectId(userId));
+        if (unread < 0) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("User not found")
+                    .build();
+        }
+        return Response.ok(new Document("unread", unread).toJson()).build();
+    }
+
+    @PUT
+    @Path("/user/{userId}/seen/{notificationId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Notifications up to this one are marked as seen"),
+            @APIResponse(responseCode = "400", description = "Given ID is not a valid ObjectId"),
+            @APIResponse(responseCode = "401", description = "Token is not for this user"),
+            @APIResponse(responseCode = "404", description = "User not found")
+    })
+    @Operation(summary = "Mark the user's notifications as seen",
+            description = "Marks the given notification and every older one as seen, usually the newest one shown to the user")
+    public Response markSeen(@PathParam("userId") String userId, @PathParam("notificationId") String notificationId,
+                             @Context HttpHeaders headers) {
+        Response denied = checkOwner(userId, headers);
+        if (denied != null) {
+            return denied;
+        }
+        if (!notificationService.isValidObjectId(notificationId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Given ID is not a valid ObjectId")
+                    .build();
+        }
+        if (!notificationService.feed().markSeen(new ObjectId(userId), new ObjectId(notificationId))) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("User not found")
+                    .build();
+        }
+        return Response.ok(new Document("success", true).toJson()).build();
+    }
+
+    @GET
+    @Path("/stream/{userId}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Stream of the user's new notifications"),
+            @APIResponse(responseCode = "400", description = "Given ID is not a valid ObjectId"),
+            @APIResponse(responseCode = "401", description = "Not logged in as this user")
+    })
+    @Operation(summary = "Stream the user's new notifications as they are created",
+            description = "Server-sent events, one \"notification\" event per new notification in the same form as the" +
+                    " list. Takes a bearer token, or the session cookie so the browser's EventSource can connect directly.")
+    public void streamNotifications(@PathParam("userId") String userId, @CookieParam("SessionId") String sessionId,
+                                    @Context HttpHeaders headers, @Context SseEventSink sink, @Context Sse sse) {
+        Response denied = headers.getHeaderString(HttpHeaders.AUTHORIZATION) == null && sessionId != null
+                ? checkSession(userId, sessionId)
+                : checkOwner(userId, headers);
+        if (denied != null) {
+            throw new WebApplicationException(denied);
+        }
+        ObjectId userObjectId = new ObjectId(userId);
+        SseStream stream = new SseStream(sink, sse);
+        notificationHub.subscribe(userObjectId, stream);
+        // lets the client know it is connected, proxies also pass the headers on right away
+        if (!stream.heartbeat()) {
+            notificationHub.unsubscribe(userObjectId, stream);
+        }
+    }
+
+    private Response checkSession(String userId, String sessionId) {
+        if (!notificationService.isValidObjectId(userId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Given ID is not a valid ObjectId")
+                    .build();
+        }
+        Session session = sessionService.getSession(sessionId);
+        if (session == null || session.Expires.before(new Date()) || !userId.equals(session.UserId)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "User not authorized to read these notifications").toJson())
+                    .build();
+        }
+        return null;
+    }
+
+    // null if the token belongs to userId, otherwise the response to send
+    private Response checkOwner(String userId, HttpHeaders headers) {
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+
+        if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Missing or invalid Authorization header").toJson())
+                    .build();
+        }
+        if (!notificationService.isValidObjectId(userId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Given ID is not a valid ObjectId")
+                    .build();
+        }
+        ObjectId tokenUser = accountService.userIdFromJWT(authHeader.replaceFirst("(?i)^Bearer\\s+", ""));
+        if (tokenUser == null || !tokenUser.toHexString().equals(userId)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "User not authorized to read these notifications").toJson())
+                    .build();
+        }
+        return null;
+    }
+
     @POST
     @Path("/create")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -206,6 +355,7 @@ public class NotificationResource {
                     .append("Created_at", System.currentTimeMillis());
 
             InsertOneResult result = notificationService.getNotificationsCollection().insertOne(notificationDoc);
+            notificationHub.publish(List.of(notificationDoc));
 
             toUser.remove("expires_at");
 
@@ -233,6 +383,66 @@ public class NotificationResource {
         }
     }
 
+    @POST
+    @Path("/bulk")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Notifications created. Returns {\"created\": count, \"rejected\": [indexes]}," +
+                    " rejected notifications had invalid ids or a recipient that doesn't exist"),
+            @APIResponse(responseCode = "400", description = "Body is not {\"notifications\": [...]} or has too many notifications"),
+            @APIResponse(responseCode = "401", description = "Missing or invalid service token"),
+            @APIResponse(responseCode = "409", description = "Exception occurred during operation")
+    })
+    @Operation(summary = "Create many notifications at once, used by other services",
+            description = "Creates up to " + MAX_BULK_NOTIFICATIONS + " notifications in one request. Each notification has from, to, type" +
+                    " and quote_id, plus an optional _id so sending the same batch again doesn't create duplicates." +
+                    " Only accepts tokens in the service group.")
+    public Response createNotifications(String jsonInput, @Context HttpHeaders headers) {
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+
+        if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Missing or invalid Authorization header").toJson())
+                    .build();
+        }
+
+        String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
+
+        try {
+            JwtCache.Claims claims = JwtCache.verify(jwtString);
+            if (claims.groups() == null || !claims.groups().contains("service")) {
+                return Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(new Document("error", "Only services can create notifications in bulk").toJson())
+                        .build();
+            }
+        } catch (InvalidConsumerException | InvalidTokenException e) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Only services can create notifications in bulk").toJson())
+                    .build();
+        }
+
+        List<Document> notifications;
+        try {
+            notifications = Document.parse(jsonInput).getList("notifications", Document.class);
+        } catch (JsonParseException | ClassCastException e) {
+            notifications = null;
+        }
+        if (notifications == null || notifications.size() > MAX_BULK_NOTIFICATIONS) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new Document("error", "Expected {\"notifications\": [...]} with at most " + MAX_BULK_NOTIFICATIONS + " notifications").toJson())
+                    .build();
+        }
+
+        try {
+            return Response.ok(notificationService.createNotifications(notifications).toJson()).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity("Exception occurred: " + e.getMessage())
+                    .build();
+        }
+    }
+
     @DELETE
     @Path("/delete/{notificationId}")
     @Produces(MediaType.APPLICATION_JSON)
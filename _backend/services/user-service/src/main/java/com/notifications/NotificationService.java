@@ -6,19 +6,20 @@ import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
-import jakarta.json.Json;
-import jakarta.json.JsonArrayBuilder;
-import jakarta.json.JsonObject;
-import jakarta.json.JsonWriter;
 import org.bson.Document;
 import org.bson.types.ObjectId;
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.FindIterable;
 
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 @RequestScoped
 public class NotificationService {
@@ -26,6 +27,9 @@ public class NotificationService {
     @Inject
     private MongoClient client;
 
+    @Inject
+    private NotificationHub notificationHub;
+
     private MongoDatabase accountDatabase;
     private MongoDatabase dataDatabase;
     private MongoDatabase moderationDatabase;
@@ -62,7 +66,7 @@ public class NotificationService {
     }
 
     public NotificationService(String connectionString) {
-        MongoClient client = MongoClients.create(connectionString);
+        client = MongoClients.create(connectionString);
 
         accountDatabase = client.getDatabase("Test");
         notificationsCollection = accountDatabase.getCollection("Notifications");
@@ -84,29 +88,54 @@ public class NotificationService {
         }
     }
 
-    public String getNotificationsByUser(ObjectId userId) {
-        Document query = new Document("to", userId);
-        FindIterable<Document> notifications = notificationsCollection.find(query);
-        JsonArrayBuilder jsonArrayBuilder = Json.createArrayBuilder();
-        for (Document doc : notifications) {
-            if (doc.containsKey("_id")) {
-                doc.put("_id", doc.getObjectId("_id").toString());
-            }
-            if (doc.containsKey("from")) {
-                doc.put("from", doc.getObjectId("from").toString());
-            }
-            if (doc.containsKey("to")) {
-                doc.put("to", doc.getObjectId("to").toString());
-            }
-            if (doc.containsKey("quote_id")) {
-                doc.put("quote_id", doc.getObjectId("quote_id").toString());
-            }
-            JsonObject jsonObject = Json.createReader(new java.io.StringReader(doc.toJson())).readObject();
-            jsonArrayBuilder.add(jsonObject);
+    private NotificationWriter writer() {
+        return notificationHub == null
+                ? new NotificationWriter(notificationsCollection, usersCollection, quotesCollection, deleteCollection)
+                : new NotificationWriter(notificationsCollection, usersCollection, quotesCollection, deleteCollection, notificationHub::publish);
+    }
+
+    public Document createNotifications(List<Document> notifications) {
+        return writer().write(notifications);
+    }
+
+    /**
+     * Runs the write and creates the notifications in one transaction, so they exist if and only if the write
+     * happened. They are pushed to their recipients once it committed.
+     */
+    public Document writeWith(Consumer<ClientSession> write, Document... notifications) {
+        NotificationWriter writer = writer();
+        List<Document> created = new ArrayList<>();
+        Document result;
+        try (ClientSession session = client.startSession()) {
+            result = session.withTransaction(() -> {
+                created.clear(); // a retried transaction starts over
+                write.accept(session);
+                return writer.write(session, List.of(notifications), created::addAll);
+            });
+        }
+        if (notificationHub != null && !created.isEmpty()) {
+            notificationHub.publish(created);
         }
+        return result;
+    }
+
+    public static Document notification(ObjectId from, ObjectId to, String type, ObjectId quoteId) {
+        return new Document("from", from.toString())
+                .append("to", to.toString())
+                .append("type", type)
+                .append("quote_id", quoteId.toString());
+    }
+
+    public NotificationFeed feed() {
+        return new NotificationFeed(notificationsCollection, usersCollection);
+    }
+
+    public String getNotificationsByUser(ObjectId userId) {
         StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
-            jsonWriter.writeArray(jsonArrayBuilder.build());
+        try {
+            feed().writeAll(userId, stringWriter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringWriter doesn't throw
         }
         return stringWriter.toString();
     }
@@ -0,0 +1,179 @@
+package com.notifications;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Creates many notifications at once: one insertMany for the notifications and one bulkWrite adding their ids to
+ * the Notifications list of each recipient.
+ *
+ * Notifications keep the _id they were sent with, so a batch that is sent again after a timeout doesn't create
+ * duplicates, the ids that already exist are skipped and aren't pushed to their recipients again. Like the single create, a notification is only created if its
+ * recipient and its quote exist, for a Delete notification the quote is the archived one in Moderation.Deleted.
+ */
+public class NotificationWriter {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoCollection<Document> notificationsCollection;
+    private final MongoCollection<Document> usersCollection;
+    private final MongoCollection<Document> quotesCollection;
+    private final MongoCollection<Document> deletedCollection;
+    private final Consumer<List<Document>> inserted;
+
+    public NotificationWriter(MongoCollection<Document> notificationsCollection, MongoCollection<Document> usersCollection,
+                              MongoCollection<Document> quotesCollection, MongoCollection<Document> deletedCollection) {
+        this(notificationsCollection, usersCollection, quotesCollection, deletedCollection, notifications -> {});
+    }
+
+    // inserted gets the notifications of every write once they are saved, to push them to their recipients
+    public NotificationWriter(MongoCollection<Document> notificationsCollection, MongoCollection<Document> usersCollection,
+                              MongoCollection<Document> quotesCollection, MongoCollection<Document> deletedCollection,
+                              Consumer<List<Document>> inserted) {
+        this.notificationsCollection = notificationsCollection;
+        this.usersCollection = usersCollection;
+        this.quotesCollection = quotesCollection;
+        this.deletedCollection = deletedCollection;
+        this.inserted = inserted;
+    }
+
+    private static boolean isValidObjectId(Object id) {
+        return id instanceof String string && ObjectId.isValid(string);
+    }
+
+    /**
+     * Each notification needs from, to, type and quote_id, _id and created_at are optional.
+     * Returns {"created": count, "rejected": [index of each notification that was left out]}.
+     */
+    public Document write(List<Document> notifications) {
+        return write(null, notifications, inserted);
+    }
+
+    /**
+     * Same as write, inside the session's transaction. saved gets the notifications instead of the writer's own
+     * callback, so they are only pushed once the transaction committed.
+     */
+    public Document write(ClientSession session, List<Document> notifications, Consumer<List<Document>> saved) {
+        List<Integer> rejected = new ArrayList<>();
+        List<Document> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        Set<ObjectId> recipients = new HashSet<>();
+        Set<ObjectId> quotes = new HashSet<>();
+        Set<ObjectId> deletedQuotes = new HashSet<>();
+
+        for(int i = 0; i < notifications.size(); i++) {
+            Document notification = notifications.get(i);
+            Object id = notification.get("_id");
+            if(!isValidObjectId(notification.get("from")) || !isValidObjectId(notification.get("to"))
+                    || !isValidObjectId(notification.get("quote_id")) || !(notification.get("type") instanceof String)
+                    || (id != null && !isValidObjectId(id))) {
+                rejected.add(i);
+                continue;
+            }
+            ObjectId to = new ObjectId(notification.getString("to"));
+            ObjectId quoteId = new ObjectId(notification.getString("quote_id"));
+            Object createdAt = notification.get("created_at");
+            Document checked = new Document()
+                    .append("_id", id == null ? new ObjectId() : new ObjectId((String) id))
+                    .append("from", new ObjectId(notification.getString("from")))
+                    .append("to", to)
+                    .append("type", notification.getString("type"))
+                    .append("quote_id", quoteId)
+                    .append("Created_at", createdAt instanceof Number number ? number.longValue() : System.currentTimeMillis());
+            valid.add(checked);
+            validIndexes.add(i);
+            recipients.add(to);
+            (isDelete(checked) ? deletedQuotes : quotes).add(quoteId);
+        }
+
+        //notifications for users or quotes that don't exist are left out, same as the single create
+        Set<ObjectId> existing = existingIds(session, usersCollection, recipients);
+        Set<ObjectId> existingQuotes = existingIds(session, quotesCollection, quotes);
+        Set<ObjectId> existingDeleted = existingIds(session, deletedCollection, deletedQuotes);
+        List<Document> toInsert = new ArrayList<>();
+        for(int i = 0; i < valid.size(); i++) {
+            Document notification = valid.get(i);
+            ObjectId quoteId = notification.getObjectId("quote_id");
+            if(existing.contains(notification.getObjectId("to"))
+                    && (isDelete(notification) ? existingDeleted : existingQuotes).contains(quoteId)) {
+                toInsert.add(notification);
+            } else {
+                rejected.add(validIndexes.get(i));
+            }
+        }
+        Collections.sort(rejected);
+
+        if(toInsert.isEmpty()) {
+            return new Document("created", 0).append("rejected", rejected);
+        }
+
+        Set<Integer> duplicates = new HashSet<>();
+        try {
+            if(session == null) {
+                notificationsCollection.insertMany(toInsert, new InsertManyOptions().ordered(false));
+            } else {
+                notificationsCollection.insertMany(session, toInsert, new InsertManyOptions().ordered(false));
+            }
+        } catch (MongoBulkWriteException e) {
+            for(BulkWriteError error : e.getWriteErrors()) {
+                if(error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex()); //index into toInsert, it was saved and pushed the first time
+            }
+        }
+
+        //$addToSet so a batch sent twice doesn't list a notification twice
+        Map<ObjectId, List<String>> idsByRecipient = new LinkedHashMap<>();
+        for(Document notification : toInsert) {
+            idsByRecipient.computeIfAbsent(notification.getObjectId("to"), to -> new ArrayList<>())
+                    .add(notification.getObjectId("_id").toString());
+        }
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        idsByRecipient.forEach((to, ids) -> updates.add(new UpdateOneModel<>(new Document("_id", to),
+                new Document("$addToSet", new Document("Notifications", new Document("$each", ids))))));
+        if(session == null) {
+            usersCollection.bulkWrite(updates);
+        } else {
+            usersCollection.bulkWrite(session, updates);
+        }
+        List<Document> fresh = new ArrayList<>(toInsert.size() - duplicates.size());
+        for(int i = 0; i < toInsert.size(); i++) {
+            if(!duplicates.contains(i)) {
+                fresh.add(toInsert.get(i));
+            }
+        }
+        if(!fresh.isEmpty()) {
+            saved.accept(fresh);
+        }
+
+        return new Document("created", toInsert.size()).append("rejected", rejected);
+    }
+
+    private static boolean isDelete(Document notification) {
+        return "Delete".equals(notification.getString("type"));
+    }
+
+    private static Set<ObjectId> existingIds(ClientSession session, MongoCollection<Document> collection, Set<ObjectId> ids) {
+        Set<ObjectId> existing = new HashSet<>();
+        if(ids.isEmpty()) {
+            return existing;
+        }
+        Document filter = new Document("_id", new Document("$in", new ArrayList<>(ids)));
+        for(Document document : (session == null ? collection.find(filter) : collection.find(session, filter))
+                .projection(new Document("_id", 1))) {
+            existing.add(document.getObjectId("_id"));
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,61 @@
+package com.notifications;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+/**
+ * A notification stream on an open SSE connection. Each notification is a "notification" event with the
+ * notification's id, so a client that reconnects knows which one it got last.
+ */
+class SseStream implements NotificationHub.Stream {
+
+    private final SseEventSink sink;
+    private final Sse sse;
+
+    SseStream(SseEventSink sink, Sse sse) {
+        this.sink = sink;
+        this.sse = sse;
+    }
+
+    @Override
+    public boolean send(String id, String json) {
+        return send(sse.newEventBuilder()
+                .id(id)
+                .name("notification")
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(String.class, json)
+                .build());
+    }
+
+    @Override
+    public boolean heartbeat() {
+        return send(sse.newEventBuilder().comment("ping").build());
+    }
+
+    private boolean send(OutboundSseEvent event) {
+        if (sink.isClosed()) {
+            return false;
+        }
+        try {
+            sink.send(event).whenComplete((result, error) -> {
+                if (error != null) {
+                    close();
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            close();
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            sink.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
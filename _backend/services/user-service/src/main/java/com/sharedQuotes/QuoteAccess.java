@@ -0,0 +1,67 @@
+package com.sharedQuotes;
+
+import jakarta.json.JsonObject;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers whether a user may see a quote. Public quotes and the user's own quotes always, someone else's private
+ * quote only if its creator shared it with the user.
+ *
+ * Built once per request from the account that was already loaded. The shares sent to the user are put in a set
+ * keyed by (quoteId, from), so each check is a lookup instead of a scan over SharedQuotes.
+ */
+public class QuoteAccess {
+
+    private record Share(String quoteId, String from) {}
+
+    private final String userId;
+    private final Set<Share> sharedWithUser = new HashSet<>();
+
+    /**
+     * userId is the JWT subject, the account's own id.
+     */
+    public QuoteAccess(String userId, Collection<SharedQuote> sharedQuotes) {
+        this.userId = userId;
+        if (sharedQuotes != null) {
+            for (SharedQuote shared : sharedQuotes) {
+                //the sender's account lists the share as well, only count the ones sent to this user
+                if (userId.equals(shared.getTo())) {
+                    sharedWithUser.add(new Share(shared.getQuoteId(), shared.getFrom()));
+                }
+            }
+        }
+    }
+
+    public String userId() {
+        return userId;
+    }
+
+    /**
+     * The shares sent to the user as {quoteId, from}, for checks done by another service.
+     */
+    public List<Document> shares() {
+        List<Document> shares = new ArrayList<>();
+        for (Share share : sharedWithUser) {
+            shares.add(new Document("quoteId", share.quoteId()).append("from", share.from()));
+        }
+        return shares;
+    }
+
+    public boolean canView(String quoteId, String creator, boolean isPrivate) {
+        return !isPrivate || userId.equals(creator) || sharedWithUser.contains(new Share(quoteId, creator));
+    }
+
+    public boolean canView(JsonObject quote) {
+        return canView(quote.getString("_id"), quote.getString("creator"), quote.getBoolean("private", false));
+    }
+
+    public boolean canView(String quoteId, Document quote) {
+        return canView(quoteId, String.valueOf(quote.get("creator")), quote.getBoolean("private", false));
+    }
+}
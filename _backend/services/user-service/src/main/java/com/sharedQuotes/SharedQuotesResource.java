@@ -2,8 +2,10 @@ package com.sharedQuotes;
 
 
 
+import com.mongodb.MongoException;
 import com.notifications.NotificationService;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
@@ -20,16 +22,13 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.WebApplicationException;
-import jakarta.ws.rs.client.Client;
-import jakarta.ws.rs.client.ClientBuilder;
-import jakarta.ws.rs.client.Entity;
-import jakarta.ws.rs.client.Invocation;
-import jakarta.ws.rs.client.WebTarget;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+import static com.mongodb.client.model.Filters.eq;
+
 @Path("/sharedQuotes")
 public class SharedQuotesResource {
     
@@ -40,6 +39,9 @@ public class SharedQuotesResource {
     @Inject
     AccountService accountService;
 
+    @Inject
+    NotificationService notificationService;
+
     @POST
     @Path("/share/{email}/{quoteId}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -88,7 +90,6 @@ public class SharedQuotesResource {
                             .entity(new Document("error", "From and to must be distinct").toJson())
                             .build();
               }
-            Account accTo = accountService.document_to_account(docTo);
             Response quoteSearchRes;
             try{
                 quoteSearchRes = quoteClient.idSearch(quoteId);
@@ -112,32 +113,22 @@ public class SharedQuotesResource {
             shared.setTo(ToId);
             shared.setFrom(fromId);
             shared.setQuoteId(quoteId);
-            JsonObject json = Json.createObjectBuilder()
-            .add("to", shared.getTo()) 
-            .add("from", shared.getFrom()) 
-            .add("quote_id", shared.getQuoteId()) 
-            .add("type","Share")
-            .build();
-            Client notifClient = ClientBuilder.newClient();
-            WebTarget target = notifClient.target("http://user-service:9081/users/notifications/create");
-            Invocation.Builder notifReq = target.request().header(HttpHeaders.AUTHORIZATION, authHeader);
-            Response notifRes = notifReq.post(Entity.json(json.toString()));
-            notifClient.close();
-            if(notifRes.getStatus()!=Response.Status.CREATED.getStatusCode()){
-                return notifRes;
+            // both accounts and the notification are written together
+            Document sharedDoc = new Document("to", shared.getTo())
+                    .append("from", shared.getFrom())
+                    .append("quoteId", shared.getQuoteId());
+            try {
+                notificationService.writeWith(session -> {
+                    accountService.getAccountCollection().updateOne(session, eq("_id", new ObjectId(ToId)),
+                            new Document("$push", new Document("SharedQuotes", sharedDoc)));
+                    accountService.getAccountCollection().updateOne(session, eq("_id", new ObjectId(fromId)),
+                            new Document("$push", new Document("SharedQuotes", sharedDoc)));
+                }, NotificationService.notification(new ObjectId(fromId), new ObjectId(ToId), "Share", new ObjectId(quoteId)));
+            } catch (MongoException e) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity(new Document("error", "Could not share quote").toJson())
+                        .build();
             }
-            accTo.SharedQuotes.add(shared);
-            accFrom.SharedQuotes.add(shared);
-            String toJson = accTo.toJson();
-            String fromJson = accFrom.toJson();
-            Response updateTo = accountService.updateUser(toJson, ToId);
-            Response updateFrom = accountService.updateUser(fromJson, fromId);
-            if(updateTo.getStatus()!=Response.Status.OK.getStatusCode()){
-                return updateTo;
-            }   
-            if(updateFrom.getStatus()!=Response.Status.OK.getStatusCode()){
-                return updateFrom;
-            }   
            
             return Response.status(Response.Status.OK)
             .entity(shared)
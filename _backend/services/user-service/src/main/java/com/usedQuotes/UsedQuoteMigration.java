@@ -0,0 +1,112 @@
+package com.usedQuotes;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+
+/**
+ * Folds the UsedQuotes collection into the accounts.
+ *
+ * Before, Account.UsedQuotes mapped quote id to the id of a UsedQuote holding count and last used date. Now the
+ * count and date live in the account under UsedQuoteStats.{quoteId} and UsedQuotes maps the quote id to itself.
+ * For every entry still pointing at a UsedQuote, its count is added to the stats, the date is kept if it's newer and
+ * the entry is pointed at the quote, all in one update that only applies while the entry still points at the
+ * UsedQuote. Running it again, or while users keep using quotes, doesn't count anything twice.
+ */
+public class UsedQuoteMigration {
+
+    private final MongoCollection<Document> accountCollection;
+    private final MongoCollection<Document> usedQuoteCollection;
+
+    public UsedQuoteMigration(MongoClient client, String dbName) {
+        this(client, dbName, "Users", "UsedQuotes");
+    }
+
+    public UsedQuoteMigration(MongoClient client, String dbName, String accountCollectionName, String usedQuoteCollectionName) {
+        MongoDatabase database = client.getDatabase(dbName);
+        accountCollection = database.getCollection(accountCollectionName);
+        usedQuoteCollection = database.getCollection(usedQuoteCollectionName);
+    }
+
+    /**
+     * Returns how many accounts and entries were migrated and how many UsedQuotes were removed.
+     */
+    public Document run() {
+        int accounts = 0;
+        int entries = 0;
+        long deleted = 0;
+
+        Document hasUsedQuotes = new Document("UsedQuotes", new Document("$exists", true).append("$ne", new Document()));
+        for (Document account : accountCollection.find(hasUsedQuotes).projection(Projections.include("UsedQuotes"))) {
+            Document usedQuotes = account.get("UsedQuotes", Document.class);
+            if (usedQuotes == null) {
+                continue;
+            }
+
+            // quote id -> UsedQuote id, for entries that weren't migrated yet
+            Map<String, ObjectId> legacy = new HashMap<>();
+            for (Map.Entry<String, Object> used : usedQuotes.entrySet()) {
+                if (used.getValue() instanceof String usedQuoteId && !usedQuoteId.equals(used.getKey())
+                        && ObjectId.isValid(used.getKey()) && ObjectId.isValid(usedQuoteId)) {
+                    legacy.put(used.getKey(), new ObjectId(usedQuoteId));
+                }
+            }
+            if (legacy.isEmpty()) {
+                continue;
+            }
+
+            Map<ObjectId, Document> usedQuoteDocs = new HashMap<>(legacy.size() * 2);
+            for (Document usedQuoteDoc : usedQuoteCollection.find(new Document("_id", new Document("$in", legacy.values())))) {
+                usedQuoteDocs.put(usedQuoteDoc.getObjectId("_id"), usedQuoteDoc);
+            }
+
+            List<WriteModel<Document>> writes = new ArrayList<>(legacy.size());
+            for (Map.Entry<String, ObjectId> entry : legacy.entrySet()) {
+                String quoteId = entry.getKey();
+                String stats = "UsedQuoteStats." + quoteId;
+                Document usedQuoteDoc = usedQuoteDocs.get(entry.getValue());
+
+                Document update = new Document("$set", new Document("UsedQuotes." + quoteId, quoteId));
+                if (usedQuoteDoc != null) {
+                    update.append("$inc", new Document(stats + ".count", usedQuoteDoc.getInteger("count", 1)));
+                    if (usedQuoteDoc.getDate("used") != null) {
+                        update.append("$max", new Document(stats + ".used", usedQuoteDoc.getDate("used")));
+                    }
+                }
+                Document filter = new Document("_id", account.getObjectId("_id"))
+                        .append("UsedQuotes." + quoteId, entry.getValue().toHexString());
+                writes.add(new UpdateOneModel<>(filter, update));
+            }
+
+            int modified = accountCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            if (modified > 0) {
+                accounts++;
+                entries += modified;
+            }
+            // only remove the UsedQuotes the account no longer points at, an entry rewritten in the meantime keeps its own
+            Document after = accountCollection.find(new Document("_id", account.getObjectId("_id")))
+                    .projection(Projections.include("UsedQuotes")).first();
+            Document stillUsed = after == null ? null : after.get("UsedQuotes", Document.class);
+            List<ObjectId> moved = new ArrayList<>();
+            for (Map.Entry<String, ObjectId> entry : legacy.entrySet()) {
+                if (stillUsed == null || !entry.getValue().toHexString().equals(stillUsed.get(entry.getKey()))) {
+                    moved.add(entry.getValue());
+                }
+            }
+            if (!moved.isEmpty()) {
+                deleted += usedQuoteCollection.deleteMany(new Document("_id", new Document("$in", moved))).getDeletedCount();
+            }
+        }
+
+        System.out.println("Migrated " + entries + " used quotes of " + accounts + " accounts, removed " + deleted + " UsedQuotes");
+        return new Document("accounts", accounts).append("entries", entries).append("deleted", deleted);
+    }
+}
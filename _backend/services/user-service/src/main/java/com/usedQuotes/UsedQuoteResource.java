@@ -15,7 +15,9 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import java.util.Date;
 import com.accounts.*;
-import com.sharedQuotes.SharedQuote;
+import com.sharedQuotes.QuoteAccess;
+import com.auth.JwtCache;
+import com.mongodb.client.MongoClient;
 
 @Path("/useQuote")
 public class UsedQuoteResource {
@@ -29,6 +31,9 @@ public class UsedQuoteResource {
     @Inject
     QuoteClient quoteClient;
 
+    @Inject
+    MongoClient client;
+
     @POST
     @Path("/use/{id}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -67,110 +72,85 @@ public class UsedQuoteResource {
         }
        userDoc.remove("expires_at");
         Account requestUser = accountService.document_to_account(userDoc);
-        String accountId = accountService.getAccountIdByEmail(requestUser.Email);
-        Date currentDate = new Date();
-        if(!requestUser.UsedQuotes.containsKey(id)){
-            if(quoteSearchRes.getStatus()==Response.Status.NOT_FOUND.getStatusCode()){
-                return Response
-                .status(Response.Status.NOT_FOUND)
-                .entity("That quote doesn't exist")
-                .build();
-
-            }
-            if(quoteSearchDoc.getBoolean("private")
-            &&!quoteSearchDoc.get("creator").toString()
-            .equals(accountService.getAccountIdByEmail(requestUser.Email))){
-                Boolean sharedWithYou = false;
-                        for (SharedQuote shared : requestUser.SharedQuotes) {
-                            if(shared.getTo().equals(accountService.getAccountIdByEmail(requestUser.Email))
-                            && shared.getQuoteId().equals(id)
-                            &&shared.getFrom().equals(quoteSearchDoc.get("creator"))){
-                                sharedWithYou = true;
-                            }
-                        }
-                        if(!sharedWithYou){
-                            return Response
-                            .status(Response.Status.UNAUTHORIZED)
-                            .entity("That quote is private")
-                            .build();
-                        }
-               
+        QuoteAccess access = new QuoteAccess(userDoc.getObjectId("_id").toHexString(), requestUser.SharedQuotes);
+        ObjectId accountId = userDoc.getObjectId("_id");
+        boolean alreadyUsed = requestUser.UsedQuotes.containsKey(id);
+        if(quoteSearchRes.getStatus()==Response.Status.NOT_FOUND.getStatusCode() || !ObjectId.isValid(id)){
+            if(alreadyUsed){
+                forget(accountId, id, requestUser.UsedQuotes.get(id));
             }
-            UsedQuote usedQuote = new UsedQuote(1, currentDate);
-            ObjectId usedQuoteId = usedQuoteService.newUsedQuote(usedQuote);
-            requestUser.UsedQuotes.put(id, usedQuoteId.toString());
-            Document backToDoc = accountService.account_to_document(requestUser);
-            backToDoc.remove("expires_at");
-            backToDoc.remove("SharedQuotes");
-            Response updateUser = accountService.updateUser(backToDoc.toJson(), accountId);
-             if(updateUser.getStatus()==Response.Status.OK.getStatusCode()){
-                return Response
-                .status(Response.Status.OK)
-                .entity(usedQuote.getUsed())
-                .build();
-             }
-             else{
-                return Response
-                .status(Response.Status.BAD_REQUEST)
-                .entity(new Document("error", "Failed to update user!").toJson())
-                .build();
-             }
+            return Response
+            .status(Response.Status.NOT_FOUND)
+            .entity(alreadyUsed ? "That quote doesn't exist anymore" : "That quote doesn't exist")
+            .build();
         }
-        else{
-            if(quoteSearchRes.getStatus()==Response.Status.NOT_FOUND.getStatusCode()){
-                usedQuoteService.deleteUsedQuote(requestUser.UsedQuotes.get(id));
-                requestUser.UsedQuotes.remove(id);
-                accountService.updateUser(requestUser.toJson(), accountId);
-                return Response
-                .status(Response.Status.NOT_FOUND)
-                .entity("That quote doesn't exist anymore")
-                .build();
-
-            }
-            if(quoteSearchDoc.getBoolean("private")
-            &&!quoteSearchDoc.get("creator").toString()
-            .equals(accountService.getAccountIdByEmail(requestUser.Email))){
-                Boolean sharedWithYou = false;
-                for (SharedQuote shared : requestUser.SharedQuotes) {
-                    if(shared.getTo().equals(accountService.getAccountIdByEmail(requestUser.Email))
-                    && shared.getQuoteId().equals(id)
-                    &&shared.getFrom().equals(quoteSearchDoc.get("creator"))){
-                        sharedWithYou = true;
-                    }
-                }
-                if(!sharedWithYou){
-                    usedQuoteService.deleteUsedQuote(requestUser.UsedQuotes.get(id));
-                requestUser.UsedQuotes.remove(id);
-                accountService.updateUser(requestUser.toJson(), accountId);
+        if(!access.canView(id, quoteSearchDoc)){
+            if(alreadyUsed){
+                forget(accountId, id, requestUser.UsedQuotes.get(id));
                 return Response
                 .status(Response.Status.NOT_FOUND)
                 .entity("That quote has since been made private")
                 .build();
-                }
-                
             }
-
-        Document usedQuoteDoc = usedQuoteService.retrieveUsedQuote(requestUser.UsedQuotes.get(id));
-        int currentCount = usedQuoteDoc.getInteger("count", 1);
-        usedQuoteDoc.put("count", currentCount + 1);
-        usedQuoteDoc.put("used", currentDate);
-        
-        Response updateUsedQuotes =  usedQuoteService.updateUsedQuote(usedQuoteDoc.toJson(), requestUser.UsedQuotes.get(id));
-        if(updateUsedQuotes.getStatus()==Response.Status.OK.getStatusCode()){
             return Response
-            .status(Response.Status.OK)
-            .entity(usedQuoteDoc.getDate("used"))
+            .status(Response.Status.UNAUTHORIZED)
+            .entity("That quote is private")
             .build();
-         }
-         else{
+        }
+
+        //count and last used date are kept on the account, one update whether or not it was used before
+        Date used = accountService.recordQuoteUse(accountId, id, new Date(), !alreadyUsed);
+        if(used == null){
             return Response
             .status(Response.Status.BAD_REQUEST)
-            .entity(new Document("error", "Failed to update used quote!").toJson())
+            .entity(new Document("error", "Failed to update user!").toJson())
             .build();
-         }
         }
+        return Response
+        .status(Response.Status.OK)
+        .entity(used)
+        .build();
+    }
+
+    // entries that weren't migrated yet still point at a UsedQuote
+    private void forget(ObjectId accountId, String quoteId, String usedQuoteId) {
+        accountService.forgetUsedQuote(accountId, quoteId);
+        if(!quoteId.equals(usedQuoteId)){
+            usedQuoteService.deleteUsedQuote(usedQuoteId);
+        }
+    }
 
-    }   
+    @POST
+    @Path("/migrate")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Used quotes migrated.", content = @Content(mediaType = "application/json")),
+            @APIResponse(responseCode = "401", description = "Only admins can run the migration"),
+    })
+    @Operation(summary = "Folds the UsedQuotes collection into the accounts' UsedQuoteStats. Safe to run more than once.")
+    public Response migrate(@Context HttpHeaders headers) {
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Missing or invalid Authorization header").toJson())
+                    .build();
+        }
+        String jwtString = authHeader.replaceFirst("(?i)^Bearer\\s+", "");
+        JwtCache.Claims claims;
+        try {
+            claims = JwtCache.verify(jwtString);
+        } catch (Exception e) {
+            claims = null;
+        }
+        if (claims == null || claims.groups() == null || !claims.groups().contains("admin")) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(new Document("error", "Only admins can run the migration").toJson())
+                    .build();
+        }
+
+        Document result = new UsedQuoteMigration(client, "Accounts").run();
+        return Response.ok(result.toJson()).build();
+    }
 
     @GET
     @Path("/use/search/{id}")
@@ -180,8 +160,11 @@ public class UsedQuoteResource {
             @APIResponse(responseCode = "404", description = "That UsedQuote does not exist"),
     })
     @Operation(summary = "Retrieves a UsedQuote.")
-    public Response searchUsedQuote(@PathParam("id") String id, @Context HttpServletRequest request) {
+    public Response searchUsedQuote(@PathParam("id") String id, @Context HttpServletRequest request, @Context HttpHeaders headers) {
         Document usedQuoteDoc = usedQuoteService.retrieveUsedQuote(id);
+        if(usedQuoteDoc == null){
+            usedQuoteDoc = usedQuoteStats(id, headers);
+        }
         if(usedQuoteDoc != null){
         return Response
         .status(Response.Status.OK)
@@ -196,4 +179,19 @@ public class UsedQuoteResource {
         }
     }
 
+    // migrated entries map the quote id to itself, their count and date are in the caller's account
+    private Document usedQuoteStats(String quoteId, HttpHeaders headers) {
+        String authHeader = headers.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.toLowerCase().startsWith("bearer ")) {
+            return null;
+        }
+        Document userDoc = accountService.retrieveUserFromJWT(authHeader.replaceFirst("(?i)^Bearer\\s+", ""));
+        Document usedQuoteStats = userDoc == null ? null : userDoc.get("UsedQuoteStats", Document.class);
+        Document stats = usedQuoteStats == null ? null : usedQuoteStats.get(quoteId, Document.class);
+        if (stats == null) {
+            return null;
+        }
+        return new Document("_id", quoteId).append("count", stats.getInteger("count", 1)).append("used", stats.getDate("used"));
+    }
+
 }
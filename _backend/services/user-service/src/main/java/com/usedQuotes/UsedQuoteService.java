@@ -13,8 +13,7 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import jakarta.ws.rs.core.Response;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static com.mongodb.client.model.Filters.eq;
 
@@ -84,6 +83,28 @@ public class UsedQuoteService {
         return usedQuoteDoc;
     }
 
+    /**
+     * Last used time in millis of every UsedQuote that exists, read with one $in query.
+     */
+    public Map<ObjectId, Long> usedTimes(Collection<String> usedQuoteIDs) {
+        List<ObjectId> objectIds = new ArrayList<>();
+        for (String id : usedQuoteIDs) {
+            if (id != null && ObjectId.isValid(id)) {
+                objectIds.add(new ObjectId(id));
+            }
+        }
+        Map<ObjectId, Long> usedTimes = new HashMap<>(objectIds.size() * 2);
+        if (objectIds.isEmpty()) {
+            return usedTimes;
+        }
+        for (Document usedQuoteDoc : usedQuoteCollection.find(new Document("_id", new Document("$in", objectIds)))
+                .projection(Projections.include("used"))) {
+            Date used = usedQuoteDoc.getDate("used");
+            usedTimes.put(usedQuoteDoc.getObjectId("_id"), used == null ? 0L : used.getTime());
+        }
+        return usedTimes;
+    }
+
     public Response updateUsedQuote(String updatedUsedQuoteJson, String id) {
         ObjectId objectId;
 
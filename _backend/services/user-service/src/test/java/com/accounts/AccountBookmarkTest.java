@@ -0,0 +1,129 @@
+package com.accounts;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class AccountBookmarkTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    static AccountService accountService;
+    static MongoCollection<Document> users;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        accountService = new AccountService(client, "Test", "Users");
+        users = client.getDatabase("Test").getCollection("Users");
+    }
+
+    private ObjectId insertUser(List<Document> sharedQuotes) {
+        ObjectId id = new ObjectId();
+        users.insertOne(new Document("_id", id)
+                .append("Email", id + "@test.com")
+                .append("BookmarkedQuotes", new ArrayList<String>())
+                .append("SharedQuotes", sharedQuotes)
+                .append("access_token", "secret"));
+        return id;
+    }
+
+    // returns the account after the change, without private fields
+    @Test
+    void testAddReturnsPostImage() {
+        ObjectId user = insertUser(List.of());
+        String quoteId = new ObjectId().toHexString();
+
+        Document updated = accountService.addBookmark(user, quoteId, null);
+
+        assertEquals(List.of(quoteId), updated.getList("BookmarkedQuotes", String.class));
+        assertNull(updated.get("access_token"));
+        assertTrue(accountService.hasBookmark(user, quoteId));
+    }
+
+    // only one of many concurrent adds changes anything
+    @Test
+    void testConcurrentAddsChangeOnce() throws Exception {
+        ObjectId user = insertUser(List.of());
+        String quoteId = new ObjectId().toHexString();
+        AtomicInteger changed = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(pool.submit(() -> {
+                if (accountService.addBookmark(user, quoteId, null) != null) {
+                    changed.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(1, changed.get());
+        assertEquals(1, users.find(new Document("_id", user)).first().getList("BookmarkedQuotes", String.class).size());
+    }
+
+    // private quotes need a share from their creator
+    @Test
+    void testPrivateNeedsShare() {
+        String creator = new ObjectId().toHexString();
+        String quoteId = new ObjectId().toHexString();
+        ObjectId notShared = insertUser(List.of());
+        ObjectId shared = new ObjectId();
+        users.insertOne(new Document("_id", shared)
+                .append("BookmarkedQuotes", new ArrayList<String>())
+                .append("SharedQuotes", List.of(new Document("to", shared.toHexString())
+                        .append("from", creator).append("quoteId", quoteId))));
+
+        assertNull(accountService.addBookmark(notShared, quoteId, creator));
+        assertNotNull(accountService.addBookmark(shared, quoteId, creator));
+    }
+
+    @Test
+    void testRemoveOnlyWhenBookmarked() {
+        ObjectId user = insertUser(List.of());
+        String quoteId = new ObjectId().toHexString();
+
+        assertNull(accountService.removeBookmark(user, quoteId));
+        accountService.addBookmark(user, quoteId, null);
+        Document updated = accountService.removeBookmark(user, quoteId);
+        assertTrue(updated.getList("BookmarkedQuotes", String.class).isEmpty());
+        assertNull(accountService.removeBookmark(user, quoteId));
+    }
+
+    // dropping gone quotes keeps a bookmark added after the account was read
+    @Test
+    void testForgetKeepsNewBookmarks() {
+        ObjectId user = insertUser(List.of());
+        String gone = new ObjectId().toHexString();
+        String kept = new ObjectId().toHexString();
+        accountService.addBookmark(user, gone, null);
+
+        String addedMeanwhile = new ObjectId().toHexString();
+        accountService.addBookmark(user, kept, null);
+        accountService.addBookmark(user, addedMeanwhile, null);
+        accountService.forgetBookmarks(user, List.of(gone));
+
+        assertEquals(List.of(kept, addedMeanwhile),
+                users.find(new Document("_id", user)).first().getList("BookmarkedQuotes", String.class));
+    }
+}
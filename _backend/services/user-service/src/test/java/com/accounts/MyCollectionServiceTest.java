@@ -6,6 +6,8 @@ import com.auth.SessionService;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.sharedQuotes.SharedQuote;
+import com.usedQuotes.UsedQuote;
+import org.bson.types.ObjectId;
 import com.usedQuotes.UsedQuoteService;
 import jakarta.json.JsonObject;
 import org.junit.jupiter.api.*;
@@ -14,6 +16,8 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +26,7 @@ import java.util.Map;
 class MyCollectionServiceTest {
 
     public static MyCollectionService myCollectionService;
+    public static UsedQuoteService usedQuoteService;
 
     @Container
     private static final MongoDBContainer mongoDBContainer =
@@ -40,7 +45,7 @@ class MyCollectionServiceTest {
         String connectionString = mongoDBContainer.getConnectionString();
         MongoClient client = MongoClients.create(connectionString);
 
-        UsedQuoteService usedQuoteService = new UsedQuoteService(connectionString, "Test", "UsedQuotes");
+        usedQuoteService = new UsedQuoteService(connectionString, "Test", "UsedQuotes");
         myCollectionService = new MyCollectionService(usedQuoteService);
 
     }
@@ -168,4 +173,35 @@ class MyCollectionServiceTest {
         assertEquals(expected, result);
     }
 
+
+    // used quotes ordered by used date, one lookup for all of them
+    @Test
+    void sortByUsedTC1() {
+        Map<String, String> used = new HashMap<>();
+        List<String> oldestFirst = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String quoteId = new ObjectId().toHexString();
+            UsedQuote usedQuote = new UsedQuote(1, new Date(1_000_000L * (i + 1)));
+            used.put(quoteId, usedQuoteService.newUsedQuote(usedQuote).toHexString());
+            oldestFirst.add(quoteId);
+        }
+
+        assertEquals(oldestFirst, myCollectionService.sortByUsed(used, false));
+        List<String> newestFirst = new ArrayList<>(oldestFirst);
+        Collections.reverse(newestFirst);
+        assertEquals(newestFirst, myCollectionService.sortByUsed(used, true));
+    }
+
+    // a missing UsedQuote counts as used the longest time ago
+    @Test
+    void sortByUsedTC2() {
+        String missing = new ObjectId().toHexString();
+        String recent = new ObjectId().toHexString();
+        Map<String, String> used = new HashMap<>();
+        used.put(missing, new ObjectId().toHexString());
+        used.put(recent, usedQuoteService.newUsedQuote(new UsedQuote(1, new Date())).toHexString());
+
+        assertEquals(List.of(recent, missing), myCollectionService.sortByUsed(used, true));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.accounts;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.usedQuotes.UsedQuote;
+import com.usedQuotes.UsedQuoteService;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+
+/**
+ * Rough timing of the USED_NEWEST / USED_OLDEST ordering of a collection with 10k used quotes.
+ * Not a test, run it by hand from the IDE or with
+ *   mvn test-compile exec:java -Dexec.mainClass=com.accounts.UsedSortBenchmark -Dexec.classpathScope=test -Dexec.args="mongodb://localhost:27017"
+ *
+ * The quicksort this replaced read a UsedQuote for every comparison, n log n finds. "per id" reads each one once,
+ * which is the least that approach could cost, "bulk" is the single $in read and sort used now.
+ */
+public class UsedSortBenchmark {
+
+    private static final int USED_QUOTES = 10_000;
+
+    public static void main(String[] args) {
+        String connectionString = args.length > 0 ? args[0] : "mongodb://localhost:27017";
+        UsedQuoteService usedQuoteService = new UsedQuoteService(connectionString, "UsedSortBenchmark", "UsedQuotes");
+        MyCollectionService myCollectionService = new MyCollectionService(usedQuoteService);
+
+        Random random = new Random(42);
+        Map<String, String> used = new HashMap<>();
+        for (int i = 0; i < USED_QUOTES; i++) {
+            UsedQuote usedQuote = new UsedQuote(1, new Date(random.nextInt(1_000_000_000) * 1000L));
+            used.put(new ObjectId().toHexString(), usedQuoteService.newUsedQuote(usedQuote).toHexString());
+        }
+
+        //warm up
+        myCollectionService.sortByUsed(used, true);
+
+        long start = System.nanoTime();
+        Map<String, Long> times = new HashMap<>();
+        for (Map.Entry<String, String> entry : used.entrySet()) {
+            times.put(entry.getKey(), usedQuoteService.retrieveUsedQuote(entry.getValue()).getDate("used").getTime());
+        }
+        List<String> perId = new ArrayList<>(used.keySet());
+        perId.sort(Comparator.comparingLong(times::get));
+        long perIdNanos = System.nanoTime() - start;
+        System.out.printf("per id: %d used quotes, %.1f ms%n", USED_QUOTES, perIdNanos / 1e6);
+
+        int runs = 20;
+        start = System.nanoTime();
+        List<String> bulk = null;
+        for (int i = 0; i < runs; i++) {
+            bulk = myCollectionService.sortByUsed(used, false);
+        }
+        long bulkNanos = (System.nanoTime() - start) / runs;
+        System.out.printf("bulk:   %d used quotes, %.1f ms%n", USED_QUOTES, bulkNanos / 1e6);
+
+        if (!bulk.equals(perId)) {
+            System.out.println("orders differ");
+        }
+        try (MongoClient client = MongoClients.create(connectionString)) {
+            client.getDatabase("UsedSortBenchmark").drop();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.auth;
+
+import com.ibm.websphere.security.jwt.InvalidConsumerException;
+import com.ibm.websphere.security.jwt.InvalidTokenException;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtCacheTest {
+
+    static AtomicInteger verifications = new AtomicInteger();
+
+    @BeforeEach
+    public void reset() {
+        JwtCache.clear();
+        verifications.set(0);
+    }
+
+    private static JwtCache.Verifier expiringIn(long millis) {
+        return jwt -> {
+            verifications.incrementAndGet();
+            return new JwtCache.Claims("user-" + jwt, List.of("user"), System.currentTimeMillis() + millis);
+        };
+    }
+
+    // same token is only verified once
+    @Test
+    public void testCachedUntilExpiry() throws Exception {
+        JwtCache.Verifier verifier = expiringIn(60_000);
+
+        JwtCache.Claims first = JwtCache.verify("token", verifier);
+        JwtCache.Claims second = JwtCache.verify("token", verifier);
+
+        assertSame(first, second);
+        assertEquals("user-token", second.subject());
+        assertEquals(1, verifications.get());
+        assertEquals(1, JwtCache.hitCount());
+        assertEquals(1, JwtCache.missCount());
+    }
+
+    // different tokens don't share entries
+    @Test
+    public void testKeyedByToken() throws Exception {
+        JwtCache.Verifier verifier = expiringIn(60_000);
+
+        assertEquals("user-a", JwtCache.verify("a", verifier).subject());
+        assertEquals("user-b", JwtCache.verify("b", verifier).subject());
+        assertEquals(2, verifications.get());
+        assertEquals(2, JwtCache.size());
+    }
+
+    // expired token is verified again
+    @Test
+    public void testExpiredTokenNotCached() throws Exception {
+        JwtCache.Verifier verifier = expiringIn(-1);
+
+        JwtCache.verify("token", verifier);
+        JwtCache.verify("token", verifier);
+
+        assertEquals(2, verifications.get());
+        assertEquals(0, JwtCache.hitCount());
+        assertEquals(0, JwtCache.size());
+    }
+
+    // invalid token is never cached
+    @Test
+    public void testInvalidTokenNotCached() {
+        JwtCache.Verifier verifier = jwt -> {
+            verifications.incrementAndGet();
+            throw new InvalidTokenException("bad token");
+        };
+
+        assertThrows(InvalidTokenException.class, () -> JwtCache.verify("token", verifier));
+        assertThrows(InvalidTokenException.class, () -> JwtCache.verify("token", verifier));
+        assertEquals(2, verifications.get());
+        assertEquals(0, JwtCache.size());
+    }
+
+    // cache stays bounded
+    @Test
+    public void testBounded() throws InvalidConsumerException, InvalidTokenException {
+        JwtCache.Verifier verifier = expiringIn(60_000);
+
+        for (int i = 0; i < JwtCache.MAX_ENTRIES + 50; i++) {
+            JwtCache.verify("token" + i, verifier);
+        }
+        assertTrue(JwtCache.size() <= JwtCache.MAX_ENTRIES);
+    }
+
+    // a cache full of live tokens makes room in one go, later tokens are cached without another scan
+    @Test
+    public void testFullCacheMakesRoom() throws Exception {
+        JwtCache.Verifier verifier = expiringIn(60_000);
+
+        for (int i = 0; i < JwtCache.MAX_ENTRIES; i++) {
+            JwtCache.verify("token" + i, verifier);
+        }
+        JwtCache.verify("one more", verifier);
+        assertTrue(JwtCache.size() <= JwtCache.TRIM_TO + 1);
+
+        JwtCache.verify("one more", verifier);
+        assertEquals(JwtCache.MAX_ENTRIES + 1, verifications.get());
+    }
+
+    // expired tokens are swept out as new ones come in
+    @Test
+    public void testExpiredSwept() throws Exception {
+        for (int i = 1; i < JwtCache.SWEEP_EVERY; i++) {
+            JwtCache.verify("short" + i, expiringIn(50));
+        }
+        Thread.sleep(100);
+        JwtCache.verify("long", expiringIn(60_000));
+        assertEquals(1, JwtCache.size());
+    }
+}
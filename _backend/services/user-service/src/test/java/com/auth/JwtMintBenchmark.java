@@ -0,0 +1,81 @@
+package com.auth;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.function.Function;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Rough timing of what /auth/jwt spends minting a token, before and after the session based cache.
+ * Not a test, run it by hand from the IDE or with
+ *   mvn test-compile exec:java -Dexec.mainClass=com.auth.JwtMintBenchmark -Dexec.classpathScope=test -Dexec.args="mongodb://localhost:27017"
+ *
+ * JwtBuilder only works inside Liberty, so tokens are signed with a plain HS256 HMAC here, which costs about the same.
+ * Without a connection string the lookup step is skipped and only signing is compared with the cache.
+ */
+public class JwtMintBenchmark {
+
+    private static final int RUNS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("benchmark-secret-benchmark-secret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        Function<Session, String> sign = session -> {
+            String payload = encoder.encodeToString(("{\"sub\":\"" + session.UserId + "\",\"groups\":[\""
+                    + (session.admin == 1 ? "admin" : "user") + "\"],\"iat\":" + System.currentTimeMillis() + "}")
+                    .getBytes(StandardCharsets.UTF_8));
+            String unsigned = "eyJhbGciOiJIUzI1NiJ9." + payload;
+            return unsigned + "." + encoder.encodeToString(mac.doFinal(unsigned.getBytes(StandardCharsets.UTF_8)));
+        };
+
+        Session session = new Session(new ObjectId(), new ObjectId().toString(), 0, new Date(), new Date());
+        String sessionId = session.SessionId.toString();
+
+        if (args.length > 0) {
+            try (MongoClient client = MongoClients.create(args[0])) {
+                MongoCollection<Document> users = client.getDatabase("JwtBenchmark").getCollection("Users");
+                ObjectId userId = new ObjectId(session.UserId);
+                users.insertOne(new Document("_id", userId).append("admin", 0));
+
+                //what buildJwt used to do for every call
+                int lookupRuns = RUNS / 20;
+                time("lookup + sign", lookupRuns, () -> {
+                    Document user = users.find(eq("_id", userId)).first();
+                    session.admin = user.getInteger("admin");
+                    sign.apply(session);
+                });
+                client.getDatabase("JwtBenchmark").drop();
+            }
+        }
+
+        time("sign", RUNS, () -> sign.apply(session));
+
+        SessionJwtCache cache = new SessionJwtCache(sign, JwtService.JWT_LIFETIME_MS);
+        time("cached", RUNS, () -> cache.get(sessionId, session));
+    }
+
+    private static void time(String name, int runs, Runnable mint) {
+        //warm up so the jit has compiled the path
+        for (int i = 0; i < Math.min(runs, 20_000); i++) {
+            mint.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            mint.run();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-14s %d tokens, %.3f us/token%n", name + ":", runs, nanos / 1000.0 / runs);
+    }
+}
@@ -0,0 +1,126 @@
+package com.auth;
+
+import com.google.gson.stream.JsonReader;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceProxyTest {
+
+    private static HttpServer server;
+    private static ServiceProxy proxy;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // answers with what it received so the test can check it
+        server.createContext("/users/echo", exchange -> {
+            String received = exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI().getRawQuery() + " "
+                    + exchange.getRequestHeaders().getFirst("Authorization") + " "
+                    + exchange.getRequestHeaders().getFirst("Cookie") + " "
+                    + new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            byte[] bytes = received.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("X-Upstream", "users");
+            exchange.sendResponseHeaders(201, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/quotes/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        String target = "http://localhost:" + server.getAddress().getPort();
+        proxy = new ServiceProxy(List.of(
+                new ServiceProxy.Route("/users/", target, Duration.ofSeconds(5)),
+                new ServiceProxy.Route("/quotes/", target, Duration.ofMillis(200))));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop(0);
+    }
+
+    private static String read(Response response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // status, headers and body come back as the service sent them
+    @Test
+    void testForwardsRequestAndResponse() throws IOException {
+        Response response = proxy.forward("POST", URI.create("/users/echo?id=a%20b"), body("{\"a\":1}"), "token", "session");
+
+        assertEquals(201, response.getStatus());
+        assertEquals("users", response.getHeaderString("X-Upstream"));
+        assertEquals("text/plain", response.getHeaderString("Content-Type"));
+        assertEquals("POST id=a%20b Bearer token SessionId=session {\"a\":1}", read(response));
+    }
+
+    // the body is copied out of the envelope as the service reads it, the rest of the envelope is left alone
+    @Test
+    void testStreamsBodyFromEnvelope() throws IOException {
+        String value = "{\"quote\":\"caf\u00e9 \\\"x\\\"\",\"tags\":[\"a\",1.50,true,null],\"nested\":{\"n\":-2e3}}";
+        JsonReader reader = new JsonReader(new StringReader("{\"method\":\"PUT\",\"body\":" + value + ",\"more\":1}"));
+        reader.beginObject();
+        assertEquals("method", reader.nextName());
+        assertEquals("PUT", reader.nextString());
+        assertEquals("body", reader.nextName());
+
+        Response response = proxy.forward("PUT", URI.create("/users/echo"), new JsonBodyStream(reader), "token", "session");
+        assertEquals("PUT null Bearer token SessionId=session " + value, read(response));
+        assertEquals("more", reader.nextName());
+    }
+
+    @Test
+    void testGetSendsNoBody() throws IOException {
+        Response response = proxy.forward("GET", URI.create("/users/echo"), body("{\"a\":1}"), "token", "session");
+        assertEquals("GET null Bearer token SessionId=session ", read(response));
+    }
+
+    // route timeout turns into a 504 instead of holding the request
+    @Test
+    void testRouteTimeout() {
+        Response response = proxy.forward("GET", URI.create("/quotes/slow"), null, "token", "session");
+        assertEquals(504, response.getStatus());
+    }
+
+    @Test
+    void testUnknownRoute() {
+        assertNull(proxy.forward("GET", URI.create("/other/path"), null, "token", "session"));
+    }
+
+    @Test
+    void testServiceDown() {
+        ServiceProxy down = new ServiceProxy(List.of(new ServiceProxy.Route("/users/", "http://localhost:1", Duration.ofSeconds(1))));
+        assertEquals(502, down.forward("GET", URI.create("/users/echo"), null, "token", "session").getStatus());
+    }
+}
@@ -0,0 +1,118 @@
+package com.auth;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class SessionCacheTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    private static MongoCollection<Document> sessions;
+    private static SessionCache cache;
+    private static SessionService sessionService;
+
+    @BeforeAll
+    static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        sessions = client.getDatabase("Test").getCollection("Sessions");
+        // sessions stay cached and activity writes wait for a minute, longer than any test here
+        cache = new SessionCache(client, "Test", "Sessions", 60_000, 60_000);
+        sessionService = new SessionService(client, "Test", "Sessions", cache);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        cache.shutdown();
+    }
+
+    private Session createSession() {
+        Date now = new Date();
+        Session session = new Session(new ObjectId(), new ObjectId().toString(), 0, new Date(now.getTime() + 60_000), now);
+        sessionService.createSession(session);
+        return session;
+    }
+
+    // second read is served from memory
+    @Test
+    void testReadCached() {
+        Session session = createSession();
+        String id = session.SessionId.toString();
+        assertEquals(session.UserId, sessionService.getSession(id).UserId);
+
+        sessions.updateOne(new Document("_id", session.SessionId), new Document("$set", new Document("admin", 1)));
+        assertEquals(0, sessionService.getSession(id).admin);
+    }
+
+    // logout removes the session right away
+    @Test
+    void testDeleteInvalidates() {
+        Session session = createSession();
+        String id = session.SessionId.toString();
+        assertNotNull(sessionService.getSession(id));
+
+        assertTrue(sessionService.deleteSession(id));
+        assertNull(sessionService.getSession(id));
+    }
+
+    // many touches end up as one write with the newest values
+    @Test
+    void testTouchesCoalesced() {
+        Session session = createSession();
+        String id = session.SessionId.toString();
+        sessionService.getSession(id);
+
+        Date lastActivity = null;
+        Date expires = null;
+        for (int i = 1; i <= 50; i++) {
+            lastActivity = new Date(session.LastActivity.getTime() + i * 1000L);
+            expires = new Date(session.Expires.getTime() + i * 1000L);
+            assertTrue(sessionService.touchSession(id, lastActivity, expires));
+        }
+
+        // nothing written yet, but the cached copy is current
+        assertEquals(session.LastActivity, sessions.find(new Document("_id", session.SessionId)).first().getDate("LastActivity"));
+        assertEquals(expires, sessionService.getSession(id).Expires);
+
+        cache.flush();
+        Document saved = sessions.find(new Document("_id", session.SessionId)).first();
+        assertEquals(lastActivity, saved.getDate("LastActivity"));
+        assertEquals(expires, saved.getDate("Expires"));
+        assertEquals(0, cache.flush());
+    }
+
+    // activity on a deleted session isn't written back
+    @Test
+    void testTouchAfterDeleteDropped() {
+        Session session = createSession();
+        String id = session.SessionId.toString();
+        sessionService.touchSession(id, new Date(), new Date());
+        sessionService.deleteSession(id);
+
+        cache.flush();
+        assertNull(sessions.find(new Document("_id", session.SessionId)).first());
+    }
+
+    // changes made by the caller don't leak into the cache
+    @Test
+    void testReturnsCopies() {
+        Session session = createSession();
+        String id = session.SessionId.toString();
+        sessionService.getSession(id).Expires = new Date(0);
+
+        assertEquals(session.Expires, sessionService.getSession(id).Expires);
+    }
+}
@@ -0,0 +1,71 @@
+package com.auth;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionJwtCacheTest {
+
+    private final AtomicInteger signed = new AtomicInteger();
+
+    private Session session(int admin) {
+        return new Session(new ObjectId(), new ObjectId().toString(), admin, new Date(), new Date());
+    }
+
+    private SessionJwtCache cache(long lifetimeMs) {
+        return new SessionJwtCache(session -> session.UserId + ":" + session.admin + ":" + signed.incrementAndGet(), lifetimeMs);
+    }
+
+    // calls inside the token lifetime get the same token
+    @Test
+    void testReusesToken() {
+        SessionJwtCache cache = cache(JwtService.JWT_LIFETIME_MS);
+        Session session = session(0);
+        String id = session.SessionId.toString();
+
+        String first = cache.get(id, session);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first, cache.get(id, session));
+        }
+        assertEquals(1, signed.get());
+    }
+
+    // a token close to expiring is signed again
+    @Test
+    void testResignsNearExpiry() {
+        SessionJwtCache cache = cache(SessionJwtCache.REFRESH_MARGIN_MS);
+        Session session = session(0);
+        String id = session.SessionId.toString();
+
+        assertNotEquals(cache.get(id, session), cache.get(id, session));
+        assertEquals(2, signed.get());
+    }
+
+    // promoting the session to admin doesn't hand out the old user token
+    @Test
+    void testResignsOnGroupChange() {
+        SessionJwtCache cache = cache(JwtService.JWT_LIFETIME_MS);
+        Session session = session(0);
+        String id = session.SessionId.toString();
+
+        cache.get(id, session);
+        session.admin = 1;
+        assertTrue(cache.get(id, session).endsWith(":1:2"));
+    }
+
+    @Test
+    void testInvalidate() {
+        SessionJwtCache cache = cache(JwtService.JWT_LIFETIME_MS);
+        Session session = session(1);
+        String id = session.SessionId.toString();
+
+        cache.get(id, session);
+        cache.invalidate(id);
+        cache.get(id, session);
+        assertEquals(2, signed.get());
+    }
+}
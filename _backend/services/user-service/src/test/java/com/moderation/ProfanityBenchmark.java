@@ -0,0 +1,58 @@
+package com.moderation;
+
+import java.util.List;
+
+/**
+ * Rough timing of the local word list check against the remote profanity api it replaced.
+ * Not a test, run it by hand from the IDE or with
+ *   mvn test-compile exec:java -Dexec.mainClass=com.moderation.ProfanityBenchmark -Dexec.classpathScope=test
+ * Pass "local" as the first argument to skip the remote calls when offline.
+ */
+public class ProfanityBenchmark {
+
+    private static final List<String> MESSAGES = List.of(
+            "The only way to do great work is to love what you do.",
+            "In the middle of every difficulty lies opportunity.",
+            "Life is what happens when you're busy making other plans.",
+            "Well damn, that was not the plan at all",
+            "Be yourself; everyone else is already taken.",
+            "What a dumbass thing to say out loud"
+    );
+
+    public static void main(String[] args) {
+        ProfanityClass profanityClass = new ProfanityClass();
+
+        //warm up so the jit has compiled the scan loop
+        for (int i = 0; i < 200_000; i++) {
+            profanityClass.checkProfanity(MESSAGES.get(i % MESSAGES.size()));
+        }
+
+        int localRuns = 1_000_000;
+        long start = System.nanoTime();
+        int flagged = 0;
+        for (int i = 0; i < localRuns; i++) {
+            if (profanityClass.checkProfanity(MESSAGES.get(i % MESSAGES.size()))) {
+                flagged++;
+            }
+        }
+        long localNanos = System.nanoTime() - start;
+        System.out.printf("local:  %d checks, %.3f us/check (%d flagged)%n",
+                localRuns, localNanos / 1000.0 / localRuns, flagged);
+
+        if (args.length > 0 && args[0].equals("local")) {
+            return;
+        }
+
+        int remoteRuns = 20;
+        start = System.nanoTime();
+        flagged = 0;
+        for (int i = 0; i < remoteRuns; i++) {
+            if (profanityClass.checkRemote(MESSAGES.get(i % MESSAGES.size()))) {
+                flagged++;
+            }
+        }
+        long remoteNanos = System.nanoTime() - start;
+        System.out.printf("remote: %d checks, %.3f us/check (%d flagged)%n",
+                remoteRuns, remoteNanos / 1000.0 / remoteRuns, flagged);
+    }
+}
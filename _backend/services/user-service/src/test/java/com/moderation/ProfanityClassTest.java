@@ -2,6 +2,8 @@ package com.moderation;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ProfanityClassTest {
@@ -43,4 +45,63 @@ class ProfanityClassTest {
         boolean isProfanity = profanityClass.checkProfanity("dumbass");
         assertTrue(isProfanity);
     }
-}
\ No newline at end of file
+
+    @Test
+    void checkProfanityTC8() {
+        boolean isProfanity = profanityClass.checkProfanity("sh1t happens");
+        assertTrue(isProfanity);
+    }
+
+    @Test
+    void checkProfanityTC9() {
+        boolean isProfanity = profanityClass.checkProfanity("daaaaamn");
+        assertTrue(isProfanity);
+    }
+
+    @Test
+    void checkProfanityTC10() {
+        boolean isProfanity = profanityClass.checkProfanity("What the FUCKING hell");
+        assertTrue(isProfanity);
+    }
+
+    // clean words that contain or collapse into listed words
+    @Test
+    void checkProfanityTC11() {
+        boolean isProfanity = profanityClass.checkProfanity("Assume the class will pass as planned in Amsterdam");
+        assertFalse(isProfanity);
+    }
+
+    @Test
+    void checkProfanityTC12() {
+        ProfanityFilter filter = ProfanityFilter.of(List.of("# comment", "bad*", "*worse", "*worst*", "plain"));
+        assertEquals(4, filter.size());
+        assertTrue(filter.matches("badly"));
+        assertFalse(filter.matches("notbad"));
+        assertTrue(filter.matches("evenworse"));
+        assertFalse(filter.matches("worsening"));
+        assertTrue(filter.matches("theworstone"));
+        assertTrue(filter.matches("so pl4in"));
+        assertFalse(filter.matches("plainly"));
+    }
+
+    // clean words that contain a listed word, or only do once a double letter is collapsed
+    @Test
+    void checkProfanityTC13() {
+        assertFalse(profanityClass.checkProfanity("Shiitake mushrooms"));
+        assertFalse(profanityClass.checkProfanity("Born in Scunthorpe"));
+        assertFalse(profanityClass.checkProfanity("She graduated summa cum laude"));
+        assertTrue(profanityClass.checkProfanity("shiiiit"));
+        assertTrue(profanityClass.checkProfanity("what a cunt"));
+        assertTrue(profanityClass.checkProfanity("cum"));
+    }
+
+    @Test
+    void checkProfanityTC14() {
+        ProfanityFilter filter = ProfanityFilter.of(List.of("*worst*", "! The Worst Case "));
+        assertEquals(1, filter.size());
+        assertFalse(filter.matches("in the worst case"));
+        assertFalse(filter.matches("the  w0rst case!"));
+        assertTrue(filter.matches("the worst"));
+        assertTrue(filter.matches("theworst case"));
+    }
+}
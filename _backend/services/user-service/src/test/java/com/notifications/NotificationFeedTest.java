@@ -0,0 +1,125 @@
+package com.notifications;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class NotificationFeedTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    static MongoCollection<Document> notifications;
+    static MongoCollection<Document> users;
+    static NotificationFeed feed;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        notifications = client.getDatabase("Test").getCollection("Notifications");
+        users = client.getDatabase("Test").getCollection("Users");
+        feed = new NotificationFeed(notifications, users);
+    }
+
+    // ids of the notifications sent, oldest first
+    private List<ObjectId> send(ObjectId to, int count) {
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ObjectId id = new ObjectId();
+            notifications.insertOne(new Document("_id", id)
+                    .append("from", new ObjectId())
+                    .append("to", to)
+                    .append("type", "Share")
+                    .append("quote_id", new ObjectId())
+                    .append("Created_at", System.currentTimeMillis()));
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Document> read(StreamingOutput page) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        page.write(out);
+        return Document.parse("{\"page\": " + out.toString(StandardCharsets.UTF_8) + "}").getList("page", Document.class);
+    }
+
+    // pages follow each other newest first without gaps or repeats
+    @Test
+    void testPages() throws Exception {
+        ObjectId to = new ObjectId();
+        List<ObjectId> sent = send(to, 7);
+        send(new ObjectId(), 3); // someone else's
+
+        List<String> seen = new ArrayList<>();
+        ObjectId after = null;
+        while (true) {
+            List<Document> page = read(feed.page(to, after, 3));
+            if (page.isEmpty()) {
+                break;
+            }
+            assertTrue(page.size() <= 3);
+            for (Document notification : page) {
+                assertEquals(to.toHexString(), notification.getString("to"));
+                seen.add(notification.getString("_id"));
+            }
+            after = new ObjectId(seen.get(seen.size() - 1));
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = sent.size() - 1; i >= 0; i--) {
+            expected.add(sent.get(i).toHexString());
+        }
+        assertEquals(expected, seen);
+    }
+
+    // unread counts only what came after the last seen notification
+    @Test
+    void testUnreadCount() {
+        ObjectId user = new ObjectId();
+        users.insertOne(new Document("_id", user));
+        List<ObjectId> sent = send(user, 5);
+        assertEquals(5, feed.unreadCount(user));
+
+        assertTrue(feed.markSeen(user, sent.get(2)));
+        assertEquals(2, feed.unreadCount(user));
+
+        // marking an older one doesn't bring them back
+        assertTrue(feed.markSeen(user, sent.get(0)));
+        assertEquals(2, feed.unreadCount(user));
+    }
+
+    @Test
+    void testUnknownUser() {
+        assertEquals(-1, feed.unreadCount(new ObjectId()));
+        assertFalse(feed.markSeen(new ObjectId(), new ObjectId()));
+    }
+
+    // the count is answered from the index alone
+    @Test
+    void testCountUsesIndex() {
+        ObjectId user = new ObjectId();
+        send(user, 3);
+        Document plan = notifications.find(new Document("to", user).append("_id", new Document("$gt", new ObjectId(0, 0))))
+                .projection(new Document("_id", 1))
+                .explain();
+        String winning = plan.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(winning.contains(NotificationFeed.INDEX_NAME));
+        assertFalse(winning.contains("COLLSCAN"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.notifications;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class NotificationHubTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    static MongoCollection<Document> notifications;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        notifications = client.getDatabase("Test").getCollection("Notifications");
+    }
+
+    static class TestStream implements NotificationHub.Stream {
+        final List<String> received = new CopyOnWriteArrayList<>();
+        volatile boolean open = true;
+
+        @Override
+        public boolean send(String id, String json) {
+            if (open) {
+                received.add(id);
+            }
+            return open;
+        }
+
+        @Override
+        public boolean heartbeat() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    private static Document notification(ObjectId to) {
+        return new Document("_id", new ObjectId())
+                .append("from", new ObjectId())
+                .append("to", to)
+                .append("type", "Share")
+                .append("quote_id", new ObjectId())
+                .append("Created_at", System.currentTimeMillis());
+    }
+
+    // only the recipient's streams get a notification
+    @Test
+    void testPublishToRecipient() {
+        NotificationHub hub = new NotificationHub(notifications, false, 60_000);
+        ObjectId alice = new ObjectId();
+        ObjectId bob = new ObjectId();
+        TestStream aliceStream = new TestStream();
+        TestStream bobStream = new TestStream();
+        hub.subscribe(alice, aliceStream);
+        hub.subscribe(bob, bobStream);
+
+        Document notification = notification(alice);
+        hub.publish(List.of(notification));
+
+        assertEquals(List.of(notification.getObjectId("_id").toHexString()), aliceStream.received);
+        assertTrue(bobStream.received.isEmpty());
+        hub.shutdown();
+    }
+
+    // a closed stream is dropped the next time something is sent to it
+    @Test
+    void testClosedStreamRemoved() {
+        NotificationHub hub = new NotificationHub(notifications, false, 60_000);
+        ObjectId user = new ObjectId();
+        TestStream stream = new TestStream();
+        hub.subscribe(user, stream);
+        stream.open = false;
+
+        hub.publish(List.of(notification(user)));
+
+        assertEquals(0, hub.streamCount(user));
+        hub.shutdown();
+    }
+
+    // the oldest stream is closed once a user opens too many
+    @Test
+    void testStreamLimit() {
+        NotificationHub hub = new NotificationHub(notifications, false, 60_000);
+        ObjectId user = new ObjectId();
+        TestStream first = new TestStream();
+        hub.subscribe(user, first);
+        for (int i = 0; i < NotificationHub.MAX_STREAMS_PER_USER; i++) {
+            hub.subscribe(user, new TestStream());
+        }
+
+        assertFalse(first.open);
+        assertEquals(NotificationHub.MAX_STREAMS_PER_USER, hub.streamCount(user));
+        hub.shutdown();
+    }
+
+    // inserts made anywhere arrive through the change stream, once
+    @Test
+    void testChangeStream() throws Exception {
+        NotificationHub hub = new NotificationHub(notifications, true, 60_000);
+        ObjectId user = new ObjectId();
+        TestStream stream = new TestStream();
+        hub.subscribe(user, stream);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!hub.changeStreamOpen() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(hub.changeStreamOpen());
+
+        Document notification = notification(user);
+        notifications.insertOne(notification);
+        hub.publish(List.of(notification)); // ignored while the change stream is open
+        deadline = System.currentTimeMillis() + 10_000;
+        while (stream.received.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(500);
+
+        assertEquals(List.of(notification.getObjectId("_id").toHexString()), stream.received);
+        hub.shutdown();
+    }
+}
@@ -0,0 +1,136 @@
+package com.notifications;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class NotificationWriterTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    static MongoCollection<Document> notifications;
+    static MongoCollection<Document> users;
+    static MongoCollection<Document> quotes;
+    static MongoCollection<Document> deleted;
+    static NotificationWriter writer;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        notifications = client.getDatabase("Test").getCollection("Notifications");
+        users = client.getDatabase("Test").getCollection("Users");
+        quotes = client.getDatabase("Test").getCollection("Quotes");
+        deleted = client.getDatabase("Test").getCollection("Deleted");
+        writer = new NotificationWriter(notifications, users, quotes, deleted);
+    }
+
+    private ObjectId insertUser() {
+        ObjectId id = new ObjectId();
+        users.insertOne(new Document("_id", id).append("Notifications", new ArrayList<String>()));
+        return id;
+    }
+
+    private ObjectId insertQuote(MongoCollection<Document> collection) {
+        ObjectId id = new ObjectId();
+        collection.insertOne(new Document("_id", id).append("quote", "text"));
+        return id;
+    }
+
+    private Document notification(ObjectId to) {
+        return new Document("_id", new ObjectId().toString())
+                .append("from", new ObjectId().toString())
+                .append("to", to.toString())
+                .append("type", "Share")
+                .append("quote_id", insertQuote(quotes).toString());
+    }
+
+    // every notification is inserted and listed on its recipient
+    @Test
+    void testWritesBatch() {
+        ObjectId first = insertUser();
+        ObjectId second = insertUser();
+        List<Document> batch = List.of(notification(first), notification(first), notification(second));
+
+        Document result = writer.write(batch);
+
+        assertEquals(3, result.getInteger("created"));
+        assertTrue(result.getList("rejected", Integer.class).isEmpty());
+        assertEquals(2, users.find(new Document("_id", first)).first().getList("Notifications", String.class).size());
+        assertEquals(List.of(batch.get(2).getString("_id")),
+                users.find(new Document("_id", second)).first().getList("Notifications", String.class));
+        assertEquals(new ObjectId(batch.get(0).getString("_id")),
+                notifications.find(new Document("to", first)).sort(new Document("_id", 1)).first().getObjectId("_id"));
+    }
+
+    // sending the same batch again doesn't duplicate anything
+    @Test
+    void testResendIsIdempotent() {
+        ObjectId user = insertUser();
+        List<Document> batch = List.of(notification(user), notification(user));
+
+        writer.write(batch);
+        writer.write(batch);
+
+        assertEquals(2, notifications.countDocuments(new Document("to", user)));
+        assertEquals(2, users.find(new Document("_id", user)).first().getList("Notifications", String.class).size());
+    }
+
+    // a resent batch only pushes the notifications that weren't saved the first time
+    @Test
+    void testResendOnlyPushesNew() {
+        List<Document> pushed = new ArrayList<>();
+        NotificationWriter pushing = new NotificationWriter(notifications, users, quotes, deleted, pushed::addAll);
+        ObjectId user = insertUser();
+        Document first = notification(user);
+        Document second = notification(user);
+
+        pushing.write(List.of(first));
+        pushing.write(List.of(first, second));
+
+        assertEquals(List.of(first.getString("_id"), second.getString("_id")),
+                pushed.stream().map(notification -> notification.getObjectId("_id").toString()).toList());
+    }
+
+    // bad ids and unknown recipients are left out, the rest still goes through
+    @Test
+    void testRejectsInvalid() {
+        ObjectId user = insertUser();
+        Document badId = notification(user).append("from", "1234");
+        Document missingType = notification(user);
+        missingType.remove("type");
+
+        Document result = writer.write(List.of(badId, notification(new ObjectId()), notification(user), missingType));
+
+        assertEquals(1, result.getInteger("created"));
+        assertEquals(List.of(0, 1, 3), result.getList("rejected", Integer.class));
+        assertEquals(1, notifications.countDocuments(new Document("to", user)));
+    }
+
+    // a share needs its quote, a delete its archived quote
+    @Test
+    void testRejectsMissingQuote() {
+        ObjectId user = insertUser();
+        Document deletedQuote = notification(user).append("type", "Delete").append("quote_id", insertQuote(deleted).toString());
+        Document deleteOfLiveQuote = notification(user).append("type", "Delete");
+        Document shareOfMissingQuote = notification(user).append("quote_id", new ObjectId().toString());
+
+        Document result = writer.write(List.of(deletedQuote, deleteOfLiveQuote, shareOfMissingQuote, notification(user)));
+
+        assertEquals(2, result.getInteger("created"));
+        assertEquals(List.of(1, 2), result.getList("rejected", Integer.class));
+    }
+}
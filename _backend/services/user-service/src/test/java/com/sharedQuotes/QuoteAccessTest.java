@@ -0,0 +1,72 @@
+package com.sharedQuotes;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteAccessTest {
+
+    private final String user = new ObjectId().toHexString();
+    private final String friend = new ObjectId().toHexString();
+
+    private static SharedQuote share(String to, String from, String quoteId) {
+        SharedQuote shared = new SharedQuote();
+        shared.setTo(to);
+        shared.setFrom(from);
+        shared.setQuoteId(quoteId);
+        return shared;
+    }
+
+    @Test
+    void testPublicAndOwn() {
+        QuoteAccess access = new QuoteAccess(user, List.of());
+        String quoteId = new ObjectId().toHexString();
+
+        assertTrue(access.canView(quoteId, friend, false));
+        assertTrue(access.canView(quoteId, user, true));
+        assertFalse(access.canView(quoteId, friend, true));
+    }
+
+    // only a share from the quote's creator to this user counts
+    @Test
+    void testSharedPrivate() {
+        String quoteId = new ObjectId().toHexString();
+        String other = new ObjectId().toHexString();
+        QuoteAccess access = new QuoteAccess(user, List.of(
+                share(user, friend, quoteId),
+                share(other, user, quoteId)));
+
+        assertTrue(access.canView(quoteId, friend, true));
+        assertFalse(access.canView(quoteId, other, true));
+        assertFalse(new QuoteAccess(other, List.of(share(user, friend, quoteId))).canView(quoteId, friend, true));
+        assertEquals(List.of(new Document("quoteId", quoteId).append("from", friend)), access.shares());
+    }
+
+    @Test
+    void testQuoteDocument() {
+        String quoteId = new ObjectId().toHexString();
+        QuoteAccess access = new QuoteAccess(user, List.of(share(user, friend, quoteId)));
+
+        assertTrue(access.canView(quoteId, new Document("creator", friend).append("private", true)));
+        assertFalse(access.canView(new ObjectId().toHexString(), new Document("creator", friend).append("private", true)));
+    }
+
+    // thousands of shares still answer straight away
+    @Test
+    void testManyShares() {
+        List<SharedQuote> shares = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            shares.add(share(user, friend, new ObjectId().toHexString()));
+        }
+        QuoteAccess access = new QuoteAccess(user, shares);
+
+        for (SharedQuote shared : shares) {
+            assertTrue(access.canView(shared.getQuoteId(), friend, true));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.usedQuotes;
+
+import com.accounts.AccountService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UsedQuoteMigrationTest {
+
+    @Container
+    private static final MongoDBContainer mongoDBContainer =
+            new MongoDBContainer("mongo:6.0");
+
+    static AccountService accountService;
+    static UsedQuoteMigration migration;
+    static MongoCollection<Document> users;
+    static MongoCollection<Document> usedQuotes;
+
+    @BeforeAll
+    public static void setUp() {
+        MongoClient client = MongoClients.create(mongoDBContainer.getConnectionString());
+        accountService = new AccountService(client, "Test", "Users");
+        migration = new UsedQuoteMigration(client, "Test");
+        users = client.getDatabase("Test").getCollection("Users");
+        usedQuotes = client.getDatabase("Test").getCollection("UsedQuotes");
+    }
+
+    private ObjectId insertUser(Document used) {
+        ObjectId id = new ObjectId();
+        users.insertOne(new Document("_id", id).append("Email", id + "@test.com").append("UsedQuotes", used));
+        return id;
+    }
+
+    private Document stats(ObjectId user, String quoteId) {
+        return users.find(new Document("_id", user)).first()
+                .get("UsedQuoteStats", Document.class).get(quoteId, Document.class);
+    }
+
+    // every concurrent use is counted and the newest date wins
+    @Test
+    void testConcurrentUses() throws Exception {
+        ObjectId user = insertUser(new Document());
+        String quoteId = new ObjectId().toHexString();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Date>> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Date used = new Date(1_000_000L * (i + 1));
+            boolean first = i == 0;
+            results.add(pool.submit(() -> accountService.recordQuoteUse(user, quoteId, used, first)));
+        }
+        for (Future<Date> result : results) {
+            assertNotNull(result.get());
+        }
+        pool.shutdown();
+
+        Document stats = stats(user, quoteId);
+        assertEquals(50, stats.getInteger("count"));
+        assertEquals(new Date(50_000_000L), stats.getDate("used"));
+        assertEquals(quoteId, users.find(new Document("_id", user)).first()
+                .get("UsedQuotes", Document.class).getString(quoteId));
+    }
+
+    // an older date doesn't move the last used date back
+    @Test
+    void testUsedOnlyMovesForward() {
+        ObjectId user = insertUser(new Document());
+        String quoteId = new ObjectId().toHexString();
+
+        assertEquals(new Date(2000), accountService.recordQuoteUse(user, quoteId, new Date(2000), true));
+        assertEquals(new Date(2000), accountService.recordQuoteUse(user, quoteId, new Date(1000), false));
+        assertEquals(2, stats(user, quoteId).getInteger("count"));
+    }
+
+    @Test
+    void testUnknownAccount() {
+        assertNull(accountService.recordQuoteUse(new ObjectId(), new ObjectId().toHexString(), new Date(), true));
+    }
+
+    // legacy entries are folded in once, running again changes nothing
+    @Test
+    void testMigrateTwice() {
+        String quoteId = new ObjectId().toHexString();
+        ObjectId usedQuoteId = new ObjectId();
+        usedQuotes.insertOne(new Document("_id", usedQuoteId).append("count", 4).append("used", new Date(5000)));
+        ObjectId user = insertUser(new Document(quoteId, usedQuoteId.toHexString()));
+        // a use recorded on the account before the migration got to it
+        accountService.recordQuoteUse(user, quoteId, new Date(3000), false);
+
+        Document first = migration.run();
+        assertTrue(first.getInteger("entries") >= 1);
+        Document stats = stats(user, quoteId);
+        assertEquals(5, stats.getInteger("count"));
+        assertEquals(new Date(5000), stats.getDate("used"));
+        assertNull(usedQuotes.find(new Document("_id", usedQuoteId)).first());
+
+        migration.run();
+        assertEquals(5, stats(user, quoteId).getInteger("count"));
+        assertEquals(quoteId, users.find(new Document("_id", user)).first()
+                .get("UsedQuotes", Document.class).getString(quoteId));
+    }
+
+    // forgetting a quote removes both the entry and its stats
+    @Test
+    void testForget() {
+        ObjectId user = insertUser(new Document());
+        String quoteId = new ObjectId().toHexString();
+        accountService.recordQuoteUse(user, quoteId, new Date(), true);
+
+        accountService.forgetUsedQuote(user, quoteId);
+
+        Document account = users.find(new Document("_id", user)).first();
+        assertFalse(account.get("UsedQuotes", Document.class).containsKey(quoteId));
+        assertFalse(account.get("UsedQuoteStats", Document.class).containsKey(quoteId));
+    }
+
+    // dropping the quotes that are gone leaves the other uses alone
+    @Test
+    void testForgetSeveral() {
+        ObjectId user = insertUser(new Document());
+        String kept = new ObjectId().toHexString();
+        String gone = new ObjectId().toHexString();
+        String alsoGone = new ObjectId().toHexString();
+        for (String quoteId : List.of(kept, gone, alsoGone)) {
+            accountService.recordQuoteUse(user, quoteId, new Date(), true);
+        }
+
+        accountService.forgetUsedQuotes(user, List.of(gone, alsoGone));
+
+        Document account = users.find(new Document("_id", user)).first();
+        assertEquals(List.of(kept), new ArrayList<>(account.get("UsedQuotes", Document.class).keySet()));
+        assertEquals(1, stats(user, kept).getInteger("count"));
+        assertFalse(account.get("UsedQuoteStats", Document.class).containsKey(gone));
+    }
+}
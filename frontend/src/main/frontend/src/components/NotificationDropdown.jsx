@@ -3,12 +3,13 @@ import { Link } from "react-router-dom";
 import { useContext, useRef } from "react";
 import NotificationItem from "./NotificationItem";
 import { useState, useEffect } from "react";
-import { fetchNotifications, deleteNotification, clearAllNotifications, logout } from "../lib/api";
+import { fetchNotifications, fetchUnreadNotificationCount, markNotificationsSeen, deleteNotification, clearAllNotifications, logout } from "../lib/api";
 import { AlertContext, UserContext } from "../lib/Contexts";
 import { BsPersonCircle, BsBell, BsBoxArrowRight } from "react-icons/bs";
 
 const NotificationDropdown = ({ isVisible }) => {
   const [notifications, setNotifications] = useState([]);
+  const [unreadCount, setUnreadCount] = useState(0);
   const [_, setAlert] = useContext(AlertContext)
   const [isNotificationsVisible, setIsNotificationsVisible] = useState(false);
   const [user] = useContext(UserContext);
@@ -19,8 +20,12 @@ const NotificationDropdown = ({ isVisible }) => {
     const loadNotifications = async () => {
       try {
         const userId = user._id.$oid;
-        const fetchedNotifications = await fetchNotifications(userId);
+        const [fetchedNotifications, unread] = await Promise.all([
+          fetchNotifications(userId),
+          fetchUnreadNotificationCount(userId),
+        ]);
         setNotifications(fetchedNotifications);
+        setUnreadCount(unread);
       } catch (error) {
         console.error("Error fetching notifications:", error);
       }
@@ -67,10 +72,25 @@ const NotificationDropdown = ({ isVisible }) => {
     }
   };
 
+  // opening the list marks everything in it as seen, the newest is first
+  const handleToggleNotifications = async () => {
+    const opening = !isNotificationsVisible;
+    setIsNotificationsVisible(opening);
+    if (opening && unreadCount > 0 && notifications.length > 0) {
+      try {
+        await markNotificationsSeen(user._id.$oid, notifications[0]._id);
+        setUnreadCount(0);
+      } catch (error) {
+        console.error("Error marking notifications seen:", error);
+      }
+    }
+  };
+
   const handleClearAll = async () => {
     try {
-      await clearAllNotifications(user._id);
+      await clearAllNotifications(user._id.$oid);
       setNotifications([]);
+      setUnreadCount(0);
     } catch (error) {
       console.error("Error clearing all notifications:", error);
     }
@@ -149,7 +169,7 @@ const NotificationDropdown = ({ isVisible }) => {
 
         {/* Notification Section */}
         <li
-          onClick={() => setIsNotificationsVisible(!isNotificationsVisible)}
+          onClick={handleToggleNotifications}
           style={{
             padding: "4px 10px",
             cursor: "pointer",
@@ -178,7 +198,7 @@ const NotificationDropdown = ({ isVisible }) => {
             Notification
           </span>
 
-          {Array.isArray(notifications) && notifications.length > 0 && (
+          {unreadCount > 0 && (
             <span
               style={{
                 backgroundColor: "red",
@@ -193,7 +213,7 @@ const NotificationDropdown = ({ isVisible }) => {
                 marginRight: "6px",
               }}
             >
-              {notifications.length > 9 ? "9+" : notifications.length}
+              {unreadCount > 9 ? "9+" : unreadCount}
             </span>
           )}
 
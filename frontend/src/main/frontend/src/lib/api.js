@@ -435,10 +435,60 @@ export const fetchUsedQuotes = async () => {
 };
 
 {/* Notification Related */}
+// the server returns notifications newest first, a page at a time
+const NOTIFICATION_PAGE_SIZE = 200;
+
+export const fetchNotificationsPage = async (userId, { limit = NOTIFICATION_PAGE_SIZE, after = null } = {}) => {
+  const params = new URLSearchParams({ limit });
+  if (after) {
+    params.set("after", after);
+  }
+  const response = await fetch(
+    `${PROXY_URL}/users/auth/jwt?redirectURL=${encodeURIComponent(`${PROXY_URL}/users/notifications/user/${userId}?${params}`)}`,
+    {
+      method: "POST",
+      headers: {
+        "Content-Type": "application/json",
+      },
+      credentials: "include",
+      body: JSON.stringify({
+        method: "GET",
+      }),
+    }
+  )
+
+  if (!response.ok) {
+    const errorMessage = await response.text(); 
+    console.error("Error fetching notifications:", errorMessage);
+    throw new Error(`Failed to fetch notifications: ${errorMessage}`);
+  }
+
+  return await response.json();
+};
+
 export const fetchNotifications = async (userId) => {
+  try {
+    // every notification, each page continues after the last one of the page before
+    const notifications = [];
+    let after = null;
+    while (true) {
+      const page = await fetchNotificationsPage(userId, { after });
+      notifications.push(...page);
+      if (page.length < NOTIFICATION_PAGE_SIZE) {
+        return notifications;
+      }
+      after = page[page.length - 1]._id;
+    }
+  } catch (error) {
+    console.error("Error fetching notifications:", error);
+    throw error;
+  }
+};
+
+export const fetchUnreadNotificationCount = async (userId) => {
   try {
     const response = await fetch(
-      `${PROXY_URL}/users/auth/jwt?redirectURL=${encodeURIComponent(`${PROXY_URL}/users/notifications/user/${userId}`)}`,
+      `${PROXY_URL}/users/auth/jwt?redirectURL=${encodeURIComponent(`${PROXY_URL}/users/notifications/user/${userId}/unread`)}`,
       {
         method: "POST",
         headers: {
@@ -449,18 +499,46 @@ export const fetchNotifications = async (userId) => {
           method: "GET",
         }),
       }
-    )
+    );
 
     if (!response.ok) {
-      const errorMessage = await response.text(); 
-      console.error("Error fetching notifications:", errorMessage);
-      throw new Error(`Failed to fetch notifications: ${errorMessage}`);
+      const errorMessage = await response.text();
+      console.error("Error fetching unread notifications:", errorMessage);
+      throw new Error(`Failed to fetch unread notifications: ${errorMessage}`);
     }
 
     const data = await response.json();
-    return data;
+    return data.unread;
   } catch (error) {
-    console.error("Error fetching notifications:", error);
+    console.error("Error fetching unread notifications:", error);
+    throw error;
+  }
+};
+
+// marks the notification and every older one as seen
+export const markNotificationsSeen = async (userId, notificationId) => {
+  try {
+    const response = await fetch(
+      `${PROXY_URL}/users/auth/jwt?redirectURL=${encodeURIComponent(`${PROXY_URL}/users/notifications/user/${userId}/seen/${notificationId}`)}`,
+      {
+        method: "POST",
+        headers: {
+          "Content-Type": "application/json",
+        },
+        credentials: "include",
+        body: JSON.stringify({
+          method: "PUT",
+        }),
+      }
+    );
+
+    if (!response.ok) {
+      const errorMessage = await response.text();
+      console.error("Error marking notifications seen:", errorMessage);
+      throw new Error(`Failed to mark notifications seen: ${errorMessage}`);
+    }
+  } catch (error) {
+    console.error("Error marking notifications seen:", error);
     throw error;
   }
 };
@@ -516,12 +594,18 @@ export const deleteNotification = async (notificationId) => {
 
 export const clearAllNotifications = async (userId) => {
   try {
-    const notifications = await fetchNotifications(userId);
-    await Promise.all(
-      notifications.map((notification) =>
-        deleteNotification(notification._id)
-      )
-    );
+    // a page at a time, the deleted ones are gone so the next page starts from the newest again
+    while (true) {
+      const page = await fetchNotificationsPage(userId);
+      await Promise.all(
+        page.map((notification) =>
+          deleteNotification(notification._id)
+        )
+      );
+      if (page.length < NOTIFICATION_PAGE_SIZE) {
+        return;
+      }
+    }
   } catch (error) {
     console.error("Error clearing all notifications:", error);
     throw error;
@@ -630,10 +714,19 @@ export const filteredSearch = async (query, filters = {}) => {
 };
 
 
-export const fetchReportedQuotes = async () => {
+export const fetchReportedQuotes = async ({ sortBy = "date", sortOrder = "desc", tags = [], next = null } = {}) => {
   try {
+    // one page per call, pass the returned next to get the page after it, it is null on the last page
+    const params = new URLSearchParams({ sortBy, sortOrder });
+    if (tags.length) {
+      params.set("filterType", tags.join(","));
+    }
+    if (next) {
+      params.set("next", next);
+    }
+    const url = `${PROXY_URL}/quotes/report/filter?${params}`;
     const response = await fetch(
-      `${PROXY_URL}/users/auth/jwt?redirectURL=${encodeURIComponent(`${PROXY_URL}/quotes/report/all`)}`,
+      `${PROXY_URL}/users/auth/jwt?redirectURL=${encodeURIComponent(url)}`,
       {
         method: "POST",
         headers: {
@@ -647,7 +740,7 @@ export const fetchReportedQuotes = async () => {
     );
     const data = await response.json();
     console.log("Reported quotes data:", data);
-    return data.reports || [];
+    return { reports: data.reports || [], next: data.next || null };
   } catch (error) {
     console.error("Error fetching reported quotes:", error);
     throw error;
@@ -1,4 +1,4 @@
-import { useState, useEffect, useMemo, useCallback } from "react";
+import { useState, useEffect, useMemo, useCallback, useRef } from "react";
 import { fetchReportedQuotes } from "../lib/api";
 import SidebarAdmin from "../components/SidebarAdmin";
 import QuoteCardAdmin from "../components/QuoteCardAdmin";
@@ -9,24 +9,45 @@ const AdminPanel = () => {
   const [rawReports, setRawReports] = useState([]);
   const [loading, setLoading] = useState(true); 
 
-  //states for sorting
+  //continuation token of the next page, null once the last page is loaded
+  const [next, setNext] = useState(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
-  //controls whether we are showing the sidebar filtered list
-  const [showFiltered, setShowFiltered] = useState(false);
-
-  //capture list of filtered reports from the sidebar
-  const [filteredQuotes, setFilteredQuotes] = useState([]);
+  //sorting and filtering happen on the server, the sidebar picks them
+  const [query, setQuery] = useState({ sortBy: "date", sortOrder: "desc", tags: [] });
+  const lastSidebar = useRef({ frequency: null, created: null });
 
   //keeping track of selected tags
   const [_, setSelectedTags] = useState([]);
 
-  // fetching all reported quotes once on mount
+  // fetching the first page again whenever the sort or filter changes
   useEffect(() => {
-    fetchReportedQuotes()
-      .then((reports) => setRawReports(reports))
+    let cancelled = false;
+    setLoading(true);
+    fetchReportedQuotes(query)
+      .then((page) => {
+        if (!cancelled) {
+          setRawReports(page.reports);
+          setNext(page.next);
+        }
+      })
       .catch(() => {})
-      .finally(() => setLoading(false));
-  }, []);
+      .finally(() => !cancelled && setLoading(false));
+    return () => {
+      cancelled = true;
+    };
+  }, [query]);
+
+  const loadMore = () => {
+    setLoadingMore(true);
+    fetchReportedQuotes({ ...query, next })
+      .then((page) => {
+        setRawReports((reports) => [...reports, ...page.reports]);
+        setNext(page.next);
+      })
+      .catch(() => {})
+      .finally(() => setLoadingMore(false));
+  };
 
   const mergedReports = useMemo(() => {
     const map = new Map();
@@ -57,37 +78,29 @@ const AdminPanel = () => {
     return Array.from(map.values());
   }, [rawReports]);
 
-  // memoized handler for sidebar filters
+  // memoized handler for sidebar filters, the option picked last decides the sort
   const handleFilterChange = useCallback(
       (selectedReportFrequency, selectedReportCreated, tags) => {
-        setShowFiltered(true);
-
-        let out = [...mergedReports];
-
-        // filter by tag
-        if (tags.length) {
-          out = out.filter((r) =>
-              tags.some((tag) => r.reportReasons.includes(tag))
-          );
-        }
-
-      // sort by frequency
-      if (selectedReportFrequency === "Most Reported") {
-        out.sort((a, b) => b.reportCount - a.reportCount);
-      } else if (selectedReportFrequency === "Least Reported") {
-        out.sort((a, b) => a.reportCount - b.reportCount);
-      }
-
-      // sort by created date
-      if (selectedReportCreated === "Recent Reports") {
-        out.sort((a, b) => new Date(b.quote.date) - new Date(a.quote.date));
-      } else if (selectedReportCreated === "Oldest Reports") {
-        out.sort((a, b) => new Date(a.quote.date) - new Date(b.quote.date));
-      }
-
-      setFilteredQuotes(out);
+        const last = lastSidebar.current;
+        lastSidebar.current = { frequency: selectedReportFrequency, created: selectedReportCreated };
+
+        setQuery((current) => {
+          let { sortBy, sortOrder } = current;
+          if (last.frequency !== null && last.frequency !== selectedReportFrequency) {
+            sortBy = "flags";
+            sortOrder = selectedReportFrequency === "Least Reported" ? "asc" : "desc";
+          } else if (last.created !== null && last.created !== selectedReportCreated) {
+            sortBy = "date";
+            sortOrder = selectedReportCreated === "Oldest Reports" ? "asc" : "desc";
+          }
+          const sameTags = tags.length === current.tags.length && tags.every((tag) => current.tags.includes(tag));
+          if (sortBy === current.sortBy && sortOrder === current.sortOrder && sameTags) {
+            return current;
+          }
+          return { sortBy, sortOrder, tags };
+        });
     },
-    [mergedReports]
+    []
   );
 
   // memoized handler for tag selection
@@ -107,25 +120,36 @@ const AdminPanel = () => {
           {loading ? ( 
             <p>Loading...</p>
           ) : (
-            (showFiltered ? filteredQuotes : mergedReports).length > 0 ? (
-              <div
-                style={{
-                  display: "grid",
-                  gridTemplateColumns: "repeat(2, 1fr)",
-                  rowGap: "20px", 
-                }}
-              >
-                {(showFiltered ? filteredQuotes : mergedReports).map(
-                  ({ quote, reportCount, reportReasons }) => (
-                    <QuoteCardAdmin
-                      key={quote._id}
-                      quote={quote}
-                      reportCount={reportCount}
-                      reportReasons={reportReasons}
-                    />
-                  )
+            mergedReports.length > 0 ? (
+              <>
+                <div
+                  style={{
+                    display: "grid",
+                    gridTemplateColumns: "repeat(2, 1fr)",
+                    rowGap: "20px", 
+                  }}
+                >
+                  {mergedReports.map(
+                    ({ quote, reportCount, reportReasons }) => (
+                      <QuoteCardAdmin
+                        key={quote._id}
+                        quote={quote}
+                        reportCount={reportCount}
+                        reportReasons={reportReasons}
+                      />
+                    )
+                  )}
+                </div>
+                {next && (
+                  <button className="btn mt-3" onClick={loadMore} disabled={loadingMore}>
+                    {loadingMore ? "Loading..." : "Load more"}
+                  </button>
                 )}
-              </div>
+              </>
+            ) : next ? (
+              <button className="btn" onClick={loadMore} disabled={loadingMore}>
+                {loadingMore ? "Loading..." : "Load more"}
+              </button>
             ) : (
               <p>No reports found based on the selected filters.</p>
             )